@@ -26,6 +26,8 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 import java.util.regex.Pattern;
 import org.apache.kafka.common.config.Config;
 import org.apache.kafka.common.config.ConfigDef;
@@ -45,6 +47,9 @@ public class SnowflakeSinkConnector extends SinkConnector {
   // create logger without correlationId for now
   private static KCLogger LOGGER = new KCLogger(SnowflakeSinkConnector.class.getName());
 
+  // how long taskConfigs waits for start() to finish
+  private static final long SETUP_TIMEOUT_MINUTES = 10;
+
   private Map<String, String> config; // connector configuration, provided by
   // user through kafka connect framework
 
@@ -60,12 +65,12 @@ public class SnowflakeSinkConnector extends SinkConnector {
   // SnowflakeSinkConnector to finish.
   // This causes race conditions for: config validation, tables and stages
   // creation, etc.
-  // Using setupComplete to synchronize
-  private boolean setupComplete;
-
+  // Using setupComplete to synchronize, it is counted down once start() is done and replaced by a
+  // new latch when the connector is stopped
+  private volatile CountDownLatch setupComplete;
   /** No-Arg constructor. Required by Kafka Connect framework */
   public SnowflakeSinkConnector() {
-    setupComplete = false;
+    setupComplete = new CountDownLatch(1);
   }
 
   /**
@@ -82,7 +87,9 @@ public class SnowflakeSinkConnector extends SinkConnector {
 
     Utils.checkConnectorVersion();
 
-    setupComplete = false;
+    if (setupComplete.getCount() == 0) {
+      setupComplete = new CountDownLatch(1);
+    }
     connectorStartTime = System.currentTimeMillis();
     config = new HashMap<>(parsedConfig);
 
@@ -111,7 +118,7 @@ public class SnowflakeSinkConnector extends SinkConnector {
 
     telemetryClient.reportKafkaConnectStart(connectorStartTime, this.config);
 
-    setupComplete = true;
+    setupComplete.countDown();
 
     LOGGER.info("SnowflakeSinkConnector:started");
   }
@@ -126,7 +133,7 @@ public class SnowflakeSinkConnector extends SinkConnector {
    */
   @Override
   public void stop() {
-    setupComplete = false;
+    setupComplete = new CountDownLatch(1);
     LOGGER.info("SnowflakeSinkConnector:stopped");
     telemetryClient.reportKafkaConnectStop(connectorStartTime);
   }
@@ -156,23 +163,16 @@ public class SnowflakeSinkConnector extends SinkConnector {
    */
   @Override
   public List<Map<String, String>> taskConfigs(final int maxTasks) {
-    // wait for setup to complete
-    int counter = 0;
-    while (counter < 120) // poll for 120*5 seconds (10 mins) maximum
-    {
-      if (setupComplete) {
-        break;
-      } else {
-        counter++;
-        try {
-          LOGGER.info("Sleeping 5000ms to allow setup to " + "complete.");
-          Thread.sleep(5000);
-        } catch (InterruptedException ex) {
-          LOGGER.warn("Waiting for setup to complete got " + "interrupted");
-        }
-      }
+    // wait for setup to complete, 10 mins maximum
+    boolean isSetupComplete;
+    try {
+      isSetupComplete = setupComplete.await(SETUP_TIMEOUT_MINUTES, TimeUnit.MINUTES);
+    } catch (InterruptedException ex) {
+      LOGGER.warn("Waiting for setup to complete got interrupted");
+      Thread.currentThread().interrupt();
+      isSetupComplete = false;
     }
-    if (!setupComplete) {
+    if (!isSetupComplete) {
       throw SnowflakeErrors.ERROR_5007.getException(telemetryClient);
     }
 
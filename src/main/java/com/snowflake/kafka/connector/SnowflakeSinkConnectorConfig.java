@@ -19,6 +19,8 @@ package com.snowflake.kafka.connector;
 import com.google.common.base.Strings;
 import com.google.common.collect.ImmutableSet;
 import com.snowflake.kafka.connector.internal.KCLogger;
+import com.snowflake.kafka.connector.internal.SnowpipeFileFormat;
+import com.snowflake.kafka.connector.internal.StagedFileCompression;
 import com.snowflake.kafka.connector.internal.streaming.IngestionMethodConfig;
 import com.snowflake.kafka.connector.internal.streaming.StreamingUtils;
 import java.util.Arrays;
@@ -63,6 +65,43 @@ public class SnowflakeSinkConnectorConfig {
   public static final long BUFFER_COUNT_RECORDS_DEFAULT = 10000;
   public static final long BUFFER_COUNT_RECORDS_MIN = 1;
 
+  // Per topic overrides of the buffer thresholds, formatted like the topic2table map
+  public static final String BUFFER_FLUSH_TIME_SEC_TOPIC_MAP = "buffer.flush.time.topic.map";
+  public static final String BUFFER_SIZE_BYTES_TOPIC_MAP = "buffer.size.bytes.topic.map";
+  public static final String BUFFER_COUNT_RECORDS_TOPIC_MAP = "buffer.count.records.topic.map";
+
+  // Whether buffers of all partitions are flushed early once their heap usage exceeds the budget
+  public static final String BUFFER_MEMORY_BUDGET_ENABLED = "buffer.memory.budget.enabled";
+  public static final String BUFFER_MEMORY_BUDGET_BYTES = "buffer.memory.budget.bytes";
+
+  public static final boolean BUFFER_MEMORY_BUDGET_ENABLED_DEFAULT = false;
+  // non positive value means half of the max heap of the worker
+  public static final long BUFFER_MEMORY_BUDGET_BYTES_DEFAULT = -1;
+
+  // Whether partitions are paused while too much of their data is not committed in Snowflake yet
+  public static final String BUFFER_BACKPRESSURE_ENABLED = "buffer.backpressure.enabled";
+  public static final String BUFFER_BACKPRESSURE_HIGH_WATERMARK_BYTES =
+      "buffer.backpressure.high.watermark.bytes";
+  public static final String BUFFER_BACKPRESSURE_LOW_WATERMARK_BYTES =
+      "buffer.backpressure.low.watermark.bytes";
+  public static final String BUFFER_BACKPRESSURE_MAX_INFLIGHT_BATCHES =
+      "buffer.backpressure.max.inflight.batches";
+
+  public static final boolean BUFFER_BACKPRESSURE_ENABLED_DEFAULT = false;
+  public static final long BUFFER_BACKPRESSURE_HIGH_WATERMARK_BYTES_DEFAULT =
+      4 * BUFFER_SIZE_BYTES_DEFAULT;
+  public static final long BUFFER_BACKPRESSURE_LOW_WATERMARK_BYTES_DEFAULT =
+      2 * BUFFER_SIZE_BYTES_DEFAULT;
+  public static final int BUFFER_BACKPRESSURE_MAX_INFLIGHT_BATCHES_DEFAULT = 20;
+
+  // Offsets of the partitions are fetched concurrently on preCommit, partitions whose offset is not
+  // fetched in time keep their previous committed offset
+  public static final String SNOWFLAKE_PRECOMMIT_PARALLELISM = "snowflake.precommit.parallelism";
+  public static final String SNOWFLAKE_PRECOMMIT_TIMEOUT_MS = "snowflake.precommit.timeout.ms";
+
+  public static final int SNOWFLAKE_PRECOMMIT_PARALLELISM_DEFAULT = 8;
+  public static final long SNOWFLAKE_PRECOMMIT_TIMEOUT_MS_DEFAULT = 60000;
+
   // Snowflake connection and database config
   private static final String SNOWFLAKE_LOGIN_INFO = "Snowflake Login Info";
   static final String SNOWFLAKE_URL = Utils.SF_URL;
@@ -95,6 +134,10 @@ public class SnowflakeSinkConnectorConfig {
   // JDBC trace Info (environment variable)
   public static final String SNOWFLAKE_JDBC_TRACE = "JDBC_TRACE";
 
+  // Virtual threads for background I/O, off unless set to true. Only turn them on with Java 24+,
+  // earlier versions pin carrier threads in the synchronized code of JDBC (environment variable)
+  public static final String SNOWFLAKE_VIRTUAL_THREADS = "SNOWFLAKE_VIRTUAL_THREADS";
+
   // Snowflake Metadata Flags
   private static final String SNOWFLAKE_METADATA_FLAGS = "Snowflake Metadata Flags";
   public static final String SNOWFLAKE_METADATA_CREATETIME = "snowflake.metadata.createtime";
@@ -116,6 +159,15 @@ public class SnowflakeSinkConnectorConfig {
   public static final String JMX_OPT = "jmx";
   public static final boolean JMX_OPT_DEFAULT = true;
 
+  // Number of JDBC sessions a task can open, operations check them out one at a time. A single
+  // session is shared by all operations instead
+  public static final String JDBC_CONNECTION_POOL_SIZE = "snowflake.jdbc.connection.pool.size";
+  public static final int JDBC_CONNECTION_POOL_SIZE_DEFAULT = 1;
+
+  // How long table, stage and pipe checks are cached by a task, 0 to disable the cache
+  public static final String JDBC_METADATA_CACHE_TTL_MS = "snowflake.jdbc.metadataCache.ttlMs";
+  public static final long JDBC_METADATA_CACHE_TTL_MS_DEFAULT = 0;
+
   // for Snowpipe vs Streaming Snowpipe
   public static final String INGESTION_METHOD_OPT = "snowflake.ingestion.method";
   public static final String INGESTION_METHOD_DEFAULT_SNOWPIPE =
@@ -129,6 +181,66 @@ public class SnowflakeSinkConnectorConfig {
   public static final boolean SNOWPIPE_FILE_CLEANER_FIX_ENABLED_DEFAULT = false;
   public static final int SNOWPIPE_FILE_CLEANER_THREADS_DEFAULT = 1;
 
+  // Whether snowpipe buffers are spilled to local disk instead of flushed, once their heap usage
+  // exceeds the budget of BUFFER_MEMORY_BUDGET_BYTES
+  public static final String SNOWPIPE_BUFFER_SPILL_ENABLED =
+      "snowflake.snowpipe.buffer.spill.enabled";
+  public static final String SNOWPIPE_BUFFER_SPILL_DIRECTORY =
+      "snowflake.snowpipe.buffer.spill.directory";
+
+  public static final boolean SNOWPIPE_BUFFER_SPILL_ENABLED_DEFAULT = false;
+
+  // Whether broken records are written to the table stage in batches, instead of a file per record
+  public static final String SNOWPIPE_BROKEN_RECORD_BATCHING_ENABLED =
+      "snowflake.snowpipe.brokenRecord.batch.enabled";
+  public static final boolean SNOWPIPE_BROKEN_RECORD_BATCHING_ENABLED_DEFAULT = false;
+
+  // Whether flushed files are sent to snowpipe right away, instead of waiting for the next commit
+  public static final String SNOWPIPE_EAGER_INGEST_ENABLED =
+      "snowflake.snowpipe.eagerIngest.enabled";
+  public static final String SNOWPIPE_EAGER_INGEST_COALESCE_MS =
+      "snowflake.snowpipe.eagerIngest.coalesceMs";
+  public static final boolean SNOWPIPE_EAGER_INGEST_ENABLED_DEFAULT = false;
+  public static final long SNOWPIPE_EAGER_INGEST_COALESCE_MS_DEFAULT = 1000;
+
+  // Whether all partitions of a table load through a single pipe, instead of a pipe per partition
+  public static final String SNOWPIPE_SHARED_PIPE_ENABLED = "snowflake.snowpipe.sharedPipe.enabled";
+  public static final boolean SNOWPIPE_SHARED_PIPE_ENABLED_DEFAULT = false;
+
+  // Format of the files staged for Snowpipe, avro stages the raw datums of the Avro converter
+  public static final String SNOWPIPE_FILE_FORMAT = "snowflake.snowpipe.fileFormat";
+  public static final String SNOWPIPE_FILE_FORMAT_DEFAULT = "json";
+
+  // Compression of the files staged for Snowpipe, gzip by the JDBC driver or zstd by the connector
+  public static final String SNOWPIPE_COMPRESSION = "snowflake.snowpipe.compression";
+  public static final String SNOWPIPE_COMPRESSION_DEFAULT = "gzip";
+  public static final String SNOWPIPE_COMPRESSION_ZSTD_LEVEL =
+      "snowflake.snowpipe.compression.zstd.level";
+  public static final int SNOWPIPE_COMPRESSION_ZSTD_LEVEL_DEFAULT = 3;
+
+  // Whether large staged files are compressed in blocks on all cores
+  public static final String SNOWPIPE_COMPRESSION_PARALLEL_ENABLED =
+      "snowflake.snowpipe.compression.parallel.enabled";
+  public static final boolean SNOWPIPE_COMPRESSION_PARALLEL_ENABLED_DEFAULT = false;
+
+  // Whether files left on stage are ingested on restart instead of reprocessing their records
+  public static final String SNOWPIPE_RESUME_STAGED_FILES_ENABLED =
+      "snowflake.snowpipe.resumeStagedFiles.enabled";
+  public static final boolean SNOWPIPE_RESUME_STAGED_FILES_ENABLED_DEFAULT = false;
+
+  // Whether Snowpipe partitions are closed in parallel, waiting up to the timeout for them
+  public static final String SNOWPIPE_CLOSE_PARTITIONS_IN_PARALLEL =
+      "snowflake.snowpipe.closePartitionsInParallel.enabled";
+  public static final boolean SNOWPIPE_CLOSE_PARTITIONS_IN_PARALLEL_DEFAULT = false;
+  public static final String SNOWPIPE_CLOSE_PARTITIONS_TIMEOUT_MS =
+      "snowflake.snowpipe.closePartitionsInParallel.timeoutMs";
+  public static final long SNOWPIPE_CLOSE_PARTITIONS_TIMEOUT_MS_DEFAULT = 60000;
+
+  // Whether buffers of Snowpipe partitions are flushed and ingested before they are released
+  public static final String SNOWPIPE_FLUSH_ON_CLOSE_ENABLED =
+      "snowflake.snowpipe.flushOnClose.enabled";
+  public static final boolean SNOWPIPE_FLUSH_ON_CLOSE_ENABLED_DEFAULT = false;
+
   // Whether to close streaming channels in parallel.
   public static final String SNOWPIPE_STREAMING_CLOSE_CHANNELS_IN_PARALLEL =
       "snowflake.streaming.closeChannelsInParallel.enabled";
@@ -154,6 +266,18 @@ public class SnowflakeSinkConnectorConfig {
   private static final ConfigDef.Validator STREAMING_CLIENT_PROVIDER_OVERRIDE_MAP_VALIDATOR =
       new CommaSeparatedKeyValueValidator();
 
+  private static final ConfigDef.Validator SNOWPIPE_FILE_FORMAT_VALIDATOR =
+      caseInsensitiveValidString(
+          Arrays.stream(SnowpipeFileFormat.values())
+              .map(SnowpipeFileFormat::getExtension)
+              .toArray(String[]::new));
+
+  private static final ConfigDef.Validator SNOWPIPE_COMPRESSION_VALIDATOR =
+      caseInsensitiveValidString(
+          Arrays.stream(StagedFileCompression.values())
+              .map(StagedFileCompression::toString)
+              .toArray(String[]::new));
+
   // For error handling
   public static final String ERROR_GROUP = "ERRORS";
   public static final String ERRORS_TOLERANCE_CONFIG = "errors.tolerance";
@@ -261,6 +385,32 @@ public class SnowflakeSinkConnectorConfig {
     }
   }
 
+  /**
+   * Validator of a string config taking one of the given values, ignoring case
+   *
+   * @param values lower case values
+   * @return validator
+   */
+  private static ConfigDef.Validator caseInsensitiveValidString(String... values) {
+    return new ConfigDef.Validator() {
+      private final ConfigDef.ValidString validator = ConfigDef.ValidString.in(values);
+
+      @Override
+      public void ensureValid(String name, Object value) {
+        if (value instanceof String) {
+          value = ((String) value).trim().toLowerCase(Locale.ROOT);
+        }
+        validator.ensureValid(name, value);
+      }
+
+      // Overridden here so that ConfigDef.toEnrichedRst shows possible values correctly
+      @Override
+      public String toString() {
+        return validator.toString();
+      }
+    };
+  }
+
   static ConfigDef newConfigDef() {
     return new ConfigDef()
         // snowflake login info
@@ -478,6 +628,106 @@ public class SnowflakeSinkConnectorConfig {
             3,
             ConfigDef.Width.NONE,
             BUFFER_FLUSH_TIME_SEC)
+        .define(
+            BUFFER_COUNT_RECORDS_TOPIC_MAP,
+            Type.STRING,
+            "",
+            Importance.LOW,
+            "Map of topics to the number of records buffered per partition (optional), overriding "
+                + BUFFER_COUNT_RECORDS
+                + ". Format : comma-separated tuples, e.g. <topic-1>:<count-1>,<topic-2>:<count-2>."
+                + " Topics may be regexes, like in "
+                + TOPICS_TABLES_MAP
+                + ". An exact topic takes precedence over the regexes it matches")
+        .define(
+            BUFFER_SIZE_BYTES_TOPIC_MAP,
+            Type.STRING,
+            "",
+            Importance.LOW,
+            "Map of topics to the size of records buffered per partition (optional), overriding "
+                + BUFFER_SIZE_BYTES
+                + ". Format : comma-separated tuples, e.g. <topic-1>:<bytes-1>,<topic-2>:<bytes-2>."
+                + " Topics may be regexes, like in "
+                + TOPICS_TABLES_MAP
+                + ". An exact topic takes precedence over the regexes it matches")
+        .define(
+            BUFFER_FLUSH_TIME_SEC_TOPIC_MAP,
+            Type.STRING,
+            "",
+            Importance.LOW,
+            "Map of topics to the time in seconds to flush cached data (optional), overriding "
+                + BUFFER_FLUSH_TIME_SEC
+                + ". Format : comma-separated tuples, e.g. <topic-1>:<time-1>,<topic-2>:<time-2>."
+                + " Topics may be regexes, like in "
+                + TOPICS_TABLES_MAP
+                + ". An exact topic takes precedence over the regexes it matches")
+        .define(
+            BUFFER_MEMORY_BUDGET_ENABLED,
+            Type.BOOLEAN,
+            BUFFER_MEMORY_BUDGET_ENABLED_DEFAULT,
+            Importance.LOW,
+            "Whether to flush the largest partition buffers before they reach their thresholds,"
+                + " once the heap used by the buffers of all tasks of the worker exceeds "
+                + BUFFER_MEMORY_BUDGET_BYTES)
+        .define(
+            BUFFER_MEMORY_BUDGET_BYTES,
+            Type.LONG,
+            BUFFER_MEMORY_BUDGET_BYTES_DEFAULT,
+            Importance.LOW,
+            "Heap in bytes the partition buffers of the worker may use before the largest ones are"
+                + " flushed, or spilled with "
+                + SNOWPIPE_BUFFER_SPILL_ENABLED
+                + ". By default half of the max heap of the worker is used")
+        .define(
+            BUFFER_BACKPRESSURE_ENABLED,
+            Type.BOOLEAN,
+            BUFFER_BACKPRESSURE_ENABLED_DEFAULT,
+            Importance.LOW,
+            "Whether to pause partitions while too much of their data is not committed in"
+                + " Snowflake yet, instead of blocking the put call until it is. With Snowpipe"
+                + " a put still blocks while it flushes and uploads a buffer, pausing only"
+                + " holds back the records of partitions whose files are not ingested yet")
+        .define(
+            BUFFER_BACKPRESSURE_HIGH_WATERMARK_BYTES,
+            Type.LONG,
+            BUFFER_BACKPRESSURE_HIGH_WATERMARK_BYTES_DEFAULT,
+            ConfigDef.Range.atLeast(1),
+            Importance.LOW,
+            "Bytes of a partition buffered or sent but not committed in Snowflake, above which the"
+                + " partition is paused")
+        .define(
+            BUFFER_BACKPRESSURE_LOW_WATERMARK_BYTES,
+            Type.LONG,
+            BUFFER_BACKPRESSURE_LOW_WATERMARK_BYTES_DEFAULT,
+            ConfigDef.Range.atLeast(0),
+            Importance.LOW,
+            "Bytes of a paused partition not committed in Snowflake, under which it is resumed")
+        .define(
+            BUFFER_BACKPRESSURE_MAX_INFLIGHT_BATCHES,
+            Type.INT,
+            BUFFER_BACKPRESSURE_MAX_INFLIGHT_BATCHES_DEFAULT,
+            ConfigDef.Range.atLeast(1),
+            Importance.LOW,
+            "Batches of a partition sent but not committed in Snowflake, above which the partition"
+                + " is paused. It is resumed once half of them are committed")
+        .define(
+            SNOWFLAKE_PRECOMMIT_PARALLELISM,
+            Type.INT,
+            SNOWFLAKE_PRECOMMIT_PARALLELISM_DEFAULT,
+            ConfigDef.Range.atLeast(1),
+            Importance.LOW,
+            "Number of threads of a task fetching the offsets of its partitions on commit: pipes"
+                + " are ingested concurrently for Snowpipe, offset tokens of the channels are"
+                + " fetched concurrently for Snowpipe Streaming")
+        .define(
+            SNOWFLAKE_PRECOMMIT_TIMEOUT_MS,
+            Type.LONG,
+            SNOWFLAKE_PRECOMMIT_TIMEOUT_MS_DEFAULT,
+            ConfigDef.Range.atLeast(1),
+            Importance.LOW,
+            "Time in milliseconds a commit waits for the offsets of the partitions. Partitions"
+                + " whose offset is not fetched in time keep their previous committed offset until"
+                + " the next commit")
         .define(
             SNOWFLAKE_METADATA_ALL,
             Type.BOOLEAN,
@@ -556,6 +806,26 @@ public class SnowflakeSinkConnectorConfig {
             JMX_OPT_DEFAULT,
             ConfigDef.Importance.HIGH,
             "Whether to enable JMX MBeans for custom SF metrics")
+        .define(
+            JDBC_CONNECTION_POOL_SIZE,
+            Type.INT,
+            JDBC_CONNECTION_POOL_SIZE_DEFAULT,
+            ConfigDef.Range.atLeast(1),
+            Importance.LOW,
+            "Maximum number of JDBC sessions opened by a task. Table and pipe checks, DDL, stage"
+                + " maintenance and credential fetches each use at most part of them, so cleaner"
+                + " threads do not hold up the put thread. Sessions are opened on demand. With a"
+                + " single session, the default, all operations share it concurrently")
+        .define(
+            JDBC_METADATA_CACHE_TTL_MS,
+            Type.LONG,
+            JDBC_METADATA_CACHE_TTL_MS_DEFAULT,
+            ConfigDef.Range.atLeast(0),
+            Importance.LOW,
+            "How long a task keeps the result of table, stage and pipe checks, so partitions of the"
+                + " same table share them. Dropped early when the connector changes the object"
+                + " itself. Changes made outside of the connector are seen once the result"
+                + " expires. 0 disables the cache")
         .define(
             REBALANCING,
             Type.BOOLEAN,
@@ -587,6 +857,131 @@ public class SnowflakeSinkConnectorConfig {
             Importance.LOW,
             "Defines number of worker threads to associate with the cleaner task. By default there"
                 + " is one cleaner per topic's partition and they all share one worker thread")
+        .define(
+            SNOWPIPE_BUFFER_SPILL_ENABLED,
+            Type.BOOLEAN,
+            SNOWPIPE_BUFFER_SPILL_ENABLED_DEFAULT,
+            Importance.LOW,
+            "Whether to spill the largest snowpipe partition buffers to local disk instead of"
+                + " flushing them, once the heap used by the buffers of the worker exceeds "
+                + BUFFER_MEMORY_BUDGET_BYTES
+                + ". Turns the budget on. Spilled buffers are uploaded to the stage directly from"
+                + " disk")
+        .define(
+            SNOWPIPE_BUFFER_SPILL_DIRECTORY,
+            Type.STRING,
+            "",
+            Importance.LOW,
+            "Local directory of the spilled snowpipe buffers. By default the temp directory of the"
+                + " worker is used")
+        .define(
+            SNOWPIPE_BROKEN_RECORD_BATCHING_ENABLED,
+            Type.BOOLEAN,
+            SNOWPIPE_BROKEN_RECORD_BATCHING_ENABLED_DEFAULT,
+            Importance.LOW,
+            "Whether to collect broken records of a partition and write them to the table stage in"
+                + " the background, as one data file with an index file mapping the contents to"
+                + " their offsets. Batches are written on the same flush triggers as the buffer."
+                + " By default every broken key or value is written as a separate file")
+        .define(
+            SNOWPIPE_EAGER_INGEST_ENABLED,
+            Type.BOOLEAN,
+            SNOWPIPE_EAGER_INGEST_ENABLED_DEFAULT,
+            Importance.LOW,
+            "Whether to send files to Snowpipe in the background right after they are uploaded to"
+                + " the stage, instead of waiting for the next offset commit. Committed offsets"
+                + " keep their semantics")
+        .define(
+            SNOWPIPE_EAGER_INGEST_COALESCE_MS,
+            Type.LONG,
+            SNOWPIPE_EAGER_INGEST_COALESCE_MS_DEFAULT,
+            ConfigDef.Range.atLeast(0),
+            Importance.LOW,
+            "Time in milliseconds files flushed by a partition are collected for, before they are"
+                + " sent to Snowpipe in one call. Only used when "
+                + SNOWPIPE_EAGER_INGEST_ENABLED
+                + " is set")
+        .define(
+            SNOWPIPE_SHARED_PIPE_ENABLED,
+            Type.BOOLEAN,
+            SNOWPIPE_SHARED_PIPE_ENABLED_DEFAULT,
+            Importance.LOW,
+            "Whether all partitions of a table load through one pipe, instead of a pipe per"
+                + " partition. Partitions still previously loaded through their own pipe keep it"
+                + " until their files are cleaned from the stage, then the old pipe is dropped")
+        .define(
+            SNOWPIPE_FILE_FORMAT,
+            Type.STRING,
+            SNOWPIPE_FILE_FORMAT_DEFAULT,
+            SNOWPIPE_FILE_FORMAT_VALIDATOR,
+            Importance.LOW,
+            "Format of the files staged for Snowpipe. avro stages record contents as the binary"
+                + " datums they were written in, without converting them to json. It requires"
+                + " SnowflakeAvroConverter with avro.passthrough=true as value converter. Changing"
+                + " the format requires recreating the pipes of existing tables")
+        .define(
+            SNOWPIPE_COMPRESSION,
+            Type.STRING,
+            SNOWPIPE_COMPRESSION_DEFAULT,
+            SNOWPIPE_COMPRESSION_VALIDATOR,
+            Importance.LOW,
+            "Compression of the files staged for Snowpipe, gzip or zstd. zstd files are"
+                + " compressed by the connector, at the level set by "
+                + SNOWPIPE_COMPRESSION_ZSTD_LEVEL
+                + ". zstd requires the zstd-jni library shipped with Kafka on the classpath of the"
+                + " worker, it is not packaged with the connector")
+        .define(
+            SNOWPIPE_COMPRESSION_ZSTD_LEVEL,
+            Type.INT,
+            SNOWPIPE_COMPRESSION_ZSTD_LEVEL_DEFAULT,
+            ConfigDef.Range.between(1, 22),
+            Importance.LOW,
+            "Zstandard level of the files staged for Snowpipe, higher levels trade CPU for a"
+                + " better ratio. Only used when "
+                + SNOWPIPE_COMPRESSION
+                + " is zstd")
+        .define(
+            SNOWPIPE_COMPRESSION_PARALLEL_ENABLED,
+            Type.BOOLEAN,
+            SNOWPIPE_COMPRESSION_PARALLEL_ENABLED_DEFAULT,
+            Importance.LOW,
+            "Whether staged files of 8MB and more are split into blocks compressed on all cores,"
+                + " as a multi-member gzip file or a multi-frame zstd file. Files spilled to disk"
+                + " are still compressed on a single core")
+        .define(
+            SNOWPIPE_RESUME_STAGED_FILES_ENABLED,
+            Type.BOOLEAN,
+            SNOWPIPE_RESUME_STAGED_FILES_ENABLED_DEFAULT,
+            Importance.LOW,
+            "Whether files left on stage by a previous task are sent to Snowpipe on restart when"
+                + " they cover a contiguous offset range from the committed offset. The partition"
+                + " then resumes after them instead of reprocessing their records from Kafka")
+        .define(
+            SNOWPIPE_CLOSE_PARTITIONS_IN_PARALLEL,
+            Type.BOOLEAN,
+            SNOWPIPE_CLOSE_PARTITIONS_IN_PARALLEL_DEFAULT,
+            Importance.LOW,
+            "Whether to close Snowpipe partitions in parallel during task shutdown or rebalancing")
+        .define(
+            SNOWPIPE_CLOSE_PARTITIONS_TIMEOUT_MS,
+            Type.LONG,
+            SNOWPIPE_CLOSE_PARTITIONS_TIMEOUT_MS_DEFAULT,
+            ConfigDef.Range.atLeast(1),
+            Importance.LOW,
+            "Time in milliseconds a parallel close waits for the partitions. Partitions still"
+                + " closing then finish in the background. Only used when "
+                + SNOWPIPE_CLOSE_PARTITIONS_IN_PARALLEL
+                + " is true")
+        .define(
+            SNOWPIPE_FLUSH_ON_CLOSE_ENABLED,
+            Type.BOOLEAN,
+            SNOWPIPE_FLUSH_ON_CLOSE_ENABLED_DEFAULT,
+            Importance.LOW,
+            "Whether the buffer of a Snowpipe partition is flushed and its files are sent to"
+                + " Snowpipe before the partition is released. Requires "
+                + SNOWPIPE_RESUME_STAGED_FILES_ENABLED
+                + ", so that the next owner of the partition resumes after these files instead"
+                + " of loading their records again from Kafka")
         .define(
             SNOWPIPE_STREAMING_CLOSE_CHANNELS_IN_PARALLEL,
             Type.BOOLEAN,
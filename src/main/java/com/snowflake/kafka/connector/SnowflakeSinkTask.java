@@ -19,6 +19,7 @@ package com.snowflake.kafka.connector;
 import static com.snowflake.kafka.connector.internal.streaming.TopicPartitionChannel.NO_OFFSET_TOKEN_REGISTERED_IN_SNOWFLAKE;
 
 import com.google.common.annotations.VisibleForTesting;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.snowflake.kafka.connector.dlq.KafkaRecordErrorReporter;
 import com.snowflake.kafka.connector.internal.KCLogger;
 import com.snowflake.kafka.connector.internal.SnowflakeConnectionService;
@@ -27,14 +28,18 @@ import com.snowflake.kafka.connector.internal.SnowflakeErrors;
 import com.snowflake.kafka.connector.internal.SnowflakeSinkService;
 import com.snowflake.kafka.connector.internal.SnowflakeSinkServiceFactory;
 import com.snowflake.kafka.connector.internal.streaming.IngestionMethodConfig;
+import com.snowflake.kafka.connector.internal.streaming.StreamingClientProvider;
 import com.snowflake.kafka.connector.records.SnowflakeMetadataConfig;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutionException;
-import java.util.concurrent.TimeoutException;
-import java.util.function.Supplier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 import org.apache.kafka.clients.consumer.OffsetAndMetadata;
 import org.apache.kafka.common.TopicPartition;
 import org.apache.kafka.connect.errors.ConnectException;
@@ -52,8 +57,8 @@ import org.apache.kafka.connect.sink.SinkTask;
  * Snowflake via Sink service
  */
 public class SnowflakeSinkTask extends SinkTask {
-  private static final long WAIT_TIME = 5 * 1000; // 5 sec
-  private static final int REPEAT_TIME = 12; // 60 sec
+  // how long put and open wait for start() to set the connection and the sink
+  private static final long START_TIMEOUT_MS = 60 * 1000; // 60 sec
 
   // the dynamic logger is intended to be attached per task instance. the instance id will be set
   // during task start, however if it is not set, it falls back to the static logger
@@ -89,6 +94,9 @@ public class SnowflakeSinkTask extends SinkTask {
 
   private IngestionMethodConfig ingestionMethodConfig;
 
+  // counted down once start() is done, successfully or not
+  private final CountDownLatch startComplete = new CountDownLatch(1);
+
   /** default constructor, invoked by kafka connect framework */
   public SnowflakeSinkTask() {
     DYNAMIC_LOGGER = new KCLogger(this.getClass().getName());
@@ -100,6 +108,7 @@ public class SnowflakeSinkTask extends SinkTask {
     DYNAMIC_LOGGER = new KCLogger(this.getClass().getName());
     this.sink = service;
     this.conn = connectionService;
+    this.startComplete.countDown();
   }
 
   @VisibleForTesting
@@ -112,10 +121,9 @@ public class SnowflakeSinkTask extends SinkTask {
     this.topic2table = topic2table;
   }
 
+  // waits for start(), so it must not be called by start() itself
   private SnowflakeConnectionService getConnection() {
-    try {
-      waitFor(() -> conn != null);
-    } catch (Exception e) {
+    if (!awaitStart() || conn == null) {
       throw SnowflakeErrors.ERROR_5013.getException();
     }
     return conn;
@@ -132,14 +140,26 @@ public class SnowflakeSinkTask extends SinkTask {
   }
 
   private SnowflakeSinkService getSink() {
-    try {
-      waitFor(() -> sink != null && !sink.isClosed());
-    } catch (Exception e) {
+    if (!awaitStart() || sink == null || sink.isClosed()) {
       throw SnowflakeErrors.ERROR_5014.getException();
     }
     return sink;
   }
 
+  /**
+   * Wait for start() to finish, it usually has already
+   *
+   * @return false if start() did not finish in time, or the wait was interrupted
+   */
+  private boolean awaitStart() {
+    try {
+      return startComplete.await(START_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return false;
+    }
+  }
+
   /**
    * start method handles configuration parsing and one-time setup of the task. loads configuration
    *
@@ -147,6 +167,14 @@ public class SnowflakeSinkTask extends SinkTask {
    */
   @Override
   public void start(final Map<String, String> parsedConfig) {
+    try {
+      startTask(parsedConfig);
+    } finally {
+      startComplete.countDown();
+    }
+  }
+
+  private void startTask(final Map<String, String> parsedConfig) {
     this.DYNAMIC_LOGGER.info("starting task...");
 
     // get task id and start time
@@ -204,18 +232,19 @@ public class SnowflakeSinkTask extends SinkTask {
               parsedConfig.get(SnowflakeSinkConnectorConfig.INGESTION_METHOD_OPT).toUpperCase());
     }
 
-    conn =
-        SnowflakeConnectionServiceFactory.builder()
-            .setProperties(parsedConfig)
-            .setTaskID(this.taskConfigId)
-            .build();
+    // the streaming client authenticates while the JDBC session is opened
+    CompletableFuture<Void> streamingClientReady =
+        prepareStreamingClient(parsedConfig, ingestionType);
+    SnowflakeConnectionService connection = createConnection(parsedConfig);
+    conn = connection;
+    streamingClientReady.join();
 
     if (this.sink != null) {
       this.sink.closeAll();
     }
     this.ingestionMethodConfig = ingestionType;
     this.sink =
-        SnowflakeSinkServiceFactory.builder(getConnection(), ingestionType, parsedConfig)
+        SnowflakeSinkServiceFactory.builder(connection, ingestionType, parsedConfig)
             .setFileSize(bufferSizeBytes)
             .setRecordNumber(bufferCountRecords)
             .setFlushTime(bufferFlushTime)
@@ -233,6 +262,14 @@ public class SnowflakeSinkTask extends SinkTask {
         getDurationFromStartMs(this.taskStartTime));
   }
 
+  @VisibleForTesting
+  SnowflakeConnectionService createConnection(Map<String, String> parsedConfig) {
+    return SnowflakeConnectionServiceFactory.builder()
+        .setProperties(parsedConfig)
+        .setTaskID(this.taskConfigId)
+        .build();
+  }
+
   /**
    * stop method is invoked only once outstanding calls to other methods have completed. e.g. after
    * current put, and a final preCommit has completed.
@@ -335,15 +372,15 @@ public class SnowflakeSinkTask extends SinkTask {
     Map<TopicPartition, OffsetAndMetadata> committedOffsets = new HashMap<>();
     // it's ok to just log the error since commit can retry
     try {
-      offsets.forEach(
-          (topicPartition, offsetAndMetadata) -> {
-            long offset = sink.getOffset(topicPartition);
-            if ((ingestionMethodConfig == IngestionMethodConfig.SNOWPIPE && offset != 0)
-                || (ingestionMethodConfig == IngestionMethodConfig.SNOWPIPE_STREAMING
-                    && offset != NO_OFFSET_TOKEN_REGISTERED_IN_SNOWFLAKE)) {
-              committedOffsets.put(topicPartition, new OffsetAndMetadata(offset));
-            }
-          });
+      sink.getOffsets(offsets.keySet())
+          .forEach(
+              (topicPartition, offset) -> {
+                if ((ingestionMethodConfig == IngestionMethodConfig.SNOWPIPE && offset != 0)
+                    || (ingestionMethodConfig == IngestionMethodConfig.SNOWPIPE_STREAMING
+                        && offset != NO_OFFSET_TOKEN_REGISTERED_IN_SNOWFLAKE)) {
+                  committedOffsets.put(topicPartition, new OffsetAndMetadata(offset));
+                }
+              });
     } catch (Exception e) {
       this.DYNAMIC_LOGGER.error("PreCommit error: {} ", e.getMessage());
     }
@@ -382,19 +419,47 @@ public class SnowflakeSinkTask extends SinkTask {
   }
 
   /**
-   * wait for specific status
+   * Create the streaming client in the background, the sink service picks it up from the client
+   * provider once the connection is ready. Only done when clients are shared, otherwise the sink
+   * service creates its own one anyway.
    *
-   * @param func status checker
+   * @param parsedConfig task configuration
+   * @param ingestionType ingestion method of the task
+   * @return future completed once the client is created, or failed to be created. A failure is
+   *     only logged here, the sink service retries and reports it.
    */
-  private static void waitFor(Supplier<Boolean> func)
-      throws InterruptedException, TimeoutException {
-    for (int i = 0; i < REPEAT_TIME; i++) {
-      if (func.get()) {
-        return;
-      }
-      Thread.sleep(WAIT_TIME);
+  private CompletableFuture<Void> prepareStreamingClient(
+      Map<String, String> parsedConfig, IngestionMethodConfig ingestionType) {
+    boolean isClientShared =
+        Boolean.parseBoolean(
+            parsedConfig.getOrDefault(
+                SnowflakeSinkConnectorConfig.ENABLE_STREAMING_CLIENT_OPTIMIZATION_CONFIG,
+                Boolean.toString(
+                    SnowflakeSinkConnectorConfig.ENABLE_STREAMING_CLIENT_OPTIMIZATION_DEFAULT)));
+    if (ingestionType != IngestionMethodConfig.SNOWPIPE_STREAMING || !isClientShared) {
+      return CompletableFuture.completedFuture(null);
+    }
+    ExecutorService executor =
+        Executors.newSingleThreadExecutor(
+            new ThreadFactoryBuilder()
+                .setNameFormat("snowflake-streaming-client-init-" + this.taskConfigId + "-%d")
+                .setDaemon(true)
+                .build());
+    try {
+      return CompletableFuture.runAsync(
+          () -> {
+            try {
+              StreamingClientProvider.getStreamingClientProviderInstance().getClient(parsedConfig);
+            } catch (Exception e) {
+              DYNAMIC_LOGGER.warn(
+                  "Failed to create the streaming client early: {}", e.getMessage());
+            }
+          },
+          executor);
+    } finally {
+      // the thread exits once the client is created
+      executor.shutdown();
     }
-    throw new TimeoutException();
   }
 
   private static long getDurationFromStartMs(long startTime) {
@@ -29,6 +29,7 @@ import com.snowflake.kafka.connector.internal.OAuthConstants;
 import com.snowflake.kafka.connector.internal.SnowflakeErrors;
 import com.snowflake.kafka.connector.internal.SnowflakeInternalOperations;
 import com.snowflake.kafka.connector.internal.SnowflakeURL;
+import com.snowflake.kafka.connector.internal.StagedFileCompression;
 import com.snowflake.kafka.connector.internal.streaming.IngestionMethodConfig;
 import com.snowflake.kafka.connector.internal.streaming.StreamingUtils;
 import java.io.BufferedReader;
@@ -63,6 +64,7 @@ import net.snowflake.client.jdbc.internal.apache.http.impl.client.HttpClientBuil
 import net.snowflake.client.jdbc.internal.apache.http.util.EntityUtils;
 import net.snowflake.client.jdbc.internal.google.gson.JsonObject;
 import net.snowflake.client.jdbc.internal.google.gson.JsonParser;
+import org.apache.commons.compress.compressors.zstandard.ZstdUtils;
 import org.apache.kafka.common.config.Config;
 import org.apache.kafka.common.config.ConfigException;
 import org.apache.kafka.common.config.ConfigValue;
@@ -223,6 +225,17 @@ public class Utils {
     return stageName;
   }
 
+  /**
+   * generate the prefix shared by names of all pipes of given table
+   *
+   * @param appName connector name
+   * @param table table name
+   * @return pipe name prefix
+   */
+  public static String pipeNamePrefix(String appName, String table) {
+    return getObjectPrefix(appName) + "_PIPE_" + table + "_";
+  }
+
   /**
    * generate pipe name by given table and partition
    *
@@ -232,13 +245,29 @@ public class Utils {
    * @return pipe name
    */
   public static String pipeName(String appName, String table, int partition) {
-    String pipeName = getObjectPrefix(appName) + "_PIPE_" + table + "_" + partition;
+    String pipeName = pipeNamePrefix(appName, table) + partition;
 
     LOGGER.debug("generated pipe name: {}", pipeName);
 
     return pipeName;
   }
 
+  /**
+   * generate name of the pipe shared by all partitions of given table, it can't clash with a pipe
+   * name generated for a partition
+   *
+   * @param appName connector name
+   * @param table table name
+   * @return pipe name
+   */
+  public static String sharedPipeName(String appName, String table) {
+    String pipeName = pipeNamePrefix(appName, table) + "SHARED";
+
+    LOGGER.debug("generated shared pipe name: {}", pipeName);
+
+    return pipeName;
+  }
+
   /**
    * Read JDBC logging directory from environment variable JDBC_LOG_DIR and set that in System
    * property
@@ -471,6 +500,31 @@ public class Utils {
                 "Streaming client Channel migration is only available with {}.",
                 IngestionMethodConfig.SNOWPIPE_STREAMING.toString()));
       }
+      // zstd-jni is not packaged with the connector, it comes with the Kafka clients of the worker
+      String compression = config.get(SnowflakeSinkConnectorConfig.SNOWPIPE_COMPRESSION);
+      if (compression != null
+          && StagedFileCompression.ZSTD.toString().equalsIgnoreCase(compression.trim())
+          && !ZstdUtils.isZstdCompressionAvailable()) {
+        invalidConfigParams.put(
+            SnowflakeSinkConnectorConfig.SNOWPIPE_COMPRESSION,
+            Utils.formatString(
+                "{} is zstd, which requires the zstd-jni library on the classpath of the worker."
+                    + " It ships with Kafka in its libs directory.",
+                SnowflakeSinkConnectorConfig.SNOWPIPE_COMPRESSION));
+      }
+      // records of the files flushed on close would otherwise be loaded again by the next owner
+      if (Boolean.parseBoolean(
+              config.get(SnowflakeSinkConnectorConfig.SNOWPIPE_FLUSH_ON_CLOSE_ENABLED))
+          && !Boolean.parseBoolean(
+              config.get(SnowflakeSinkConnectorConfig.SNOWPIPE_RESUME_STAGED_FILES_ENABLED))) {
+        invalidConfigParams.put(
+            SnowflakeSinkConnectorConfig.SNOWPIPE_FLUSH_ON_CLOSE_ENABLED,
+            Utils.formatString(
+                "{} requires {}, so that the next owner of a partition resumes after the files"
+                    + " flushed on close.",
+                SnowflakeSinkConnectorConfig.SNOWPIPE_FLUSH_ON_CLOSE_ENABLED,
+                SnowflakeSinkConnectorConfig.SNOWPIPE_RESUME_STAGED_FILES_ENABLED));
+      }
     }
 
     if (config.containsKey(SnowflakeSinkConnectorConfig.TOPICS_TABLES_MAP)
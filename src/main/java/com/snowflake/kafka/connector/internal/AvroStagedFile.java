@@ -0,0 +1,129 @@
+package com.snowflake.kafka.connector.internal;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import javax.annotation.Nullable;
+import org.apache.avro.Schema;
+import org.apache.avro.SchemaBuilder;
+import org.apache.avro.file.DataFileWriter;
+import org.apache.avro.generic.GenericDatumWriter;
+import org.apache.avro.io.BinaryEncoder;
+import org.apache.avro.io.EncoderFactory;
+
+/**
+ * Avro object container file staged for Snowpipe, holding the records of a single writer schema.
+ * Record contents are appended as the binary datums they arrived in, they are never decoded. Every
+ * file record wraps its content next to the record metadata, which is kept as json text:
+ *
+ * <pre>{"meta": "{\"offset\":1,...}", "content": {...}}</pre>
+ *
+ * <p>Not thread safe, it is only used under the lock of its partition buffer.
+ */
+class AvroStagedFile {
+  private static final String RECORD_NAME =
+      "com.snowflake.kafka.connector.internal.SnowflakeStagedRecord";
+
+  private final ByteArrayOutputStream out = new ByteArrayOutputStream();
+  private final DataFileWriter<Object> writer;
+  // file record being appended, reused across records
+  private final ByteArrayOutputStream record = new ByteArrayOutputStream();
+  private BinaryEncoder encoder;
+
+  private long firstOffset = -1;
+  private long lastOffset = -1;
+  private long sizeBytes = 0;
+
+  /**
+   * @param contentSchema writer schema of the record contents, null for a file of tombstone
+   *     records
+   */
+  AvroStagedFile(@Nullable Schema contentSchema) {
+    writer = new DataFileWriter<>(new GenericDatumWriter<>());
+    try {
+      writer.create(fileSchema(contentSchema), out);
+    } catch (IOException e) {
+      throw SnowflakeErrors.ERROR_5026.getException(e);
+    }
+  }
+
+  /**
+   * @param contentSchema writer schema of the record contents, null for tombstone records
+   * @return schema of the file records
+   */
+  static Schema fileSchema(@Nullable Schema contentSchema) {
+    return SchemaBuilder.record(RECORD_NAME)
+        .fields()
+        .name("meta")
+        .type()
+        .optional()
+        .stringType()
+        .name("content")
+        .type(contentSchema == null ? Schema.create(Schema.Type.NULL) : contentSchema)
+        .noDefault()
+        .endRecord();
+  }
+
+  /**
+   * Append a record to the file
+   *
+   * @param offset kafka offset of the record
+   * @param meta record metadata as json text, null if metadata is disabled
+   * @param datum binary avro datum of the content, null for a tombstone record
+   * @return number of bytes appended
+   */
+  long append(long offset, @Nullable String meta, @Nullable byte[] datum) {
+    record.reset();
+    try {
+      encoder = EncoderFactory.get().binaryEncoder(record, encoder);
+      if (meta == null) {
+        encoder.writeIndex(0);
+      } else {
+        encoder.writeIndex(1);
+        encoder.writeString(meta);
+      }
+      if (datum != null) {
+        encoder.writeFixed(datum);
+      }
+      encoder.flush();
+      writer.appendEncoded(ByteBuffer.wrap(record.toByteArray()));
+    } catch (IOException e) {
+      throw SnowflakeErrors.ERROR_5026.getException(e);
+    }
+    if (firstOffset == -1) {
+      firstOffset = offset;
+    }
+    lastOffset = offset;
+    sizeBytes += record.size();
+    return record.size();
+  }
+
+  /** @return offset of the first record in the file */
+  long getFirstOffset() {
+    return firstOffset;
+  }
+
+  /** @return offset of the last record in the file */
+  long getLastOffset() {
+    return lastOffset;
+  }
+
+  /** @return size of the appended records, before container framing */
+  long getSizeBytes() {
+    return sizeBytes;
+  }
+
+  /**
+   * Close the file, no more records can be appended
+   *
+   * @return file content
+   */
+  byte[] finish() {
+    try {
+      writer.close();
+    } catch (IOException e) {
+      throw SnowflakeErrors.ERROR_5026.getException(e);
+    }
+    return out.toByteArray();
+  }
+}
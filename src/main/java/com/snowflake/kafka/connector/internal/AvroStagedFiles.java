@@ -0,0 +1,51 @@
+package com.snowflake.kafka.connector.internal;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import javax.annotation.Nullable;
+import org.apache.avro.Schema;
+
+/**
+ * Avro files of a partition buffer. A file holds a single writer schema, so a new file is started
+ * every time the schema changes from one record to the next. Files then hold contiguous and
+ * disjoint offset ranges, like the single file of the other formats, which resuming from staged
+ * files relies on. Interleaved schemas give more and smaller files.
+ *
+ * <p>Not thread safe, it is only used under the lock of its partition buffer.
+ */
+class AvroStagedFiles {
+  private final List<AvroStagedFile> files = new ArrayList<>();
+  // schema id of the last file
+  private int lastSchemaId;
+
+  /**
+   * Append a record to the last file, or to a new one if the record has another writer schema
+   *
+   * @param offset kafka offset of the record
+   * @param schemaId schema registry id of the writer schema, see {@link
+   *     com.snowflake.kafka.connector.records.SnowflakeRecordContent#NON_AVRO_SCHEMA} for
+   *     tombstone records
+   * @param contentSchema writer schema of the record content, null for a tombstone record
+   * @param meta record metadata as json text, null if metadata is disabled
+   * @param datum binary avro datum of the content, null for a tombstone record
+   * @return number of bytes appended
+   */
+  long append(
+      long offset,
+      int schemaId,
+      @Nullable Schema contentSchema,
+      @Nullable String meta,
+      @Nullable byte[] datum) {
+    if (files.isEmpty() || schemaId != lastSchemaId) {
+      files.add(new AvroStagedFile(contentSchema));
+      lastSchemaId = schemaId;
+    }
+    return files.get(files.size() - 1).append(offset, meta, datum);
+  }
+
+  /** @return files in the order of their offsets */
+  List<AvroStagedFile> getFiles() {
+    return Collections.unmodifiableList(files);
+  }
+}
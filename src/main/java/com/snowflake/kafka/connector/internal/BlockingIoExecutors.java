@@ -0,0 +1,175 @@
+package com.snowflake.kafka.connector.internal;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.snowflake.kafka.connector.SnowflakeSinkConnectorConfig;
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.Nullable;
+
+/**
+ * Executors for background work which mostly waits on Snowflake: ingest history polls, stage
+ * listings and purges, uploads. By default they are bounded pools of daemon platform threads.
+ *
+ * <p>Their threads can be virtual threads instead, so every partition can wait on its own thread
+ * without holding a platform thread. They are turned on for the whole worker by setting the {@link
+ * SnowflakeSinkConnectorConfig#SNOWFLAKE_VIRTUAL_THREADS} environment variable to true. Only do so
+ * on Java 24 or later: up to Java 23 a virtual thread blocking inside a synchronized block pins its
+ * carrier thread, and both the JDBC driver and the ingest SDK block in synchronized code, so a few
+ * slow Snowflake calls can stall every virtual thread of the JVM.
+ *
+ * <p>The connector is built for Java 8, so virtual threads are looked up by reflection.
+ */
+final class BlockingIoExecutors {
+  private static final KCLogger LOGGER = new KCLogger(BlockingIoExecutors.class.getName());
+
+  // threads of a scheduled executor backed by virtual threads, they are only started on demand
+  static final int VIRTUAL_SCHEDULER_THREADS = 1024;
+  private static final long PLATFORM_THREAD_KEEP_ALIVE_SECONDS = 60;
+
+  // factory of named virtual threads, null if they are not available or not turned on
+  @Nullable private static final VirtualThreads VIRTUAL_THREADS = VirtualThreads.lookup();
+
+  private BlockingIoExecutors() {}
+
+  /** @return whether the executors run their tasks on virtual threads */
+  static boolean useVirtualThreads() {
+    return VIRTUAL_THREADS != null;
+  }
+
+  /**
+   * @param nameFormat thread name, with a %d placeholder for the thread number
+   * @param maxPlatformThreads bound of the pool when virtual threads are not available
+   * @return executor starting a virtual thread per task, or a bounded pool of platform threads
+   */
+  static ExecutorService newExecutor(String nameFormat, int maxPlatformThreads) {
+    if (VIRTUAL_THREADS != null) {
+      ExecutorService executor = VIRTUAL_THREADS.newThreadPerTaskExecutor(nameFormat);
+      if (executor != null) {
+        return executor;
+      }
+    }
+    ThreadPoolExecutor executor =
+        new ThreadPoolExecutor(
+            maxPlatformThreads,
+            maxPlatformThreads,
+            PLATFORM_THREAD_KEEP_ALIVE_SECONDS,
+            TimeUnit.SECONDS,
+            new LinkedBlockingQueue<>(),
+            platformThreadFactory(nameFormat));
+    executor.allowCoreThreadTimeOut(true);
+    return executor;
+  }
+
+  /**
+   * Scheduled executor whose tasks block on I/O. Backed by virtual threads, a task waiting on
+   * Snowflake does not delay the other ones, so the pool is sized for one thread per scheduled
+   * task. Threads are only started as tasks are scheduled.
+   *
+   * @param nameFormat thread name, with a %d placeholder for the thread number
+   * @param platformThreads number of threads when virtual threads are not available
+   * @return the scheduled executor
+   */
+  static ScheduledThreadPoolExecutor newScheduledExecutor(String nameFormat, int platformThreads) {
+    int threads = Math.max(1, platformThreads);
+    ThreadFactory threadFactory = null;
+    if (VIRTUAL_THREADS != null) {
+      threadFactory = VIRTUAL_THREADS.newThreadFactory(nameFormat);
+    }
+    if (threadFactory == null) {
+      threadFactory = platformThreadFactory(nameFormat);
+    } else {
+      threads = Math.max(threads, VIRTUAL_SCHEDULER_THREADS);
+    }
+    ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(threads, threadFactory);
+    executor.setRemoveOnCancelPolicy(true);
+    return executor;
+  }
+
+  private static ThreadFactory platformThreadFactory(String nameFormat) {
+    return new ThreadFactoryBuilder().setNameFormat(nameFormat).setDaemon(true).build();
+  }
+
+  /** Reflective access to the virtual thread API of Java 21 */
+  private static final class VirtualThreads {
+    private final Method ofVirtual;
+    private final Method builderName;
+    private final Method builderFactory;
+    private final Method newThreadPerTaskExecutor;
+
+    private VirtualThreads(
+        Method ofVirtual,
+        Method builderName,
+        Method builderFactory,
+        Method newThreadPerTaskExecutor) {
+      this.ofVirtual = ofVirtual;
+      this.builderName = builderName;
+      this.builderFactory = builderFactory;
+      this.newThreadPerTaskExecutor = newThreadPerTaskExecutor;
+    }
+
+    /** @return the virtual thread API, null if the JVM has none or it is not turned on */
+    @Nullable
+    static VirtualThreads lookup() {
+      String enabled = System.getenv(SnowflakeSinkConnectorConfig.SNOWFLAKE_VIRTUAL_THREADS);
+      if (enabled == null || !enabled.trim().equalsIgnoreCase("true")) {
+        LOGGER.debug("virtual threads are not turned on, blocking I/O runs on platform threads");
+        return null;
+      }
+      try {
+        Class<?> builder = Class.forName("java.lang.Thread$Builder");
+        VirtualThreads virtualThreads =
+            new VirtualThreads(
+                Thread.class.getMethod("ofVirtual"),
+                builder.getMethod("name", String.class, long.class),
+                builder.getMethod("factory"),
+                Executors.class.getMethod("newThreadPerTaskExecutor", ThreadFactory.class));
+        // a preview API on Java 19 and 20 throws here unless previews are enabled
+        if (virtualThreads.newThreadFactory("snowflake-virtual-thread-check-%d") == null) {
+          return null;
+        }
+        LOGGER.info("blocking I/O runs on virtual threads");
+        return virtualThreads;
+      } catch (ClassNotFoundException | NoSuchMethodException e) {
+        LOGGER.debug("virtual threads are not available on this JVM, using platform threads");
+        return null;
+      }
+    }
+
+    /**
+     * @param nameFormat thread name, with a %d placeholder for the thread number
+     * @return factory of virtual threads, null if they can not be created
+     */
+    @Nullable
+    ThreadFactory newThreadFactory(String nameFormat) {
+      try {
+        // the builder numbers the threads itself, starting from the given number
+        String prefix = nameFormat.replace("%d", "");
+        Object builder = builderName.invoke(ofVirtual.invoke(null), prefix, 0L);
+        return (ThreadFactory) builderFactory.invoke(builder);
+      } catch (ReflectiveOperationException | RuntimeException e) {
+        LOGGER.warn("Failed to create virtual threads, using platform threads: {}", e.toString());
+        return null;
+      }
+    }
+
+    @Nullable
+    ExecutorService newThreadPerTaskExecutor(String nameFormat) {
+      ThreadFactory threadFactory = newThreadFactory(nameFormat);
+      if (threadFactory == null) {
+        return null;
+      }
+      try {
+        return (ExecutorService) newThreadPerTaskExecutor.invoke(null, threadFactory);
+      } catch (ReflectiveOperationException | RuntimeException e) {
+        LOGGER.warn("Failed to create virtual threads, using platform threads: {}", e.toString());
+        return null;
+      }
+    }
+  }
+}
@@ -0,0 +1,80 @@
+package com.snowflake.kafka.connector.internal;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Broken records of a single partition, collected to be written to the table stage as one data
+ * file instead of a file per record key or value.
+ *
+ * <p>The data file is the plain concatenation of the broken contents. It is accompanied by an index
+ * file, holding one JSON object per content:
+ *
+ * <pre>{"offset":123,"type":"value","position":0,"length":7}</pre>
+ *
+ * so every broken record can still be traced back to its Kafka offset.
+ */
+class BrokenRecordBatch {
+  private static final ObjectMapper MAPPER = new ObjectMapper();
+
+  private final ByteArrayOutputStream data = new ByteArrayOutputStream();
+  private final StringBuilder index = new StringBuilder();
+  private long firstOffset = -1;
+  private long lastOffset = -1;
+  private int numOfContents = 0;
+
+  /**
+   * Append broken record content to the batch
+   *
+   * @param offset Kafka offset of the record
+   * @param isKey whether the content is the record key or value
+   * @param content raw content of the record
+   */
+  void add(long offset, boolean isKey, byte[] content) {
+    if (firstOffset < 0) {
+      firstOffset = offset;
+    }
+    lastOffset = offset;
+
+    ObjectNode entry = MAPPER.createObjectNode();
+    entry.put("offset", offset);
+    entry.put("type", isKey ? "key" : "value");
+    entry.put("position", data.size());
+    entry.put("length", content.length);
+    index.append(entry.toString()).append('\n');
+
+    data.write(content, 0, content.length);
+    numOfContents++;
+  }
+
+  boolean isEmpty() {
+    return numOfContents == 0;
+  }
+
+  /** @return number of keys and values in the batch */
+  int getNumOfContents() {
+    return numOfContents;
+  }
+
+  long getSizeBytes() {
+    return data.size();
+  }
+
+  long getFirstOffset() {
+    return firstOffset;
+  }
+
+  long getLastOffset() {
+    return lastOffset;
+  }
+
+  byte[] getData() {
+    return data.toByteArray();
+  }
+
+  byte[] getIndex() {
+    return index.toString().getBytes(StandardCharsets.UTF_8);
+  }
+}
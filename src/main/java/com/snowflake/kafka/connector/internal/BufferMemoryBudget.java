@@ -0,0 +1,206 @@
+package com.snowflake.kafka.connector.internal;
+
+import static com.snowflake.kafka.connector.internal.metrics.MetricsUtil.BUFFER_BUDGET_BYTES;
+import static com.snowflake.kafka.connector.internal.metrics.MetricsUtil.BUFFER_BUDGET_FORCED_FLUSH_COUNT;
+import static com.snowflake.kafka.connector.internal.metrics.MetricsUtil.BUFFER_BUDGET_SUB_DOMAIN;
+import static com.snowflake.kafka.connector.internal.metrics.MetricsUtil.BUFFER_BUDGET_TASK_USED_BYTES;
+import static com.snowflake.kafka.connector.internal.metrics.MetricsUtil.BUFFER_BUDGET_WORKER_USED_BYTES;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Meter;
+import com.google.common.annotations.VisibleForTesting;
+import com.snowflake.kafka.connector.SnowflakeSinkConnectorConfig;
+import com.snowflake.kafka.connector.Utils;
+import com.snowflake.kafka.connector.internal.metrics.MetricsJmxReporter;
+import com.snowflake.kafka.connector.internal.metrics.MetricsUtil;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.ToLongFunction;
+import javax.annotation.Nullable;
+
+/**
+ * Heap budget of the buffers of all partitions of a task. Buffer thresholds apply per partition,
+ * so the heap they can take grows with the number of partitions assigned to the task, and a
+ * rebalance handing a task many more partitions could run the worker out of memory.
+ *
+ * <p>After every put the task reports the size of its buffers. Usage is summed over all tasks of
+ * the worker JVM, and once it exceeds the budget the task is handed its largest buffers first,
+ * until usage is back under {@link #LOW_WATERMARK} of the budget. The task then relieves them with
+ * one of two strategies: it flushes them, or with spilling enabled for Snowpipe it moves them to
+ * local disk, see {@link BufferSpillManager}. Both share this single budget. Budget, usage and the
+ * number of relieved buffers are reported as JMX metrics.
+ */
+public class BufferMemoryBudget {
+  private static final KCLogger LOGGER = new KCLogger(BufferMemoryBudget.class.getName());
+
+  // share of the max heap used as the budget, when no budget is configured
+  static final double DEFAULT_HEAP_SHARE = 0.5;
+  // forced flushes bring usage back under this share of the budget, so they are not triggered
+  // again by the next record
+  static final double LOW_WATERMARK = 0.8;
+
+  // heap held by the buffers of all tasks of this worker
+  private static final AtomicLong WORKER_BUFFERED_BYTES = new AtomicLong();
+
+  private final long budgetBytes;
+  private final AtomicLong workerBufferedBytes;
+  private final String metricPrefix;
+  // last usage reported by this task, only updated by the task thread
+  private volatile long taskBufferedBytes = 0;
+
+  private final MetricRegistry metricRegistry = new MetricRegistry();
+  private final Meter forcedFlushes;
+  @Nullable private MetricsJmxReporter metricsJmxReporter;
+
+  /**
+   * @param budgetBytes worker wide heap budget of the buffers, a value not greater than zero picks
+   *     {@link #DEFAULT_HEAP_SHARE} of the max heap
+   * @param metricPrefix prefix of the metrics of the task, see {@link
+   *     MetricsUtil#constructMetricName(String, String, String)}
+   */
+  public BufferMemoryBudget(long budgetBytes, String metricPrefix) {
+    this(
+        budgetBytes > 0 ? budgetBytes : defaultBudgetBytes(), metricPrefix, WORKER_BUFFERED_BYTES);
+  }
+
+  @VisibleForTesting
+  BufferMemoryBudget(long budgetBytes, String metricPrefix, AtomicLong workerBufferedBytes) {
+    this.budgetBytes = budgetBytes;
+    this.metricPrefix = metricPrefix;
+    this.workerBufferedBytes = workerBufferedBytes;
+
+    metricRegistry.register(metricName(BUFFER_BUDGET_BYTES), (Gauge<Long>) () -> this.budgetBytes);
+    metricRegistry.register(
+        metricName(BUFFER_BUDGET_WORKER_USED_BYTES), (Gauge<Long>) workerBufferedBytes::get);
+    metricRegistry.register(
+        metricName(BUFFER_BUDGET_TASK_USED_BYTES), (Gauge<Long>) () -> taskBufferedBytes);
+    this.forcedFlushes = metricRegistry.meter(metricName(BUFFER_BUDGET_FORCED_FLUSH_COUNT));
+    LOGGER.info("buffer memory budget enabled, {} bytes", budgetBytes);
+  }
+
+  /**
+   * @param connectorConfig config of the task
+   * @return budget of the task, null if it is not enabled
+   */
+  @Nullable
+  public static BufferMemoryBudget fromConfig(@Nullable Map<String, String> connectorConfig) {
+    if (connectorConfig == null
+        || !Boolean.parseBoolean(
+            connectorConfig.get(SnowflakeSinkConnectorConfig.BUFFER_MEMORY_BUDGET_ENABLED))) {
+      return null;
+    }
+    return forTask(connectorConfig);
+  }
+
+  /**
+   * @param connectorConfig config of the task
+   * @return budget of the task, regardless of {@link
+   *     SnowflakeSinkConnectorConfig#BUFFER_MEMORY_BUDGET_ENABLED}, used when the buffers are
+   *     spilled once over budget
+   */
+  public static BufferMemoryBudget forTask(Map<String, String> connectorConfig) {
+    long budgetBytes = SnowflakeSinkConnectorConfig.BUFFER_MEMORY_BUDGET_BYTES_DEFAULT;
+    if (connectorConfig.containsKey(SnowflakeSinkConnectorConfig.BUFFER_MEMORY_BUDGET_BYTES)) {
+      budgetBytes =
+          Long.parseLong(
+              connectorConfig.get(SnowflakeSinkConnectorConfig.BUFFER_MEMORY_BUDGET_BYTES));
+    }
+    return new BufferMemoryBudget(
+        budgetBytes, "task-" + connectorConfig.getOrDefault(Utils.TASK_ID, "-1"));
+  }
+
+  static long defaultBudgetBytes() {
+    return (long) (Runtime.getRuntime().maxMemory() * DEFAULT_HEAP_SHARE);
+  }
+
+  private String metricName(String name) {
+    return MetricsUtil.constructMetricName(metricPrefix, BUFFER_BUDGET_SUB_DOMAIN, name);
+  }
+
+  /**
+   * Report the buffers of the task and pick the ones to relieve if the worker is over budget
+   *
+   * @param buffers buffer of every partition of the task
+   * @param heapSizeBytes heap currently held by a buffer
+   * @return buffers to flush or spill right away, largest first, empty while the worker is within
+   *     budget. They are accounted as relieved already.
+   */
+  public <T> List<T> update(Collection<T> buffers, ToLongFunction<T> heapSizeBytes) {
+    long taskBytes = 0;
+    for (T buffer : buffers) {
+      taskBytes += heapSizeBytes.applyAsLong(buffer);
+    }
+    long workerBytes = workerBufferedBytes.addAndGet(taskBytes - taskBufferedBytes);
+    taskBufferedBytes = taskBytes;
+    if (workerBytes <= budgetBytes) {
+      return Collections.emptyList();
+    }
+
+    long bytesToFree = workerBytes - (long) (budgetBytes * LOW_WATERMARK);
+    List<T> largestFirst = new ArrayList<>(buffers);
+    largestFirst.sort(Comparator.comparingLong(heapSizeBytes).reversed());
+    List<T> toFlush = new ArrayList<>();
+    long freedBytes = 0;
+    for (T buffer : largestFirst) {
+      long bytes = heapSizeBytes.applyAsLong(buffer);
+      if (freedBytes >= bytesToFree || bytes == 0) {
+        break;
+      }
+      toFlush.add(buffer);
+      freedBytes += bytes;
+    }
+    workerBufferedBytes.addAndGet(-freedBytes);
+    taskBufferedBytes -= freedBytes;
+    forcedFlushes.mark(toFlush.size());
+    LOGGER.info(
+        "buffers of the worker hold {} bytes, over the budget of {} bytes, relieving {} buffers"
+            + " holding {} bytes",
+        workerBytes,
+        budgetBytes,
+        toFlush.size(),
+        freedBytes);
+    return toFlush;
+  }
+
+  /**
+   * Register the metrics as mbeans, does nothing if they already are
+   *
+   * @param connectorName name of the connector
+   */
+  public synchronized void enableJmx(String connectorName) {
+    if (metricsJmxReporter == null) {
+      metricsJmxReporter = new MetricsJmxReporter(metricRegistry, connectorName);
+      metricsJmxReporter.start();
+    }
+  }
+
+  /** Give back the usage of the task and unregister its metrics */
+  public synchronized void close() {
+    workerBufferedBytes.addAndGet(-taskBufferedBytes);
+    taskBufferedBytes = 0;
+    if (metricsJmxReporter != null) {
+      metricsJmxReporter.removeMetricsFromRegistry(metricPrefix);
+      metricsJmxReporter = null;
+    }
+  }
+
+  public long getBudgetBytes() {
+    return budgetBytes;
+  }
+
+  @VisibleForTesting
+  long getTaskBufferedBytes() {
+    return taskBufferedBytes;
+  }
+
+  @VisibleForTesting
+  MetricRegistry getMetricRegistry() {
+    return metricRegistry;
+  }
+}
@@ -0,0 +1,133 @@
+package com.snowflake.kafka.connector.internal;
+
+import com.google.common.annotations.VisibleForTesting;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import javax.annotation.Nullable;
+
+/**
+ * Spill strategy of the {@link BufferMemoryBudget} for Snowpipe partition buffers.
+ *
+ * <p>Once the worker exceeds its budget, the buffers picked by the budget move their content to a
+ * local spill file instead of being flushed, and keep appending there. The file is then uploaded to
+ * the stage straight from disk when the buffer reaches its thresholds, so spilling frees the heap
+ * without producing small files.
+ */
+class BufferSpillManager {
+  private static final KCLogger LOGGER = new KCLogger(BufferSpillManager.class.getName());
+
+  private static final String SPILL_FILE_PREFIX = "snowflake-kafka-spill-";
+  private static final String SPILL_FILE_SUFFIX = ".json";
+
+  private final Path spillDirectory;
+
+  /** @param spillDirectory directory of the spill files, temp directory of the JVM when empty */
+  BufferSpillManager(@Nullable String spillDirectory) {
+    this(
+        spillDirectory == null || spillDirectory.isEmpty()
+            ? Paths.get(System.getProperty("java.io.tmpdir"))
+            : Paths.get(spillDirectory));
+  }
+
+  @VisibleForTesting
+  BufferSpillManager(Path spillDirectory) {
+    this.spillDirectory = spillDirectory;
+    LOGGER.info("buffer spilling enabled, spill directory {}", spillDirectory);
+  }
+
+  @VisibleForTesting
+  Path getSpillDirectory() {
+    return spillDirectory;
+  }
+
+  /** @return new empty spill file, owned by the caller */
+  SpillFile createSpillFile() {
+    try {
+      Files.createDirectories(spillDirectory);
+      Path path = Files.createTempFile(spillDirectory, SPILL_FILE_PREFIX, SPILL_FILE_SUFFIX);
+      return new SpillFile(path);
+    } catch (IOException e) {
+      throw SnowflakeErrors.ERROR_5025.getException(e);
+    }
+  }
+
+  /**
+   * Local file holding the content of a single buffer. Data is written through a {@link
+   * FileChannel}, the file is deleted once uploaded or when the buffer is dropped.
+   */
+  static final class SpillFile {
+    private final Path path;
+    private final Writer writer;
+    private long sizeChars = 0;
+    private boolean sealed = false;
+
+    private SpillFile(Path path) throws IOException {
+      this.path = path;
+      FileChannel channel =
+          FileChannel.open(path, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+      this.writer = Channels.newWriter(channel, StandardCharsets.UTF_8.newEncoder(), -1);
+    }
+
+    void append(CharSequence data) {
+      if (sealed) {
+        throw new IllegalStateException("Spill file " + path + " is already sealed");
+      }
+      try {
+        writer.append(data);
+        sizeChars += data.length();
+      } catch (IOException e) {
+        throw SnowflakeErrors.ERROR_5025.getException(e);
+      }
+    }
+
+    /** @return number of characters written so far */
+    long getSizeChars() {
+      return sizeChars;
+    }
+
+    /**
+     * Finish writing the file
+     *
+     * @return path of the complete file, ready to be uploaded
+     */
+    Path seal() {
+      if (!sealed) {
+        try {
+          writer.close();
+          sealed = true;
+        } catch (IOException e) {
+          throw SnowflakeErrors.ERROR_5025.getException(e);
+        }
+      }
+      return path;
+    }
+
+    /** Close and delete the file, never throws */
+    void delete() {
+      try {
+        if (!sealed) {
+          sealed = true;
+          writer.close();
+        }
+      } catch (IOException e) {
+        LOGGER.warn("Failed to close spill file {}: {}", path, e.getMessage());
+      }
+      try {
+        Files.deleteIfExists(path);
+      } catch (IOException e) {
+        LOGGER.warn("Failed to delete spill file {}: {}", path, e.getMessage());
+      }
+    }
+
+    Path getPath() {
+      return path;
+    }
+  }
+}
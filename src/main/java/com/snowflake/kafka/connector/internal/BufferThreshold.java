@@ -121,7 +121,7 @@ public abstract class BufferThreshold {
    * Check if provided snowflake kafka connector buffer properties are within permissible values.
    *
    * <p>This method invokes three verifiers - Time based threshold, buffer size and buffer count
-   * threshold.
+   * threshold, and verifies their per topic overrides against the same limits.
    *
    * @param providedSFConnectorConfig provided by customer
    * @param ingestionMethodConfig ingestion method used. Check {@link IngestionMethodConfig}
@@ -134,6 +134,60 @@ public abstract class BufferThreshold {
         verifyBufferFlushTimeThreshold(providedSFConnectorConfig, ingestionMethodConfig));
     invalidConfigParams.putAll(verifyBufferCountThreshold(providedSFConnectorConfig));
     invalidConfigParams.putAll(verifyBufferBytesThreshold(providedSFConnectorConfig));
+    invalidConfigParams.putAll(
+        verifyTopicThresholdMap(
+            providedSFConnectorConfig,
+            SnowflakeSinkConnectorConfig.BUFFER_FLUSH_TIME_SEC_TOPIC_MAP,
+            ingestionMethodConfig.equals(IngestionMethodConfig.SNOWPIPE)
+                ? BUFFER_FLUSH_TIME_SEC_MIN
+                : STREAMING_BUFFER_FLUSH_TIME_MINIMUM_SEC));
+    invalidConfigParams.putAll(
+        verifyTopicThresholdMap(
+            providedSFConnectorConfig,
+            SnowflakeSinkConnectorConfig.BUFFER_COUNT_RECORDS_TOPIC_MAP,
+            SnowflakeSinkConnectorConfig.BUFFER_COUNT_RECORDS_MIN));
+    invalidConfigParams.putAll(
+        verifyTopicThresholdMap(
+            providedSFConnectorConfig,
+            SnowflakeSinkConnectorConfig.BUFFER_SIZE_BYTES_TOPIC_MAP,
+            SnowflakeSinkConnectorConfig.BUFFER_SIZE_BYTES_MIN));
+    return ImmutableMap.copyOf(invalidConfigParams);
+  }
+
+  private static ImmutableMap<String, String> verifyTopicThresholdMap(
+      Map<String, String> providedSFConnectorConfig, String configName, long minThreshold) {
+    Map<String, String> invalidConfigParams = new HashMap<>();
+
+    // overrides are optional
+    String providedTopicMap = providedSFConnectorConfig.get(configName);
+    if (providedTopicMap == null || providedTopicMap.trim().isEmpty()) {
+      return ImmutableMap.of();
+    }
+    Map<String, Long> topicThresholds =
+        BufferThresholdOverrides.parseTopicThresholdMap(providedTopicMap);
+    if (topicThresholds == null) {
+      invalidConfigParams.put(
+          configName,
+          Utils.formatString(
+              "Invalid {} config format: {}. Format: <topic-1>:<value-1>,<topic-2>:<value-2>,...",
+              configName,
+              providedTopicMap));
+    } else {
+      topicThresholds.forEach(
+          (topic, threshold) -> {
+            if (threshold < minThreshold) {
+              invalidConfigParams.put(
+                  configName,
+                  Utils.formatString(
+                      "{} of topic {} is {}, it should be at least {}",
+                      configName,
+                      topic,
+                      threshold,
+                      minThreshold));
+            }
+          });
+    }
+
     return ImmutableMap.copyOf(invalidConfigParams);
   }
 
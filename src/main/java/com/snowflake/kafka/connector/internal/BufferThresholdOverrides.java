@@ -0,0 +1,180 @@
+package com.snowflake.kafka.connector.internal;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.snowflake.kafka.connector.SnowflakeSinkConnectorConfig;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+import javax.annotation.Nullable;
+
+/**
+ * Per topic overrides of the buffer thresholds. {@link
+ * SnowflakeSinkConnectorConfig#BUFFER_FLUSH_TIME_SEC}, {@link
+ * SnowflakeSinkConnectorConfig#BUFFER_SIZE_BYTES} and {@link
+ * SnowflakeSinkConnectorConfig#BUFFER_COUNT_RECORDS} apply to every partition of the connector, so
+ * low volume topics needing a short latency and high volume topics needing large files cannot be
+ * served by the same connector.
+ *
+ * <p>Each threshold can be overridden by a map of topics to values, in the format of {@link
+ * SnowflakeSinkConnectorConfig#TOPICS_TABLES_MAP}: {@code <topic-1>:<value-1>,<topic-2>:<value-2>}.
+ * Like there, topics may be regexes. A topic uses the value of its exact entry, otherwise of the
+ * regex it matches, otherwise the connector wide threshold. An exact entry may therefore overlap a
+ * regex, e.g. {@code orders:10,ord.*:300}, but regexes may not overlap each other. Overrides are
+ * looked up once, when the partition is opened.
+ */
+public class BufferThresholdOverrides {
+  private static final KCLogger LOGGER = new KCLogger(BufferThresholdOverrides.class.getName());
+
+  // characters of a legal kafka topic name, any other one makes the entry a regex
+  private static final Pattern TOPIC_NAME = Pattern.compile("[a-zA-Z0-9._-]+");
+
+  private final Map<String, Long> flushTimeSeconds;
+  private final Map<String, Long> bufferSizeBytes;
+  private final Map<String, Long> bufferCountRecords;
+
+  @VisibleForTesting
+  BufferThresholdOverrides(
+      Map<String, Long> flushTimeSeconds,
+      Map<String, Long> bufferSizeBytes,
+      Map<String, Long> bufferCountRecords) {
+    this.flushTimeSeconds = flushTimeSeconds;
+    this.bufferSizeBytes = bufferSizeBytes;
+    this.bufferCountRecords = bufferCountRecords;
+  }
+
+  /**
+   * @param connectorConfig config of the task, already validated by {@link
+   *     BufferThreshold#validateBufferThreshold}
+   * @return overrides of the task, null if no threshold is overridden
+   */
+  @Nullable
+  public static BufferThresholdOverrides fromConfig(@Nullable Map<String, String> connectorConfig) {
+    if (connectorConfig == null) {
+      return null;
+    }
+    Map<String, Long> flushTimeSeconds =
+        parseConfig(connectorConfig, SnowflakeSinkConnectorConfig.BUFFER_FLUSH_TIME_SEC_TOPIC_MAP);
+    Map<String, Long> bufferSizeBytes =
+        parseConfig(connectorConfig, SnowflakeSinkConnectorConfig.BUFFER_SIZE_BYTES_TOPIC_MAP);
+    Map<String, Long> bufferCountRecords =
+        parseConfig(connectorConfig, SnowflakeSinkConnectorConfig.BUFFER_COUNT_RECORDS_TOPIC_MAP);
+    if (flushTimeSeconds.isEmpty() && bufferSizeBytes.isEmpty() && bufferCountRecords.isEmpty()) {
+      return null;
+    }
+    LOGGER.info(
+        "buffer thresholds overridden per topic, flush time {}, size {}, count {}",
+        flushTimeSeconds,
+        bufferSizeBytes,
+        bufferCountRecords);
+    return new BufferThresholdOverrides(flushTimeSeconds, bufferSizeBytes, bufferCountRecords);
+  }
+
+  private static Map<String, Long> parseConfig(Map<String, String> connectorConfig, String key) {
+    String input = connectorConfig.get(key);
+    if (input == null || input.trim().isEmpty()) {
+      return Collections.emptyMap();
+    }
+    Map<String, Long> topicThresholds = parseTopicThresholdMap(input);
+    if (topicThresholds == null) {
+      throw SnowflakeErrors.ERROR_0001.getException("Invalid " + key + " config format: " + input);
+    }
+    return topicThresholds;
+  }
+
+  /**
+   * Parse a map of topics to thresholds, topics are checked the same way as in {@link
+   * com.snowflake.kafka.connector.Utils#parseTopicToTableMap(String)}
+   *
+   * @param input comma-separated tuples, e.g. {@code <topic-1>:<value-1>,<topic-2>:<value-2>}
+   * @return thresholds in the order of the input, null if the input is invalid
+   */
+  @Nullable
+  public static Map<String, Long> parseTopicThresholdMap(String input) {
+    Map<String, Long> topicThresholds = new LinkedHashMap<>();
+    for (String str : input.split(",")) {
+      String[] tt = str.split(":");
+      if (tt.length != 2 || tt[0].trim().isEmpty() || tt[1].trim().isEmpty()) {
+        LOGGER.error("Invalid topic threshold format: {}", str);
+        return null;
+      }
+      String topic = tt[0].trim();
+      long threshold;
+      try {
+        threshold = Long.parseLong(tt[1].trim());
+      } catch (NumberFormatException e) {
+        LOGGER.error("threshold {} of topic {} should be an integer", tt[1].trim(), topic);
+        return null;
+      }
+      if (topicThresholds.containsKey(topic)) {
+        LOGGER.error("topic name {} is duplicated", topic);
+        return null;
+      }
+      // check that regexes don't overlap, a topic would otherwise have several thresholds. An exact
+      // topic may overlap a regex, its own entry wins
+      try {
+        Pattern.compile(topic);
+        for (String parsedTopic : topicThresholds.keySet()) {
+          if (isRegex(topic)
+              && isRegex(parsedTopic)
+              && (parsedTopic.matches(topic) || topic.matches(parsedTopic))) {
+            LOGGER.error(
+                "topic regexes cannot overlap. overlapping regexes: {}, {}", parsedTopic, topic);
+            return null;
+          }
+        }
+      } catch (PatternSyntaxException e) {
+        LOGGER.error("topic {} is not a valid regex: {}", topic, e.getMessage());
+        return null;
+      }
+      topicThresholds.put(topic, threshold);
+    }
+    return topicThresholds;
+  }
+
+  private static boolean isRegex(String topic) {
+    return !TOPIC_NAME.matcher(topic).matches();
+  }
+
+  @Nullable
+  private static Long forTopic(Map<String, Long> topicThresholds, String topic) {
+    Long threshold = topicThresholds.get(topic);
+    if (threshold != null) {
+      return threshold;
+    }
+    for (Map.Entry<String, Long> entry : topicThresholds.entrySet()) {
+      if (topic.matches(entry.getKey())) {
+        return entry.getValue();
+      }
+    }
+    return null;
+  }
+
+  /**
+   * @param topic topic of the partition
+   * @return flush time of the topic in seconds, null if it is not overridden
+   */
+  @Nullable
+  public Long getFlushTimeSeconds(String topic) {
+    return forTopic(flushTimeSeconds, topic);
+  }
+
+  /**
+   * @param topic topic of the partition
+   * @return buffer size of the topic in bytes, null if it is not overridden
+   */
+  @Nullable
+  public Long getBufferSizeBytes(String topic) {
+    return forTopic(bufferSizeBytes, topic);
+  }
+
+  /**
+   * @param topic topic of the partition
+   * @return record count of the topic, null if it is not overridden
+   */
+  @Nullable
+  public Long getBufferCountRecords(String topic) {
+    return forTopic(bufferCountRecords, topic);
+  }
+}
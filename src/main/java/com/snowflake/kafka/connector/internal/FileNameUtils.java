@@ -1,14 +1,17 @@
 package com.snowflake.kafka.connector.internal;
 
+import java.util.Arrays;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
+import java.util.stream.Collectors;
 
 public class FileNameUtils {
   private static final KCLogger LOGGER = new KCLogger(FileNameUtils.class.getName());
 
   /**
-   * generate file name File Name Format: app/table/partition/start_end_timeStamp.fileFormat.gz
-   * Note: all file names should using the this format
+   * generate file name File Name Format:
+   * app/table/partition/start_end_timeStamp.fileFormat.compression Note: all file names should
+   * using the this format
    *
    * @param appName connector name
    * @param table table name
@@ -36,8 +39,50 @@ public class FileNameUtils {
    * @return file name
    */
   static String fileName(String prefix, long start, long end) {
+    return fileName(prefix, start, end, SnowpipeFileFormat.JSON);
+  }
+
+  /**
+   * generate file name for a file of given format
+   *
+   * @param prefix prefix
+   * @param start start offset
+   * @param end end offset
+   * @param fileFormat format of the file
+   * @return file name
+   */
+  static String fileName(String prefix, long start, long end, SnowpipeFileFormat fileFormat) {
+    return fileName(prefix, start, end, fileFormat, StagedFileCompression.GZIP);
+  }
+
+  /**
+   * generate file name for a file of given format and compression
+   *
+   * @param prefix prefix
+   * @param start start offset
+   * @param end end offset
+   * @param fileFormat format of the file
+   * @param compression compression of the file
+   * @return file name
+   */
+  static String fileName(
+      String prefix,
+      long start,
+      long end,
+      SnowpipeFileFormat fileFormat,
+      StagedFileCompression compression) {
     long time = System.currentTimeMillis();
-    String fileName = prefix + start + "_" + end + "_" + time + ".json.gz";
+    String fileName =
+        prefix
+            + start
+            + "_"
+            + end
+            + "_"
+            + time
+            + "."
+            + fileFormat.getExtension()
+            + "."
+            + compression.getExtension();
     LOGGER.debug("generated file name: {}", fileName);
     return fileName;
   }
@@ -73,6 +118,32 @@ public class FileNameUtils {
     return fileName;
   }
 
+  /**
+   * generate file name for a batch of broken data, see {@link BrokenRecordBatch}
+   *
+   * @param prefix prefix
+   * @param start offset of the first broken record in the batch
+   * @param end offset of the last broken record in the batch
+   * @return file name
+   */
+  static String brokenRecordBatchFileName(String prefix, long start, long end) {
+    long time = System.currentTimeMillis();
+    String fileName = prefix + start + "_" + end + "_broken_" + time + ".gz";
+    LOGGER.debug("generated broken data batch file name: {}", fileName);
+    return fileName;
+  }
+
+  /**
+   * generate name of the index file accompanying a batch of broken data
+   *
+   * @param batchFileName file name generated by {@link #brokenRecordBatchFileName(String, long,
+   *     long)}
+   * @return file name
+   */
+  static String brokenRecordBatchIndexFileName(String batchFileName) {
+    return batchFileName.substring(0, batchFileName.length() - ".gz".length()) + "_index.json.gz";
+  }
+
   /**
    * generate file prefix
    *
@@ -82,13 +153,33 @@ public class FileNameUtils {
    * @return file prefix
    */
   static String filePrefix(String appName, String table, int partition) {
-    return appName + "/" + table + "/" + partition + "/";
+    return tablePrefix(appName, table) + partition + "/";
+  }
+
+  /**
+   * generate prefix shared by files of all partitions of a table
+   *
+   * @param appName connector name
+   * @param table table name
+   * @return table prefix
+   */
+  static String tablePrefix(String appName, String table) {
+    return appName + "/" + table + "/";
   }
 
   // applicationName/tableName/partitionNumber
-  // /startOffset_endOffset_time_format.json.gz
+  // /startOffset_endOffset_time_format.json.gz, or another file format and compression extension
   private static Pattern FILE_NAME_PATTERN =
-      Pattern.compile("^[^/]+/[^/]+/(\\d+)/(\\d+)_(\\d+)_(\\d+)\\.json\\.gz$");
+      Pattern.compile(
+          "^[^/]+/[^/]+/(\\d+)/(\\d+)_(\\d+)_(\\d+)\\.(?:"
+              + Arrays.stream(SnowpipeFileFormat.values())
+                  .map(SnowpipeFileFormat::getExtension)
+                  .collect(Collectors.joining("|"))
+              + ")\\.(?:"
+              + Arrays.stream(StagedFileCompression.values())
+                  .map(StagedFileCompression::getExtension)
+                  .collect(Collectors.joining("|"))
+              + ")$");
   /**
    * verify file name
    *
@@ -139,6 +230,27 @@ public class FileNameUtils {
     return Integer.parseInt(readFromFileName(fileName, 1));
   }
 
+  /**
+   * read all values from file name with a single match
+   *
+   * @param fileName file name
+   * @return parsed file
+   */
+  static StagedFile parseFileName(String fileName) {
+    Matcher matcher = FILE_NAME_PATTERN.matcher(fileName);
+
+    if (!matcher.find()) {
+      throw SnowflakeErrors.ERROR_0008.getException("input file name: " + fileName);
+    }
+
+    return new StagedFile(
+        fileName,
+        Integer.parseInt(matcher.group(1)),
+        Long.parseLong(matcher.group(2)),
+        Long.parseLong(matcher.group(3)),
+        Long.parseLong(matcher.group(4)));
+  }
+
   /**
    * check whether the given file is expired
    *
@@ -151,7 +263,8 @@ public class FileNameUtils {
   }
 
   /**
-   * remove prefix and .gz from file name. note: for JDBC put use only
+   * remove prefix and .gz from file name. note: for JDBC put use only, the driver appends .gz to
+   * the files it compresses. Other compression extensions, like .zst, are kept
    *
    * @param name file name
    * @return file name without .gz
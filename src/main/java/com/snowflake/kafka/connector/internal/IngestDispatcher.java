@@ -0,0 +1,162 @@
+package com.snowflake.kafka.connector.internal;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Task level dispatcher of the Snowpipe insertFiles calls made on preCommit.
+ *
+ * <p>Partitions are grouped by pipe, so partitions loading through the same pipe share their
+ * requests (split into batches of up to 4000 files by {@link SnowflakeIngestionService}), and
+ * pipes are served concurrently by a bounded pool. preCommit time then depends on the number of
+ * pipes rather than on the number of partitions, and a failing pipe does not hold back offsets of
+ * the others.
+ *
+ * <p>With a timeout, the dispatch returns once it is over and pipes still ingesting are reported as
+ * failed, so their partitions keep their previous committed offset. Their ingestion is not
+ * interrupted, its files are committed by the next preCommit.
+ */
+class IngestDispatcher implements Closeable {
+  private static final KCLogger LOGGER = new KCLogger(IngestDispatcher.class.getName());
+
+  static final int DEFAULT_PARALLELISM = 8;
+  // no timeout, the dispatch waits for all pipes
+  static final long NO_TIMEOUT = 0;
+
+  private final ExecutorService executor;
+  private final long timeoutMillis;
+
+  IngestDispatcher() {
+    this(DEFAULT_PARALLELISM, NO_TIMEOUT);
+  }
+
+  /**
+   * @param parallelism number of pipes ingested concurrently
+   * @param timeoutMillis time a dispatch waits for the pipes, {@link #NO_TIMEOUT} to wait for all
+   */
+  IngestDispatcher(int parallelism, long timeoutMillis) {
+    this(
+        Executors.newFixedThreadPool(
+            parallelism,
+            new ThreadFactoryBuilder()
+                .setNameFormat("snowflake-ingest-dispatcher-%d")
+                .setDaemon(true)
+                .build()),
+        timeoutMillis);
+  }
+
+  @VisibleForTesting
+  IngestDispatcher(ExecutorService executor) {
+    this(executor, NO_TIMEOUT);
+  }
+
+  @VisibleForTesting
+  IngestDispatcher(ExecutorService executor, long timeoutMillis) {
+    this.executor = executor;
+    this.timeoutMillis = timeoutMillis;
+  }
+
+  /**
+   * Group partitions by the pipe they load through, keeping their order
+   *
+   * @param partitions partitions to group
+   * @param pipeName pipe name of a partition
+   * @return partitions by pipe name
+   */
+  static <T> Map<String, List<T>> groupByPipe(
+      Collection<T> partitions, Function<T, String> pipeName) {
+    Map<String, List<T>> partitionsByPipe = new LinkedHashMap<>();
+    partitions.forEach(
+        partition ->
+            partitionsByPipe
+                .computeIfAbsent(pipeName.apply(partition), pipe -> new ArrayList<>())
+                .add(partition));
+    return partitionsByPipe;
+  }
+
+  /**
+   * Run the ingestion of every pipe and wait for all of them
+   *
+   * @param partitionsByPipe partitions grouped by pipe, see {@link #groupByPipe(Collection,
+   *     Function)}
+   * @param pipeIngest ingests the pending files of the given partitions of a single pipe
+   * @return partitions whose pipe failed to ingest, or did not finish before the timeout
+   */
+  <T> Set<T> dispatch(Map<String, List<T>> partitionsByPipe, Consumer<List<T>> pipeIngest) {
+    Set<T> failed = new HashSet<>();
+    if (partitionsByPipe.size() == 1 && timeoutMillis == NO_TIMEOUT) {
+      // nothing to parallelize
+      Map.Entry<String, List<T>> pipe = partitionsByPipe.entrySet().iterator().next();
+      try {
+        pipeIngest.accept(pipe.getValue());
+      } catch (RuntimeException e) {
+        logFailure(pipe.getKey(), e);
+        failed.addAll(pipe.getValue());
+      }
+      return failed;
+    }
+
+    Map<String, Future<?>> ingests = new LinkedHashMap<>();
+    partitionsByPipe.forEach(
+        (pipe, partitions) ->
+            ingests.put(pipe, executor.submit(() -> pipeIngest.accept(partitions))));
+
+    long deadlineNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+    boolean interrupted = false;
+    for (Map.Entry<String, Future<?>> ingest : ingests.entrySet()) {
+      if (interrupted) {
+        ingest.getValue().cancel(true);
+        failed.addAll(partitionsByPipe.get(ingest.getKey()));
+        continue;
+      }
+      try {
+        if (timeoutMillis == NO_TIMEOUT) {
+          ingest.getValue().get();
+        } else {
+          ingest.getValue().get(deadlineNanos - System.nanoTime(), TimeUnit.NANOSECONDS);
+        }
+      } catch (TimeoutException e) {
+        LOGGER.warn(
+            "Pipe {} did not ingest its files within {} ms, its partitions keep their previous"
+                + " committed offset",
+            ingest.getKey(),
+            timeoutMillis);
+        failed.addAll(partitionsByPipe.get(ingest.getKey()));
+      } catch (ExecutionException e) {
+        logFailure(ingest.getKey(), e.getCause());
+        failed.addAll(partitionsByPipe.get(ingest.getKey()));
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        interrupted = true;
+        ingest.getValue().cancel(true);
+        failed.addAll(partitionsByPipe.get(ingest.getKey()));
+      }
+    }
+    return failed;
+  }
+
+  private void logFailure(String pipeName, Throwable t) {
+    LOGGER.error("Failed to ingest files to pipe {}: {}", pipeName, t.getMessage());
+  }
+
+  @Override
+  public void close() {
+    executor.shutdownNow();
+  }
+}
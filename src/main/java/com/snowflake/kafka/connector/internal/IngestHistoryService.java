@@ -0,0 +1,282 @@
+package com.snowflake.kafka.connector.internal;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.util.concurrent.RateLimiter;
+import java.io.Closeable;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BiFunction;
+import java.util.function.LongSupplier;
+import java.util.function.Predicate;
+
+/**
+ * Task level service polling Snowpipe ingest history on behalf of all partitions served by the
+ * task. Instead of every partition building its own ingest client and calling the history endpoint
+ * on its own schedule:
+ * <li>one {@link SnowflakeIngestionService} is kept per pipe and shared by every partition writing
+ *     to that pipe
+ * <li>history is fetched once per pipe and cycle, and fanned out to the subscribed partitions
+ *     using their file name filter
+ * <li>the first poll of every pipe is delayed by a random jitter, and every following one by the
+ *     poll period plus or minus a random jitter, so pipes do not poll in lockstep
+ * <li>all history requests of the task go through a single rate limiter, a poll over the limit is
+ *     retried shortly after instead of blocking the scheduling thread
+ */
+class IngestHistoryService implements Closeable {
+  private static final KCLogger LOGGER = new KCLogger(IngestHistoryService.class.getName());
+
+  // same cadence the per partition cleaner used to poll with - the history endpoint is throttled,
+  // so the extra second can save us from "too many requests - 429 status code"
+  static final long POLL_PERIOD_MILLIS = TimeUnit.SECONDS.toMillis(61);
+
+  // polls are rescheduled up to this much earlier or later than the poll period
+  static final long POLL_JITTER_MILLIS = TimeUnit.SECONDS.toMillis(6);
+
+  // upper bound of the delay before a poll over the request limit is retried
+  static final long RATE_LIMITED_RETRY_MILLIS = TimeUnit.SECONDS.toMillis(1);
+
+  // upper bound of history requests sent by a task per second, across all of its pipes
+  static final double DEFAULT_MAX_REQUESTS_PER_SECOND = 5;
+
+  // history entries are kept for late subscribers and for partitions re-initializing their state
+  private static final long HISTORY_RETENTION_MILLIS = Duration.ofHours(1).toMillis();
+
+  private final ScheduledExecutorService schedulingExecutor;
+  private final BiFunction<String, String, SnowflakeIngestionService> ingestionServiceFactory;
+  private final RateLimiter rateLimiter;
+  private final LongSupplier currentTimeSupplier;
+  private final Map<String, PipePoller> pollers = new HashMap<>();
+
+  /**
+   * @param conn connection service used to build ingest clients
+   * @param schedulingExecutor executor running history polls
+   */
+  IngestHistoryService(
+      SnowflakeConnectionService conn, ScheduledExecutorService schedulingExecutor) {
+    this(
+        conn::buildIngestService,
+        schedulingExecutor,
+        DEFAULT_MAX_REQUESTS_PER_SECOND,
+        System::currentTimeMillis);
+  }
+
+  @VisibleForTesting
+  IngestHistoryService(
+      BiFunction<String, String, SnowflakeIngestionService> ingestionServiceFactory,
+      ScheduledExecutorService schedulingExecutor,
+      double maxRequestsPerSecond,
+      LongSupplier currentTimeSupplier) {
+    this.ingestionServiceFactory = ingestionServiceFactory;
+    this.schedulingExecutor = schedulingExecutor;
+    this.rateLimiter = RateLimiter.create(maxRequestsPerSecond);
+    this.currentTimeSupplier = currentTimeSupplier;
+  }
+
+  /**
+   * Subscribe to the ingest history of given pipe. The first subscription of a pipe creates its
+   * ingest client and schedules history polling, closing the last one stops both.
+   *
+   * @param stageName stage the pipe loads from
+   * @param pipeName pipe name
+   * @param fileFilter picks the history entries this subscriber is interested in, by file name
+   * @return subscription, which has to be closed once the subscriber is done
+   */
+  synchronized Subscription subscribe(
+      String stageName, String pipeName, Predicate<String> fileFilter) {
+    PipePoller poller = pollers.computeIfAbsent(pipeName, pipe -> new PipePoller(stageName, pipe));
+    Subscription subscription = new Subscription(poller, fileFilter);
+    poller.subscribers.add(subscription);
+    // pick up whatever the pipe has already seen
+    subscription.replay();
+    LOGGER.debug(
+        "subscribed to ingest history of pipe {}, {} subscriber(s)",
+        pipeName,
+        poller.subscribers.size());
+    return subscription;
+  }
+
+  private synchronized void unsubscribe(Subscription subscription) {
+    PipePoller poller = subscription.poller;
+    poller.subscribers.remove(subscription);
+    if (poller.subscribers.isEmpty()) {
+      pollers.remove(poller.pipeName);
+      poller.close();
+    }
+  }
+
+  @Override
+  public synchronized void close() {
+    pollers.values().forEach(PipePoller::close);
+    pollers.clear();
+  }
+
+  @VisibleForTesting
+  synchronized int pipeCount() {
+    return pollers.size();
+  }
+
+  /** Polls history of a single pipe and fans the entries out to the pipe's subscribers */
+  private class PipePoller {
+    private final String pipeName;
+    private final SnowflakeIngestionService ingestionService;
+    private final List<Subscription> subscribers = new CopyOnWriteArrayList<>();
+    private final Map<String, HistoryEntry> recentHistory = new ConcurrentHashMap<>();
+    private final AtomicReference<String> historyMarker = new AtomicReference<>();
+    private long startTrackingHistoryTimestamp;
+    // next scheduled poll, replaced by every poll, guarded by this poller
+    private ScheduledFuture<?> pollTask;
+    private boolean closed = false;
+
+    private PipePoller(String stageName, String pipeName) {
+      this.pipeName = pipeName;
+      this.ingestionService = ingestionServiceFactory.apply(stageName, pipeName);
+      this.startTrackingHistoryTimestamp = currentTimeSupplier.getAsLong();
+      schedulePoll(ThreadLocalRandom.current().nextLong(POLL_PERIOD_MILLIS));
+    }
+
+    private synchronized void schedulePoll(long delayMillis) {
+      if (!closed) {
+        pollTask = schedulingExecutor.schedule(this::poll, delayMillis, TimeUnit.MILLISECONDS);
+      }
+    }
+
+    private void poll() {
+      if (!rateLimiter.tryAcquire()) {
+        LOGGER.debug("ingest history requests over the limit, delaying poll of pipe {}", pipeName);
+        schedulePoll(1 + ThreadLocalRandom.current().nextLong(RATE_LIMITED_RETRY_MILLIS));
+        return;
+      }
+      try {
+        long now = currentTimeSupplier.getAsLong();
+        // do not look up history older than necessary - as this is not absolute time, add 5
+        // seconds overlap to be sure we accommodate for transmission delay
+        long secondsSinceStart =
+            TimeUnit.MILLISECONDS.toSeconds(now - startTrackingHistoryTimestamp) + 5;
+
+        Map<String, InternalUtils.IngestedFileStatus> history = new HashMap<>();
+        ingestionService.readIngestHistoryForward(
+            history, null, historyMarker, (int) secondsSinceStart);
+
+        history.forEach((file, status) -> recentHistory.put(file, new HistoryEntry(status, now)));
+        for (Subscription subscriber : subscribers) {
+          subscriber.offer(history);
+        }
+        cleanOldHistory(now);
+      } catch (Exception e) {
+        LOGGER.warn(
+            "Failed to poll ingest history for pipe {}, {}: {}",
+            pipeName,
+            e.getClass(),
+            e.getMessage());
+        // start over from now, older entries are covered by the stale file check of the cleaner
+        historyMarker.set(null);
+        startTrackingHistoryTimestamp = currentTimeSupplier.getAsLong();
+      } finally {
+        long jitter =
+            ThreadLocalRandom.current().nextLong(-POLL_JITTER_MILLIS, POLL_JITTER_MILLIS + 1);
+        schedulePoll(POLL_PERIOD_MILLIS + jitter);
+      }
+    }
+
+    private void cleanOldHistory(long now) {
+      for (Iterator<HistoryEntry> it = recentHistory.values().iterator(); it.hasNext(); ) {
+        if (it.next().timestamp <= now - HISTORY_RETENTION_MILLIS) {
+          it.remove();
+        }
+      }
+    }
+
+    private void close() {
+      synchronized (this) {
+        closed = true;
+        pollTask.cancel(false);
+      }
+      ingestionService.close();
+      LOGGER.info("stopped polling ingest history for pipe {}", pipeName);
+    }
+  }
+
+  private static class HistoryEntry {
+    private final InternalUtils.IngestedFileStatus status;
+    private final long timestamp;
+
+    private HistoryEntry(InternalUtils.IngestedFileStatus status, long timestamp) {
+      this.status = status;
+      this.timestamp = timestamp;
+    }
+  }
+
+  /** Client interface of a single partition, thread safe. */
+  class Subscription implements Closeable {
+    private final PipePoller poller;
+    private final Predicate<String> fileFilter;
+    private final Map<String, InternalUtils.IngestedFileStatus> pending =
+        new ConcurrentHashMap<>();
+
+    private Subscription(PipePoller poller, Predicate<String> fileFilter) {
+      this.poller = poller;
+      this.fileFilter = fileFilter;
+    }
+
+    /** @return ingestion service of the pipe, shared with the other subscribers */
+    SnowflakeIngestionService getIngestionService() {
+      return poller.ingestionService;
+    }
+
+    /**
+     * Move history entries collected since the previous call to the given storage
+     *
+     * @param storage map of file name to its ingestion status
+     * @return number of entries moved
+     */
+    int drainTo(Map<String, InternalUtils.IngestedFileStatus> storage) {
+      int drained = 0;
+      for (Iterator<Map.Entry<String, InternalUtils.IngestedFileStatus>> it =
+              pending.entrySet().iterator();
+          it.hasNext(); ) {
+        Map.Entry<String, InternalUtils.IngestedFileStatus> entry = it.next();
+        storage.put(entry.getKey(), entry.getValue());
+        it.remove();
+        ++drained;
+      }
+      return drained;
+    }
+
+    /**
+     * Re-deliver all history entries the pipe has seen during the last hour, required when the
+     * subscriber drops its tracked history
+     */
+    void replay() {
+      poller.recentHistory.forEach(
+          (file, entry) -> {
+            if (fileFilter.test(file)) {
+              pending.put(file, entry.status);
+            }
+          });
+    }
+
+    private void offer(Map<String, InternalUtils.IngestedFileStatus> history) {
+      history.forEach(
+          (file, status) -> {
+            if (fileFilter.test(file)) {
+              pending.put(file, status);
+            }
+          });
+    }
+
+    @Override
+    public void close() {
+      unsubscribe(this);
+    }
+  }
+}
@@ -0,0 +1,117 @@
+package com.snowflake.kafka.connector.internal;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+/**
+ * Cache of the table, stage and pipe checks run by the connection service. Every partition of a
+ * table runs the same desc and show queries when it starts, the cache answers all but the first
+ * one for a while:
+ * <li>results are kept for a fixed time, so changes made outside of the connector are picked up
+ * <li>concurrent lookups of the same check share a single query
+ * <li>the connector's own DDL on an object drops everything cached about it
+ * <li>failed lookups are not cached
+ */
+class MetadataCache {
+  private static final KCLogger LOGGER = new KCLogger(MetadataCache.class.getName());
+
+  /** Kind of the object a check is about */
+  enum ObjectType {
+    TABLE,
+    STAGE,
+    PIPE
+  }
+
+  private final long ttlMillis;
+  private final LongSupplier currentTimeSupplier;
+  private final ConcurrentMap<String, Entry> entries = new ConcurrentHashMap<>();
+
+  /** @param ttlMillis how long a result is kept */
+  MetadataCache(long ttlMillis) {
+    this(ttlMillis, System::currentTimeMillis);
+  }
+
+  MetadataCache(long ttlMillis, LongSupplier currentTimeSupplier) {
+    this.ttlMillis = ttlMillis;
+    this.currentTimeSupplier = currentTimeSupplier;
+  }
+
+  /**
+   * @param type kind of the object
+   * @param name object name
+   * @param check name of the check, together with any other argument it depends on
+   * @param lookup runs the check, called only if no result is cached or being looked up
+   * @return cached or looked up result
+   */
+  @SuppressWarnings("unchecked")
+  <T> T get(ObjectType type, String name, String check, Supplier<T> lookup) {
+    String key = keyPrefix(type, name) + check;
+    while (true) {
+      long now = currentTimeSupplier.getAsLong();
+      Entry cached = entries.get(key);
+      if (cached != null && (!cached.value.isDone() || now < cached.expiresAtMillis)) {
+        return (T) cached.await();
+      }
+
+      Entry loading = new Entry(now + ttlMillis);
+      boolean isOwner =
+          cached == null
+              ? entries.putIfAbsent(key, loading) == null
+              : entries.replace(key, cached, loading);
+      if (!isOwner) {
+        // another caller started the same lookup first
+        continue;
+      }
+      try {
+        T value = lookup.get();
+        loading.value.complete(value);
+        return value;
+      } catch (RuntimeException e) {
+        entries.remove(key, loading);
+        loading.value.completeExceptionally(e);
+        throw e;
+      }
+    }
+  }
+
+  /**
+   * Drop every result cached about an object, called after the connector changed it
+   *
+   * @param type kind of the object
+   * @param name object name
+   */
+  void invalidate(ObjectType type, String name) {
+    String prefix = keyPrefix(type, name);
+    if (entries.keySet().removeIf(key -> key.startsWith(prefix))) {
+      LOGGER.debug("invalidated cached metadata of {} {}", type, name);
+    }
+  }
+
+  private static String keyPrefix(ObjectType type, String name) {
+    return type + "/" + name + "/";
+  }
+
+  private static final class Entry {
+    private final CompletableFuture<Object> value = new CompletableFuture<>();
+    private final long expiresAtMillis;
+
+    private Entry(long expiresAtMillis) {
+      this.expiresAtMillis = expiresAtMillis;
+    }
+
+    private Object await() {
+      try {
+        return value.join();
+      } catch (CompletionException e) {
+        if (e.getCause() instanceof RuntimeException) {
+          throw (RuntimeException) e.getCause();
+        }
+        throw e;
+      }
+    }
+  }
+}
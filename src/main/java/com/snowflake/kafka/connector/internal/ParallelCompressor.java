@@ -0,0 +1,121 @@
+package com.snowflake.kafka.connector.internal;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import javax.annotation.Nullable;
+
+/**
+ * Compresses large staged files on all cores of the worker, pigz style. The content is split into
+ * blocks which are compressed concurrently into independent gzip members or zstd frames. Their
+ * concatenation is a valid gzip or zstd file, so the result is uploaded as is.
+ *
+ * <p>Shared by all partitions of a task, its blocks run on the compression pool of the worker, see
+ * {@link SharedWorkerResources#compressionPool()}. Files smaller than two blocks are not worth
+ * splitting, they keep the single threaded path.
+ */
+class ParallelCompressor implements Closeable {
+  static final int BLOCK_SIZE_BYTES = 4 * 1024 * 1024;
+
+  // ID1, ID2, CM = deflate, no flags, no mtime, no extra flags, OS = FAT as java.util.zip does
+  private static final byte[] GZIP_HEADER = {0x1f, (byte) 0x8b, 8, 0, 0, 0, 0, 0, 0, 0};
+
+  private final ForkJoinPool pool;
+  // null for gzip
+  @Nullable private final ZstdCompressor zstdCompressor;
+  // deflaters are expensive to create and hold native memory, they are reused across blocks
+  private final Queue<Deflater> deflaters = new ConcurrentLinkedQueue<>();
+
+  /**
+   * @param pool pool compressing the blocks, it is not owned by the compressor
+   * @param zstdCompressor compressor of the zstd frames, null to compress with gzip
+   */
+  ParallelCompressor(ForkJoinPool pool, @Nullable ZstdCompressor zstdCompressor) {
+    this.pool = pool;
+    this.zstdCompressor = zstdCompressor;
+  }
+
+  /**
+   * @param sizeBytes size of the file content
+   * @return true if the content spans enough blocks to be compressed in parallel
+   */
+  static boolean isWorthSplitting(long sizeBytes) {
+    return sizeBytes >= 2L * BLOCK_SIZE_BYTES;
+  }
+
+  /**
+   * @param content file content
+   * @return compressed content, as a multi-member gzip file or a multi-frame zstd file
+   */
+  byte[] compress(byte[] content) {
+    List<ForkJoinTask<byte[]>> blocks = new ArrayList<>();
+    for (int offset = 0; offset < content.length; offset += BLOCK_SIZE_BYTES) {
+      final int blockOffset = offset;
+      final int blockLength = Math.min(BLOCK_SIZE_BYTES, content.length - offset);
+      blocks.add(
+          pool.submit(
+              () ->
+                  zstdCompressor == null
+                      ? gzipMember(content, blockOffset, blockLength)
+                      : zstdCompressor.compress(content, blockOffset, blockLength)));
+    }
+
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    for (ForkJoinTask<byte[]> block : blocks) {
+      byte[] compressed = block.join();
+      out.write(compressed, 0, compressed.length);
+    }
+    return out.toByteArray();
+  }
+
+  private byte[] gzipMember(byte[] content, int offset, int length) {
+    Deflater deflater = deflaters.poll();
+    if (deflater == null) {
+      // raw deflate, the gzip header and trailer are written here
+      deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+    }
+    try {
+      ByteArrayOutputStream out = new ByteArrayOutputStream(length / 4 + 64);
+      out.write(GZIP_HEADER, 0, GZIP_HEADER.length);
+      deflater.setInput(content, offset, length);
+      deflater.finish();
+      byte[] buffer = new byte[64 * 1024];
+      while (!deflater.finished()) {
+        int compressedLength = deflater.deflate(buffer);
+        out.write(buffer, 0, compressedLength);
+      }
+
+      CRC32 crc = new CRC32();
+      crc.update(content, offset, length);
+      writeIntLittleEndian(out, (int) crc.getValue());
+      writeIntLittleEndian(out, length);
+      return out.toByteArray();
+    } finally {
+      deflater.reset();
+      deflaters.offer(deflater);
+    }
+  }
+
+  private static void writeIntLittleEndian(ByteArrayOutputStream out, int value) {
+    out.write(value);
+    out.write(value >>> 8);
+    out.write(value >>> 16);
+    out.write(value >>> 24);
+  }
+
+  /** Release the deflaters, the pool is left running for the other users */
+  @Override
+  public void close() {
+    Deflater deflater;
+    while ((deflater = deflaters.poll()) != null) {
+      deflater.end();
+    }
+  }
+}
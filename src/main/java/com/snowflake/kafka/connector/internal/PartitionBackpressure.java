@@ -0,0 +1,136 @@
+package com.snowflake.kafka.connector.internal;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.snowflake.kafka.connector.SnowflakeSinkConnectorConfig;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import javax.annotation.Nullable;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.connect.sink.SinkTaskContext;
+
+/**
+ * Pauses partitions whose data is not moving to Snowflake fast enough, instead of blocking {@link
+ * org.apache.kafka.connect.sink.SinkTask#put(Collection)} until it does. A put blocked on slow
+ * flushes risks exceeding max.poll.interval.ms, and the rebalance that follows makes things worse.
+ *
+ * <p>After every put the sink service reports, per partition, the bytes not yet committed in
+ * Snowflake and the number of batches handed to Snowflake but not yet committed. A partition above
+ * the high watermark of either is paused through {@link SinkTaskContext#pause(TopicPartition...)},
+ * so Connect stops delivering its records while the consumer keeps polling. It is resumed once
+ * both are back under the low watermarks, which is half of the batch limit for batches.
+ */
+public class PartitionBackpressure {
+  private static final KCLogger LOGGER = new KCLogger(PartitionBackpressure.class.getName());
+
+  private final long highWatermarkBytes;
+  private final long lowWatermarkBytes;
+  private final int maxInFlightBatches;
+
+  // only used by the task thread
+  private final Set<TopicPartition> pausedPartitions = new HashSet<>();
+
+  @VisibleForTesting
+  PartitionBackpressure(long highWatermarkBytes, long lowWatermarkBytes, int maxInFlightBatches) {
+    this.highWatermarkBytes = highWatermarkBytes;
+    this.lowWatermarkBytes = Math.min(lowWatermarkBytes, highWatermarkBytes);
+    this.maxInFlightBatches = maxInFlightBatches;
+  }
+
+  /**
+   * @param connectorConfig config of the task
+   * @return backpressure of the task, null if it is not enabled
+   */
+  @Nullable
+  public static PartitionBackpressure fromConfig(@Nullable Map<String, String> connectorConfig) {
+    if (connectorConfig == null
+        || !Boolean.parseBoolean(
+            connectorConfig.get(SnowflakeSinkConnectorConfig.BUFFER_BACKPRESSURE_ENABLED))) {
+      return null;
+    }
+    long highWatermarkBytes =
+        parseLong(
+            connectorConfig,
+            SnowflakeSinkConnectorConfig.BUFFER_BACKPRESSURE_HIGH_WATERMARK_BYTES,
+            SnowflakeSinkConnectorConfig.BUFFER_BACKPRESSURE_HIGH_WATERMARK_BYTES_DEFAULT);
+    long lowWatermarkBytes =
+        parseLong(
+            connectorConfig,
+            SnowflakeSinkConnectorConfig.BUFFER_BACKPRESSURE_LOW_WATERMARK_BYTES,
+            SnowflakeSinkConnectorConfig.BUFFER_BACKPRESSURE_LOW_WATERMARK_BYTES_DEFAULT);
+    int maxInFlightBatches =
+        (int)
+            parseLong(
+                connectorConfig,
+                SnowflakeSinkConnectorConfig.BUFFER_BACKPRESSURE_MAX_INFLIGHT_BATCHES,
+                SnowflakeSinkConnectorConfig.BUFFER_BACKPRESSURE_MAX_INFLIGHT_BATCHES_DEFAULT);
+    LOGGER.info(
+        "partition backpressure enabled, high watermark {} bytes, low watermark {} bytes, max in"
+            + " flight batches {}",
+        highWatermarkBytes,
+        lowWatermarkBytes,
+        maxInFlightBatches);
+    return new PartitionBackpressure(highWatermarkBytes, lowWatermarkBytes, maxInFlightBatches);
+  }
+
+  private static long parseLong(Map<String, String> config, String key, long defaultValue) {
+    return config.containsKey(key) ? Long.parseLong(config.get(key)) : defaultValue;
+  }
+
+  /**
+   * Pause or resume the partition, depending on how much of its data is pending
+   *
+   * @param context context of the task, pauses and resumes the partition
+   * @param topicPartition the partition
+   * @param pendingBytes bytes buffered or sent but not committed in Snowflake yet
+   * @param inFlightBatches batches sent but not committed in Snowflake yet
+   */
+  public void update(
+      SinkTaskContext context,
+      TopicPartition topicPartition,
+      long pendingBytes,
+      int inFlightBatches) {
+    if (!pausedPartitions.contains(topicPartition)) {
+      if (pendingBytes > highWatermarkBytes || inFlightBatches > maxInFlightBatches) {
+        context.pause(topicPartition);
+        pausedPartitions.add(topicPartition);
+        LOGGER.info(
+            "paused {}, {} bytes and {} batches are not committed in Snowflake yet",
+            topicPartition,
+            pendingBytes,
+            inFlightBatches);
+      }
+    } else if (pendingBytes <= lowWatermarkBytes && inFlightBatches <= maxInFlightBatches / 2) {
+      context.resume(topicPartition);
+      pausedPartitions.remove(topicPartition);
+      LOGGER.info(
+          "resumed {}, {} bytes and {} batches are not committed in Snowflake yet",
+          topicPartition,
+          pendingBytes,
+          inFlightBatches);
+    }
+  }
+
+  /**
+   * Forget the closed partitions, Connect drops their paused state when they are revoked
+   *
+   * @param partitions partitions closed by the task
+   */
+  public void remove(Collection<TopicPartition> partitions) {
+    pausedPartitions.removeAll(partitions);
+  }
+
+  /** Forget all partitions, once the task closed all of them */
+  public void clear() {
+    pausedPartitions.clear();
+  }
+
+  /**
+   * @param topicPartition the partition
+   * @return whether the partition is paused by the backpressure
+   */
+  public boolean isPaused(TopicPartition topicPartition) {
+    return pausedPartitions.contains(topicPartition);
+  }
+}
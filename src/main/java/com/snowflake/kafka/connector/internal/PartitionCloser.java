@@ -0,0 +1,86 @@
+package com.snowflake.kafka.connector.internal;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BiConsumer;
+import java.util.function.BooleanSupplier;
+import java.util.function.Function;
+
+/**
+ * Closes partitions concurrently, waiting for them up to a timeout. Partitions still closing then
+ * finish in the background, so that a large rebalance is not held up by a few slow ones.
+ *
+ * <p>Each close is handed a deadline flag. Once it is set the partition may already be owned by
+ * another task, so a late close must only release its resources instead of staging or ingesting
+ * files the new owner would load a second time.
+ */
+class PartitionCloser {
+  private static final KCLogger LOGGER = new KCLogger(PartitionCloser.class.getName());
+
+  private final ExecutorService executor;
+  private final long timeoutMillis;
+
+  /**
+   * @param executor executor running the closes
+   * @param timeoutMillis how long a close call waits for the partitions
+   */
+  PartitionCloser(ExecutorService executor, long timeoutMillis) {
+    this.executor = executor;
+    this.timeoutMillis = timeoutMillis;
+  }
+
+  /**
+   * Close given partitions, returns once all of them are closed or the timeout passed
+   *
+   * @param partitions partitions to close
+   * @param name name of a partition, for logging
+   * @param close closes a partition, given whether the deadline has passed
+   * @param <T> partition type
+   */
+  <T> void closeAll(
+      List<T> partitions, Function<T, String> name, BiConsumer<T, BooleanSupplier> close) {
+    long startTime = System.currentTimeMillis();
+    AtomicBoolean deadlinePassed = new AtomicBoolean(false);
+    List<Future<?>> closes = new ArrayList<>();
+    for (T partition : partitions) {
+      closes.add(executor.submit(() -> close.accept(partition, deadlinePassed::get)));
+    }
+    long deadlineNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+    try {
+      for (int i = 0; i < closes.size(); i++) {
+        try {
+          closes.get(i).get(deadlineNanos - System.nanoTime(), TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+          LOGGER.warn(
+              "{} did not close within {} ms, it only releases its resources in the background",
+              name.apply(partitions.get(i)),
+              timeoutMillis);
+        } catch (ExecutionException e) {
+          // the close logs its own failures
+          LOGGER.debug("{}: close failed: {}", name.apply(partitions.get(i)), e.getMessage());
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          LOGGER.warn("interrupted while closing partitions, they keep closing in the background");
+          break;
+        }
+      }
+    } finally {
+      deadlinePassed.set(true);
+    }
+    LOGGER.info(
+        "closed {} partitions in parallel, execution time: {} milliseconds",
+        partitions.size(),
+        System.currentTimeMillis() - startTime);
+  }
+
+  /** Stop taking closes, partitions still closing in the background are left to finish */
+  void shutdown() {
+    executor.shutdown();
+  }
+}
@@ -0,0 +1,148 @@
+package com.snowflake.kafka.connector.internal;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.snowflake.kafka.connector.internal.telemetry.SnowflakeTelemetryService;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BiFunction;
+import java.util.function.Predicate;
+import net.snowflake.ingest.connection.HistoryResponse;
+
+/**
+ * Ingest clients of a task, one per pipe. When all partitions of a table load through a shared
+ * pipe, they share its client instead of each building its own. The first lease of a pipe builds
+ * the client, closing the last one closes it.
+ *
+ * <p>Insert report markers are kept per lease, so partitions reading the report of a shared pipe do
+ * not skip entries over each other.
+ */
+class SharedIngestionServices {
+  private static final KCLogger LOGGER = new KCLogger(SharedIngestionServices.class.getName());
+
+  private final BiFunction<String, String, SnowflakeIngestionService> ingestionServiceFactory;
+  private final Map<String, SharedIngestionService> services = new HashMap<>();
+
+  /** @param conn connection service used to build ingest clients */
+  SharedIngestionServices(SnowflakeConnectionService conn) {
+    this(conn::buildIngestService);
+  }
+
+  @VisibleForTesting
+  SharedIngestionServices(
+      BiFunction<String, String, SnowflakeIngestionService> ingestionServiceFactory) {
+    this.ingestionServiceFactory = ingestionServiceFactory;
+  }
+
+  /**
+   * Lease the ingest client of given pipe
+   *
+   * @param stageName stage the pipe loads from
+   * @param pipeName pipe name
+   * @return ingestion service of the pipe, closing it releases the lease
+   */
+  synchronized SnowflakeIngestionService acquire(String stageName, String pipeName) {
+    SharedIngestionService service =
+        services.computeIfAbsent(
+            pipeName,
+            pipe ->
+                new SharedIngestionService(pipe, ingestionServiceFactory.apply(stageName, pipe)));
+    service.leases++;
+    LOGGER.debug("leased ingest client of pipe {}, {} lease(s)", pipeName, service.leases);
+    return new Lease(service);
+  }
+
+  private synchronized void release(SharedIngestionService service) {
+    if (--service.leases == 0) {
+      services.remove(service.pipeName);
+      service.ingestionService.close();
+    }
+  }
+
+  @VisibleForTesting
+  synchronized int pipeCount() {
+    return services.size();
+  }
+
+  private static class SharedIngestionService {
+    private final String pipeName;
+    private final SnowflakeIngestionService ingestionService;
+    private int leases;
+
+    private SharedIngestionService(String pipeName, SnowflakeIngestionService ingestionService) {
+      this.pipeName = pipeName;
+      this.ingestionService = ingestionService;
+    }
+  }
+
+  /** Ingest client of a single partition, backed by the client of its pipe */
+  private class Lease implements SnowflakeIngestionService {
+    private final SharedIngestionService service;
+    private final SnowflakeIngestionService delegate;
+    // insert report marker of this partition
+    private final AtomicReference<String> reportMarker = new AtomicReference<>();
+    private boolean closed = false;
+
+    private Lease(SharedIngestionService service) {
+      this.service = service;
+      this.delegate = service.ingestionService;
+    }
+
+    @Override
+    public void setTelemetry(SnowflakeTelemetryService telemetry) {
+      delegate.setTelemetry(telemetry);
+    }
+
+    @Override
+    public void ingestFile(String fileName) {
+      delegate.ingestFile(fileName);
+    }
+
+    @Override
+    public void ingestFiles(List<String> fileNames) {
+      delegate.ingestFiles(fileNames);
+    }
+
+    @Override
+    public String getStageName() {
+      return delegate.getStageName();
+    }
+
+    @Override
+    public Map<String, InternalUtils.IngestedFileStatus> readIngestReport(List<String> files) {
+      Map<String, InternalUtils.IngestedFileStatus> fileStatus = new HashMap<>();
+      files.forEach(file -> fileStatus.put(file, InternalUtils.IngestedFileStatus.NOT_FOUND));
+      if (!fileStatus.isEmpty()) {
+        int found =
+            delegate.readIngestHistoryForward(
+                fileStatus, entry -> fileStatus.containsKey(entry.getPath()), reportMarker, null);
+        LOGGER.info("searched {} files in ingest report, found {}", files.size(), found);
+      }
+      return fileStatus;
+    }
+
+    @Override
+    public Map<String, InternalUtils.IngestedFileStatus> readOneHourHistory(
+        List<String> files, long startTime) {
+      return delegate.readOneHourHistory(files, startTime);
+    }
+
+    @Override
+    public int readIngestHistoryForward(
+        Map<String, InternalUtils.IngestedFileStatus> storage,
+        Predicate<HistoryResponse.FileEntry> fileFilter,
+        AtomicReference<String> historyMarker,
+        Integer lastNSeconds) {
+      return delegate.readIngestHistoryForward(storage, fileFilter, historyMarker, lastNSeconds);
+    }
+
+    @Override
+    public synchronized void close() {
+      if (!closed) {
+        closed = true;
+        release(service);
+      }
+    }
+  }
+}
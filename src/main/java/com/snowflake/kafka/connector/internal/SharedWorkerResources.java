@@ -0,0 +1,310 @@
+package com.snowflake.kafka.connector.internal;
+
+import static com.snowflake.kafka.connector.internal.metrics.MetricsUtil.ACTIVE_THREADS;
+import static com.snowflake.kafka.connector.internal.metrics.MetricsUtil.COMPLETED_TASKS;
+import static com.snowflake.kafka.connector.internal.metrics.MetricsUtil.POOL_SIZE;
+import static com.snowflake.kafka.connector.internal.metrics.MetricsUtil.QUEUED_TASKS;
+import static com.snowflake.kafka.connector.internal.metrics.MetricsUtil.SHARED_IO_POOL_SUB_DOMAIN;
+import static com.snowflake.kafka.connector.internal.metrics.MetricsUtil.SHARED_RESOURCES_PREFIX;
+import static com.snowflake.kafka.connector.internal.metrics.MetricsUtil.SHARED_SCHEDULER_SUB_DOMAIN;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.snowflake.kafka.connector.internal.metrics.MetricsJmxReporter;
+import com.snowflake.kafka.connector.internal.metrics.MetricsUtil;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+import javax.annotation.Nullable;
+
+/**
+ * Threads shared by every connector and task running in the worker JVM. Partitions used to get
+ * their own cleaner threads, so a worker with many tasks and partitions ended up with thousands of
+ * mostly sleeping threads. Instead their periodic work is now:
+ * <li>timed by a scheduler of a couple of threads, which only hands the work over
+ * <li>run on I/O threads, since it mostly waits on Snowflake: a bounded pool of platform threads,
+ *     or virtual threads when turned on, see {@link BlockingIoExecutors}
+ *
+ * <p>Large staged files are compressed on a pool of one thread per core, created on first use, so
+ * tasks compressing in parallel do not each start a thread per core.
+ *
+ * <p>Connectors acquire the resources when they need them and release them when they stop, the
+ * threads are shut down once no connector holds a reference anymore. The size, activity and queue
+ * of both pools are reported as JMX metrics, see {@link MetricsUtil#SHARED_RESOURCES_PREFIX}.
+ *
+ * <p>Ingest HTTP clients need no registry here: {@link net.snowflake.ingest.SimpleIngestManager}
+ * already takes its client from the ingest SDK, which keeps one per JVM.
+ */
+final class SharedWorkerResources {
+  private static final KCLogger LOGGER = new KCLogger(SharedWorkerResources.class.getName());
+
+  // the scheduler only submits work to the io pool, it never runs it
+  private static final int SCHEDULER_THREADS = 2;
+  // bound of the io pool when it is not backed by virtual threads
+  private static final int IO_THREADS = Math.max(8, 2 * Runtime.getRuntime().availableProcessors());
+
+  private static final Object LOCK = new Object();
+
+  // guarded by LOCK
+  @Nullable private static SharedWorkerResources instance;
+
+  // guarded by LOCK
+  private final Map<String, Integer> referencesByConnector = new HashMap<>();
+  private boolean jmxStarted = false;
+
+  private final ScheduledThreadPoolExecutor scheduler;
+  private final ExecutorService ioPool;
+  // guarded by LOCK, null until a connector compresses in parallel
+  @Nullable private ForkJoinPool compressionPool;
+  // tasks running on the io pool, and done since the start
+  private final AtomicLong activeIoTasks = new AtomicLong();
+  private final AtomicLong completedIoTasks = new AtomicLong();
+  private final MetricRegistry metricRegistry = new MetricRegistry();
+  private final MetricsJmxReporter metricsJmxReporter;
+
+  @VisibleForTesting
+  SharedWorkerResources(int schedulerThreads, ExecutorService ioPool) {
+    this.scheduler =
+        new ScheduledThreadPoolExecutor(
+            schedulerThreads,
+            new ThreadFactoryBuilder()
+                .setNameFormat("snowflake-shared-scheduler-%d")
+                .setDaemon(true)
+                .build());
+    this.scheduler.setRemoveOnCancelPolicy(true);
+    this.ioPool = ioPool;
+
+    registerGauge(SHARED_SCHEDULER_SUB_DOMAIN, ACTIVE_THREADS, scheduler::getActiveCount);
+    registerGauge(SHARED_SCHEDULER_SUB_DOMAIN, POOL_SIZE, scheduler::getPoolSize);
+    registerGauge(SHARED_SCHEDULER_SUB_DOMAIN, QUEUED_TASKS, () -> scheduler.getQueue().size());
+    registerGauge(SHARED_SCHEDULER_SUB_DOMAIN, COMPLETED_TASKS, scheduler::getCompletedTaskCount);
+    // virtual threads have no pool, tasks are counted instead of threads
+    registerGauge(SHARED_IO_POOL_SUB_DOMAIN, ACTIVE_THREADS, activeIoTasks::get);
+    registerGauge(SHARED_IO_POOL_SUB_DOMAIN, COMPLETED_TASKS, completedIoTasks::get);
+    if (ioPool instanceof ThreadPoolExecutor) {
+      ThreadPoolExecutor platformPool = (ThreadPoolExecutor) ioPool;
+      registerGauge(SHARED_IO_POOL_SUB_DOMAIN, POOL_SIZE, platformPool::getPoolSize);
+      registerGauge(SHARED_IO_POOL_SUB_DOMAIN, QUEUED_TASKS, () -> platformPool.getQueue().size());
+    }
+    this.metricsJmxReporter = new MetricsJmxReporter(metricRegistry, SHARED_RESOURCES_PREFIX);
+  }
+
+  /**
+   * Take a reference on the worker resources, creating them if no connector holds one
+   *
+   * @param connectorName name of the connector taking the reference
+   * @param enableJmx whether the saturation metrics are registered as mbeans
+   * @return the worker resources, to be released with {@link #release(String)}
+   */
+  static SharedWorkerResources acquire(String connectorName, boolean enableJmx) {
+    synchronized (LOCK) {
+      if (instance == null) {
+        instance =
+            new SharedWorkerResources(
+                SCHEDULER_THREADS,
+                BlockingIoExecutors.newExecutor("snowflake-shared-io-%d", IO_THREADS));
+        LOGGER.info(
+            "started shared worker threads, virtual io threads: {}",
+            BlockingIoExecutors.useVirtualThreads());
+      }
+      instance.retain(connectorName, enableJmx);
+      return instance;
+    }
+  }
+
+  @VisibleForTesting
+  void retain(String connectorName, boolean enableJmx) {
+    synchronized (LOCK) {
+      referencesByConnector.merge(connectorName, 1, Integer::sum);
+      if (enableJmx && !jmxStarted) {
+        metricsJmxReporter.start();
+        jmxStarted = true;
+      }
+    }
+  }
+
+  /**
+   * Drop a reference taken by {@link #acquire(String, boolean)}, the threads are shut down with the
+   * last reference of the last connector
+   *
+   * @param connectorName name of the connector dropping the reference
+   */
+  void release(String connectorName) {
+    synchronized (LOCK) {
+      Integer references = referencesByConnector.get(connectorName);
+      if (references == null) {
+        LOGGER.warn("connector {} released shared worker threads it did not hold", connectorName);
+        return;
+      }
+      if (references > 1) {
+        referencesByConnector.put(connectorName, references - 1);
+        return;
+      }
+      referencesByConnector.remove(connectorName);
+      if (referencesByConnector.isEmpty()) {
+        shutdown();
+        if (instance == this) {
+          instance = null;
+        }
+        LOGGER.info("stopped shared worker threads, no connector is using them");
+      }
+    }
+  }
+
+  private void shutdown() {
+    scheduler.shutdownNow();
+    ioPool.shutdownNow();
+    if (compressionPool != null) {
+      compressionPool.shutdownNow();
+      compressionPool = null;
+    }
+    // unregisters the mbeans
+    metricsJmxReporter.removeMetricsFromRegistry(SHARED_RESOURCES_PREFIX);
+  }
+
+  /**
+   * @return pool of one thread per core compressing large staged files, valid as long as the
+   *     caller holds its reference on the worker resources
+   */
+  ForkJoinPool compressionPool() {
+    synchronized (LOCK) {
+      if (compressionPool == null) {
+        compressionPool =
+            new ForkJoinPool(
+                Runtime.getRuntime().availableProcessors(),
+                pool -> {
+                  ForkJoinWorkerThread thread =
+                      ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+                  thread.setName("snowflake-compression-" + thread.getPoolIndex());
+                  return thread;
+                },
+                null,
+                false);
+      }
+      return compressionPool;
+    }
+  }
+
+  /**
+   * Run a task on the io pool once the delay passed
+   *
+   * @param task work to run
+   * @param delayMillis delay before the run
+   * @return handle to cancel the task
+   */
+  ScheduledIoTask schedule(Runnable task, long delayMillis) {
+    ScheduledIoTask scheduled = new ScheduledIoTask(task, delayMillis, false);
+    scheduled.scheduleNext();
+    return scheduled;
+  }
+
+  /**
+   * Run a task on the io pool over and over, waiting the delay between the end of a run and the
+   * start of the next one, like {@link
+   * java.util.concurrent.ScheduledExecutorService#scheduleWithFixedDelay}
+   *
+   * @param task work to run, it must not throw
+   * @param delayMillis delay before the first run and between runs
+   * @return handle to cancel the next runs
+   */
+  ScheduledIoTask scheduleWithFixedDelay(Runnable task, long delayMillis) {
+    ScheduledIoTask scheduled = new ScheduledIoTask(task, delayMillis, true);
+    scheduled.scheduleNext();
+    return scheduled;
+  }
+
+  private void registerGauge(String subDomain, String metricName, LongSupplier value) {
+    metricRegistry.register(
+        MetricsUtil.constructMetricName(SHARED_RESOURCES_PREFIX, subDomain, metricName),
+        (Gauge<Long>) value::getAsLong);
+  }
+
+  /** @return registry holding the saturation metrics of the scheduler and the io pool */
+  MetricRegistry getMetricRegistry() {
+    return metricRegistry;
+  }
+
+  @VisibleForTesting
+  boolean isShutdown() {
+    return ioPool.isShutdown();
+  }
+
+  /** Task run on the io pool after a delay, once or until cancelled */
+  final class ScheduledIoTask {
+    private final Runnable task;
+    private final long delayMillis;
+    private final boolean repeated;
+    private volatile boolean cancelled = false;
+    @Nullable private volatile Future<?> next;
+
+    private ScheduledIoTask(Runnable task, long delayMillis, boolean repeated) {
+      this.task = task;
+      this.delayMillis = delayMillis;
+      this.repeated = repeated;
+    }
+
+    private void scheduleNext() {
+      if (cancelled) {
+        return;
+      }
+      try {
+        next = scheduler.schedule(this::submit, delayMillis, TimeUnit.MILLISECONDS);
+      } catch (RejectedExecutionException e) {
+        LOGGER.debug("shared worker threads are shut down, task is not scheduled anymore");
+      }
+    }
+
+    private void submit() {
+      if (cancelled) {
+        return;
+      }
+      try {
+        next = ioPool.submit(this::run);
+      } catch (RejectedExecutionException e) {
+        LOGGER.debug("shared worker threads are shut down, task is not run anymore");
+      }
+    }
+
+    private void run() {
+      // the task may cancel itself, which must not interrupt the run
+      next = null;
+      activeIoTasks.incrementAndGet();
+      try {
+        if (!cancelled) {
+          task.run();
+        }
+      } finally {
+        activeIoTasks.decrementAndGet();
+        completedIoTasks.incrementAndGet();
+        if (repeated) {
+          scheduleNext();
+        }
+      }
+    }
+
+    /** Cancel the next runs, a run already started on the io pool is interrupted */
+    void cancel() {
+      cancelled = true;
+      Future<?> scheduled = next;
+      if (scheduled != null) {
+        scheduled.cancel(true);
+      }
+    }
+
+    @VisibleForTesting
+    boolean isCancelled() {
+      return cancelled;
+    }
+  }
+}
@@ -0,0 +1,293 @@
+package com.snowflake.kafka.connector.internal;
+
+import static com.snowflake.kafka.connector.internal.metrics.MetricsUtil.CONNECTION_POOL_SUB_DOMAIN;
+import static com.snowflake.kafka.connector.internal.metrics.MetricsUtil.CONNECTION_POOL_WAIT_TIME;
+
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import com.google.common.annotations.VisibleForTesting;
+import com.snowflake.kafka.connector.internal.metrics.MetricsUtil;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.BlockingDeque;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.Semaphore;
+import javax.annotation.Nullable;
+
+/**
+ * Small pool of authenticated JDBC sessions shared by everything a task runs against Snowflake.
+ * Sessions are checked out for a single operation and handed back right after, so cleaner threads
+ * purging files no longer queue the put thread behind them on one session.
+ *
+ * <p>Every {@link OperationClass} can only hold part of the pool at a time, so a burst of stage
+ * maintenance cannot starve table and pipe checks. Time spent waiting for a session is recorded
+ * per operation class.
+ *
+ * <p>A pool of a single session does not check it out: all operations share it concurrently, like
+ * they share a connection without a pool, since the shares of the operation classes would
+ * otherwise serialize them.
+ */
+class SnowflakeConnectionPool {
+  private static final KCLogger LOGGER = new KCLogger(SnowflakeConnectionPool.class.getName());
+
+  /** Kind of work a session is checked out for, each kind has its own share of the pool */
+  enum OperationClass {
+    // desc and show queries
+    METADATA("metadata"),
+    // create, alter and drop statements
+    DDL("ddl"),
+    // ls, rm and transfers of files between stages
+    STAGE_MAINTENANCE("stage-maintenance"),
+    // stage credential and stage type fetches
+    CREDENTIAL("credential");
+
+    private final String metricName;
+
+    OperationClass(String metricName) {
+      this.metricName = metricName;
+    }
+
+    /**
+     * @param poolSize maximum number of sessions in the pool
+     * @return number of sessions the operation class can hold at the same time
+     */
+    int maxSessions(int poolSize) {
+      switch (this) {
+        case METADATA:
+          return poolSize;
+        case CREDENTIAL:
+          return 1;
+        default:
+          return Math.max(1, poolSize / 2);
+      }
+    }
+  }
+
+  /** Opens a new session */
+  interface ConnectionFactory {
+    Connection connect() throws SQLException;
+  }
+
+  private final ConnectionFactory connectionFactory;
+  private final int maxSize;
+  // one permit per session, opened or not
+  private final Semaphore sessions;
+  private final Map<OperationClass, Semaphore> operationPermits =
+      new EnumMap<>(OperationClass.class);
+  private final Map<OperationClass, Timer> waitTimers = new EnumMap<>(OperationClass.class);
+  private final MetricRegistry metricRegistry = new MetricRegistry();
+  // most recently used first, so a quiet task keeps using the same few sessions
+  private final BlockingDeque<Connection> idle = new LinkedBlockingDeque<>();
+  // the session of a pool of a single session, null for larger pools
+  @Nullable private volatile Connection sharedConnection;
+  private volatile boolean closed = false;
+
+  /**
+   * Pool of a single session, for callers which already own their connection
+   *
+   * @param connection the session
+   */
+  SnowflakeConnectionPool(Connection connection) {
+    this(
+        connection,
+        () -> {
+          throw new SQLException("Connection pool of a single session can not open a new one");
+        },
+        1,
+        "connection");
+  }
+
+  /**
+   * @param connection first session of the pool, already opened
+   * @param connectionFactory opens further sessions when all opened ones are in use
+   * @param maxSize maximum number of sessions
+   * @param metricPrefix prefix of the wait time metrics, see {@link
+   *     MetricsUtil#constructMetricName(String, String, String)}
+   */
+  SnowflakeConnectionPool(
+      Connection connection,
+      ConnectionFactory connectionFactory,
+      int maxSize,
+      String metricPrefix) {
+    this.connectionFactory = connectionFactory;
+    this.maxSize = Math.max(1, maxSize);
+    this.sessions = new Semaphore(this.maxSize, true);
+    for (OperationClass operation : OperationClass.values()) {
+      operationPermits.put(operation, new Semaphore(operation.maxSessions(this.maxSize), true));
+      waitTimers.put(
+          operation,
+          metricRegistry.timer(
+              MetricsUtil.constructMetricName(
+                  metricPrefix,
+                  CONNECTION_POOL_SUB_DOMAIN,
+                  operation.metricName + "-" + CONNECTION_POOL_WAIT_TIME)));
+    }
+    if (this.maxSize == 1) {
+      sharedConnection = connection;
+    } else {
+      idle.offer(connection);
+    }
+  }
+
+  /**
+   * Check out a session, waiting for the operation class share and for a free session. A new
+   * session is opened if all opened ones are in use and the pool is not full yet.
+   *
+   * @param operation kind of work the session is used for
+   * @return lease of the session, which has to be closed once the operation is done
+   * @throws SQLException if a new session can not be opened, or the wait is interrupted
+   */
+  Lease acquire(OperationClass operation) throws SQLException {
+    if (closed) {
+      throw new SQLException("Connection pool is closed");
+    }
+    if (maxSize == 1) {
+      return new Lease(sharedConnection(), operation, true);
+    }
+    Semaphore permits = operationPermits.get(operation);
+    Timer.Context wait = waitTimers.get(operation).time();
+    try {
+      permits.acquire();
+      try {
+        sessions.acquire();
+      } catch (InterruptedException e) {
+        permits.release();
+        throw e;
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new SQLException("Interrupted while waiting for a connection", e);
+    } finally {
+      wait.stop();
+    }
+
+    Connection connection = idle.pollFirst();
+    if (connection == null) {
+      // every permit not backed by an idle session belongs to a session not opened yet
+      try {
+        connection = connectionFactory.connect();
+        LOGGER.debug("opened a new session for {}", operation);
+      } catch (SQLException | RuntimeException e) {
+        sessions.release();
+        permits.release();
+        throw e;
+      }
+    }
+    return new Lease(connection, operation, false);
+  }
+
+  // a broken shared session is replaced by the first operation which finds it closed
+  private synchronized Connection sharedConnection() throws SQLException {
+    Connection connection = sharedConnection;
+    if (connection.isClosed()) {
+      connection = connectionFactory.connect();
+      LOGGER.info("replaced the closed session of the pool");
+      sharedConnection = connection;
+    }
+    return connection;
+  }
+
+  private void release(Connection connection, OperationClass operation) {
+    try {
+      if (closed || connection.isClosed()) {
+        // a broken session is dropped, its permit opens a new one on demand
+        closeQuietly(connection);
+      } else {
+        idle.offerFirst(connection);
+      }
+    } catch (SQLException e) {
+      closeQuietly(connection);
+    } finally {
+      sessions.release();
+      operationPermits.get(operation).release();
+    }
+  }
+
+  private static void closeQuietly(Connection connection) {
+    try {
+      connection.close();
+    } catch (SQLException e) {
+      LOGGER.warn("Failed to close a pooled session: {}", e.getMessage());
+    }
+  }
+
+  /** @return registry holding the wait time of every operation class */
+  MetricRegistry getMetricRegistry() {
+    return metricRegistry;
+  }
+
+  @VisibleForTesting
+  int getMaxSize() {
+    return maxSize;
+  }
+
+  /** @return true once the pool is closed */
+  boolean isClosed() {
+    return closed;
+  }
+
+  @VisibleForTesting
+  int getIdleCount() {
+    return idle.size();
+  }
+
+  /**
+   * Close the shared or idle sessions, sessions still checked out are closed when handed back
+   *
+   * @throws SQLException first failure to close a session, the others are still closed
+   */
+  void close() throws SQLException {
+    closed = true;
+    SQLException failure = null;
+    Connection connection = sharedConnection;
+    if (connection != null) {
+      try {
+        connection.close();
+      } catch (SQLException e) {
+        failure = e;
+      }
+    }
+    while ((connection = idle.pollFirst()) != null) {
+      try {
+        connection.close();
+      } catch (SQLException e) {
+        if (failure == null) {
+          failure = e;
+        }
+      }
+    }
+    if (failure != null) {
+      throw failure;
+    }
+  }
+
+  /** Session checked out for a single operation, handed back to the pool on close */
+  final class Lease implements AutoCloseable {
+    private final Connection connection;
+    private final OperationClass operation;
+    // shared sessions are not checked out, there is nothing to hand back
+    private final boolean shared;
+    private boolean released = false;
+
+    private Lease(Connection connection, OperationClass operation, boolean shared) {
+      this.connection = connection;
+      this.operation = operation;
+      this.shared = shared;
+    }
+
+    /** @return the session, it must not be used once the lease is closed */
+    Connection getConnection() {
+      return connection;
+    }
+
+    @Override
+    public void close() {
+      if (!released && !shared) {
+        released = true;
+        release(connection, operation);
+      }
+    }
+  }
+}
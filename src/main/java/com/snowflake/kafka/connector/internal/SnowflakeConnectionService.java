@@ -2,9 +2,11 @@ package com.snowflake.kafka.connector.internal;
 
 import com.snowflake.kafka.connector.internal.streaming.ChannelMigrateOffsetTokenResponseDTO;
 import com.snowflake.kafka.connector.internal.telemetry.SnowflakeTelemetryService;
+import java.nio.file.Path;
 import java.sql.Connection;
 import java.util.List;
 import java.util.Map;
+import java.util.function.Consumer;
 
 public interface SnowflakeConnectionService {
   /**
@@ -43,6 +45,17 @@ public interface SnowflakeConnectionService {
    */
   void createPipe(String tableName, String stageName, String pipeName);
 
+  /**
+   * create a snowpipe loading files of given format if not exists
+   *
+   * @param pipeName pipe name
+   * @param tableName table name
+   * @param stageName stage name
+   * @param fileFormat format of the staged files
+   */
+  void createPipe(
+      String tableName, String stageName, String pipeName, SnowpipeFileFormat fileFormat);
+
   /**
    * create a stage
    *
@@ -83,6 +96,14 @@ public interface SnowflakeConnectionService {
    */
   boolean pipeExist(String pipeName);
 
+  /**
+   * list pipes whose names start with given prefix, one query instead of checking every pipe
+   *
+   * @param namePrefix pipe name prefix
+   * @return names of the matching pipes, upper cased
+   */
+  List<String> listPipes(String namePrefix);
+
   /**
    * Check the given table has correct schema correct schema: (record_metadata variant,
    * record_content variant)
@@ -136,6 +157,18 @@ public interface SnowflakeConnectionService {
    */
   boolean isPipeCompatible(String tableName, String stageName, String pipeName);
 
+  /**
+   * check snowpipe definition, the pipe has to load files of given format
+   *
+   * @param pipeName pipe name
+   * @param tableName table name
+   * @param stageName stage name
+   * @param fileFormat format of the staged files
+   * @return true if definition is correct, false if it is incorrect or pipe does not exists
+   */
+  boolean isPipeCompatible(
+      String tableName, String stageName, String pipeName, SnowpipeFileFormat fileFormat);
+
   /**
    * check if a given database exists
    *
@@ -210,6 +243,17 @@ public interface SnowflakeConnectionService {
    */
   List<String> listStage(String stageName, String prefix);
 
+  /**
+   * list a non table stage and stream file names contained in given subdirectory to the consumer,
+   * without collecting them into a list
+   *
+   * @param stageName stage name
+   * @param prefix prefix name
+   * @param fileNameConsumer receives file names in given subdirectory, file name =
+   *     "{prefix}filename"
+   */
+  void listStage(String stageName, String prefix, Consumer<String> fileNameConsumer);
+
   /**
    * put a file to stage
    *
@@ -231,6 +275,38 @@ public interface SnowflakeConnectionService {
    */
   void putWithCache(final String stageName, final String fileName, final String content);
 
+  /**
+   * put a local file to stage. Cache credential for AWS, Azure and GCS storage. The file content is
+   * streamed, it is never loaded onto the heap as a whole.
+   *
+   * @param stageName stage name
+   * @param fileName file name on stage, same format as in {@link #putWithCache(String, String,
+   *     String)}
+   * @param localFile local file holding the file content
+   */
+  void putWithCache(final String stageName, final String fileName, final Path localFile);
+
+  /**
+   * put binary content to stage. Cache credential for AWS, Azure and GCS storage.
+   *
+   * @param stageName stage name
+   * @param fileName file name on stage, same format as in {@link #putWithCache(String, String,
+   *     String)}
+   * @param content file content
+   */
+  void putWithCache(final String stageName, final String fileName, final byte[] content);
+
+  /**
+   * put compressed content to stage, it is uploaded as is. Cache credential for AWS, Azure and GCS
+   * storage.
+   *
+   * @param stageName stage name
+   * @param fileName file name on stage, its extension has to name the compression
+   * @param compressedContent compressed file content
+   */
+  void putCompressedWithCache(
+      final String stageName, final String fileName, final byte[] compressedContent);
+
   /**
    * put a file to table stage
    *
@@ -26,6 +26,11 @@ public class SnowflakeConnectionServiceFactory {
     // This property will be appeneded to user agent while calling snowpipe API in http request
     private String kafkaProvider = null;
 
+    private int connectionPoolSize = SnowflakeSinkConnectorConfig.JDBC_CONNECTION_POOL_SIZE_DEFAULT;
+    private boolean enableCustomJMXMonitoring = SnowflakeSinkConnectorConfig.JMX_OPT_DEFAULT;
+    private long metadataCacheTtlMillis =
+        SnowflakeSinkConnectorConfig.JDBC_METADATA_CACHE_TTL_MS_DEFAULT;
+
     /** Underlying implementation - Check Enum {@link IngestionMethodConfig} */
     private IngestionMethodConfig ingestionMethodConfig;
 
@@ -72,6 +77,18 @@ public class SnowflakeConnectionServiceFactory {
       this.connectorName = conf.get(Utils.NAME);
       this.ingestionMethodConfig = IngestionMethodConfig.determineIngestionMethod(conf);
       this.prop = InternalUtils.createProperties(conf, this.url, ingestionMethodConfig);
+      if (conf.containsKey(SnowflakeSinkConnectorConfig.JDBC_CONNECTION_POOL_SIZE)) {
+        this.connectionPoolSize =
+            Integer.parseInt(conf.get(SnowflakeSinkConnectorConfig.JDBC_CONNECTION_POOL_SIZE));
+      }
+      if (conf.containsKey(SnowflakeSinkConnectorConfig.JDBC_METADATA_CACHE_TTL_MS)) {
+        this.metadataCacheTtlMillis =
+            Long.parseLong(conf.get(SnowflakeSinkConnectorConfig.JDBC_METADATA_CACHE_TTL_MS));
+      }
+      if (conf.containsKey(SnowflakeSinkConnectorConfig.JMX_OPT)) {
+        this.enableCustomJMXMonitoring =
+            Boolean.parseBoolean(conf.get(SnowflakeSinkConnectorConfig.JMX_OPT));
+      }
       return this;
     }
 
@@ -79,8 +96,21 @@ public class SnowflakeConnectionServiceFactory {
       InternalUtils.assertNotEmpty("properties", prop);
       InternalUtils.assertNotEmpty("url", url);
       InternalUtils.assertNotEmpty("connectorName", connectorName);
-      return new SnowflakeConnectionServiceV1(
-          prop, url, connectorName, taskID, proxyProperties, kafkaProvider, ingestionMethodConfig);
+      SnowflakeConnectionServiceV1 conn =
+          new SnowflakeConnectionServiceV1(
+              prop,
+              url,
+              connectorName,
+              taskID,
+              proxyProperties,
+              kafkaProvider,
+              ingestionMethodConfig,
+              connectionPoolSize,
+              enableCustomJMXMonitoring);
+      if (metadataCacheTtlMillis > 0) {
+        conn.enableMetadataCache(metadataCacheTtlMillis);
+      }
+      return conn;
     }
   }
 }
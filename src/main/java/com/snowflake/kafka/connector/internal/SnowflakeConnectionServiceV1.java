@@ -6,7 +6,14 @@ import static com.snowflake.kafka.connector.Utils.TABLE_COLUMN_METADATA;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.snowflake.kafka.connector.Utils;
+import com.snowflake.kafka.connector.internal.MetadataCache.ObjectType;
+import com.snowflake.kafka.connector.internal.SnowflakeConnectionPool.Lease;
+import com.snowflake.kafka.connector.internal.SnowflakeConnectionPool.OperationClass;
+import com.snowflake.kafka.connector.internal.metrics.MetricsJmxReporter;
 import com.snowflake.kafka.connector.internal.streaming.ChannelMigrateOffsetTokenResponseDTO;
 import com.snowflake.kafka.connector.internal.streaming.ChannelMigrationResponseCode;
 import com.snowflake.kafka.connector.internal.streaming.IngestionMethodConfig;
@@ -14,19 +21,32 @@ import com.snowflake.kafka.connector.internal.streaming.SchematizationUtils;
 import com.snowflake.kafka.connector.internal.telemetry.SnowflakeTelemetryService;
 import com.snowflake.kafka.connector.internal.telemetry.SnowflakeTelemetryServiceFactory;
 import java.io.ByteArrayInputStream;
+import java.io.IOException;
 import java.io.InputStream;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
 import java.security.PrivateKey;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.LinkedList;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import javax.annotation.Nullable;
 import net.snowflake.client.jdbc.SnowflakeConnectionV1;
 import net.snowflake.client.jdbc.SnowflakeDriver;
 import net.snowflake.client.jdbc.cloud.storage.StageInfo;
@@ -40,6 +60,10 @@ public class SnowflakeConnectionServiceV1 implements SnowflakeConnectionService
   private final KCLogger LOGGER = new KCLogger(SnowflakeConnectionServiceV1.class.getName());
 
   private final Connection conn;
+  // sessions checked out per operation, conn is the first one
+  private final SnowflakeConnectionPool connectionPool;
+  // reports pool wait times, null if JMX monitoring is disabled
+  @Nullable private final MetricsJmxReporter connectionPoolMetricsReporter;
   private final SnowflakeTelemetryService telemetry;
   private final String connectorName;
   private final String taskID;
@@ -56,6 +80,36 @@ public class SnowflakeConnectionServiceV1 implements SnowflakeConnectionService
 
   private StageInfo.StageType stageType;
 
+  // table, stage and pipe checks shared by all partitions, null if caching is disabled
+  @Nullable private MetadataCache metadataCache;
+
+  // Moves failed files into table stages. Each move pipes a download stream straight into an
+  // upload stream, so the pool size bounds both the concurrency and the memory in use. Created by
+  // the first move, most connection services never move a file. Guarded by this.
+  @Nullable private ExecutorService moveToTableStageExecutor;
+  private boolean moveToTableStageExecutorClosed = false;
+
+  // Flipped to false the first time the server rejects COPY FILES into a table stage as not
+  // supported, after which we only use the client side download/upload path. Other failures only
+  // fall back for the files of the failed call.
+  private volatile boolean serverSideCopyEnabled = true;
+
+  // SQL states of a COPY FILES the server does not support: a syntax error, or a feature not
+  // available to the account
+  private static final Set<String> UNSUPPORTED_COPY_SQL_STATES = ImmutableSet.of("42000", "0A000");
+
+  private static final int MOVE_TO_TABLE_STAGE_THREADS = 8;
+
+  // COPY FILES accepts at most 1000 files in its FILES clause
+  private static final int COPY_FILES_BATCH_SIZE = 1000;
+
+  // Number of files removed by a single REMOVE ... PATTERN statement
+  private static final int REMOVE_FILES_BATCH_SIZE = 500;
+
+  // File names we are comfortable embedding in a REMOVE pattern, anything else is removed one by
+  // one
+  private static final Pattern BATCH_REMOVABLE_FILE_NAME = Pattern.compile("[A-Za-z0-9_.\\-]+");
+
   private static final long CREDENTIAL_EXPIRY_TIMEOUT_MILLIS = TimeUnit.MINUTES.toMillis(30);
 
   // User agent suffix we want to pass in to ingest service
@@ -70,7 +124,9 @@ public class SnowflakeConnectionServiceV1 implements SnowflakeConnectionService
       String taskID,
       Properties proxyProperties,
       String kafkaProvider,
-      IngestionMethodConfig ingestionMethodConfig) {
+      IngestionMethodConfig ingestionMethodConfig,
+      int connectionPoolSize,
+      boolean enableCustomJMXMonitoring) {
     this.connectorName = connectorName;
     this.taskID = taskID;
     this.url = url;
@@ -79,22 +135,23 @@ public class SnowflakeConnectionServiceV1 implements SnowflakeConnectionService
     this.proxyProperties = proxyProperties;
     this.kafkaProvider = kafkaProvider;
     try {
-      if (proxyProperties != null && !proxyProperties.isEmpty()) {
-        Properties combinedProperties =
-            mergeProxyAndConnectionProperties(this.prop, this.proxyProperties);
-        LOGGER.debug("Proxy properties are set, passing in JDBC while creating the connection");
-        this.conn = new SnowflakeDriver().connect(url.getJdbcUrl(), combinedProperties);
-      } else {
-        LOGGER.info("Establishing a JDBC connection with url:{}", url.getJdbcUrl());
-        this.conn = new SnowflakeDriver().connect(url.getJdbcUrl(), prop);
-      }
+      this.conn = connect();
     } catch (SQLException e) {
       throw SnowflakeErrors.ERROR_1001.getException(e);
     }
+    this.connectionPool =
+        new SnowflakeConnectionPool(
+            this.conn, this::connect, connectionPoolSize, "task-" + this.taskID);
+    if (enableCustomJMXMonitoring && connectionPool.getMaxSize() > 1) {
+      this.connectionPoolMetricsReporter =
+          new MetricsJmxReporter(connectionPool.getMetricRegistry(), connectorName);
+      this.connectionPoolMetricsReporter.start();
+    } else {
+      this.connectionPoolMetricsReporter = null;
+    }
     long credentialExpireTimeMillis = CREDENTIAL_EXPIRY_TIMEOUT_MILLIS;
     this.internalStage =
-        new SnowflakeInternalStage(
-            (SnowflakeConnectionV1) this.conn, credentialExpireTimeMillis, proxyProperties);
+        new SnowflakeInternalStage(connectionPool, credentialExpireTimeMillis, proxyProperties);
     this.telemetry =
         SnowflakeTelemetryServiceFactory.builder(conn, ingestionMethodConfig)
             .setAppName(this.connectorName)
@@ -103,6 +160,34 @@ public class SnowflakeConnectionServiceV1 implements SnowflakeConnectionService
     LOGGER.info("initialized the snowflake connection");
   }
 
+  private synchronized ExecutorService moveToTableStageExecutor() {
+    if (moveToTableStageExecutorClosed) {
+      throw SnowflakeErrors.ERROR_1003.getException();
+    }
+    if (moveToTableStageExecutor == null) {
+      moveToTableStageExecutor =
+          Executors.newFixedThreadPool(
+              MOVE_TO_TABLE_STAGE_THREADS,
+              new ThreadFactoryBuilder()
+                  .setNameFormat("snowflake-move-to-table-stage-" + this.taskID + "-%d")
+                  .setDaemon(true)
+                  .build());
+    }
+    return moveToTableStageExecutor;
+  }
+
+  /* Opens a new JDBC session, the first one and further sessions of the pool */
+  private Connection connect() throws SQLException {
+    if (proxyProperties != null && !proxyProperties.isEmpty()) {
+      Properties combinedProperties =
+          mergeProxyAndConnectionProperties(this.prop, this.proxyProperties);
+      LOGGER.debug("Proxy properties are set, passing in JDBC while creating the connection");
+      return new SnowflakeDriver().connect(url.getJdbcUrl(), combinedProperties);
+    }
+    LOGGER.info("Establishing a JDBC connection with url:{}", url.getJdbcUrl());
+    return new SnowflakeDriver().connect(url.getJdbcUrl(), prop);
+  }
+
   /* Merges the two properties. */
   private static Properties mergeProxyAndConnectionProperties(
       Properties connectionProperties, Properties proxyProperties) {
@@ -114,6 +199,24 @@ public class SnowflakeConnectionServiceV1 implements SnowflakeConnectionService
     return mergedProperties;
   }
 
+  // cache table, stage and pipe checks for the given time
+  void enableMetadataCache(long ttlMillis) {
+    this.metadataCache = new MetadataCache(ttlMillis);
+  }
+
+  private <T> T cached(ObjectType type, String name, String check, Supplier<T> lookup) {
+    MetadataCache cache = metadataCache;
+    return cache == null ? lookup.get() : cache.get(type, name, check, lookup);
+  }
+
+  // called once the connector changed an object, so its checks are run again
+  private void invalidateMetadata(ObjectType type, String name) {
+    MetadataCache cache = metadataCache;
+    if (cache != null) {
+      cache.invalidate(type, name);
+    }
+  }
+
   @Override
   public void createTable(final String tableName, final boolean overwrite) {
     checkConnection();
@@ -128,8 +231,8 @@ public class SnowflakeConnectionServiceV1 implements SnowflakeConnectionService
           "create table if not exists identifier(?) (record_metadata "
               + "variant, record_content variant)";
     }
-    try {
-      PreparedStatement stmt = conn.prepareStatement(query);
+    try (Lease lease = connectionPool.acquire(OperationClass.DDL)) {
+      PreparedStatement stmt = lease.getConnection().prepareStatement(query);
       stmt.setString(1, tableName);
       stmt.execute();
       stmt.close();
@@ -137,6 +240,7 @@ public class SnowflakeConnectionServiceV1 implements SnowflakeConnectionService
       throw SnowflakeErrors.ERROR_2007.getException(e);
     }
 
+    invalidateMetadata(ObjectType.TABLE, tableName);
     LOGGER.info("create table {}", tableName);
   }
 
@@ -153,8 +257,8 @@ public class SnowflakeConnectionServiceV1 implements SnowflakeConnectionService
         "create table if not exists identifier(?) (record_metadata variant comment 'created by"
             + " automatic table creation from Snowflake Kafka Connector')";
 
-    try {
-      PreparedStatement stmt = conn.prepareStatement(createTableQuery);
+    try (Lease lease = connectionPool.acquire(OperationClass.DDL)) {
+      PreparedStatement stmt = lease.getConnection().prepareStatement(createTableQuery);
       stmt.setString(1, tableName);
       stmt.execute();
       stmt.close();
@@ -165,8 +269,8 @@ public class SnowflakeConnectionServiceV1 implements SnowflakeConnectionService
     // Enable schema evolution by default if the table is created by the connector
     String enableSchemaEvolutionQuery =
         "alter table identifier(?) set ENABLE_SCHEMA_EVOLUTION = true";
-    try {
-      PreparedStatement stmt = conn.prepareStatement(enableSchemaEvolutionQuery);
+    try (Lease lease = connectionPool.acquire(OperationClass.DDL)) {
+      PreparedStatement stmt = lease.getConnection().prepareStatement(enableSchemaEvolutionQuery);
       stmt.setString(1, tableName);
       stmt.executeQuery();
     } catch (SQLException e) {
@@ -175,6 +279,7 @@ public class SnowflakeConnectionServiceV1 implements SnowflakeConnectionService
           "Enable schema evolution failed on table: {}, message: {}", tableName, e.getMessage());
     }
 
+    invalidateMetadata(ObjectType.TABLE, tableName);
     LOGGER.info("Created table {} with only RECORD_METADATA column", tableName);
   }
 
@@ -184,6 +289,24 @@ public class SnowflakeConnectionServiceV1 implements SnowflakeConnectionService
       final String stageName,
       final String pipeName,
       final boolean overwrite) {
+    createPipe(tableName, stageName, pipeName, overwrite, SnowpipeFileFormat.JSON);
+  }
+
+  @Override
+  public void createPipe(
+      final String tableName,
+      final String stageName,
+      final String pipeName,
+      final SnowpipeFileFormat fileFormat) {
+    createPipe(tableName, stageName, pipeName, false, fileFormat);
+  }
+
+  private void createPipe(
+      final String tableName,
+      final String stageName,
+      final String pipeName,
+      final boolean overwrite,
+      final SnowpipeFileFormat fileFormat) {
     checkConnection();
     InternalUtils.assertNotEmpty("tableName", tableName);
     InternalUtils.assertNotEmpty("stageName", stageName);
@@ -195,15 +318,16 @@ public class SnowflakeConnectionServiceV1 implements SnowflakeConnectionService
     } else {
       query = "create pipe if not exists identifier(?) ";
     }
-    try {
-      query += "as " + pipeDefinition(tableName, stageName);
-      PreparedStatement stmt = conn.prepareStatement(query);
+    try (Lease lease = connectionPool.acquire(OperationClass.DDL)) {
+      query += "as " + pipeDefinition(tableName, stageName, fileFormat);
+      PreparedStatement stmt = lease.getConnection().prepareStatement(query);
       stmt.setString(1, pipeName);
       stmt.execute();
       stmt.close();
     } catch (SQLException e) {
       throw SnowflakeErrors.ERROR_2009.getException(e);
     }
+    invalidateMetadata(ObjectType.PIPE, pipeName);
     LOGGER.info("create pipe: {}", pipeName);
   }
 
@@ -223,14 +347,15 @@ public class SnowflakeConnectionServiceV1 implements SnowflakeConnectionService
     } else {
       query = "create stage if not exists identifier(?)";
     }
-    try {
-      PreparedStatement stmt = conn.prepareStatement(query);
+    try (Lease lease = connectionPool.acquire(OperationClass.DDL)) {
+      PreparedStatement stmt = lease.getConnection().prepareStatement(query);
       stmt.setString(1, stageName);
       stmt.execute();
       stmt.close();
     } catch (SQLException e) {
       throw SnowflakeErrors.ERROR_2008.getException(e);
     }
+    invalidateMetadata(ObjectType.STAGE, stageName);
     LOGGER.info("create stage {}", stageName);
   }
 
@@ -241,97 +366,85 @@ public class SnowflakeConnectionServiceV1 implements SnowflakeConnectionService
 
   @Override
   public boolean tableExist(final String tableName) {
+    return cached(ObjectType.TABLE, tableName, "exist", () -> queryTableExist(tableName));
+  }
+
+  private boolean queryTableExist(final String tableName) {
     checkConnection();
     InternalUtils.assertNotEmpty("tableName", tableName);
     String query = "desc table identifier(?)";
-    PreparedStatement stmt = null;
     boolean exist;
-    try {
-      stmt = conn.prepareStatement(query);
+    try (Lease lease = connectionPool.acquire(OperationClass.METADATA);
+        PreparedStatement stmt = lease.getConnection().prepareStatement(query)) {
       stmt.setString(1, tableName);
       stmt.execute();
       exist = true;
     } catch (Exception e) {
       LOGGER.debug("table {} doesn't exist", tableName);
       exist = false;
-    } finally {
-      if (stmt != null) {
-        try {
-          stmt.close();
-        } catch (SQLException e) {
-          e.printStackTrace();
-        }
-      }
     }
     return exist;
   }
 
   @Override
   public boolean stageExist(final String stageName) {
+    return cached(ObjectType.STAGE, stageName, "exist", () -> queryStageExist(stageName));
+  }
+
+  private boolean queryStageExist(final String stageName) {
     checkConnection();
     InternalUtils.assertNotEmpty("stageName", stageName);
     String query = "desc stage identifier(?)";
-    PreparedStatement stmt = null;
     boolean exist;
-    try {
-      stmt = conn.prepareStatement(query);
+    try (Lease lease = connectionPool.acquire(OperationClass.METADATA);
+        PreparedStatement stmt = lease.getConnection().prepareStatement(query)) {
       stmt.setString(1, stageName);
       stmt.execute();
       exist = true;
     } catch (SQLException e) {
       LOGGER.debug("stage {} doesn't exists", stageName);
       exist = false;
-    } finally {
-      if (stmt != null) {
-        try {
-          stmt.close();
-        } catch (SQLException e) {
-          e.printStackTrace();
-        }
-      }
     }
     return exist;
   }
 
   @Override
   public boolean pipeExist(final String pipeName) {
+    return cached(ObjectType.PIPE, pipeName, "exist", () -> queryPipeExist(pipeName));
+  }
+
+  private boolean queryPipeExist(final String pipeName) {
     checkConnection();
     InternalUtils.assertNotEmpty("pipeName", pipeName);
     String query = "desc pipe identifier(?)";
-    PreparedStatement stmt = null;
     boolean exist;
-    try {
-      stmt = conn.prepareStatement(query);
+    try (Lease lease = connectionPool.acquire(OperationClass.METADATA);
+        PreparedStatement stmt = lease.getConnection().prepareStatement(query)) {
       stmt.setString(1, pipeName);
       stmt.execute();
       exist = true;
     } catch (SQLException e) {
       LOGGER.debug("pipe {} doesn't exist", pipeName);
       exist = false;
-    } finally {
-      if (stmt != null) {
-        try {
-          stmt.close();
-        } catch (SQLException e) {
-          e.printStackTrace();
-        }
-      }
     }
     return exist;
   }
 
   @Override
   public boolean isTableCompatible(final String tableName) {
+    return cached(
+        ObjectType.TABLE, tableName, "compatible", () -> queryTableCompatible(tableName));
+  }
+
+  private boolean queryTableCompatible(final String tableName) {
     checkConnection();
     InternalUtils.assertNotEmpty("tableName", tableName);
     String query = "desc table identifier(?)";
-    PreparedStatement stmt = null;
-    ResultSet result = null;
     boolean compatible;
-    try {
-      stmt = conn.prepareStatement(query);
+    try (Lease lease = connectionPool.acquire(OperationClass.METADATA);
+        PreparedStatement stmt = lease.getConnection().prepareStatement(query)) {
       stmt.setString(1, tableName);
-      result = stmt.executeQuery();
+      ResultSet result = stmt.executeQuery();
       boolean hasMeta = false;
       boolean hasContent = false;
       boolean allNullable = true;
@@ -357,22 +470,6 @@ public class SnowflakeConnectionServiceV1 implements SnowflakeConnectionService
     } catch (SQLException e) {
       LOGGER.debug("table {} doesn't exist", tableName);
       compatible = false;
-    } finally {
-      try {
-        if (result != null) {
-          result.close();
-        }
-      } catch (Exception e) {
-        e.printStackTrace();
-      }
-
-      try {
-        if (stmt != null) {
-          stmt.close();
-        }
-      } catch (Exception e) {
-        e.printStackTrace();
-      }
     }
     return compatible;
   }
@@ -386,8 +483,8 @@ public class SnowflakeConnectionServiceV1 implements SnowflakeConnectionService
     ResultSet result = null;
     boolean hasMeta = false;
     boolean isVariant = false;
-    try {
-      stmt = conn.prepareStatement(query);
+    try (Lease lease = connectionPool.acquire(OperationClass.METADATA)) {
+      stmt = lease.getConnection().prepareStatement(query);
       stmt.setString(1, tableName);
       result = stmt.executeQuery();
       while (result.next()) {
@@ -403,12 +500,13 @@ public class SnowflakeConnectionServiceV1 implements SnowflakeConnectionService
     } catch (SQLException e) {
       throw SnowflakeErrors.ERROR_2014.getException("table name: " + tableName);
     }
-    try {
+    try (Lease lease = connectionPool.acquire(OperationClass.DDL)) {
       if (!hasMeta) {
         String metaQuery = "alter table identifier(?) add RECORD_METADATA VARIANT";
-        stmt = conn.prepareStatement(metaQuery);
+        stmt = lease.getConnection().prepareStatement(metaQuery);
         stmt.setString(1, tableName);
         stmt.executeQuery();
+        invalidateMetadata(ObjectType.TABLE, tableName);
       } else {
         if (!isVariant) {
           throw SnowflakeErrors.ERROR_2012.getException("table name: " + tableName);
@@ -429,6 +527,14 @@ public class SnowflakeConnectionServiceV1 implements SnowflakeConnectionService
    */
   @Override
   public boolean hasSchemaEvolutionPermission(String tableName, String role) {
+    return cached(
+        ObjectType.TABLE,
+        tableName,
+        "schemaEvolutionPermission/" + role,
+        () -> querySchemaEvolutionPermission(tableName, role));
+  }
+
+  private boolean querySchemaEvolutionPermission(String tableName, String role) {
     checkConnection();
     InternalUtils.assertNotEmpty("tableName", tableName);
     String query = "show grants on table identifier(?)";
@@ -438,8 +544,8 @@ public class SnowflakeConnectionServiceV1 implements SnowflakeConnectionService
     // whether the role has the privilege to do schema evolution (EVOLVE SCHEMA / ALL / OWNERSHIP)
     boolean hasRolePrivilege = false;
     String myRole = SchematizationUtils.formatName(role);
-    try {
-      PreparedStatement stmt = conn.prepareStatement(query);
+    try (Lease lease = connectionPool.acquire(OperationClass.METADATA)) {
+      PreparedStatement stmt = lease.getConnection().prepareStatement(query);
       stmt.setString(1, tableName);
       result = stmt.executeQuery();
       while (result.next()) {
@@ -459,8 +565,8 @@ public class SnowflakeConnectionServiceV1 implements SnowflakeConnectionService
     // whether the table has ENABLE_SCHEMA_EVOLUTION option set to true on the table.
     boolean hasTableOptionEnabled = false;
     query = "show tables like '" + tableName + "' limit 1";
-    try {
-      PreparedStatement stmt = conn.prepareStatement(query);
+    try (Lease lease = connectionPool.acquire(OperationClass.METADATA)) {
+      PreparedStatement stmt = lease.getConnection().prepareStatement(query);
       stmt.setString(1, tableName);
       result = stmt.executeQuery();
       while (result.next()) {
@@ -513,9 +619,9 @@ public class SnowflakeConnectionServiceV1 implements SnowflakeConnectionService
           .append(" comment 'column created by schema evolution from Snowflake Kafka Connector'");
       logColumn.append(columnName).append(" (").append(columnToType.get(columnName)).append(")");
     }
-    try {
+    try (Lease lease = connectionPool.acquire(OperationClass.DDL)) {
       LOGGER.info("Trying to run query: {}", appendColumnQuery.toString());
-      PreparedStatement stmt = conn.prepareStatement(appendColumnQuery.toString());
+      PreparedStatement stmt = lease.getConnection().prepareStatement(appendColumnQuery.toString());
       stmt.setString(1, tableName);
       stmt.execute();
       stmt.close();
@@ -523,6 +629,7 @@ public class SnowflakeConnectionServiceV1 implements SnowflakeConnectionService
       throw SnowflakeErrors.ERROR_2015.getException(e);
     }
 
+    invalidateMetadata(ObjectType.TABLE, tableName);
     logColumn.insert(0, "Following columns created for table {}:\n").append("]");
     LOGGER.info(logColumn.toString(), tableName);
   }
@@ -556,9 +663,9 @@ public class SnowflakeConnectionServiceV1 implements SnowflakeConnectionService
                   + " Connector'");
       logColumn.append(columnName);
     }
-    try {
+    try (Lease lease = connectionPool.acquire(OperationClass.DDL)) {
       LOGGER.info("Trying to run query: {}", dropNotNullQuery.toString());
-      PreparedStatement stmt = conn.prepareStatement(dropNotNullQuery.toString());
+      PreparedStatement stmt = lease.getConnection().prepareStatement(dropNotNullQuery.toString());
       stmt.setString(1, tableName);
       stmt.execute();
       stmt.close();
@@ -566,6 +673,7 @@ public class SnowflakeConnectionServiceV1 implements SnowflakeConnectionService
       throw SnowflakeErrors.ERROR_2016.getException(e);
     }
 
+    invalidateMetadata(ObjectType.TABLE, tableName);
     logColumn
         .insert(0, "Following columns' non-nullabilty was dropped for table {}:\n")
         .append("]");
@@ -574,6 +682,11 @@ public class SnowflakeConnectionServiceV1 implements SnowflakeConnectionService
 
   @Override
   public boolean isStageCompatible(final String stageName) {
+    return cached(
+        ObjectType.STAGE, stageName, "compatible", () -> queryStageCompatible(stageName));
+  }
+
+  private boolean queryStageCompatible(final String stageName) {
     checkConnection();
     InternalUtils.assertNotEmpty("stageName", stageName);
     if (!stageExist(stageName)) {
@@ -593,6 +706,28 @@ public class SnowflakeConnectionServiceV1 implements SnowflakeConnectionService
   @Override
   public boolean isPipeCompatible(
       final String tableName, final String stageName, final String pipeName) {
+    return isPipeCompatible(tableName, stageName, pipeName, SnowpipeFileFormat.JSON);
+  }
+
+  @Override
+  public boolean isPipeCompatible(
+      final String tableName,
+      final String stageName,
+      final String pipeName,
+      final SnowpipeFileFormat fileFormat) {
+    // compatibility depends on the definition the pipe is expected to have
+    return cached(
+        ObjectType.PIPE,
+        pipeName,
+        "compatible/" + pipeDefinition(tableName, stageName, fileFormat),
+        () -> queryPipeCompatible(tableName, stageName, pipeName, fileFormat));
+  }
+
+  private boolean queryPipeCompatible(
+      final String tableName,
+      final String stageName,
+      final String pipeName,
+      final SnowpipeFileFormat fileFormat) {
     checkConnection();
     InternalUtils.assertNotEmpty("tableName", tableName);
     InternalUtils.assertNotEmpty("stageName", stageName);
@@ -602,35 +737,23 @@ public class SnowflakeConnectionServiceV1 implements SnowflakeConnectionService
     }
 
     String query = "desc pipe identifier(?)";
-    PreparedStatement stmt = null;
-    ResultSet result = null;
     boolean compatible;
-    try {
-      stmt = conn.prepareStatement(query);
+    try (Lease lease = connectionPool.acquire(OperationClass.METADATA);
+        PreparedStatement stmt = lease.getConnection().prepareStatement(query)) {
       stmt.setString(1, pipeName);
-      result = stmt.executeQuery();
+      ResultSet result = stmt.executeQuery();
       if (!result.next()) {
         compatible = false;
       } else {
         String definition = result.getString("definition");
         LOGGER.debug("pipe {} definition: {}", pipeName, definition);
-        compatible = definition.equalsIgnoreCase(pipeDefinition(tableName, stageName));
+        compatible =
+            definition.equalsIgnoreCase(pipeDefinition(tableName, stageName, fileFormat));
       }
 
     } catch (SQLException e) {
       LOGGER.debug("pipe {} doesn't exists ", pipeName);
       compatible = false;
-    } finally {
-      try {
-        if (stmt != null) {
-          stmt.close();
-        }
-        if (result != null) {
-          result.close();
-        }
-      } catch (Exception e) {
-        e.printStackTrace();
-      }
     }
 
     return compatible;
@@ -640,8 +763,8 @@ public class SnowflakeConnectionServiceV1 implements SnowflakeConnectionService
   public void databaseExists(String databaseName) {
     checkConnection();
     String query = "use database identifier(?)";
-    try {
-      PreparedStatement stmt = conn.prepareStatement(query);
+    try (Lease lease = connectionPool.acquire(OperationClass.METADATA)) {
+      PreparedStatement stmt = lease.getConnection().prepareStatement(query);
       stmt.setString(1, databaseName);
       stmt.execute();
       stmt.close();
@@ -657,8 +780,8 @@ public class SnowflakeConnectionServiceV1 implements SnowflakeConnectionService
     checkConnection();
     String query = "use schema identifier(?)";
     boolean foundSchema = false;
-    try {
-      PreparedStatement stmt = conn.prepareStatement(query);
+    try (Lease lease = connectionPool.acquire(OperationClass.METADATA)) {
+      PreparedStatement stmt = lease.getConnection().prepareStatement(query);
       stmt.setString(1, schemaName);
       stmt.execute();
       stmt.close();
@@ -669,14 +792,37 @@ public class SnowflakeConnectionServiceV1 implements SnowflakeConnectionService
     LOGGER.info("schema {} exists", schemaName);
   }
 
+  @Override
+  public List<String> listPipes(final String namePrefix) {
+    checkConnection();
+    InternalUtils.assertNotEmpty("namePrefix", namePrefix);
+    // show does not take bind variables, '_' matches any character - filtered below
+    String query = "show pipes like '" + namePrefix.replace("'", "''") + "%'";
+    List<String> result = new ArrayList<>();
+    try (Lease lease = connectionPool.acquire(OperationClass.METADATA);
+        PreparedStatement stmt = lease.getConnection().prepareStatement(query);
+        ResultSet resultSet = stmt.executeQuery()) {
+      while (resultSet.next()) {
+        String pipeName = resultSet.getString("name").toUpperCase();
+        if (pipeName.startsWith(namePrefix.toUpperCase())) {
+          result.add(pipeName);
+        }
+      }
+    } catch (SQLException e) {
+      throw SnowflakeErrors.ERROR_2001.getException(e, this.telemetry);
+    }
+    LOGGER.info("found {} pipe(s) with prefix {}", result.size(), namePrefix);
+    return result;
+  }
+
   @Override
   public void dropPipe(final String pipeName) {
     checkConnection();
     InternalUtils.assertNotEmpty("pipeName", pipeName);
     String query = "drop pipe if exists identifier(?)";
 
-    try {
-      PreparedStatement stmt = conn.prepareStatement(query);
+    try (Lease lease = connectionPool.acquire(OperationClass.DDL)) {
+      PreparedStatement stmt = lease.getConnection().prepareStatement(query);
       stmt.setString(1, pipeName);
       stmt.execute();
       stmt.close();
@@ -684,6 +830,7 @@ public class SnowflakeConnectionServiceV1 implements SnowflakeConnectionService
       throw SnowflakeErrors.ERROR_2001.getException(e);
     }
 
+    invalidateMetadata(ObjectType.PIPE, pipeName);
     LOGGER.info("pipe {} dropped", pipeName);
   }
 
@@ -695,20 +842,19 @@ public class SnowflakeConnectionServiceV1 implements SnowflakeConnectionService
       return false;
     }
     String query = "list @" + stageName;
-    try {
-      PreparedStatement stmt = conn.prepareStatement(query);
-      ResultSet resultSet = stmt.executeQuery();
-      if (InternalUtils.resultSize(resultSet) == 0) {
-        dropStage(stageName);
-        stmt.close();
-        resultSet.close();
-        return true;
-      }
-      resultSet.close();
-      stmt.close();
+    boolean isEmpty;
+    try (Lease lease = connectionPool.acquire(OperationClass.STAGE_MAINTENANCE);
+        PreparedStatement stmt = lease.getConnection().prepareStatement(query);
+        ResultSet resultSet = stmt.executeQuery()) {
+      isEmpty = InternalUtils.resultSize(resultSet) == 0;
     } catch (SQLException e) {
       throw SnowflakeErrors.ERROR_2001.getException(e);
     }
+    // dropped once the session of the listing is handed back
+    if (isEmpty) {
+      dropStage(stageName);
+      return true;
+    }
     LOGGER.info("stage {} can't be dropped because it is not empty", stageName);
     return false;
   }
@@ -718,23 +864,22 @@ public class SnowflakeConnectionServiceV1 implements SnowflakeConnectionService
     checkConnection();
     InternalUtils.assertNotEmpty("stageName", stageName);
     String query = "drop stage if exists identifier(?)";
-    try {
-      PreparedStatement stmt = conn.prepareStatement(query);
+    try (Lease lease = connectionPool.acquire(OperationClass.DDL)) {
+      PreparedStatement stmt = lease.getConnection().prepareStatement(query);
       stmt.setString(1, stageName);
       stmt.execute();
       stmt.close();
     } catch (SQLException e) {
       throw SnowflakeErrors.ERROR_2001.getException(e);
     }
+    invalidateMetadata(ObjectType.STAGE, stageName);
     LOGGER.info("stage {} dropped", stageName);
   }
 
   @Override
   public void purgeStage(final String stageName, final List<String> files) {
     InternalUtils.assertNotEmpty("stageName", stageName);
-    for (String fileName : files) {
-      removeFile(stageName, fileName);
-    }
+    removeFiles(stageName, files);
     LOGGER.info("purge {} files from stage: {}", files.size(), stageName);
   }
 
@@ -743,30 +888,193 @@ public class SnowflakeConnectionServiceV1 implements SnowflakeConnectionService
       final String tableName, final String stageName, final List<String> files) {
     InternalUtils.assertNotEmpty("tableName", tableName);
     InternalUtils.assertNotEmpty("stageName", stageName);
-    SnowflakeConnectionV1 sfconn = (SnowflakeConnectionV1) conn;
+    if (files.isEmpty()) {
+      return;
+    }
 
-    for (String name : files) {
-      // get
-      InputStream file;
+    List<String> moved = new ArrayList<>(files.size());
+    RuntimeException failure = null;
+    try {
+      List<String> remaining = copyFilesToTableStage(tableName, stageName, files, moved);
+      streamFilesToTableStage(tableName, stageName, remaining, moved);
+    } catch (RuntimeException e) {
+      failure = e;
+      throw e;
+    } finally {
+      // Files which already made it to the table stage are removed even if some others failed,
+      // so they are not moved again by the next cleaner run.
       try {
-        file = sfconn.downloadStream(stageName, name, true);
-      } catch (Exception e) {
-        throw SnowflakeErrors.ERROR_2002.getException(e, this.telemetry);
+        removeFiles(stageName, moved);
+      } catch (RuntimeException e) {
+        if (failure == null) {
+          throw e;
+        }
+        // the failure of the move is the one thrown
+        failure.addSuppressed(e);
       }
-      // put
-      try {
-        sfconn.uploadStream(
-            "%" + tableName,
-            FileNameUtils.getPrefixFromFileName(name),
-            file,
-            FileNameUtils.removePrefixAndGZFromFileName(name),
-            true);
+    }
+    LOGGER.info(
+        "moved {} files from stage: {} to table stage: {}", moved.size(), stageName, tableName);
+  }
+
+  /**
+   * Copy files from the internal stage to the table stage on the server side with COPY FILES, so
+   * the file content never passes through the connector.
+   *
+   * @param tableName table name
+   * @param stageName stage name
+   * @param files files to be copied
+   * @param moved collects files successfully copied to the table stage
+   * @return files which could not be copied on the server side
+   */
+  private List<String> copyFilesToTableStage(
+      final String tableName,
+      final String stageName,
+      final List<String> files,
+      final List<String> moved) {
+    if (!serverSideCopyEnabled) {
+      return files;
+    }
+    List<List<String>> batches = Lists.partition(files, COPY_FILES_BATCH_SIZE);
+    for (int i = 0; i < batches.size(); i++) {
+      List<String> batch = batches.get(i);
+      String query =
+          "copy files into @%"
+              + tableName
+              + " from @"
+              + stageName
+              + " files = ("
+              + batch.stream().map(name -> "'" + name + "'").collect(Collectors.joining(","))
+              + ")";
+      try (Lease lease = connectionPool.acquire(OperationClass.STAGE_MAINTENANCE);
+          PreparedStatement stmt = lease.getConnection().prepareStatement(query)) {
+        stmt.execute();
       } catch (SQLException e) {
+        if (isServerSideCopyUnsupported(e)) {
+          serverSideCopyEnabled = false;
+        }
+        LOGGER.warn(
+            "Server side copy to table stage: {} failed, falling back to download and upload"
+                + " through the connector{}. Error: {}",
+            tableName,
+            serverSideCopyEnabled ? " for these files" : "",
+            e.getMessage());
+        List<String> remaining = new ArrayList<>();
+        batches.subList(i, batches.size()).forEach(remaining::addAll);
+        return remaining;
+      }
+      moved.addAll(batch);
+      LOGGER.debug(
+          "copied {} files from stage: {} to table stage: {}", batch.size(), stageName, tableName);
+    }
+    return new ArrayList<>();
+  }
+
+  /**
+   * @param e failure of a COPY FILES statement
+   * @return true if the server does not support the statement, false if it may succeed again
+   */
+  @VisibleForTesting
+  static boolean isServerSideCopyUnsupported(SQLException e) {
+    return UNSUPPORTED_COPY_SQL_STATES.contains(e.getSQLState());
+  }
+
+  /**
+   * Move files from the internal stage to the table stage through the connector, running up to
+   * {@link #MOVE_TO_TABLE_STAGE_THREADS} transfers concurrently. Each download stream is handed
+   * directly to the upload, so files are never fully buffered in memory by the connector.
+   *
+   * @param tableName table name
+   * @param stageName stage name
+   * @param files files to be moved
+   * @param moved collects files successfully uploaded to the table stage
+   */
+  private void streamFilesToTableStage(
+      final String tableName,
+      final String stageName,
+      final List<String> files,
+      final List<String> moved) {
+    if (files.isEmpty()) {
+      return;
+    }
+    ExecutorService executor = moveToTableStageExecutor();
+    List<Future<?>> transfers = new ArrayList<>(files.size());
+    for (String name : files) {
+      transfers.add(executor.submit(() -> streamFileToTableStage(tableName, stageName, name)));
+    }
+
+    // wait for every transfer so we know exactly which files are safe to remove
+    RuntimeException failure = null;
+    for (int i = 0; i < transfers.size(); i++) {
+      try {
+        transfers.get(i).get();
+        moved.add(files.get(i));
+      } catch (ExecutionException e) {
+        if (failure == null) {
+          failure =
+              e.getCause() instanceof RuntimeException
+                  ? (RuntimeException) e.getCause()
+                  : SnowflakeErrors.ERROR_2003.getException(e, this.telemetry);
+        }
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        transfers.forEach(transfer -> transfer.cancel(true));
         throw SnowflakeErrors.ERROR_2003.getException(e, this.telemetry);
       }
-      LOGGER.info("moved file: {} from stage: {} to table stage: {}", name, stageName, tableName);
-      // remove
-      removeFile(stageName, name);
+    }
+    if (failure != null) {
+      throw failure;
+    }
+  }
+
+  private void streamFileToTableStage(
+      final String tableName, final String stageName, final String name) {
+    try (Lease lease = connectionPool.acquire(OperationClass.STAGE_MAINTENANCE)) {
+      streamFileToTableStage(
+          (SnowflakeConnectionV1) lease.getConnection(), tableName, stageName, name, telemetry);
+    } catch (SQLException e) {
+      throw SnowflakeErrors.ERROR_2002.getException(e, this.telemetry);
+    }
+    LOGGER.info("moved file: {} from stage: {} to table stage: {}", name, stageName, tableName);
+  }
+
+  /**
+   * Pipe the download stream of a staged file into its upload to the table stage. gzip files are
+   * compressed by the JDBC driver, which decompresses them on download and compresses them again on
+   * upload. Files compressed by the connector, like zstd ones, are moved as they are.
+   *
+   * @param sfconn connection used for both transfers
+   * @param tableName table name
+   * @param stageName stage name
+   * @param name file to be moved
+   * @param telemetry telemetry service, can be null
+   */
+  @VisibleForTesting
+  static void streamFileToTableStage(
+      final SnowflakeConnectionV1 sfconn,
+      final String tableName,
+      final String stageName,
+      final String name,
+      @Nullable final SnowflakeTelemetryService telemetry) {
+    boolean compressedByDriver =
+        StagedFileCompression.fromFileName(name) == StagedFileCompression.GZIP;
+    // get
+    InputStream file;
+    try {
+      file = sfconn.downloadStream(stageName, name, compressedByDriver);
+    } catch (Exception e) {
+      throw SnowflakeErrors.ERROR_2002.getException(e, telemetry);
+    }
+    // put
+    try (InputStream input = file) {
+      sfconn.uploadStream(
+          "%" + tableName,
+          FileNameUtils.getPrefixFromFileName(name),
+          input,
+          FileNameUtils.removePrefixAndGZFromFileName(name),
+          compressedByDriver);
+    } catch (SQLException | IOException e) {
+      throw SnowflakeErrors.ERROR_2003.getException(e, telemetry);
     }
   }
 
@@ -782,6 +1090,28 @@ public class SnowflakeConnectionServiceV1 implements SnowflakeConnectionService
   @Override
   public List<String> listStage(
       final String stageName, final String prefix, final boolean isTableStage) {
+    List<String> result = new ArrayList<>();
+    listStage(stageName, prefix, isTableStage, result::add);
+    LOGGER.info("list stage {} retrieved {} file names", stageName, result.size());
+    return result;
+  }
+
+  @Override
+  public List<String> listStage(final String stageName, final String prefix) {
+    return listStage(stageName, prefix, false);
+  }
+
+  @Override
+  public void listStage(
+      final String stageName, final String prefix, final Consumer<String> fileNameConsumer) {
+    listStage(stageName, prefix, false, fileNameConsumer);
+  }
+
+  private void listStage(
+      final String stageName,
+      final String prefix,
+      final boolean isTableStage,
+      final Consumer<String> fileNameConsumer) {
     InternalUtils.assertNotEmpty("stageName", stageName);
     String query;
     int stageNameLength;
@@ -792,27 +1122,16 @@ public class SnowflakeConnectionServiceV1 implements SnowflakeConnectionService
       stageNameLength = stageName.length() + 1; // stage name + '/'
       query = "ls @" + stageName + "/" + prefix;
     }
-    List<String> result;
-    try {
-      PreparedStatement stmt = conn.prepareStatement(query);
-      ResultSet resultSet = stmt.executeQuery();
-
-      result = new LinkedList<>();
+    try (Lease lease = connectionPool.acquire(OperationClass.STAGE_MAINTENANCE);
+        PreparedStatement stmt = lease.getConnection().prepareStatement(query);
+        ResultSet resultSet = stmt.executeQuery()) {
+      // rows are consumed while the result chunks are downloaded, ls has no pagination
       while (resultSet.next()) {
-        result.add(resultSet.getString("name").substring(stageNameLength));
+        fileNameConsumer.accept(resultSet.getString("name").substring(stageNameLength));
       }
-      stmt.close();
-      resultSet.close();
     } catch (SQLException e) {
       throw SnowflakeErrors.ERROR_2001.getException(e, this.telemetry);
     }
-    LOGGER.info("list stage {} retrieved {} file names", stageName, result.size());
-    return result;
-  }
-
-  @Override
-  public List<String> listStage(final String stageName, final String prefix) {
-    return listStage(stageName, prefix, false);
   }
 
   @Override
@@ -820,19 +1139,21 @@ public class SnowflakeConnectionServiceV1 implements SnowflakeConnectionService
   // Only using it in test for performance testing
   public void put(final String stageName, final String fileName, final String content) {
     InternalUtils.assertNotEmpty("stageName", stageName);
-    SnowflakeConnectionV1 sfconn = (SnowflakeConnectionV1) conn;
     InputStream input = new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8));
     try {
       InternalUtils.backoffAndRetry(
           telemetry,
           SnowflakeInternalOperations.UPLOAD_FILE_TO_INTERNAL_STAGE,
           () -> {
-            sfconn.uploadStream(
-                stageName,
-                FileNameUtils.getPrefixFromFileName(fileName),
-                input,
-                FileNameUtils.removePrefixAndGZFromFileName(fileName),
-                true);
+            try (Lease lease = connectionPool.acquire(OperationClass.STAGE_MAINTENANCE)) {
+              ((SnowflakeConnectionV1) lease.getConnection())
+                  .uploadStream(
+                      stageName,
+                      FileNameUtils.getPrefixFromFileName(fileName),
+                      input,
+                      FileNameUtils.removePrefixAndGZFromFileName(fileName),
+                      true);
+            }
             return true;
           });
     } catch (Exception e) {
@@ -866,10 +1187,83 @@ public class SnowflakeConnectionServiceV1 implements SnowflakeConnectionService
     }
   }
 
+  @Override
+  public void putWithCache(final String stageName, final String fileName, final Path localFile) {
+    if (stageType == null) {
+      stageType = internalStage.getStageType(stageName);
+    }
+    try {
+      InternalUtils.backoffAndRetry(
+          telemetry,
+          SnowflakeInternalOperations.UPLOAD_FILE_TO_INTERNAL_STAGE_NO_CONNECTION,
+          () -> {
+            internalStage.putWithCache(stageName, fileName, localFile, stageType);
+            return true;
+          });
+    } catch (Exception e) {
+      LOGGER.error(
+          "Put With Cache(uploadWithoutConnection) failed after multiple retries for stageName:{},"
+              + " stageType:{}, fullFilePath:{}, localFile:{}",
+          stageName,
+          stageType,
+          fileName,
+          localFile);
+      throw SnowflakeErrors.ERROR_2011.getException(e, this.telemetry);
+    }
+  }
+
+  @Override
+  public void putWithCache(final String stageName, final String fileName, final byte[] content) {
+    if (stageType == null) {
+      stageType = internalStage.getStageType(stageName);
+    }
+    try {
+      InternalUtils.backoffAndRetry(
+          telemetry,
+          SnowflakeInternalOperations.UPLOAD_FILE_TO_INTERNAL_STAGE_NO_CONNECTION,
+          () -> {
+            internalStage.putWithCache(stageName, fileName, content, stageType);
+            return true;
+          });
+    } catch (Exception e) {
+      LOGGER.error(
+          "Put With Cache(uploadWithoutConnection) failed after multiple retries for stageName:{},"
+              + " stageType:{}, fullFilePath:{}",
+          stageName,
+          stageType,
+          fileName);
+      throw SnowflakeErrors.ERROR_2011.getException(e, this.telemetry);
+    }
+  }
+
+  @Override
+  public void putCompressedWithCache(
+      final String stageName, final String fileName, final byte[] compressedContent) {
+    if (stageType == null) {
+      stageType = internalStage.getStageType(stageName);
+    }
+    try {
+      InternalUtils.backoffAndRetry(
+          telemetry,
+          SnowflakeInternalOperations.UPLOAD_FILE_TO_INTERNAL_STAGE_NO_CONNECTION,
+          () -> {
+            internalStage.putCompressedWithCache(stageName, fileName, compressedContent, stageType);
+            return true;
+          });
+    } catch (Exception e) {
+      LOGGER.error(
+          "Put With Cache(uploadWithoutConnection) failed after multiple retries for stageName:{},"
+              + " stageType:{}, fullFilePath:{}",
+          stageName,
+          stageType,
+          fileName);
+      throw SnowflakeErrors.ERROR_2011.getException(e, this.telemetry);
+    }
+  }
+
   @Override
   public void putToTableStage(final String tableName, final String fileName, final byte[] content) {
     InternalUtils.assertNotEmpty("tableName", tableName);
-    SnowflakeConnectionV1 sfconn = (SnowflakeConnectionV1) conn;
     InputStream input = new ByteArrayInputStream(content);
 
     try {
@@ -877,12 +1271,15 @@ public class SnowflakeConnectionServiceV1 implements SnowflakeConnectionService
           telemetry,
           SnowflakeInternalOperations.UPLOAD_FILE_TO_TABLE_STAGE,
           () -> {
-            sfconn.uploadStream(
-                "%" + tableName,
-                FileNameUtils.getPrefixFromFileName(fileName),
-                input,
-                FileNameUtils.removePrefixAndGZFromFileName(fileName),
-                true);
+            try (Lease lease = connectionPool.acquire(OperationClass.STAGE_MAINTENANCE)) {
+              ((SnowflakeConnectionV1) lease.getConnection())
+                  .uploadStream(
+                      "%" + tableName,
+                      FileNameUtils.getPrefixFromFileName(fileName),
+                      input,
+                      FileNameUtils.removePrefixAndGZFromFileName(fileName),
+                      true);
+            }
             return true;
           });
     } catch (Exception e) {
@@ -898,7 +1295,18 @@ public class SnowflakeConnectionServiceV1 implements SnowflakeConnectionService
 
   @Override
   public void close() {
+    synchronized (this) {
+      moveToTableStageExecutorClosed = true;
+      if (moveToTableStageExecutor != null) {
+        moveToTableStageExecutor.shutdownNow();
+      }
+    }
+    if (connectionPoolMetricsReporter != null) {
+      connectionPoolMetricsReporter.removeMetricsFromRegistry("task-" + this.taskID);
+    }
     try {
+      connectionPool.close();
+      // usually closed with the pool already, unless it was still checked out
       conn.close();
     } catch (SQLException e) {
       throw SnowflakeErrors.ERROR_2005.getException(e, this.telemetry);
@@ -909,11 +1317,8 @@ public class SnowflakeConnectionServiceV1 implements SnowflakeConnectionService
 
   @Override
   public boolean isClosed() {
-    try {
-      return conn.isClosed();
-    } catch (SQLException e) {
-      throw SnowflakeErrors.ERROR_2006.getException(e, this.telemetry);
-    }
+    // the first session may have been replaced by the pool, only the pool tells whether it is open
+    return connectionPool.isClosed();
   }
 
   @Override
@@ -954,12 +1359,8 @@ public class SnowflakeConnectionServiceV1 implements SnowflakeConnectionService
 
   /** make sure connection is not closed */
   private void checkConnection() {
-    try {
-      if (conn.isClosed()) {
-        throw SnowflakeErrors.ERROR_1003.getException();
-      }
-    } catch (SQLException e) {
-      throw SnowflakeErrors.ERROR_1003.getException(e, this.telemetry);
+    if (connectionPool.isClosed()) {
+      throw SnowflakeErrors.ERROR_1003.getException();
     }
   }
 
@@ -970,13 +1371,18 @@ public class SnowflakeConnectionServiceV1 implements SnowflakeConnectionService
    * @param stageName stage name
    * @return pipe definition string
    */
-  private String pipeDefinition(String tableName, String stageName) {
+  private String pipeDefinition(
+      String tableName, String stageName, SnowpipeFileFormat fileFormat) {
     return "copy into "
         + tableName
-        + "(RECORD_METADATA, RECORD_CONTENT) from (select $1:meta, $1:content from"
+        + "(RECORD_METADATA, RECORD_CONTENT) from (select "
+        + fileFormat.getCopySelect()
+        + " from"
         + " @"
         + stageName
-        + " t) file_format = (type = 'json')";
+        + " t) file_format = ("
+        + fileFormat.getFileFormatOptions()
+        + ")";
   }
 
   /**
@@ -994,9 +1400,10 @@ public class SnowflakeConnectionServiceV1 implements SnowflakeConnectionService
           telemetry,
           SnowflakeInternalOperations.REMOVE_FILE_FROM_INTERNAL_STAGE,
           () -> {
-            PreparedStatement stmt = conn.prepareStatement(query);
-            stmt.execute();
-            stmt.close();
+            try (Lease lease = connectionPool.acquire(OperationClass.STAGE_MAINTENANCE);
+                PreparedStatement stmt = lease.getConnection().prepareStatement(query)) {
+              stmt.execute();
+            }
             return true;
           });
     } catch (Exception e) {
@@ -1005,6 +1412,67 @@ public class SnowflakeConnectionServiceV1 implements SnowflakeConnectionService
     LOGGER.debug("deleted {} from stage {}", fileName, stageName);
   }
 
+  /**
+   * Remove files from given stage, batching files which share a prefix into a single REMOVE
+   * statement with a PATTERN matching their names.
+   *
+   * @param stageName stage name
+   * @param files file names
+   */
+  private void removeFiles(String stageName, List<String> files) {
+    InternalUtils.assertNotEmpty("stageName", stageName);
+    Map<String, List<String>> filesByPrefix = new LinkedHashMap<>();
+    for (String fileName : files) {
+      String prefix = FileNameUtils.getPrefixFromFileName(fileName);
+      String name = prefix == null ? fileName : fileName.substring(prefix.length() + 1);
+      if (BATCH_REMOVABLE_FILE_NAME.matcher(name).matches()) {
+        filesByPrefix
+            .computeIfAbsent(prefix == null ? "" : prefix, k -> new ArrayList<>())
+            .add(name);
+      } else {
+        removeFile(stageName, fileName);
+      }
+    }
+
+    for (Map.Entry<String, List<String>> entry : filesByPrefix.entrySet()) {
+      String location =
+          entry.getKey().isEmpty() ? "@" + stageName : "@" + stageName + "/" + entry.getKey();
+      for (List<String> batch : Lists.partition(entry.getValue(), REMOVE_FILES_BATCH_SIZE)) {
+        String query = "rm " + location + " pattern = '" + removeFilesPattern(batch) + "'";
+        try {
+          InternalUtils.backoffAndRetry(
+              telemetry,
+              SnowflakeInternalOperations.REMOVE_FILE_FROM_INTERNAL_STAGE,
+              () -> {
+                try (Lease lease = connectionPool.acquire(OperationClass.STAGE_MAINTENANCE);
+                    PreparedStatement stmt = lease.getConnection().prepareStatement(query)) {
+                  stmt.execute();
+                }
+                return true;
+              });
+        } catch (Exception e) {
+          throw SnowflakeErrors.ERROR_2001.getException(e, this.telemetry);
+        }
+        LOGGER.debug("deleted {} files from {}", batch.size(), location);
+      }
+    }
+  }
+
+  /**
+   * Build the REMOVE pattern matching exactly the given file names, as a SQL string literal body.
+   * Names must only contain characters accepted by {@link #BATCH_REMOVABLE_FILE_NAME}.
+   *
+   * @param names file names without prefix
+   * @return pattern string
+   */
+  @VisibleForTesting
+  static String removeFilesPattern(List<String> names) {
+    // the pattern has to match the whole path, which may or may not include the stage name
+    return names.stream()
+        .map(name -> name.replace(".", "\\\\."))
+        .collect(Collectors.joining("|", "(.*/)?(", ")"));
+  }
+
   @Override
   public Connection getConnection() {
     return this.conn;
@@ -1028,8 +1496,8 @@ public class SnowflakeConnectionServiceV1 implements SnowflakeConnectionService
             + tableName;
     String query = "select SYSTEM$SNOWPIPE_STREAMING_MIGRATE_CHANNEL_OFFSET_TOKEN((?), (?), (?));";
 
-    try {
-      PreparedStatement stmt = conn.prepareStatement(query);
+    try (Lease lease = connectionPool.acquire(OperationClass.DDL)) {
+      PreparedStatement stmt = lease.getConnection().prepareStatement(query);
       stmt.setString(1, fullyQualifiedTableName);
       stmt.setString(2, sourceChannelName);
       stmt.setString(3, destinationChannelName);
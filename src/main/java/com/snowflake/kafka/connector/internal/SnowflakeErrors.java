@@ -136,6 +136,11 @@ public enum SnowflakeErrors {
       String.format(
           "Failed to parse %s map",
           SnowflakeSinkConnectorConfig.SNOWPIPE_STREAMING_CLIENT_PROVIDER_OVERRIDE_MAP)),
+  ERROR_0031(
+      "0031",
+      "Zstandard compression is not available",
+      SnowflakeSinkConnectorConfig.SNOWPIPE_COMPRESSION
+          + " zstd requires the zstd-jni library, shipped with Kafka, on the worker classpath"),
 
   // Snowflake connection issues 1---
   ERROR_1001(
@@ -317,7 +322,19 @@ public enum SnowflakeErrors {
       "5024",
       "Timeout while waiting for file cleaner to start",
       "Could not allocate thread for file cleaner to start processing in given time. If problem"
-          + " persists, please try setting snowflake.snowpipe.use_new_cleaner to false");
+          + " persists, please try setting snowflake.snowpipe.use_new_cleaner to false"),
+  ERROR_5025(
+      "5025",
+      "Failed to spill buffer to local disk",
+      "Could not write buffered records to the spill directory. Make sure the directory configured"
+          + " in snowflake.snowpipe.buffer.spill.directory exists, is writable and has enough free"
+          + " space"),
+  ERROR_5026(
+      "5026",
+      "Failed to stage record as Avro",
+      "snowflake.snowpipe.fileFormat avro requires SnowflakeAvroConverter with avro.passthrough"
+          + " enabled as value converter"),
+  ERROR_5027("5027", "Failed to compress staged file", "Zstandard compression failed");
 
   // properties
 
@@ -1,20 +1,30 @@
 package com.snowflake.kafka.connector.internal;
 
 import com.google.common.annotations.VisibleForTesting;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import java.io.BufferedInputStream;
 import java.io.ByteArrayInputStream;
+import java.io.IOException;
 import java.io.InputStream;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.SQLException;
 import java.util.Optional;
 import java.util.Properties;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 import net.snowflake.client.core.OCSPMode;
 import net.snowflake.client.core.SFStatement;
 import net.snowflake.client.jdbc.SnowflakeConnectionV1;
 import net.snowflake.client.jdbc.SnowflakeFileTransferAgent;
 import net.snowflake.client.jdbc.SnowflakeFileTransferConfig;
 import net.snowflake.client.jdbc.SnowflakeFileTransferMetadataV1;
-import net.snowflake.client.jdbc.SnowflakeSQLException;
 import net.snowflake.client.jdbc.cloud.storage.StageInfo;
 import net.snowflake.client.jdbc.internal.apache.commons.io.FilenameUtils;
 
@@ -22,10 +32,14 @@ import net.snowflake.client.jdbc.internal.apache.commons.io.FilenameUtils;
  * Implementation of put API through JDBC's API uploadWithoutConnection.
  *
  * <p>We fetch the credentials and cache it for AWS and Azure. We will refresh if cache hits 30 mins
- * (Cache Eviction)
+ * (Cache Eviction). Credentials are refreshed in the background once they reach {@link
+ * #REFRESH_AHEAD_RATIO} of that age, so uploads only wait for a refresh after a failure or a long
+ * idle time.
  *
- * <p>For GCS, we dont have any cache, we will make a call to GS for every put API since we require
- * presignedURL
+ * <p>For GCS, presigned URLs are bound to a single file, so we make a call to GS for every put API.
+ * They can't be fetched ahead either, file names hold the offsets and time of their flush. When
+ * the account hands out downscoped credentials instead, they are cached and refreshed like for AWS
+ * and Azure, per stage directory since their location includes the directory.
  */
 public class SnowflakeInternalStage {
 
@@ -40,11 +54,17 @@ public class SnowflakeInternalStage {
     /* StageType, can be fetched from fileTransferMetadata */
     private final StageInfo.StageType stageType;
 
+    /* Whether the metadata can be used for more than one file, false for GCS presigned URLs */
+    private final boolean reusable;
+
     SnowflakeMetadataWithExpiration(
         SnowflakeFileTransferMetadataV1 fileTransferMetadata, long timestamp) {
       this.fileTransferMetadata = fileTransferMetadata;
       this.timestampLastCredentialFetchMillis = timestamp;
       this.stageType = this.fileTransferMetadata.getStageInfo().getStageType();
+      String presignedUrl = fileTransferMetadata.getPresignedUrl();
+      this.reusable =
+          stageType != StageInfo.StageType.GCS || presignedUrl == null || presignedUrl.isEmpty();
     }
 
     public StageInfo.StageType getStageType() {
@@ -52,12 +72,25 @@ public class SnowflakeInternalStage {
     }
   }
 
+  // share of the credential expiration time after which credentials are refreshed in background
+  static final double REFRESH_AHEAD_RATIO = 0.8;
+
   private final KCLogger LOGGER = new KCLogger(SnowflakeInternalStage.class.getName());
 
   // Any operation on the map should be atomic
+  // Keyed by stage name, and by stage directory for GCS, see cacheKey
   private final ConcurrentMap<String, SnowflakeMetadataWithExpiration> storageInfoCache =
       new ConcurrentHashMap<>();
 
+  private final ConcurrentMap<String, StageInfo.StageType> stageTypeCache =
+      new ConcurrentHashMap<>();
+
+  // cache keys with a background refresh in progress
+  private final Set<String> refreshesInProgress = ConcurrentHashMap.newKeySet();
+
+  // runs the refreshes ahead of expiration, its thread goes away when idle
+  private final ThreadPoolExecutor refreshExecutor;
+
   // GCS Put version requires the dummy command to have filename and entire filePath including
   // stageName after "@"
   // For example: PUT file:///fileName @stageName/app/table/partition
@@ -71,7 +104,8 @@ public class SnowflakeInternalStage {
   // This will work on all three clouds since we only care about fetching stageType
   public static String dummyPutCommandToGetStageType = "PUT file:///tmp/dummyFileName @%s";
 
-  private final SnowflakeConnectionV1 conn;
+  // stage type and credential fetches check a session out of the pool
+  private final SnowflakeConnectionPool connectionPool;
   private final long expirationTimeMillis;
   // Proxy parameters that we set while calling the snowflake JDBC.
   // Also required to pass in the uploadWithoutConnection API in the SnowflakeFileTransferConfig
@@ -80,9 +114,28 @@ public class SnowflakeInternalStage {
 
   public SnowflakeInternalStage(
       SnowflakeConnectionV1 conn, long expirationTimeMillis, Properties proxyProperties) {
-    this.conn = conn;
+    this(new SnowflakeConnectionPool(conn), expirationTimeMillis, proxyProperties);
+  }
+
+  SnowflakeInternalStage(
+      SnowflakeConnectionPool connectionPool,
+      long expirationTimeMillis,
+      Properties proxyProperties) {
+    this.connectionPool = connectionPool;
     this.expirationTimeMillis = expirationTimeMillis;
     this.proxyProperties = proxyProperties;
+    this.refreshExecutor =
+        new ThreadPoolExecutor(
+            1,
+            1,
+            1,
+            TimeUnit.MINUTES,
+            new LinkedBlockingQueue<>(),
+            new ThreadFactoryBuilder()
+                .setNameFormat("snowflake-stage-credential-refresh-%d")
+                .setDaemon(true)
+                .build());
+    this.refreshExecutor.allowCoreThreadTimeOut(true);
   }
 
   /**
@@ -99,12 +152,16 @@ public class SnowflakeInternalStage {
       return existingStageTypeFromCache.get();
     }
     // Lets try to fetch the stageType by making a GS call.
-    try {
+    try (SnowflakeConnectionPool.Lease lease =
+        connectionPool.acquire(SnowflakeConnectionPool.OperationClass.CREDENTIAL)) {
+      SnowflakeConnectionV1 conn = (SnowflakeConnectionV1) lease.getConnection();
       String command = String.format(dummyPutCommandToGetStageType, stageName);
       SnowflakeFileTransferAgent agent =
           new SnowflakeFileTransferAgent(
               command, conn.getSfSession(), new SFStatement(conn.getSfSession()));
-      return agent.getStageInfo().getStageType();
+      StageInfo.StageType stageType = agent.getStageInfo().getStageType();
+      stageTypeCache.put(stageName, stageType);
+      return stageType;
     } catch (Exception e) {
       throw SnowflakeErrors.ERROR_5019.getException(e);
     }
@@ -118,16 +175,13 @@ public class SnowflakeInternalStage {
    * @return stage if present in cache
    */
   private Optional<StageInfo.StageType> getStageTypeFromCache(final String stageName) {
-    if (storageInfoCache.containsKey(stageName)) {
-      return Optional.of(storageInfoCache.get(stageName).getStageType());
-    }
-    return Optional.empty();
+    return Optional.ofNullable(stageTypeCache.get(stageName));
   }
 
   /**
    * Upload file to internal stage with previously cached credentials. Refresh credential every 30
-   * minutes for AWS and Azure. We do cache for GCS but we always refresh it for every put(every
-   * file upload)
+   * minutes for AWS and Azure, ahead of time in the background. We do cache for GCS but we always
+   * refresh it for every put(every file upload), unless the credentials are downscoped
    *
    * <p>If we pass in expired credentials, we will get expired credentials error from cloud.
    *
@@ -141,16 +195,78 @@ public class SnowflakeInternalStage {
    */
   public void putWithCache(
       String stageName, String fullFilePath, String data, final StageInfo.StageType stageType) {
+    putWithCache(stageName, fullFilePath, data.getBytes(StandardCharsets.UTF_8), stageType);
+  }
+
+  /**
+   * Same as {@link #putWithCache(String, String, String, StageInfo.StageType)}, for binary data.
+   *
+   * @param stageName Stage name
+   * @param fullFilePath Full file name to be uploaded
+   * @param data (uncompressed) data to be uploaded
+   * @param stageType GCS, Azure or AWS
+   */
+  public void putWithCache(
+      String stageName, String fullFilePath, byte[] data, final StageInfo.StageType stageType) {
+    putWithCache(stageName, fullFilePath, () -> new ByteArrayInputStream(data), true, stageType);
+  }
+
+  /**
+   * Same as {@link #putWithCache(String, String, byte[], StageInfo.StageType)}, for data already
+   * compressed by the caller. The data is uploaded as is.
+   *
+   * @param stageName Stage name
+   * @param fullFilePath Full file name to be uploaded, its extension names the compression
+   * @param compressedData compressed data to be uploaded
+   * @param stageType GCS, Azure or AWS
+   */
+  public void putCompressedWithCache(
+      String stageName,
+      String fullFilePath,
+      byte[] compressedData,
+      final StageInfo.StageType stageType) {
+    putWithCache(
+        stageName, fullFilePath, () -> new ByteArrayInputStream(compressedData), false, stageType);
+  }
+
+  /**
+   * Same as {@link #putWithCache(String, String, String, StageInfo.StageType)}, but the data is
+   * streamed from a local file, so it never has to be loaded onto the heap.
+   *
+   * @param stageName Stage name
+   * @param fullFilePath Full file name to be uploaded
+   * @param localFile local file holding the (uncompressed) data to be uploaded
+   * @param stageType GCS, Azure or AWS
+   */
+  public void putWithCache(
+      String stageName, String fullFilePath, Path localFile, final StageInfo.StageType stageType) {
+    putWithCache(
+        stageName,
+        fullFilePath,
+        () -> new BufferedInputStream(Files.newInputStream(localFile)),
+        true,
+        stageType);
+  }
+
+  private void putWithCache(
+      String stageName,
+      String fullFilePath,
+      UploadSource source,
+      boolean requireCompress,
+      final StageInfo.StageType stageType) {
+    String cacheKey = cacheKey(stageName, stageType, fullFilePath);
     try {
-      SnowflakeMetadataWithExpiration credential = storageInfoCache.getOrDefault(stageName, null);
+      SnowflakeMetadataWithExpiration credential = storageInfoCache.getOrDefault(cacheKey, null);
 
-      if (!isCredentialValid(credential, stageType)) {
-        // This should always be executed in GCS
+      if (!isCredentialValid(credential)) {
+        // This should always be executed in GCS with presigned URLs
         LOGGER.debug(
             "Query credential(Refreshing Credentials) for stageName:{}, filePath:{}",
             stageName,
             fullFilePath);
         refreshCredentials(stageName, stageType, fullFilePath);
+      } else if (isRefreshDue(credential)) {
+        refreshAhead(cacheKey, stageName, stageType, fullFilePath);
       }
     } catch (Exception e) {
       LOGGER.warn(
@@ -161,23 +277,20 @@ public class SnowflakeInternalStage {
     // Lets fetch the file transfer metadata from cache again. (Because we might have refreshed
     // them)
     SnowflakeFileTransferMetadataV1 fileTransferMetadata =
-        storageInfoCache.get(stageName).fileTransferMetadata;
+        storageInfoCache.get(cacheKey).fileTransferMetadata;
     // Set filename to be uploaded
     // This set is not useful in GCS since there is a bug in JDBC which doesnt use destFileName.
     // TODO: https://snowflakecomputing.atlassian.net/browse/SNOW-350676
     fileTransferMetadata.setPresignedUrlFileName(fullFilePath);
 
-    byte[] dataBytes = data.getBytes(StandardCharsets.UTF_8);
-    InputStream inStream = new ByteArrayInputStream(dataBytes);
-
     // This uploadWithoutConnection api cannot handle expired credentials very well.
     // Need to prevent passing expired credential to it.
-    try {
+    try (InputStream inStream = source.open()) {
       SnowflakeFileTransferAgent.uploadWithoutConnection(
           SnowflakeFileTransferConfig.Builder.newInstance()
               .setSnowflakeFileTransferMetadata(fileTransferMetadata)
               .setUploadStream(inStream)
-              .setRequireCompress(true)
+              .setRequireCompress(requireCompress)
               // Setting a destinationFileName is a no-op for AWS and Azure since it still uses
               // presignedUrlFileName
               // Setting destFileName is useful for GCS and downscope URL
@@ -198,46 +311,100 @@ public class SnowflakeInternalStage {
           e.getMessage(),
           fullFilePath,
           stageType);
-      storageInfoCache.remove(stageName);
+      storageInfoCache.remove(cacheKey);
       throw SnowflakeErrors.ERROR_5018.getException(e.getMessage());
     }
   }
 
+  /** Opens a fresh stream over the data to upload, so every retry starts from the beginning */
+  @FunctionalInterface
+  private interface UploadSource {
+    InputStream open() throws IOException;
+  }
+
   /**
    * Check if credentials are valid before calling uploadWithoutConnection API. Valid if they are
-   * not null and last fetch time was within {@link #expirationTimeMillis} For GCS, this will be
-   * false and we always refresh the credentials.
+   * not null and last fetch time was within {@link #expirationTimeMillis} For GCS presigned URLs,
+   * this will be false and we always refresh the credentials.
    *
    * @param credential to check the validity for
-   * @param stageType stageType of the stage fetched from JDBC and at least one GS call
-   * @return true if we can reuse the credentials, false in case of GCS
+   * @return true if we can reuse the credentials, false in case of GCS presigned URLs
    */
-  private boolean isCredentialValid(
-      SnowflakeMetadataWithExpiration credential, final StageInfo.StageType stageType) {
-
-    if (stageType == StageInfo.StageType.GCS) {
-      return false;
-    }
-    // Key is cached and not expired
+  private boolean isCredentialValid(SnowflakeMetadataWithExpiration credential) {
+    // Key is cached, reusable and not expired
     return credential != null
+        && credential.reusable
         && System.currentTimeMillis() - credential.timestampLastCredentialFetchMillis
             < expirationTimeMillis;
   }
 
+  private boolean isRefreshDue(SnowflakeMetadataWithExpiration credential) {
+    return System.currentTimeMillis() - credential.timestampLastCredentialFetchMillis
+        >= expirationTimeMillis * REFRESH_AHEAD_RATIO;
+  }
+
+  /**
+   * Refresh still valid credentials in the background, the upload goes on with the current ones. A
+   * failed refresh is only logged, credentials are refreshed on upload once they expire.
+   */
+  private void refreshAhead(
+      String cacheKey,
+      final String stageName,
+      final StageInfo.StageType stageType,
+      final String fullFilePath) {
+    if (!refreshesInProgress.add(cacheKey)) {
+      return;
+    }
+    try {
+      refreshExecutor.execute(
+          () -> {
+            try {
+              refreshCredentials(stageName, stageType, fullFilePath);
+            } catch (Exception e) {
+              LOGGER.warn(
+                  "Failed to refresh credentials ahead of expiration for stageName:{}, {}",
+                  stageName,
+                  e.getMessage());
+            } finally {
+              refreshesInProgress.remove(cacheKey);
+            }
+          });
+    } catch (RejectedExecutionException e) {
+      refreshesInProgress.remove(cacheKey);
+    }
+  }
+
+  /**
+   * Key of the credentials used to upload given file. Downscoped GCS credentials are scoped to the
+   * directory of the dummy put command they were fetched with.
+   */
+  private static String cacheKey(
+      final String stageName, final StageInfo.StageType stageType, final String fullFilePath) {
+    if (stageType == StageInfo.StageType.GCS) {
+      return stageName + "/" + FilenameUtils.getFullPathNoEndSeparator(fullFilePath);
+    }
+    return stageName;
+  }
+
   @VisibleForTesting
   protected void refreshCredentials(
       final String stageName, final StageInfo.StageType stageType, final String fullFilePath)
-      throws SnowflakeSQLException {
+      throws SQLException {
     String putCommandToFetchMetadata =
         getDummyPutCommandTemplateForFileTransferMetadata(stageName, stageType, fullFilePath);
 
-    // This should always be executed in GCS
-    SnowflakeFileTransferAgent agent =
-        new SnowflakeFileTransferAgent(
-            putCommandToFetchMetadata, conn.getSfSession(), new SFStatement(conn.getSfSession()));
-    // transfer metadata list must only have one element
-    SnowflakeFileTransferMetadataV1 fileTransferMetadata =
-        (SnowflakeFileTransferMetadataV1) agent.getFileTransferMetadatas().get(0);
+    SnowflakeFileTransferMetadataV1 fileTransferMetadata;
+    try (SnowflakeConnectionPool.Lease lease =
+        connectionPool.acquire(SnowflakeConnectionPool.OperationClass.CREDENTIAL)) {
+      SnowflakeConnectionV1 conn = (SnowflakeConnectionV1) lease.getConnection();
+      // This should always be executed in GCS
+      SnowflakeFileTransferAgent agent =
+          new SnowflakeFileTransferAgent(
+              putCommandToFetchMetadata, conn.getSfSession(), new SFStatement(conn.getSfSession()));
+      // transfer metadata list must only have one element
+      fileTransferMetadata =
+          (SnowflakeFileTransferMetadataV1) agent.getFileTransferMetadatas().get(0);
+    }
     if (fileTransferMetadata.getStageInfo().getStageType() == StageInfo.StageType.LOCAL_FS) {
       LOGGER.error(
           "StageName:{} is not a valid stageType:{}",
@@ -250,7 +417,8 @@ public class SnowflakeInternalStage {
           new SnowflakeMetadataWithExpiration(fileTransferMetadata, System.currentTimeMillis());
       // Caching it here since we require to fetch the credential(Metadata) in the caller function
       // again.
-      storageInfoCache.put(stageName, credential);
+      storageInfoCache.put(cacheKey(stageName, stageType, fullFilePath), credential);
+      stageTypeCache.put(stageName, credential.getStageType());
       LOGGER.debug("Caching credential successful for stage:{}", stageName);
     }
   }
@@ -6,6 +6,7 @@ import com.snowflake.kafka.connector.SnowflakeSinkConnectorConfig;
 import com.snowflake.kafka.connector.dlq.KafkaRecordErrorReporter;
 import com.snowflake.kafka.connector.records.SnowflakeMetadataConfig;
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.Map;
 import java.util.Optional;
 import org.apache.kafka.common.TopicPartition;
@@ -53,6 +54,20 @@ public interface SnowflakeSinkService {
    */
   long getOffset(TopicPartition topicPartition);
 
+  /**
+   * retrieve offsets of last loaded records for given partitions, partitions whose offset could
+   * not be retrieved are left out of the result
+   *
+   * @param topicPartitions topics and partitions
+   * @return offsets by partition
+   */
+  default Map<TopicPartition, Long> getOffsets(Collection<TopicPartition> topicPartitions) {
+    Map<TopicPartition, Long> offsets = new HashMap<>();
+    topicPartitions.forEach(
+        topicPartition -> offsets.put(topicPartition, getOffset(topicPartition)));
+    return offsets;
+  }
+
   /**
    * get the number of partitions assigned to this sink service
    *
@@ -5,6 +5,7 @@ import com.snowflake.kafka.connector.dlq.KafkaRecordErrorReporter;
 import com.snowflake.kafka.connector.internal.streaming.IngestionMethodConfig;
 import com.snowflake.kafka.connector.internal.streaming.SnowflakeSinkServiceV2;
 import com.snowflake.kafka.connector.records.SnowflakeMetadataConfig;
+import java.util.Locale;
 import java.util.Map;
 import org.apache.kafka.common.TopicPartition;
 import org.apache.kafka.connect.sink.SinkTaskContext;
@@ -72,6 +73,132 @@ public class SnowflakeSinkServiceFactory {
         if (useStageFilesProcessor) {
           svc.enableStageFilesProcessor(threadCount);
         }
+
+        // spilling is a strategy of the heap budget, which it turns on
+        BufferMemoryBudget bufferMemoryBudget;
+        if (connectorConfig != null
+            && Boolean.parseBoolean(
+                connectorConfig.get(SnowflakeSinkConnectorConfig.SNOWPIPE_BUFFER_SPILL_ENABLED))) {
+          svc.enableBufferSpill(
+              connectorConfig.get(SnowflakeSinkConnectorConfig.SNOWPIPE_BUFFER_SPILL_DIRECTORY));
+          bufferMemoryBudget = BufferMemoryBudget.forTask(connectorConfig);
+        } else {
+          bufferMemoryBudget = BufferMemoryBudget.fromConfig(connectorConfig);
+        }
+        if (bufferMemoryBudget != null) {
+          svc.enableBufferMemoryBudget(bufferMemoryBudget);
+        }
+        PartitionBackpressure backpressure = PartitionBackpressure.fromConfig(connectorConfig);
+        if (backpressure != null) {
+          svc.enableBackpressure(backpressure);
+        }
+
+        BufferThresholdOverrides thresholdOverrides =
+            BufferThresholdOverrides.fromConfig(connectorConfig);
+        if (thresholdOverrides != null) {
+          svc.setBufferThresholdOverrides(thresholdOverrides);
+        }
+
+        if (connectorConfig != null) {
+          svc.setPrecommitLimits(
+              Integer.parseInt(
+                  connectorConfig.getOrDefault(
+                      SnowflakeSinkConnectorConfig.SNOWFLAKE_PRECOMMIT_PARALLELISM,
+                      String.valueOf(
+                          SnowflakeSinkConnectorConfig.SNOWFLAKE_PRECOMMIT_PARALLELISM_DEFAULT))),
+              Long.parseLong(
+                  connectorConfig.getOrDefault(
+                      SnowflakeSinkConnectorConfig.SNOWFLAKE_PRECOMMIT_TIMEOUT_MS,
+                      String.valueOf(
+                          SnowflakeSinkConnectorConfig.SNOWFLAKE_PRECOMMIT_TIMEOUT_MS_DEFAULT))));
+        }
+
+        if (connectorConfig != null
+            && Boolean.parseBoolean(
+                connectorConfig.get(
+                    SnowflakeSinkConnectorConfig.SNOWPIPE_BROKEN_RECORD_BATCHING_ENABLED))) {
+          svc.enableBrokenRecordBatching();
+        }
+
+        if (connectorConfig != null
+            && Boolean.parseBoolean(
+                connectorConfig.get(SnowflakeSinkConnectorConfig.SNOWPIPE_EAGER_INGEST_ENABLED))) {
+          long coalesceWindowMillis =
+              SnowflakeSinkConnectorConfig.SNOWPIPE_EAGER_INGEST_COALESCE_MS_DEFAULT;
+          if (connectorConfig.containsKey(
+              SnowflakeSinkConnectorConfig.SNOWPIPE_EAGER_INGEST_COALESCE_MS)) {
+            coalesceWindowMillis =
+                Long.parseLong(
+                    connectorConfig.get(
+                        SnowflakeSinkConnectorConfig.SNOWPIPE_EAGER_INGEST_COALESCE_MS));
+          }
+          svc.enableEagerIngest(coalesceWindowMillis);
+        }
+
+        if (connectorConfig != null
+            && Boolean.parseBoolean(
+                connectorConfig.get(SnowflakeSinkConnectorConfig.SNOWPIPE_SHARED_PIPE_ENABLED))) {
+          svc.enableSharedPipe();
+        }
+
+        if (connectorConfig != null
+            && connectorConfig.containsKey(SnowflakeSinkConnectorConfig.SNOWPIPE_FILE_FORMAT)) {
+          svc.setFileFormat(
+              SnowpipeFileFormat.valueOf(
+                  connectorConfig
+                      .get(SnowflakeSinkConnectorConfig.SNOWPIPE_FILE_FORMAT)
+                      .trim()
+                      .toUpperCase(Locale.ROOT)));
+        }
+
+        String compression =
+            connectorConfig == null
+                ? null
+                : connectorConfig.get(SnowflakeSinkConnectorConfig.SNOWPIPE_COMPRESSION);
+        if (compression != null
+            && StagedFileCompression.ZSTD.toString().equalsIgnoreCase(compression.trim())) {
+          int level = SnowflakeSinkConnectorConfig.SNOWPIPE_COMPRESSION_ZSTD_LEVEL_DEFAULT;
+          if (connectorConfig.containsKey(
+              SnowflakeSinkConnectorConfig.SNOWPIPE_COMPRESSION_ZSTD_LEVEL)) {
+            level =
+                Integer.parseInt(
+                    connectorConfig.get(
+                        SnowflakeSinkConnectorConfig.SNOWPIPE_COMPRESSION_ZSTD_LEVEL));
+          }
+          svc.enableZstdCompression(level);
+        }
+
+        // after the compression, which the parallel blocks use
+        if (connectorConfig != null
+            && Boolean.parseBoolean(
+                connectorConfig.get(
+                    SnowflakeSinkConnectorConfig.SNOWPIPE_COMPRESSION_PARALLEL_ENABLED))) {
+          svc.enableParallelCompression();
+        }
+        if (connectorConfig != null
+            && Boolean.parseBoolean(
+                connectorConfig.get(
+                    SnowflakeSinkConnectorConfig.SNOWPIPE_RESUME_STAGED_FILES_ENABLED))) {
+          svc.enableResumeStagedFiles();
+        }
+        if (connectorConfig != null
+            && Boolean.parseBoolean(
+                connectorConfig.get(
+                    SnowflakeSinkConnectorConfig.SNOWPIPE_CLOSE_PARTITIONS_IN_PARALLEL))) {
+          svc.enableParallelClose(
+              Long.parseLong(
+                  connectorConfig.getOrDefault(
+                      SnowflakeSinkConnectorConfig.SNOWPIPE_CLOSE_PARTITIONS_TIMEOUT_MS,
+                      String.valueOf(
+                          SnowflakeSinkConnectorConfig
+                              .SNOWPIPE_CLOSE_PARTITIONS_TIMEOUT_MS_DEFAULT))));
+        }
+        if (connectorConfig != null
+            && Boolean.parseBoolean(
+                connectorConfig.get(
+                    SnowflakeSinkConnectorConfig.SNOWPIPE_FLUSH_ON_CLOSE_ENABLED))) {
+          svc.enableFlushOnClose();
+        }
       } else {
         this.service = new SnowflakeSinkServiceV2(conn, connectorConfig);
       }
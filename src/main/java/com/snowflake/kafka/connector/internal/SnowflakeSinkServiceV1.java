@@ -8,6 +8,7 @@ import static org.apache.kafka.common.record.TimestampType.NO_TIMESTAMP_TYPE;
 import com.codahale.metrics.Histogram;
 import com.codahale.metrics.MetricRegistry;
 import com.google.common.annotations.VisibleForTesting;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.snowflake.kafka.connector.SnowflakeSinkConnectorConfig;
 import com.snowflake.kafka.connector.Utils;
 import com.snowflake.kafka.connector.internal.metrics.MetricsJmxReporter;
@@ -21,26 +22,39 @@ import com.snowflake.kafka.connector.records.SnowflakeMetadataConfig;
 import com.snowflake.kafka.connector.records.SnowflakeRecordContent;
 import java.io.ByteArrayOutputStream;
 import java.io.ObjectOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.ScheduledExecutorService;
-import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BooleanSupplier;
 import java.util.stream.Collectors;
 import javax.annotation.Nullable;
 import org.apache.kafka.common.TopicPartition;
 import org.apache.kafka.connect.data.Schema;
 import org.apache.kafka.connect.sink.SinkRecord;
+import org.apache.kafka.connect.sink.SinkTaskContext;
 
 /**
  * This is per task configuration. A task can be assigned multiple partitions. Major methods are
@@ -58,6 +72,10 @@ class SnowflakeSinkServiceV1 implements SnowflakeSinkService {
   private static final long ONE_HOUR = 60 * 60 * 1000L;
   private static final long TEN_MINUTES = 10 * 60 * 1000L;
   protected static final long CLEAN_TIME = 60 * 1000L; // one minutes
+  // threads sending flushed files to snowpipe in eager ingest mode, shared by all partitions
+  private static final int EAGER_INGEST_THREADS = 4;
+  // threads closing partitions in parallel close mode, when they are not virtual threads
+  private static final int CLOSE_THREADS = 8;
 
   // Set in config (Time based flush) in seconds
   private long flushTime;
@@ -85,6 +103,54 @@ class SnowflakeSinkServiceV1 implements SnowflakeSinkService {
   // if this is true, the service will use new file cleaner module
   private boolean useStageFilesProcessor = false;
   @Nullable private ScheduledExecutorService cleanerServiceExecutor;
+  // polls ingest history once per pipe for all partitions, only used by the new file cleaner
+  @Nullable private IngestHistoryService ingestHistoryService;
+  // set when buffers are spilled to local disk instead of flushed once the heap budget is exceeded
+  @Nullable private BufferSpillManager bufferSpillManager;
+  // set when buffers of all partitions are relieved early once the worker exceeds its heap budget
+  @Nullable private BufferMemoryBudget bufferMemoryBudget;
+  // set when partitions are paused while too much of their data is not ingested yet
+  @Nullable private PartitionBackpressure backpressure;
+  // set when broken records are written to the table stage in batches, off the put thread
+  @Nullable private ExecutorService brokenRecordExecutor;
+  // set in eager ingest mode, sends flushed files to snowpipe without waiting for preCommit
+  @Nullable private ScheduledExecutorService eagerIngestExecutor;
+  private long eagerIngestDelayMillis;
+  // sends pending files of all partitions on preCommit, created on first use
+  @Nullable private IngestDispatcher ingestDispatcher;
+  private int precommitParallelism =
+      SnowflakeSinkConnectorConfig.SNOWFLAKE_PRECOMMIT_PARALLELISM_DEFAULT;
+  private long precommitTimeoutMillis =
+      SnowflakeSinkConnectorConfig.SNOWFLAKE_PRECOMMIT_TIMEOUT_MS_DEFAULT;
+  // stage listings taken once at partition start, shared by all partitions of a table
+  private final Map<String, StageFilesSnapshot> stageSnapshots = new ConcurrentHashMap<>();
+  // set when all partitions of a table load through a single pipe
+  private boolean useSharedPipe = false;
+  // ingest clients of the pipes used by partitions outside of the ingest history service
+  private final SharedIngestionServices ingestionServices;
+  // format of the files staged for all tables of the connector
+  private SnowpipeFileFormat fileFormat = SnowpipeFileFormat.JSON;
+  // compression of the staged files, zstd files are compressed before upload
+  private StagedFileCompression compression = StagedFileCompression.GZIP;
+  @Nullable private ZstdCompressor zstdCompressor;
+  // set when large files are compressed on all cores
+  @Nullable private ParallelCompressor parallelCompressor;
+  // per partition pipes found for a table, they are dropped once their partition migrated
+  private final Map<String, Set<String>> partitionPipesByTable = new ConcurrentHashMap<>();
+  // pipes already checked or created by a partition of this task
+  private final Set<String> recoveredPipes = ConcurrentHashMap.newKeySet();
+  // set when files left on stage by a previous task are ingested instead of reprocessed
+  private boolean resumeStagedFiles = false;
+  // set in parallel close mode, closes partitions concurrently for up to the timeout
+  @Nullable private PartitionCloser partitionCloser;
+  // set when buffers are flushed and ingested before a partition is released
+  private boolean flushOnClose = false;
+  // per topic buffer thresholds, null when all topics use the connector wide ones
+  @Nullable private BufferThresholdOverrides thresholdOverrides;
+  // used to seek partitions past the resumed files, null until set by the task
+  @Nullable private SinkTaskContext sinkTaskContext;
+  // worker wide threads running the partition cleaners, acquired by the first partition
+  @Nullable private SharedWorkerResources sharedResources;
 
   SnowflakeSinkServiceV1(SnowflakeConnectionService conn) {
     if (conn == null || conn.isClosed()) {
@@ -96,6 +162,7 @@ class SnowflakeSinkServiceV1 implements SnowflakeSinkService {
     this.flushTime = SnowflakeSinkConnectorConfig.BUFFER_FLUSH_TIME_SEC_DEFAULT;
     this.pipes = new HashMap<>();
     this.conn = conn;
+    this.ingestionServices = new SharedIngestionServices(conn);
     isStopped = false;
     this.telemetryService = conn.getTelemetryClient();
     this.recordService = new RecordService();
@@ -129,18 +196,111 @@ class SnowflakeSinkServiceV1 implements SnowflakeSinkService {
               tableName,
               stageName,
               pipeName,
+              resolveIngestPipe(tableName, stageName, topicPartition.partition(), pipeName),
               conn,
-              topicPartition.partition(),
+              topicPartition,
               cleanerServiceExecutor));
     }
   }
 
+  /**
+   * Pick the pipe files of a partition are sent to. In shared pipe mode a partition whose own pipe
+   * still exists keeps loading through it until its staged files are cleaned, as their ingest
+   * history is only known to that pipe. After that the partition pipe is dropped.
+   *
+   * @param partitionPipeName pipe of the partition, see {@link Utils#pipeName(String, String,
+   *     int)}
+   * @return name of the pipe to ingest files with
+   */
+  private String resolveIngestPipe(
+      String tableName, String stageName, int partition, String partitionPipeName) {
+    if (!useSharedPipe) {
+      return partitionPipeName;
+    }
+    String sharedPipeName = Utils.sharedPipeName(conn.getConnectorName(), tableName);
+    // one query per table instead of describing the pipe of every partition
+    Set<String> partitionPipes =
+        partitionPipesByTable.computeIfAbsent(
+            tableName,
+            table -> {
+              Set<String> names = ConcurrentHashMap.newKeySet();
+              names.addAll(conn.listPipes(Utils.pipeNamePrefix(conn.getConnectorName(), table)));
+              return names;
+            });
+    if (!partitionPipes.contains(partitionPipeName.toUpperCase())) {
+      return sharedPipeName;
+    }
+
+    String prefix = FileNameUtils.filePrefix(conn.getConnectorName(), tableName, partition);
+    StageFilesSnapshot snapshot = stageSnapshots.get(stageName);
+    int stagedFileCount = snapshot == null ? -1 : snapshot.count(prefix);
+    if (stagedFileCount < 0) {
+      stagedFileCount = conn.listStage(stageName, prefix).size();
+    }
+    if (stagedFileCount > 0) {
+      LOGGER.info(
+          "pipe {} has {} file(s) on stage left, partition keeps loading through it instead of {}",
+          partitionPipeName,
+          stagedFileCount,
+          sharedPipeName);
+      return partitionPipeName;
+    }
+
+    conn.dropPipe(partitionPipeName);
+    partitionPipes.remove(partitionPipeName.toUpperCase());
+    LOGGER.info("pipe {} migrated to shared pipe {}", partitionPipeName, sharedPipeName);
+    return sharedPipeName;
+  }
+
   @Override
   public void startPartitions(
       Collection<TopicPartition> partitions, Map<String, String> topic2Table) {
+    takeStageSnapshots(partitions, topic2Table);
     partitions.forEach(tp -> this.startPartition(Utils.tableName(tp.topic(), topic2Table), tp));
   }
 
+  /**
+   * List the stage of every table once for all of its partitions being started, instead of every
+   * partition listing its own prefix. Failures are not fatal, partitions without a snapshot list
+   * the stage on their own.
+   */
+  private void takeStageSnapshots(
+      Collection<TopicPartition> partitions, Map<String, String> topic2Table) {
+    Map<String, List<String>> prefixesByTable = new HashMap<>();
+    for (TopicPartition tp : partitions) {
+      if (pipes.containsKey(getNameIndex(tp.topic(), tp.partition()))) {
+        continue;
+      }
+      String tableName = Utils.tableName(tp.topic(), topic2Table);
+      prefixesByTable
+          .computeIfAbsent(tableName, table -> new ArrayList<>())
+          .add(FileNameUtils.filePrefix(conn.getConnectorName(), tableName, tp.partition()));
+    }
+
+    prefixesByTable.forEach(
+        (tableName, prefixes) -> {
+          // a single partition would not save any listing
+          if (prefixes.size() < 2) {
+            return;
+          }
+          String stageName = Utils.stageName(conn.getConnectorName(), tableName);
+          try {
+            stageSnapshots.put(
+                stageName,
+                StageFilesSnapshot.take(
+                    conn,
+                    stageName,
+                    FileNameUtils.tablePrefix(conn.getConnectorName(), tableName),
+                    prefixes));
+          } catch (Exception e) {
+            LOGGER.warn(
+                "Failed to take snapshot of stage {}, partitions will list it on their own: {}",
+                stageName,
+                e.getMessage());
+          }
+        });
+  }
+
   @Override
   public void insert(final Collection<SinkRecord> records) {
     // note that records can be empty
@@ -159,6 +319,36 @@ class SnowflakeSinkServiceV1 implements SnowflakeSinkService {
         pipe.flushBuffer();
       }
     }
+    enforceBufferMemoryBudget();
+    applyBackpressure();
+  }
+
+  // pause partitions with too much data buffered or staged but not ingested, resume them once
+  // preCommit or the eager ingest caught up
+  private void applyBackpressure() {
+    if (backpressure == null || sinkTaskContext == null) {
+      return;
+    }
+    for (ServiceContext pipe : pipes.values()) {
+      backpressure.update(
+          sinkTaskContext, pipe.topicPartition, pipe.getPendingBytes(), pipe.getStagedFileCount());
+    }
+  }
+
+  // spill or flush the largest buffers early, while the worker is over its heap budget
+  private void enforceBufferMemoryBudget() {
+    if (bufferMemoryBudget == null) {
+      return;
+    }
+    if (enableCustomJMXMonitoring) {
+      bufferMemoryBudget.enableJmx(conn.getConnectorName());
+    }
+    for (ServiceContext pipe :
+        bufferMemoryBudget.update(pipes.values(), ServiceContext::getBufferHeapSizeBytes)) {
+      if (bufferSpillManager == null || !pipe.spillBuffer()) {
+        pipe.flushBuffer();
+      }
+    }
   }
 
   @Override
@@ -191,6 +381,158 @@ class SnowflakeSinkServiceV1 implements SnowflakeSinkService {
     }
   }
 
+  /**
+   * Close the partitions, one after another or concurrently in parallel close mode. There the
+   * close waits up to the timeout, partitions still closing then only release their resources in
+   * the background.
+   *
+   * @param contexts partitions to close, already removed from the pipes
+   */
+  private void closeContexts(List<ServiceContext> contexts) {
+    if (partitionCloser == null || contexts.size() <= 1) {
+      contexts.forEach(context -> closeContext(context, () -> false));
+      return;
+    }
+    partitionCloser.closeAll(contexts, context -> "pipe " + context.pipeName, this::closeContext);
+  }
+
+  /**
+   * @param context partition to close
+   * @param deadlinePassed set once the close timed out, the partition may have a new owner then
+   */
+  private void closeContext(ServiceContext context, BooleanSupplier deadlinePassed) {
+    try {
+      if (flushOnClose) {
+        // staged and ingested, the next owner resumes from the files instead of re-reading them.
+        // Past the deadline the next owner may already have scanned the stage, a file staged or
+        // ingested now would be loaded twice, so the buffer is left to be re-read from Kafka
+        if (!deadlinePassed.getAsBoolean()) {
+          context.flushBuffer();
+        }
+        if (!deadlinePassed.getAsBoolean()) {
+          context.ingestStagedFiles();
+        } else {
+          LOGGER.warn(
+              "pipe {}: close timed out, buffer is not flushed and staged files are not ingested",
+              context.pipeName);
+        }
+      }
+      context.close();
+    } catch (Exception e) {
+      LOGGER.error(
+          "Failed to close sink service for Topic: {}, Partition: {}\nMessage:{}",
+          context.topicPartition.topic(),
+          context.topicPartition.partition(),
+          e.getMessage());
+    } finally {
+      context.unregisterPipeJMXMetrics();
+    }
+  }
+
+  /**
+   * Ingest pending files of all given partitions with one dispatch - partitions are grouped by
+   * pipe and pipes are served concurrently. Partitions whose pipe failed are left out of the
+   * result, so that other partitions can still commit.
+   */
+  @Override
+  public Map<TopicPartition, Long> getOffsets(Collection<TopicPartition> partitions) {
+    Map<TopicPartition, Long> offsets = new HashMap<>();
+    Map<ServiceContext, TopicPartition> contexts = new LinkedHashMap<>();
+    for (TopicPartition tp : partitions) {
+      ServiceContext pipe = pipes.get(getNameIndex(tp.topic(), tp.partition()));
+      if (pipe == null) {
+        LOGGER.warn(
+            "Topic: {} Partition: {} hasn't been initialized to get offset",
+            tp.topic(),
+            tp.partition());
+        offsets.put(tp, 0L);
+        continue;
+      }
+      try {
+        // broken records have to be on the table stage before their offsets get committed
+        pipe.checkBrokenDataWrites(true);
+        contexts.put(pipe, tp);
+      } catch (Exception e) {
+        LOGGER.error("Failed to get offset of pipe {}: {}", pipe.pipeName, e.getMessage());
+      }
+    }
+
+    if (ingestDispatcher == null) {
+      ingestDispatcher = new IngestDispatcher(precommitParallelism, precommitTimeoutMillis);
+    }
+    Set<ServiceContext> failed =
+        ingestDispatcher.dispatch(
+            IngestDispatcher.groupByPipe(contexts.keySet(), pipe -> pipe.ingestPipeName),
+            this::timedIngestPipe);
+
+    contexts.forEach(
+        (pipe, tp) -> {
+          if (!failed.contains(pipe)) {
+            offsets.put(tp, pipe.committedOffset.get());
+          }
+        });
+    return offsets;
+  }
+
+  // ingest pipe of preCommit, reporting its latency for every partition of the pipe
+  private void timedIngestPipe(List<ServiceContext> contexts) {
+    long startTime = System.currentTimeMillis();
+    try {
+      ingestPipe(contexts);
+    } finally {
+      long latencyMs = System.currentTimeMillis() - startTime;
+      contexts.forEach(context -> context.pipeStatus.updatePrecommitLatency(latencyMs));
+    }
+  }
+
+  /**
+   * Ingest pending files of partitions loading through the same pipe with shared requests
+   *
+   * @param contexts partitions of a single pipe
+   */
+  private void ingestPipe(List<ServiceContext> contexts) {
+    contexts.forEach(context -> context.ingestLock.lock());
+    try {
+      List<PendingIngest> pendingIngests = new ArrayList<>();
+      List<String> files = new ArrayList<>();
+      for (ServiceContext context : contexts) {
+        PendingIngest pending = context.takeStagedFiles();
+        if (pending != null) {
+          pendingIngests.add(pending);
+          files.addAll(pending.files);
+        }
+      }
+      if (files.isEmpty()) {
+        return;
+      }
+
+      LOGGER.info("pipe {}, ingest files: {}", contexts.get(0).ingestPipeName, files);
+      try {
+        contexts.get(0).ingestionService.ingestFiles(files);
+      } catch (RuntimeException e) {
+        pendingIngests.forEach(pending -> pending.context.requeueStagedFiles(pending.files));
+        throw e;
+      }
+      pendingIngests.forEach(pending -> pending.context.markIngested(pending));
+    } finally {
+      contexts.forEach(context -> context.ingestLock.unlock());
+    }
+  }
+
+  /** Files of a partition taken for ingestion */
+  private static final class PendingIngest {
+    private final ServiceContext context;
+    private final List<String> files;
+    // offset committed once the files are ingested
+    private final long flushedOffset;
+
+    private PendingIngest(ServiceContext context, List<String> files, long flushedOffset) {
+      this.context = context;
+      this.files = files;
+      this.flushedOffset = flushedOffset;
+    }
+  }
+
   @Override
   public int getPartitionCount() {
     return pipes.size();
@@ -206,22 +548,13 @@ class SnowflakeSinkServiceV1 implements SnowflakeSinkService {
 
   @Override
   public void close(Collection<TopicPartition> partitions) {
+    List<ServiceContext> contexts = new ArrayList<>();
     partitions.forEach(
         tp -> {
           String name = getNameIndex(tp.topic(), tp.partition());
           ServiceContext sc = pipes.remove(name);
           if (sc != null) {
-            try {
-              sc.close();
-            } catch (Exception e) {
-              LOGGER.error(
-                  "Failed to close sink service for Topic: {}, Partition: " + "{}\nMessage:{}",
-                  tp.topic(),
-                  tp.partition(),
-                  e.getMessage());
-            } finally {
-              sc.unregisterPipeJMXMetrics();
-            }
+            contexts.add(sc);
           } else {
             LOGGER.warn(
                 "Failed to close sink service for Topic: {}, Partition: {}, "
@@ -230,25 +563,62 @@ class SnowflakeSinkServiceV1 implements SnowflakeSinkService {
                 tp.partition());
           }
         });
+    closeContexts(contexts);
+    if (backpressure != null) {
+      backpressure.remove(partitions);
+    }
   }
 
   @Override
   public void closeAll() {
     this.isStopped = true; // release all cleaner and flusher threads
-    pipes.forEach(
-        (name, context) -> {
-          context.close();
-          context.unregisterPipeJMXMetrics();
-        });
+    closeContexts(new ArrayList<>(pipes.values()));
     pipes.clear();
+    if (backpressure != null) {
+      backpressure.clear();
+    }
   }
 
   @Override
   public void stop() {
+    if (ingestHistoryService != null) {
+      ingestHistoryService.close();
+      ingestHistoryService = null;
+    }
     if (cleanerServiceExecutor != null) {
       cleanerServiceExecutor.shutdown();
       cleanerServiceExecutor = null;
     }
+    if (brokenRecordExecutor != null) {
+      brokenRecordExecutor.shutdown();
+      brokenRecordExecutor = null;
+    }
+    if (eagerIngestExecutor != null) {
+      eagerIngestExecutor.shutdown();
+      eagerIngestExecutor = null;
+    }
+    if (ingestDispatcher != null) {
+      ingestDispatcher.close();
+      ingestDispatcher = null;
+    }
+    if (parallelCompressor != null) {
+      parallelCompressor.close();
+      parallelCompressor = null;
+    }
+    if (sharedResources != null) {
+      sharedResources.release(conn.getConnectorName());
+      sharedResources = null;
+    }
+    if (partitionCloser != null) {
+      partitionCloser.shutdown();
+      partitionCloser = null;
+    }
+    if (bufferMemoryBudget != null) {
+      bufferMemoryBudget.close();
+    }
+    stageSnapshots.clear();
+    partitionPipesByTable.clear();
+    recoveredPipes.clear();
     this.isStopped = true; // release all cleaner and flusher threads
   }
 
@@ -323,6 +693,11 @@ class SnowflakeSinkServiceV1 implements SnowflakeSinkService {
     return this.fileSize;
   }
 
+  @Override
+  public void setSinkTaskContext(SinkTaskContext sinkTaskContext) {
+    this.sinkTaskContext = sinkTaskContext;
+  }
+
   @Override
   public void setBehaviorOnNullValuesConfig(
       SnowflakeSinkConnectorConfig.BehaviorOnNullValues behavior) {
@@ -335,7 +710,121 @@ class SnowflakeSinkServiceV1 implements SnowflakeSinkService {
     if (cleanerServiceExecutor != null) {
       cleanerServiceExecutor.shutdown();
     }
-    cleanerServiceExecutor = new ScheduledThreadPoolExecutor(Math.max(1, threadCount));
+    // history polls and stage purges wait on snowflake, when virtual threads are turned on none of
+    // them holds up the cleaners of the other partitions
+    cleanerServiceExecutor =
+        BlockingIoExecutors.newScheduledExecutor("snowflake-stage-files-processor-%d", threadCount);
+    if (ingestHistoryService != null) {
+      ingestHistoryService.close();
+    }
+    ingestHistoryService = new IngestHistoryService(conn, cleanerServiceExecutor);
+  }
+
+  // enable loading all partitions of a table through a single pipe
+  void enableSharedPipe() {
+    this.useSharedPipe = true;
+  }
+
+  // set the format of the files staged for all tables
+  void setFileFormat(SnowpipeFileFormat fileFormat) {
+    this.fileFormat = fileFormat;
+  }
+
+  // compress staged files with zstd instead of gzip
+  void enableZstdCompression(int level) {
+    this.zstdCompressor = new ZstdCompressor(level);
+    this.compression = StagedFileCompression.ZSTD;
+  }
+
+  // compress large staged files in parallel blocks, with the compression already configured, on
+  // the compression pool of the worker
+  void enableParallelCompression() {
+    if (parallelCompressor == null) {
+      parallelCompressor =
+          new ParallelCompressor(sharedResources().compressionPool(), zstdCompressor);
+    }
+  }
+
+  // ingest files left on stage from the committed offset instead of reprocessing their records
+  void enableResumeStagedFiles() {
+    this.resumeStagedFiles = true;
+  }
+
+  // spill the buffers picked by the heap budget to local disk instead of flushing them
+  void enableBufferSpill(@Nullable String spillDirectory) {
+    this.bufferSpillManager = new BufferSpillManager(spillDirectory);
+  }
+
+  // enable relieving the largest buffers early once the worker exceeds its heap budget
+  void enableBufferMemoryBudget(BufferMemoryBudget bufferMemoryBudget) {
+    this.bufferMemoryBudget = bufferMemoryBudget;
+  }
+
+  // close partitions concurrently, waiting up to the timeout for them
+  void enableParallelClose(long timeoutMillis) {
+    if (partitionCloser != null) {
+      partitionCloser.shutdown();
+    }
+    partitionCloser =
+        new PartitionCloser(
+            BlockingIoExecutors.newExecutor("snowflake-partition-closer-%d", CLOSE_THREADS),
+            timeoutMillis);
+  }
+
+  // flush and ingest the buffers of partitions before they are released
+  void enableFlushOnClose() {
+    this.flushOnClose = true;
+  }
+
+  // overrides are looked up when a partition starts, so this has to be set before
+  void setBufferThresholdOverrides(BufferThresholdOverrides thresholdOverrides) {
+    this.thresholdOverrides = thresholdOverrides;
+  }
+
+  // bound the threads and the time preCommit spends ingesting pending files
+  void setPrecommitLimits(int parallelism, long timeoutMillis) {
+    this.precommitParallelism = parallelism;
+    this.precommitTimeoutMillis = timeoutMillis;
+  }
+
+  // enable pausing partitions while too much of their data is not ingested yet
+  void enableBackpressure(PartitionBackpressure backpressure) {
+    this.backpressure = backpressure;
+  }
+
+  // enable batching of broken records written to the table stage
+  void enableBrokenRecordBatching() {
+    if (brokenRecordExecutor == null) {
+      brokenRecordExecutor =
+          Executors.newSingleThreadExecutor(
+              new ThreadFactoryBuilder()
+                  .setNameFormat("snowflake-broken-record-writer-%d")
+                  .setDaemon(true)
+                  .build());
+    }
+  }
+
+  // enable ingesting files right after they are flushed, coalesced over the given window
+  void enableEagerIngest(long coalesceWindowMillis) {
+    this.eagerIngestDelayMillis = coalesceWindowMillis;
+    if (eagerIngestExecutor == null) {
+      eagerIngestExecutor =
+          Executors.newScheduledThreadPool(
+              EAGER_INGEST_THREADS,
+              new ThreadFactoryBuilder()
+                  .setNameFormat("snowflake-eager-ingest-%d")
+                  .setDaemon(true)
+                  .build());
+    }
+  }
+
+  // worker wide threads, the reference is taken on first use and dropped when the task stops
+  private synchronized SharedWorkerResources sharedResources() {
+    if (sharedResources == null) {
+      sharedResources =
+          SharedWorkerResources.acquire(conn.getConnectorName(), enableCustomJMXMonitoring);
+    }
+    return sharedResources;
   }
 
   @Override
@@ -374,27 +863,46 @@ class SnowflakeSinkServiceV1 implements SnowflakeSinkService {
     private final String tableName;
     private final String stageName;
     private final String pipeName;
+    // pipe the files are sent to, differs from the partition pipe when the pipe is shared
+    private final String ingestPipeName;
     private final SnowflakeConnectionService conn;
     private final SnowflakeIngestionService ingestionService;
+    // set when ingest history is polled by the task level history service
+    @Nullable private final IngestHistoryService.Subscription historySubscription;
     private List<String> fileNames;
+    // bytes of the flushed files not ingested yet, only used for the backpressure
+    private final Map<String, Long> stagedFileBytes = new ConcurrentHashMap<>();
 
     // Includes a list of files:
     // 1. Which are added after a flush into internal stage is successful
     // 2. While an app restarts and we do list on an internal stage to find out what needs to be
     // done on leaked files.
-    private List<String> cleanerFileNames;
+    private StagedFileIndex cleanerFileNames;
     private SnowpipeBuffer buffer;
+    // broken records waiting to be written to the table stage, used with batching enabled
+    private BrokenRecordBatch brokenRecordBatch;
+    private final List<Future<?>> brokenRecordWrites;
     private final String prefix;
+    private final TopicPartition topicPartition;
     private final AtomicLong committedOffset; // loaded offset + 1
     private final AtomicLong flushedOffset; // flushed offset (file on stage)
     private final AtomicLong processedOffset; // processed offset
     private long previousFlushTimeStamp;
-
-    // threads
-    @Nullable private final ExecutorService cleanerExecutor;
-    @Nullable private final ExecutorService reprocessCleanerExecutor;
+    // buffer thresholds overridden for the topic, null for the connector wide ones
+    @Nullable private final Long flushTimeOverride;
+    @Nullable private final Long fileSizeOverride;
+    @Nullable private final Long recordNumOverride;
+
+    // cleaner tasks run on the worker wide threads, set once the cleaner started
+    @Nullable private volatile SharedWorkerResources.ScheduledIoTask cleanerTask;
+    @Nullable private volatile SharedWorkerResources.ScheduledIoTask reprocessCleanerTask;
     private final Lock bufferLock;
     private final Lock fileListLock;
+    // held while files are sent to snowpipe
+    private final Lock ingestLock;
+    // background ingest of flushed files, only used in eager ingest mode
+    private final AtomicBoolean eagerIngestScheduled;
+    @Nullable private volatile ScheduledFuture<?> eagerIngestTask;
     // v2 file cleaner logic - either cleaner executors or stageFileProcessorClient is used
     private final boolean useStageFilesProcessor;
     @Nullable private final StageFilesProcessor.ProgressRegister stageFileProcessorClient;
@@ -419,25 +927,55 @@ class SnowflakeSinkServiceV1 implements SnowflakeSinkService {
         String tableName,
         String stageName,
         String pipeName,
+        String ingestPipeName,
         SnowflakeConnectionService conn,
-        int partition,
+        TopicPartition topicPartition,
         ScheduledExecutorService v2CleanerExecutor) {
       this.pipeName = pipeName;
+      this.ingestPipeName = ingestPipeName;
       this.tableName = tableName;
       this.stageName = stageName;
       this.conn = conn;
       this.fileNames = new LinkedList<>();
-      this.cleanerFileNames = new LinkedList<>();
+      this.cleanerFileNames = new StagedFileIndex();
       this.buffer = new SnowpipeBuffer();
-      this.ingestionService = conn.buildIngestService(stageName, pipeName);
-      this.prefix = FileNameUtils.filePrefix(conn.getConnectorName(), tableName, partition);
+      this.brokenRecordBatch = new BrokenRecordBatch();
+      this.brokenRecordWrites = new ArrayList<>();
+      this.topicPartition = topicPartition;
+      this.prefix =
+          FileNameUtils.filePrefix(conn.getConnectorName(), tableName, topicPartition.partition());
+      this.useStageFilesProcessor = v2CleanerExecutor != null;
+      if (useStageFilesProcessor && ingestHistoryService != null) {
+        // the ingest client of the pipe is shared with other partitions of this task
+        this.historySubscription =
+            ingestHistoryService.subscribe(
+                stageName,
+                ingestPipeName,
+                StageFilesProcessor.FilteringPredicates.partitionFileNamePredicate(prefix));
+        this.ingestionService = historySubscription.getIngestionService();
+      } else {
+        this.historySubscription = null;
+        // a shared pipe has a single client, released with the last of its partitions
+        this.ingestionService = ingestionServices.acquire(stageName, ingestPipeName);
+      }
       this.processedOffset = new AtomicLong(-1);
       this.flushedOffset = new AtomicLong(-1);
       this.committedOffset = new AtomicLong(0);
       this.previousFlushTimeStamp = System.currentTimeMillis();
+      if (thresholdOverrides == null) {
+        this.flushTimeOverride = null;
+        this.fileSizeOverride = null;
+        this.recordNumOverride = null;
+      } else {
+        this.flushTimeOverride = thresholdOverrides.getFlushTimeSeconds(topicPartition.topic());
+        this.fileSizeOverride = thresholdOverrides.getBufferSizeBytes(topicPartition.topic());
+        this.recordNumOverride = thresholdOverrides.getBufferCountRecords(topicPartition.topic());
+      }
 
       this.bufferLock = new ReentrantLock();
       this.fileListLock = new ReentrantLock();
+      this.ingestLock = new ReentrantLock();
+      this.eagerIngestScheduled = new AtomicBoolean(false);
       this.metricRegistry = new MetricRegistry();
       this.metricsJmxReporter =
           new MetricsJmxReporter(this.metricRegistry, conn.getConnectorName());
@@ -457,7 +995,6 @@ class SnowflakeSinkServiceV1 implements SnowflakeSinkService {
             "Registered {} metrics for pipeName:{}", metricRegistry.getMetrics().size(), pipeName);
       }
 
-      this.useStageFilesProcessor = v2CleanerExecutor != null;
       if (useStageFilesProcessor) {
 
         StageFilesProcessor processor =
@@ -468,15 +1005,13 @@ class SnowflakeSinkServiceV1 implements SnowflakeSinkService {
                 prefix,
                 conn,
                 ingestionService,
+                historySubscription,
+                stageSnapshots.get(stageName),
                 pipeStatus,
                 telemetryService,
                 v2CleanerExecutor);
         this.stageFileProcessorClient = processor.trackFilesAsync();
-        this.cleanerExecutor = null;
-        this.reprocessCleanerExecutor = null;
       } else {
-        this.cleanerExecutor = Executors.newSingleThreadExecutor();
-        this.reprocessCleanerExecutor = Executors.newSingleThreadExecutor();
         this.stageFileProcessorClient = null;
       }
 
@@ -493,9 +1028,25 @@ class SnowflakeSinkServiceV1 implements SnowflakeSinkService {
       // recover will only check pipe status and create pipe if it does not exist.
       recover(pipeCreation);
 
+      long startOffset = recordOffset;
+      StagedFileIndex currentFilesOnStage = null;
+      if (resumeStagedFiles) {
+        try {
+          currentFilesOnStage = new StagedFileIndex();
+          currentFilesOnStage.addAll(listStageFiles());
+          startOffset = resumeFromStagedFiles(currentFilesOnStage, recordOffset);
+        } catch (Exception e) {
+          LOGGER.warn(
+              "pipe {}: failed to resume staged files, records are reprocessed: {}",
+              pipeName,
+              e.getMessage());
+          currentFilesOnStage = null;
+        }
+      }
+
       if (!useStageFilesProcessor) {
         try {
-          startCleaner(recordOffset, pipeCreation);
+          startCleaner(startOffset, currentFilesOnStage, pipeCreation);
         } catch (Exception e) {
           LOGGER.warn("Cleaner and Flusher threads shut down before initialization");
         }
@@ -503,6 +1054,13 @@ class SnowflakeSinkServiceV1 implements SnowflakeSinkService {
       telemetryService.reportKafkaPartitionStart(pipeCreation);
     }
 
+    // files of this partition on stage, the first call is served by the startup snapshot if any
+    private List<String> listStageFiles() {
+      StageFilesSnapshot snapshot = stageSnapshots.get(stageName);
+      List<String> files = snapshot == null ? null : snapshot.take(prefix);
+      return files != null ? files : conn.listStage(stageName, prefix);
+    }
+
     private boolean resetCleanerFiles() {
       try {
         LOGGER.warn("Resetting cleaner files {}", pipeName);
@@ -514,7 +1072,6 @@ class SnowflakeSinkServiceV1 implements SnowflakeSinkService {
         fileListLock.lock();
         try {
           cleanerFileNames.addAll(tmpCleanerFileNames);
-          cleanerFileNames = cleanerFileNames.stream().distinct().collect(Collectors.toList());
         } finally {
           fileListLock.unlock();
         }
@@ -527,15 +1084,84 @@ class SnowflakeSinkServiceV1 implements SnowflakeSinkService {
       return forceCleanerFileReset;
     }
 
+    /**
+     * Send the files a previous task left on stage straight to Snowpipe, as long as they chain one
+     * after another from the committed offset. Their records are skipped, and the partition is
+     * moved past them, instead of being converted and uploaded again. Snowpipe skips files it
+     * already loaded, so a file ingested before the restart is not loaded twice.
+     *
+     * @param currentFilesOnStage files found by ls @stageName
+     * @param recordOffset current offset
+     * @return offset the partition resumes from
+     */
+    private long resumeFromStagedFiles(StagedFileIndex currentFilesOnStage, long recordOffset) {
+      List<StagedFile> resumedFiles = currentFilesOnStage.contiguousFrom(recordOffset);
+      if (resumedFiles.isEmpty()) {
+        return recordOffset;
+      }
+      long resumeOffset = resumedFiles.get(resumedFiles.size() - 1).getEndOffset() + 1;
+      List<String> resumedFileNames = toFileNames(resumedFiles);
+      // from here on they are tracked like files flushed by this task
+      currentFilesOnStage.removeAll(resumedFileNames);
+
+      fileListLock.lock();
+      try {
+        flushedOffset.updateAndGet((value) -> Math.max(resumeOffset, value));
+        fileNames.addAll(resumedFileNames);
+        for (String fileName : resumedFileNames) {
+          if (useStageFilesProcessor) {
+            stageFileProcessorClient.registerNewStageFile(fileName);
+          } else {
+            cleanerFileNames.add(fileName);
+          }
+        }
+      } finally {
+        fileListLock.unlock();
+      }
+      processedOffset.set(resumeOffset - 1);
+      pipeStatus.setProcessedOffset(resumeOffset - 1);
+      pipeStatus.setFlushedOffset(resumeOffset - 1);
+      pipeStatus.addAndGetFileCountOnStage(resumedFileNames.size());
+      if (useStageFilesProcessor) {
+        // the files are below the new offset, so they are tracked instead of purged as dirty
+        stageFileProcessorClient.newOffset(resumeOffset);
+      }
+      if (sinkTaskContext != null) {
+        sinkTaskContext.offset(topicPartition, resumeOffset);
+      }
+      LOGGER.info(
+          "pipe {}: resuming {} staged file(s), offsets {} to {} are not reprocessed",
+          pipeName,
+          resumedFiles.size(),
+          recordOffset,
+          resumeOffset - 1);
+
+      try {
+        ingestStagedFiles();
+      } catch (Exception e) {
+        LOGGER.warn(
+            "pipe {}: failed to ingest resumed files, they are left for the next commit: {}",
+            pipeName,
+            e.getMessage());
+      }
+      return resumeOffset;
+    }
+
     // If there are files already on stage, we need to decide whether we will reprocess the offsets
     // or we will purge them.
-    private void startCleaner(long recordOffset, SnowflakeTelemetryPipeCreation pipeCreation) {
+    private void startCleaner(
+        long recordOffset,
+        @Nullable StagedFileIndex filesOnStage,
+        SnowflakeTelemetryPipeCreation pipeCreation) {
       // When cleaner start, scan stage for all files of this pipe.
       // If we know that we are going to reprocess the file, then safely delete the file.
-      List<String> currentFilesOnStage = conn.listStage(stageName, prefix);
-      List<String> reprocessFiles = new ArrayList<>();
+      StagedFileIndex currentFilesOnStage = filesOnStage;
+      if (currentFilesOnStage == null) {
+        currentFilesOnStage = new StagedFileIndex();
+        currentFilesOnStage.addAll(listStageFiles());
+      }
 
-      filterFileReprocess(currentFilesOnStage, reprocessFiles, recordOffset);
+      List<String> reprocessFiles = filterFileReprocess(currentFilesOnStage, recordOffset);
 
       // Telemetry
       pipeCreation.setFileCountRestart(currentFilesOnStage.size());
@@ -552,95 +1178,92 @@ class SnowflakeSinkServiceV1 implements SnowflakeSinkService {
         fileListLock.unlock();
       }
 
-      cleanerExecutor.submit(
-          () -> {
-            LOGGER.info("pipe {}: cleaner started", pipeName);
-            while (!isStopped) {
-              try {
-                telemetryService.reportKafkaPartitionUsage(pipeStatus, false);
-                Thread.sleep(CLEAN_TIME);
-
-                if (forceCleanerFileReset && resetCleanerFiles()) {
-                  continue;
-                }
-
-                checkStatus();
-              } catch (InterruptedException e) {
-                LOGGER.info("Cleaner terminated by an interrupt:\n{}", e.getMessage());
-                break;
-              } catch (Exception e) {
-                LOGGER.warn(
-                    "Cleaner encountered an exception {}:\n{}\n{}",
-                    e.getClass(),
-                    e.getMessage(),
-                    e.getStackTrace());
-                telemetryService.reportKafkaConnectFatalError(e.getMessage());
-                forceCleanerFileReset = true;
-              }
-            }
-          });
+      LOGGER.info("pipe {}: cleaner started", pipeName);
+      telemetryService.reportKafkaPartitionUsage(pipeStatus, false);
+      cleanerTask = sharedResources().scheduleWithFixedDelay(this::runCleaner, CLEAN_TIME);
 
       if (reprocessFiles.size() > 0) {
         // After we start the cleaner thread, delay a while and start deleting files.
-        reprocessCleanerExecutor.submit(
-            () -> {
-              try {
-                Thread.sleep(CLEAN_TIME);
-                LOGGER.info(
-                    "Purging files already present on the stage before start. ReprocessFileSize:{}",
-                    reprocessFiles.size());
-                purge(reprocessFiles);
-              } catch (Exception e) {
-                LOGGER.error(
-                    "Reprocess cleaner encountered an exception {}:\n{}\n{}",
-                    e.getClass(),
-                    e.getMessage(),
-                    e.getStackTrace());
-              }
-            });
+        reprocessCleanerTask =
+            sharedResources()
+                .schedule(
+                    () -> {
+                      try {
+                        LOGGER.info(
+                            "Purging files already present on the stage before start."
+                                + " ReprocessFileSize:{}",
+                            reprocessFiles.size());
+                        purge(reprocessFiles);
+                      } catch (Exception e) {
+                        LOGGER.error(
+                            "Reprocess cleaner encountered an exception {}:\n{}\n{}",
+                            e.getClass(),
+                            e.getMessage(),
+                            e.getStackTrace());
+                      }
+                    },
+                    CLEAN_TIME);
       }
     }
 
+    // one round of the cleaner, run every CLEAN_TIME on the worker wide io threads
+    private void runCleaner() {
+      if (isStopped) {
+        stopCleaner();
+        return;
+      }
+      try {
+        if (!forceCleanerFileReset || !resetCleanerFiles()) {
+          checkStatus();
+        }
+      } catch (Exception e) {
+        LOGGER.warn(
+            "Cleaner encountered an exception {}:\n{}\n{}",
+            e.getClass(),
+            e.getMessage(),
+            e.getStackTrace());
+        telemetryService.reportKafkaConnectFatalError(e.getMessage());
+        forceCleanerFileReset = true;
+      }
+      telemetryService.reportKafkaPartitionUsage(pipeStatus, false);
+    }
+
     /**
      * Does in place manipulation of passed currentFilesOnStage. The caller of this function passes
-     * in the list of files(name) on the stage. (ls @stageName)
+     * in the files on the stage. (ls @stageName)
      *
-     * <p>In return it expects the list of files (reprocessFiles) which is a subset of
+     * <p>In return it gets the list of files (reprocessFiles) which were removed from
      * currentFilesOnStage.
      *
      * <p>How do we find list of reprocessFiles?
      *
-     * <p>1. Find out the start offset from the list of files currently on stage.
-     *
-     * <p>2. If the current offset passed by the connector is less than any of the start offset of
-     * found files, we will reprocess this files and at the same time remove from
-     * currentListOfFiles. (Idea being if the current offset is still found on stage, it is not
+     * <p>If the current offset passed by the connector is less than or equal to the start offset
+     * of a file, we will reprocess this file and at the same time remove it from
+     * currentFilesOnStage. (Idea being if the current offset is still found on stage, it is not
      * purged, so we will reprocess)
      *
-     * @param currentFilesOnStage LIST.OF((ls @stageNAME))
-     * @param reprocessFiles Empty but we will fill this.
+     * @param currentFilesOnStage files found by ls @stageName
      * @param recordOffset current offset
+     * @return names of the files which will be reprocessed, thus can be deleted
      */
-    private void filterFileReprocess(
-        List<String> currentFilesOnStage, List<String> reprocessFiles, long recordOffset) {
-      // iterate over a copy since reprocess files get removed from it
-      new LinkedList<>(currentFilesOnStage)
-          .forEach(
-              name -> {
-                long fileStartOffset = FileNameUtils.fileNameToStartOffset(name);
-                // If start offset of this file is greater than the offset of the record that is
-                // sent to the connector,
-                // all content of this file will be reprocessed. Thus this file can be deleted.
-                if (recordOffset <= fileStartOffset) {
-                  reprocessFiles.add(name);
-                  currentFilesOnStage.remove(name);
-                }
-              });
+    private List<String> filterFileReprocess(
+        StagedFileIndex currentFilesOnStage, long recordOffset) {
+      // iterate over a copy since reprocess files get removed from the index
+      List<StagedFile> reprocessFiles =
+          new ArrayList<>(currentFilesOnStage.startingFrom(recordOffset));
+      reprocessFiles.forEach(file -> currentFilesOnStage.remove(file.getName()));
+      return toFileNames(reprocessFiles);
     }
 
     private void stopCleaner() {
-      cleanerExecutor.shutdownNow();
-      reprocessCleanerExecutor.shutdownNow();
+      SharedWorkerResources.ScheduledIoTask cleaner = cleanerTask;
+      if (cleaner != null) {
+        cleaner.cancel();
+      }
+      SharedWorkerResources.ScheduledIoTask reprocessCleaner = reprocessCleanerTask;
+      if (reprocessCleaner != null) {
+        reprocessCleaner.cancel();
+      }
       LOGGER.info("pipe {}: cleaner terminated", pipeName);
     }
 
@@ -753,11 +1376,74 @@ class SnowflakeSinkServiceV1 implements SnowflakeSinkService {
           record.headers());
     }
 
+    // bytes buffered or staged but not ingested yet
+    private long getPendingBytes() {
+      long pendingBytes = buffer.getBufferSizeBytes();
+      for (long bytes : stagedFileBytes.values()) {
+        pendingBytes += bytes;
+      }
+      return pendingBytes;
+    }
+
+    // files staged but not ingested yet
+    private int getStagedFileCount() {
+      fileListLock.lock();
+      try {
+        return fileNames.size();
+      } finally {
+        fileListLock.unlock();
+      }
+    }
+
+    // heap held by the buffer, a spilled buffer only holds its file
+    private long getBufferHeapSizeBytes() {
+      SnowpipeBuffer current = buffer;
+      return current.isSpilled() ? 0 : current.getBufferSizeBytes();
+    }
+
     private boolean shouldFlush() {
       return (System.currentTimeMillis() - this.previousFlushTimeStamp) >= (getFlushTime() * 1000);
     }
 
+    private long getFlushTime() {
+      return flushTimeOverride != null
+          ? flushTimeOverride
+          : SnowflakeSinkServiceV1.this.getFlushTime();
+    }
+
+    private long getFileSize() {
+      return fileSizeOverride != null
+          ? fileSizeOverride
+          : SnowflakeSinkServiceV1.this.getFileSize();
+    }
+
+    private long getRecordNumber() {
+      return recordNumOverride != null
+          ? recordNumOverride
+          : SnowflakeSinkServiceV1.this.getRecordNumber();
+    }
+
+    /**
+     * Move the buffer content to local disk, it keeps appending there until flushed
+     *
+     * @return false if the buffer can not be spilled, like the buffers of avro files
+     */
+    private boolean spillBuffer() {
+      bufferLock.lock();
+      try {
+        if (buffer.isAvro()) {
+          return false;
+        }
+        buffer.spill();
+        return true;
+      } finally {
+        bufferLock.unlock();
+      }
+    }
+
     private void flushBuffer() {
+      // broken records follow the time based flush of the buffer, even if it is empty
+      flushBrokenData();
       // Just checking buffer size, no atomic operation required
       if (buffer.isEmpty()) {
         return;
@@ -776,6 +1462,10 @@ class SnowflakeSinkServiceV1 implements SnowflakeSinkService {
     private void writeBrokenDataToTableStage(SinkRecord record) {
       SnowflakeRecordContent key = (SnowflakeRecordContent) record.key();
       SnowflakeRecordContent value = (SnowflakeRecordContent) record.value();
+      if (brokenRecordExecutor != null) {
+        bufferBrokenData(record.kafkaOffset(), key, value);
+        return;
+      }
       if (key != null) {
         String fileName = FileNameUtils.brokenRecordFileName(prefix, record.kafkaOffset(), true);
         conn.putToTableStage(tableName, fileName, snowflakeContentToByteArray(key));
@@ -788,6 +1478,75 @@ class SnowflakeSinkServiceV1 implements SnowflakeSinkService {
       }
     }
 
+    private void bufferBrokenData(
+        long offset, SnowflakeRecordContent key, SnowflakeRecordContent value) {
+      // surface failures of previous writes as soon as possible
+      checkBrokenDataWrites(false);
+      if (key != null) {
+        brokenRecordBatch.add(offset, true, snowflakeContentToByteArray(key));
+      }
+      if (value != null) {
+        brokenRecordBatch.add(offset, false, snowflakeContentToByteArray(value));
+      }
+      if (brokenRecordBatch.getSizeBytes() >= getFileSize()
+          || (getRecordNumber() != 0
+              && brokenRecordBatch.getNumOfContents() >= getRecordNumber())) {
+        flushBrokenData();
+      }
+    }
+
+    // hand the collected broken records over to the background writer
+    private void flushBrokenData() {
+      if (brokenRecordExecutor == null || brokenRecordBatch.isEmpty()) {
+        return;
+      }
+      BrokenRecordBatch batch = brokenRecordBatch;
+      brokenRecordBatch = new BrokenRecordBatch();
+      brokenRecordWrites.add(brokenRecordExecutor.submit(() -> writeBrokenDataBatch(batch)));
+    }
+
+    private void writeBrokenDataBatch(BrokenRecordBatch batch) {
+      String fileName =
+          FileNameUtils.brokenRecordBatchFileName(
+              prefix, batch.getFirstOffset(), batch.getLastOffset());
+      conn.putToTableStage(tableName, fileName, batch.getData());
+      conn.putToTableStage(
+          tableName, FileNameUtils.brokenRecordBatchIndexFileName(fileName), batch.getIndex());
+      pipeStatus.updateBrokenRecordMetrics(batch.getNumOfContents());
+      LOGGER.info(
+          "pipe {}, put {} broken contents of offset {} - {} to table stage: {}",
+          pipeName,
+          batch.getNumOfContents(),
+          batch.getFirstOffset(),
+          batch.getLastOffset(),
+          fileName);
+    }
+
+    /**
+     * Rethrow the failure of a background broken record write, if any
+     *
+     * @param wait whether to wait for the writes still in progress
+     */
+    private void checkBrokenDataWrites(boolean wait) {
+      for (Iterator<Future<?>> it = brokenRecordWrites.iterator(); it.hasNext(); ) {
+        Future<?> write = it.next();
+        if (!wait && !write.isDone()) {
+          continue;
+        }
+        it.remove();
+        try {
+          write.get();
+        } catch (ExecutionException e) {
+          throw e.getCause() instanceof RuntimeException
+              ? (RuntimeException) e.getCause()
+              : SnowflakeErrors.ERROR_2003.getException(e, telemetryService);
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          throw SnowflakeErrors.ERROR_2003.getException(e, telemetryService);
+        }
+      }
+    }
+
     private byte[] snowflakeContentToByteArray(SnowflakeRecordContent content) {
       if (content == null) {
         return null;
@@ -799,36 +1558,85 @@ class SnowflakeSinkServiceV1 implements SnowflakeSinkService {
     }
 
     private long getOffset() {
+      // broken records have to be on the table stage before their offsets get committed
+      checkBrokenDataWrites(true);
+      ingestStagedFiles();
+      return committedOffset.get();
+    }
+
+    /**
+     * Send the files flushed so far to Snowpipe and move the committed offset past them. Called by
+     * preCommit and, in eager mode, by the background ingest shortly after a flush - the ingest
+     * lock makes preCommit wait for a background call in progress.
+     */
+    private void ingestStagedFiles() {
+      ingestPipe(Collections.singletonList(this));
+    }
+
+    /**
+     * Take the files flushed so far, caller has to hold the ingest lock
+     *
+     * @return files to ingest, or null if there are none
+     */
+    @Nullable
+    private PendingIngest takeStagedFiles() {
       if (fileNames.isEmpty()) {
-        return committedOffset.get();
+        return null;
       }
-
-      List<String> fileNamesCopy = new ArrayList<>();
-      List<String> fileNamesForMetrics = new ArrayList<>();
       fileListLock.lock();
       try {
-        fileNamesCopy.addAll(fileNames);
-        fileNamesForMetrics.addAll(fileNames);
+        // flushed offset is updated together with the file list
+        PendingIngest pending = new PendingIngest(this, fileNames, flushedOffset.get());
         fileNames = new LinkedList<>();
+        return pending;
       } finally {
         fileListLock.unlock();
       }
+    }
 
-      LOGGER.info("pipe {}, ingest files: {}", pipeName, fileNamesCopy);
-
-      ingestionService.ingestFiles(fileNamesCopy);
+    // put the files back, so the next attempt picks them up again
+    private void requeueStagedFiles(List<String> files) {
+      fileListLock.lock();
+      try {
+        fileNames.addAll(0, files);
+      } finally {
+        fileListLock.unlock();
+      }
+    }
 
+    private void markIngested(PendingIngest ingested) {
       // committedOffset should be updated only when ingestFiles has succeeded.
-      committedOffset.set(flushedOffset.get());
+      committedOffset.set(ingested.flushedOffset);
+      ingested.files.forEach(stagedFileBytes::remove);
       // update telemetry data
       long currentTime = System.currentTimeMillis();
       pipeStatus.setCommittedOffset(committedOffset.get() - 1);
-      pipeStatus.addAndGetFileCountOnIngestion(fileNamesForMetrics.size());
-      fileNamesForMetrics.forEach(
+      pipeStatus.addAndGetFileCountOnIngestion(ingested.files.size());
+      ingested.files.forEach(
           name ->
               pipeStatus.updateCommitLag(currentTime - FileNameUtils.fileNameToTimeIngested(name)));
+    }
 
-      return committedOffset.get();
+    // ingest freshly flushed files in the background, flushes within the window share one call
+    private void scheduleEagerIngest() {
+      if (eagerIngestExecutor == null || !eagerIngestScheduled.compareAndSet(false, true)) {
+        return;
+      }
+      eagerIngestTask =
+          eagerIngestExecutor.schedule(
+              () -> {
+                eagerIngestScheduled.set(false);
+                try {
+                  ingestStagedFiles();
+                } catch (Exception e) {
+                  LOGGER.warn(
+                      "pipe {}: eager ingest failed, files are left for the next commit: {}",
+                      pipeName,
+                      e.getMessage());
+                }
+              },
+              eagerIngestDelayMillis,
+              TimeUnit.MILLISECONDS);
     }
 
     private void flush(final SnowpipeBuffer buff) {
@@ -839,110 +1647,162 @@ class SnowflakeSinkServiceV1 implements SnowflakeSinkService {
 
       // If we failed to submit/put, throw an runtime exception that kills the connector.
       // SnowflakeThreadPoolUtils.flusherThreadPool.submit(
-      String fileName = FileNameUtils.fileName(prefix, buff.getFirstOffset(), buff.getLastOffset());
-      String content = buff.getData();
-      conn.putWithCache(stageName, fileName, content);
+      List<String> flushedFiles = new ArrayList<>();
+      try {
+        if (buff.isAvro()) {
+          for (AvroStagedFile file : buff.getAvroFiles()) {
+            String fileName =
+                FileNameUtils.fileName(
+                    prefix, file.getFirstOffset(), file.getLastOffset(), fileFormat, compression);
+            upload(fileName, file.finish());
+            flushedFiles.add(fileName);
+          }
+        } else {
+          String fileName =
+              FileNameUtils.fileName(
+                  prefix, buff.getFirstOffset(), buff.getLastOffset(), fileFormat, compression);
+          if (buff.isSpilled()) {
+            upload(fileName, buff.getSpilledData());
+          } else {
+            upload(fileName, buff.getData());
+          }
+          flushedFiles.add(fileName);
+        }
+      } finally {
+        buff.release();
+      }
+      flushBrokenData();
 
       // compute metrics which will be exported to JMX for now.
       // TODO: Send it to Telemetry API too
       computeBufferMetrics(buff);
 
-      // This is safe and atomic
-      flushedOffset.updateAndGet((value) -> Math.max(buff.getLastOffset() + 1, value));
-      pipeStatus.setFlushedOffset(flushedOffset.get() - 1);
-      pipeStatus.addAndGetFileCountOnStage(1L); // plus one
-      pipeStatus.resetMemoryUsage();
-
       fileListLock.lock();
       try {
-        fileNames.add(fileName);
-        if (useStageFilesProcessor) {
-          stageFileProcessorClient.registerNewStageFile(fileName);
-        } else {
-          cleanerFileNames.add(fileName);
+        // updated under the file list lock, so that an ingest never sees the offset of a file it
+        // does not ingest
+        flushedOffset.updateAndGet((value) -> Math.max(buff.getLastOffset() + 1, value));
+        fileNames.addAll(flushedFiles);
+        long bytesPerFile = buff.getBufferSizeBytes() / Math.max(1, flushedFiles.size());
+        for (String fileName : flushedFiles) {
+          stagedFileBytes.put(fileName, bytesPerFile);
+          if (useStageFilesProcessor) {
+            stageFileProcessorClient.registerNewStageFile(fileName);
+          } else {
+            cleanerFileNames.add(fileName);
+          }
         }
       } finally {
         fileListLock.unlock();
       }
+      pipeStatus.setFlushedOffset(flushedOffset.get() - 1);
+      pipeStatus.addAndGetFileCountOnStage(flushedFiles.size());
+      pipeStatus.resetMemoryUsage();
+
+      LOGGER.info("pipe {}, flush pipe: {}", pipeName, String.join(", ", flushedFiles));
+      scheduleEagerIngest();
+    }
+
+    // large files are compressed on all cores, others are compressed by the driver on upload,
+    // or by the connector for zstd
+    private void upload(String fileName, String content) {
+      if (parallelCompressor != null && ParallelCompressor.isWorthSplitting(content.length())) {
+        upload(fileName, content.getBytes(StandardCharsets.UTF_8));
+      } else if (zstdCompressor != null) {
+        conn.putCompressedWithCache(stageName, fileName, zstdCompressor.compress(content));
+      } else {
+        conn.putWithCache(stageName, fileName, content);
+      }
+    }
 
-      LOGGER.info("pipe {}, flush pipe: {}", pipeName, fileName);
+    private void upload(String fileName, byte[] content) {
+      if (parallelCompressor != null && ParallelCompressor.isWorthSplitting(content.length)) {
+        conn.putCompressedWithCache(stageName, fileName, parallelCompressor.compress(content));
+      } else if (zstdCompressor != null) {
+        conn.putCompressedWithCache(stageName, fileName, zstdCompressor.compress(content));
+      } else {
+        conn.putWithCache(stageName, fileName, content);
+      }
+    }
+
+    // spilled files are streamed from disk, they are never split
+    private void upload(String fileName, Path localFile) {
+      if (zstdCompressor != null) {
+        conn.putCompressedWithCache(stageName, fileName, zstdCompressor.compress(localFile));
+      } else {
+        conn.putWithCache(stageName, fileName, localFile);
+      }
     }
 
     private void checkStatus() {
-      // We are using a temporary list which will reset the cleanerFileNames
+      // We are using a temporary index which will reset the cleanerFileNames
       // After this checkStatus() call, we will have an updated cleanerFileNames which are subset of
       // existing cleanerFileNames
-      // this time th
-      List<String> tmpFileNames;
+      StagedFileIndex tmpFiles;
 
       fileListLock.lock();
       try {
-        tmpFileNames = cleanerFileNames;
-        cleanerFileNames = new LinkedList<>();
+        tmpFiles = cleanerFileNames;
+        cleanerFileNames = new StagedFileIndex();
       } finally {
         fileListLock.unlock();
       }
 
       long currentTime = System.currentTimeMillis();
-      List<String> loadedFiles = new LinkedList<>();
-      List<String> failedFiles = new LinkedList<>();
+      List<StagedFile> loadedFiles = new ArrayList<>();
+      List<StagedFile> failedFiles = new ArrayList<>();
 
       // ingest report
       // This will update the loadedFiles (successfully loaded) &
       // failedFiles: PARTIAL + FAILED
-      // In any cases tmpFileNames will be updated.
-      // If we get all files in ingestReport, tmpFileNames will be empty
+      // In any cases tmpFiles will be updated.
+      // If we get all files in ingestReport, tmpFiles will be empty
       filterResultFromSnowpipeScan(
-          ingestionService.readIngestReport(tmpFileNames), tmpFileNames, loadedFiles, failedFiles);
-
-      // old files
-      List<String> oldFiles = new LinkedList<>();
+          ingestionService.readIngestReport(tmpFiles.names()), tmpFiles, loadedFiles, failedFiles);
 
-      // iterate over a copy since failed files get removed from it
       // Iterate over those files which were not found in ingest report call and are sitting more
       // than an hour earlier.
-      // Also add those files into oldFiles which are not purged/found in ingestReport since last 10
-      // minutes.
-      new LinkedList<>(tmpFileNames)
-          .forEach(
-              name -> {
-                long time = FileNameUtils.fileNameToTimeIngested(name);
-                if (time < currentTime - ONE_HOUR) {
-                  failedFiles.add(name);
-                  tmpFileNames.remove(name);
-                } else if (time < currentTime - TEN_MINUTES) {
-                  oldFiles.add(name);
-                }
-              });
+      // Also check whether there are files which are not purged/found in ingestReport since last
+      // 10 minutes.
+      boolean hasOldFiles = false;
+      // iterate over a copy since failed files get removed from the index
+      for (StagedFile file : new ArrayList<>(tmpFiles.files())) {
+        long time = file.getTimeIngested();
+        if (time < currentTime - ONE_HOUR) {
+          failedFiles.add(file);
+          tmpFiles.remove(file.getName());
+        } else if (time < currentTime - TEN_MINUTES) {
+          hasOldFiles = true;
+        }
+      }
       // load history
       // Use loadHistoryScan API to scan last one hour of data and if filter files from above
       // filtered list.
       // This is the last filtering we do and after this, we start purging loadedFiles and moving
       // failedFiles to tableStage
-      if (!oldFiles.isEmpty()) {
+      if (hasOldFiles) {
         filterResultFromSnowpipeScan(
-            ingestionService.readOneHourHistory(tmpFileNames, currentTime - ONE_HOUR),
-            tmpFileNames,
+            ingestionService.readOneHourHistory(tmpFiles.names(), currentTime - ONE_HOUR),
+            tmpFiles,
             loadedFiles,
             failedFiles);
       }
-      purge(loadedFiles);
+      purge(toFileNames(loadedFiles));
 
-      moveToTableStage(failedFiles);
+      moveToTableStage(toFileNames(failedFiles));
 
       fileListLock.lock();
       try {
         // Add back all those files which were neither found in ingestReport nor in loadHistoryScan
-        cleanerFileNames.addAll(tmpFileNames);
+        cleanerFileNames.addAll(tmpFiles);
       } finally {
         fileListLock.unlock();
       }
 
       // update purged offset in telemetry
       loadedFiles.forEach(
-          name ->
-              pipeStatus.setPurgedOffsetAtomically(
-                  value -> Math.max(FileNameUtils.fileNameToEndOffset(name), value)));
+          file ->
+              pipeStatus.setPurgedOffsetAtomically(value -> Math.max(file.getEndOffset(), value)));
       // update file count in telemetry
       int fileCountRemovedFromStage = loadedFiles.size() + failedFiles.size();
       pipeStatus.addAndGetFileCountOnStage(-fileCountRemovedFromStage);
@@ -952,29 +1812,25 @@ class SnowflakeSinkServiceV1 implements SnowflakeSinkService {
       pipeStatus.addAndGetFileCountPurged(loadedFiles.size());
       // update lag information
       loadedFiles.forEach(
-          name ->
-              pipeStatus.updateIngestionLag(
-                  currentTime - FileNameUtils.fileNameToTimeIngested(name)));
+          file -> pipeStatus.updateIngestionLag(currentTime - file.getTimeIngested()));
     }
 
     // fileStatus Map may include mapping of fileNames with their ingestion status.
     // It can be received either from insertReport API or loadHistoryScan
     private void filterResultFromSnowpipeScan(
         Map<String, InternalUtils.IngestedFileStatus> fileStatus,
-        List<String> allFiles,
-        List<String> loadedFiles,
-        List<String> failedFiles) {
+        StagedFileIndex allFiles,
+        List<StagedFile> loadedFiles,
+        List<StagedFile> failedFiles) {
       fileStatus.forEach(
           (name, status) -> {
             switch (status) {
               case LOADED:
-                loadedFiles.add(name);
-                allFiles.remove(name);
+                Optional.ofNullable(allFiles.remove(name)).ifPresent(loadedFiles::add);
                 break;
               case FAILED:
               case PARTIALLY_LOADED:
-                failedFiles.add(name);
-                allFiles.remove(name);
+                Optional.ofNullable(allFiles.remove(name)).ifPresent(failedFiles::add);
                 break;
               default:
                 // otherwise, do nothing
@@ -982,6 +1838,10 @@ class SnowflakeSinkServiceV1 implements SnowflakeSinkService {
           });
     }
 
+    private List<String> toFileNames(List<StagedFile> files) {
+      return files.stream().map(StagedFile::getName).collect(Collectors.toList());
+    }
+
     private void purge(List<String> files) {
       if (!files.isEmpty()) {
         LOGGER.debug(
@@ -1005,19 +1865,44 @@ class SnowflakeSinkServiceV1 implements SnowflakeSinkService {
     }
 
     private void recover(SnowflakeTelemetryPipeCreation pipeCreation) {
-      if (conn.pipeExist(pipeName)) {
-        if (!conn.isPipeCompatible(tableName, stageName, pipeName)) {
+      // a shared pipe is checked by the first partition using it
+      if (recoveredPipes.contains(ingestPipeName)) {
+        pipeCreation.setReusePipe(true);
+        return;
+      }
+      if (conn.pipeExist(ingestPipeName)) {
+        if (!conn.isPipeCompatible(tableName, stageName, ingestPipeName, fileFormat)) {
           throw SnowflakeErrors.ERROR_5005.getException(
-              "pipe name: " + pipeName, conn.getTelemetryClient());
+              "pipe name: " + ingestPipeName, conn.getTelemetryClient());
         }
-        LOGGER.info("pipe {}, recovered from existing pipe", pipeName);
+        LOGGER.info("pipe {}, recovered from existing pipe", ingestPipeName);
         pipeCreation.setReusePipe(true);
       } else {
-        conn.createPipe(tableName, stageName, pipeName);
+        conn.createPipe(tableName, stageName, ingestPipeName, fileFormat);
       }
+      recoveredPipes.add(ingestPipeName);
     }
 
     private void close() {
+      ScheduledFuture<?> pendingIngest = eagerIngestTask;
+      if (pendingIngest != null) {
+        pendingIngest.cancel(false);
+      }
+      // wait for a background ingest in progress, the ingest client is closed below
+      ingestLock.lock();
+      ingestLock.unlock();
+      try {
+        flushBrokenData();
+        checkBrokenDataWrites(true);
+      } catch (Exception e) {
+        LOGGER.warn("pipe {}: failed to write broken records: {}", pipeName, e.getMessage());
+      }
+      bufferLock.lock();
+      try {
+        buffer.release();
+      } finally {
+        bufferLock.unlock();
+      }
       if (stageFileProcessorClient != null) {
         stageFileProcessorClient.close();
       } else {
@@ -1027,7 +1912,11 @@ class SnowflakeSinkServiceV1 implements SnowflakeSinkService {
           LOGGER.warn("Failed to terminate Cleaner or Flusher");
         }
       }
-      ingestionService.close();
+      if (historySubscription != null) {
+        historySubscription.close();
+      } else {
+        ingestionService.close();
+      }
       telemetryService.reportKafkaPartitionUsage(pipeStatus, true);
       LOGGER.info("pipe {}: service closed", pipeName);
     }
@@ -1111,28 +2000,117 @@ class SnowflakeSinkServiceV1 implements SnowflakeSinkService {
      */
     private class SnowpipeBuffer extends PartitionBuffer<String> {
       private final StringBuilder stringBuilder;
+      // set once the buffer content has been moved to local disk
+      @Nullable private BufferSpillManager.SpillFile spillFile;
+      // avro files, one per run of records of a writer schema, only used for the avro file format
+      @Nullable private final AvroStagedFiles avroFiles;
 
       private SnowpipeBuffer() {
         super();
         stringBuilder = new StringBuilder();
+        avroFiles = fileFormat == SnowpipeFileFormat.AVRO ? new AvroStagedFiles() : null;
       }
 
       @Override
       public void insert(SinkRecord record) {
+        if (avroFiles != null) {
+          insertAvro(record);
+          return;
+        }
         String data = recordService.getProcessedRecordForSnowpipe(record);
         if (getBufferSizeBytes() == 0L) {
           setFirstOffset(record.kafkaOffset());
         }
 
-        stringBuilder.append(data);
+        if (spillFile != null) {
+          spillFile.append(data);
+        } else {
+          stringBuilder.append(data);
+        }
         setNumOfRecords(getNumOfRecords() + 1);
-        setBufferSizeBytes(getBufferSizeBytes() + data.length() * 2L); // 1 char = 2 bytes
+        setBufferSizeBytes(getBufferSizeBytes() + data.length() * 2L);
         setLastOffset(record.kafkaOffset());
         pipeStatus.addAndGetMemoryUsage(data.length() * 2L);
       }
 
+      // the raw datum is staged as is, in the file of its writer schema
+      private void insertAvro(SinkRecord record) {
+        String meta = recordService.getProcessedMetadataForSnowpipe(record);
+        Object value = record.value();
+        long dataSizeBytes;
+        if (value == null
+            || (value instanceof SnowflakeRecordContent
+                && ((SnowflakeRecordContent) value).isRecordContentValueNull())) {
+          dataSizeBytes =
+              avroFiles.append(
+                  record.kafkaOffset(), SnowflakeRecordContent.NON_AVRO_SCHEMA, null, meta, null);
+        } else if (value instanceof SnowflakeRecordContent
+            && ((SnowflakeRecordContent) value).isAvroPassthrough()) {
+          SnowflakeRecordContent content = (SnowflakeRecordContent) value;
+          dataSizeBytes =
+              avroFiles.append(
+                  record.kafkaOffset(),
+                  content.getSchemaID(),
+                  content.getAvroSchema(),
+                  meta,
+                  content.getAvroDatum());
+        } else {
+          throw SnowflakeErrors.ERROR_5026.getException(
+              "record content of topic " + record.topic() + " is not an avro datum");
+        }
+        if (getBufferSizeBytes() == 0L) {
+          setFirstOffset(record.kafkaOffset());
+        }
+        setNumOfRecords(getNumOfRecords() + 1);
+        setBufferSizeBytes(getBufferSizeBytes() + dataSizeBytes);
+        setLastOffset(record.kafkaOffset());
+        pipeStatus.addAndGetMemoryUsage(dataSizeBytes);
+      }
+
+      // move the content to local disk, the heap budget accounts the buffer as relieved
+      private void spill() {
+        if (spillFile != null) {
+          return;
+        }
+        spillFile = bufferSpillManager.createSpillFile();
+        spillFile.append(stringBuilder);
+        stringBuilder.setLength(0);
+        stringBuilder.trimToSize();
+        LOGGER.info(
+            "pipe {}: buffer heap budget exceeded, spilled {} records to {}",
+            pipeName,
+            getNumOfRecords(),
+            spillFile.getPath());
+      }
+
       public String getData() {
         String result = stringBuilder.toString();
+        logFlush();
+        return result;
+      }
+
+      private boolean isSpilled() {
+        return spillFile != null;
+      }
+
+      private boolean isAvro() {
+        return avroFiles != null;
+      }
+
+      /** @return avro files of the buffer, in the order of their offsets, see {@link #isAvro()} */
+      private List<AvroStagedFile> getAvroFiles() {
+        logFlush();
+        return avroFiles.getFiles();
+      }
+
+      /** @return local file holding the buffer content, see {@link #isSpilled()} */
+      private Path getSpilledData() {
+        Path path = spillFile.seal();
+        logFlush();
+        return path;
+      }
+
+      private void logFlush() {
         LOGGER.debug(
             "flush buffer: {} records, {} bytes, offset {} - {}",
             getNumOfRecords(),
@@ -1141,7 +2119,14 @@ class SnowflakeSinkServiceV1 implements SnowflakeSinkService {
             getLastOffset());
         pipeStatus.addAndGetTotalSizeOfData(getBufferSizeBytes());
         pipeStatus.addAndGetTotalNumberOfRecord(getNumOfRecords());
-        return result;
+      }
+
+      /** Drop the spill file, once the buffer is not needed */
+      private void release() {
+        if (spillFile != null) {
+          spillFile.delete();
+          spillFile = null;
+        }
       }
 
       @Override
@@ -0,0 +1,42 @@
+package com.snowflake.kafka.connector.internal;
+
+/**
+ * Format of the files staged for Snowpipe. Pipe definitions and file names are derived from the
+ * format, a pipe only loads files of the format it was created for.
+ */
+public enum SnowpipeFileFormat {
+  /** One JSON object per record, holding its content and metadata */
+  JSON("json", "$1:meta, $1:content", "type = 'json'"),
+  /**
+   * Avro object container file of the raw record datums, see {@link AvroStagedFile}. Metadata is
+   * carried as json text, since its shape varies from record to record.
+   */
+  AVRO("avro", "parse_json($1:meta), $1:content", "type = 'avro'");
+
+  private final String extension;
+  private final String copySelect;
+  private final String fileFormatOptions;
+
+  SnowpipeFileFormat(String extension, String copySelect, String fileFormatOptions) {
+    this.extension = extension;
+    this.copySelect = copySelect;
+    this.fileFormatOptions = fileFormatOptions;
+  }
+
+  /** @return extension of the staged files, before the compression extension */
+  public String getExtension() {
+    return extension;
+  }
+
+  /**
+   * @return select list of the pipe's copy statement, producing RECORD_METADATA and RECORD_CONTENT
+   */
+  String getCopySelect() {
+    return copySelect;
+  }
+
+  /** @return options of the pipe's file format */
+  String getFileFormatOptions() {
+    return fileFormatOptions;
+  }
+}
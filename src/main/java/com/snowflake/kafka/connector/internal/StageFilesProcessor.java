@@ -27,6 +27,7 @@ import java.util.function.Consumer;
 import java.util.function.Predicate;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
+import javax.annotation.Nullable;
 import net.snowflake.ingest.connection.HistoryResponse;
 
 /**
@@ -65,6 +66,11 @@ class StageFilesProcessor {
   private final AtomicReference<ScheduledFuture<?>> cleanerTaskHolder = new AtomicReference<>();
   private final TimeSupplier currentTimeSupplier;
   private final SnowflakeIngestionService ingestionService;
+  // when set, ingest history is polled by the task level history service rather than by this
+  // processor
+  @Nullable private final IngestHistoryService.Subscription historySubscription;
+  // when set, the first stage listing is taken from the snapshot made at task start
+  @Nullable private final StageFilesSnapshot stageSnapshot;
   private final SnowflakeTelemetryPipeStatus pipeTelemetry;
   private final SnowflakeTelemetryService telemetryService;
   private final FilteringPredicates filters;
@@ -101,6 +107,8 @@ class StageFilesProcessor {
       String prefix,
       SnowflakeConnectionService conn,
       SnowflakeIngestionService ingestionService,
+      @Nullable IngestHistoryService.Subscription historySubscription,
+      @Nullable StageFilesSnapshot stageSnapshot,
       SnowflakeTelemetryPipeStatus pipeTelemetry,
       SnowflakeTelemetryService telemetryService,
       ScheduledExecutorService schedulingExecutor) {
@@ -111,6 +119,8 @@ class StageFilesProcessor {
         prefix,
         conn,
         ingestionService,
+        historySubscription,
+        stageSnapshot,
         pipeTelemetry,
         telemetryService,
         schedulingExecutor,
@@ -129,6 +139,35 @@ class StageFilesProcessor {
       SnowflakeTelemetryService telemetryService,
       ScheduledExecutorService schedulingExecutor,
       TimeSupplier currentTimeSupplier) {
+    this(
+        pipeName,
+        tableName,
+        stageName,
+        prefix,
+        conn,
+        ingestionService,
+        null,
+        null,
+        pipeTelemetry,
+        telemetryService,
+        schedulingExecutor,
+        currentTimeSupplier);
+  }
+
+  @VisibleForTesting
+  StageFilesProcessor(
+      String pipeName,
+      String tableName,
+      String stageName,
+      String prefix,
+      SnowflakeConnectionService conn,
+      SnowflakeIngestionService ingestionService,
+      @Nullable IngestHistoryService.Subscription historySubscription,
+      @Nullable StageFilesSnapshot stageSnapshot,
+      SnowflakeTelemetryPipeStatus pipeTelemetry,
+      SnowflakeTelemetryService telemetryService,
+      ScheduledExecutorService schedulingExecutor,
+      TimeSupplier currentTimeSupplier) {
     this.pipeName = pipeName;
     this.tableName = tableName;
     this.stageName = stageName;
@@ -136,6 +175,8 @@ class StageFilesProcessor {
     this.conn = conn;
     this.currentTimeSupplier = currentTimeSupplier;
     this.ingestionService = ingestionService;
+    this.historySubscription = historySubscription;
+    this.stageSnapshot = stageSnapshot;
     this.telemetryService = telemetryService;
     this.pipeTelemetry = pipeTelemetry;
     this.schedulingExecutor = schedulingExecutor;
@@ -248,6 +289,10 @@ class StageFilesProcessor {
     // state
     ctx.ingestHistory.clear();
     ctx.historyMarker.set(null);
+    if (historySubscription != null) {
+      // the history service does not poll for us, ask it for everything it still remembers
+      historySubscription.replay();
+    }
     LOGGER.debug("for pipe {} found {} file(s) on remote stage", pipeName, remoteStageFiles.size());
   }
 
@@ -287,16 +332,14 @@ class StageFilesProcessor {
 
     // any files we didn't process will spill over to the next clean cycle (neither purged nor moved
     // to table stage)
-    List<String> filesToTrack =
-        fileCategories.query(filters.trackableFilesPredicate).collect(Collectors.toList());
+    ctx.files.removeAll(fileCategories.dirtyFiles);
+    fileCategories.query(filters.trackableFilesPredicate.negate()).forEach(ctx.files::remove);
     cleanOldHistory(ctx);
     LOGGER.debug(
         "keep {} files and {} history entries for next cycle for pipe {}",
-        filesToTrack.size(),
+        ctx.files.size(),
         ctx.ingestHistory.size(),
         pipeName);
-    ctx.files.clear();
-    ctx.files.addAll(filesToTrack);
   }
 
   private void loadIngestReport(FileCategorizer fileCategories, ProcessorContext ctx) {
@@ -308,8 +351,16 @@ class StageFilesProcessor {
             + 5;
 
     Map<String, InternalUtils.IngestedFileStatus> history = new HashMap<>();
-    ingestionService.readIngestHistoryForward(
-        history, filters.currentPartitionFilePredicate, ctx.historyMarker, (int) secondsSinceStart);
+    if (historySubscription != null) {
+      // history of the pipe is polled once for all partitions, pick up entries of this partition
+      historySubscription.drainTo(history);
+    } else {
+      ingestionService.readIngestHistoryForward(
+          history,
+          filters.currentPartitionFilePredicate,
+          ctx.historyMarker,
+          (int) secondsSinceStart);
+    }
 
     mergeHistory(ctx.ingestHistory, history);
 
@@ -360,7 +411,7 @@ class StageFilesProcessor {
             .query(filters.loadedFilesPredicate)
             .peek(
                 file -> {
-                  long fileOffset = FileNameUtils.fileNameToEndOffset(file);
+                  long fileOffset = ctx.files.get(file).getEndOffset();
                   maxFileOffset.set(Math.max(fileOffset, maxFileOffset.get()));
                 })
             .collect(Collectors.toList());
@@ -419,7 +470,9 @@ class StageFilesProcessor {
 
   private Collection<String> fetchCurrentStage() {
     try {
-      return conn.listStage(stageName, prefix);
+      // the snapshot can serve the very first listing only
+      List<String> snapshotFiles = stageSnapshot == null ? null : stageSnapshot.take(prefix);
+      return snapshotFiles != null ? snapshotFiles : conn.listStage(stageName, prefix);
     } catch (Throwable t) {
       LOGGER.warn("Failed to fetch current stage state due to error:\n{}", t.getMessage());
       return new ArrayList<>();
@@ -450,8 +503,23 @@ class StageFilesProcessor {
     private final long currentOffset;
 
     static FileCategorizer build(Collection<String> files, long currentOffset) {
+      StagedFileIndex index = new StagedFileIndex();
+      index.addAll(files);
+      return build(index, currentOffset);
+    }
+
+    static FileCategorizer build(StagedFileIndex files, long currentOffset) {
       FileCategorizer categorizer = new FileCategorizer(currentOffset);
-      files.forEach(categorizer::categorizeFile);
+      // files starting at or after the current offset would be generated again
+      files.startingFrom(currentOffset).forEach(file -> categorizer.dirtyFiles.add(file.getName()));
+      files
+          .startingBefore(currentOffset)
+          .forEach(
+              file ->
+                  categorizer.stageFiles.put(
+                      file.getName(),
+                      new IngestEntry(
+                          InternalUtils.IngestedFileStatus.NOT_FOUND, file.getTimeIngested())));
       return categorizer;
     }
 
@@ -459,17 +527,6 @@ class StageFilesProcessor {
       this.currentOffset = startOffset;
     }
 
-    private void categorizeFile(String file) {
-      long fileOffset = FileNameUtils.fileNameToStartOffset(file);
-      long timestamp = FileNameUtils.fileNameToTimeIngested(file);
-      if (currentOffset <= fileOffset) {
-        dirtyFiles.add(file);
-      } else {
-        IngestEntry entry = new IngestEntry(InternalUtils.IngestedFileStatus.NOT_FOUND, timestamp);
-        stageFiles.put(file, entry);
-      }
-    }
-
     void updateFileStatus(Map<String, IngestEntry> report) {
       report.forEach(
           (fileName, reportEntry) ->
@@ -626,9 +683,19 @@ class StageFilesProcessor {
       // but individual processor instance is interested only in tracking files for "this"
       // partition,
       // thus the file filter - pick up history entries only for files in given partition
-      String prefix = filePrefix.toUpperCase();
+      Predicate<String> currentPartitionFileNamePredicate =
+          partitionFileNamePredicate(filePrefix);
       currentPartitionFilePredicate =
-          fileEntry -> fileEntry.getPath().toUpperCase().startsWith(prefix);
+          fileEntry -> currentPartitionFileNamePredicate.test(fileEntry.getPath());
+    }
+
+    /**
+     * @param filePrefix file prefix of the partition
+     * @return predicate matching names of the files belonging to the partition
+     */
+    static Predicate<String> partitionFileNamePredicate(String filePrefix) {
+      String prefix = filePrefix.toUpperCase();
+      return fileName -> fileName.toUpperCase().startsWith(prefix);
     }
   }
 
@@ -636,7 +703,7 @@ class StageFilesProcessor {
   // parameters
   @VisibleForTesting
   static class ProcessorContext {
-    final List<String> files = new ArrayList<>();
+    final StagedFileIndex files = new StagedFileIndex();
     final Map<String, IngestEntry> ingestHistory = new HashMap<>();
     final AtomicReference<String> historyMarker = new AtomicReference<>();
     final PipeProgressRegistryTelemetry progressTelemetry;
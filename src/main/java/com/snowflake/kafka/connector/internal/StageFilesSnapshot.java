@@ -0,0 +1,114 @@
+package com.snowflake.kafka.connector.internal;
+
+import com.google.common.annotations.VisibleForTesting;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.LongSupplier;
+import javax.annotation.Nullable;
+
+/**
+ * Files found on a stage at task start, listed once for all partitions of the task writing to the
+ * stage instead of once per partition. The listing is bucketed by partition prefix, and every
+ * partition can take its bucket exactly once - later listings have to go to the stage again.
+ *
+ * <p>A partition is only initialized when its first record arrives, so buckets expire after {@link
+ * #MAX_AGE}, partitions starting later list the stage on their own.
+ */
+class StageFilesSnapshot {
+  private static final KCLogger LOGGER = new KCLogger(StageFilesSnapshot.class.getName());
+
+  static final Duration MAX_AGE = Duration.ofMinutes(5);
+
+  private final String stageName;
+  private final Map<String, List<String>> filesByPrefix = new HashMap<>();
+  // partition prefixes covered by the snapshot, partitions without files have no bucket
+  private final Set<String> prefixes;
+  private final long createTimeMillis;
+  private final LongSupplier currentTimeSupplier;
+
+  @VisibleForTesting
+  StageFilesSnapshot(String stageName, Collection<String> prefixes, LongSupplier currentTime) {
+    this.stageName = stageName;
+    this.prefixes = new HashSet<>(prefixes);
+    this.currentTimeSupplier = currentTime;
+    this.createTimeMillis = currentTime.getAsLong();
+  }
+
+  /**
+   * List the stage once and bucket its files by partition prefix
+   *
+   * @param conn connection service
+   * @param stageName stage name
+   * @param tablePrefix prefix shared by all files of the table, see {@link
+   *     FileNameUtils#tablePrefix(String, String)}
+   * @param prefixes prefixes of the partitions the snapshot is taken for
+   * @return snapshot of the stage
+   */
+  static StageFilesSnapshot take(
+      SnowflakeConnectionService conn,
+      String stageName,
+      String tablePrefix,
+      Collection<String> prefixes) {
+    StageFilesSnapshot snapshot =
+        new StageFilesSnapshot(stageName, prefixes, System::currentTimeMillis);
+    conn.listStage(stageName, tablePrefix, snapshot::add);
+    LOGGER.info(
+        "stage {} snapshot taken for {} partition(s), {} of them have files",
+        stageName,
+        prefixes.size(),
+        snapshot.filesByPrefix.size());
+    return snapshot;
+  }
+
+  @VisibleForTesting
+  synchronized void add(String fileName) {
+    String prefix = fileName.substring(0, fileName.lastIndexOf('/') + 1);
+    // files of partitions not assigned to this task are dropped right away
+    if (prefixes.contains(prefix)) {
+      filesByPrefix.computeIfAbsent(prefix, p -> new ArrayList<>()).add(fileName);
+    }
+  }
+
+  /**
+   * Count the files of a partition, without taking them
+   *
+   * @param prefix partition prefix, see {@link FileNameUtils#filePrefix(String, String, int)}
+   * @return number of files of the partition, or -1 when the partition has to list the stage
+   *     itself
+   */
+  synchronized int count(String prefix) {
+    if (!prefixes.contains(prefix)
+        || currentTimeSupplier.getAsLong() - createTimeMillis > MAX_AGE.toMillis()) {
+      return -1;
+    }
+    List<String> files = filesByPrefix.get(prefix);
+    return files == null ? 0 : files.size();
+  }
+
+  /**
+   * Take the files of a partition. Can be called once per partition.
+   *
+   * @param prefix partition prefix, see {@link FileNameUtils#filePrefix(String, String, int)}
+   * @return files of the partition, or null when the partition has to list the stage itself
+   */
+  @Nullable
+  synchronized List<String> take(String prefix) {
+    if (!prefixes.remove(prefix)) {
+      return null;
+    }
+    if (currentTimeSupplier.getAsLong() - createTimeMillis > MAX_AGE.toMillis()) {
+      LOGGER.debug("stage {} snapshot expired, {} has to list the stage", stageName, prefix);
+      prefixes.clear();
+      filesByPrefix.clear();
+      return null;
+    }
+    List<String> files = filesByPrefix.remove(prefix);
+    return files == null ? new ArrayList<>() : files;
+  }
+}
@@ -0,0 +1,90 @@
+package com.snowflake.kafka.connector.internal;
+
+import com.google.common.base.MoreObjects;
+import java.util.Comparator;
+
+/**
+ * Immutable view of a data file uploaded to the internal stage. All values encoded in the file
+ * name are parsed once, see {@link FileNameUtils#fileName(String, long, long)} for the format.
+ */
+final class StagedFile {
+  /** Orders files by their offset range, files with the same range by upload time and name */
+  static final Comparator<StagedFile> OFFSET_ORDER =
+      Comparator.comparingLong(StagedFile::getStartOffset)
+          .thenComparingLong(StagedFile::getEndOffset)
+          .thenComparingLong(StagedFile::getTimeIngested)
+          .thenComparing(StagedFile::getName);
+
+  private final String name;
+  private final int partition;
+  private final long startOffset;
+  private final long endOffset;
+  private final long timeIngested;
+
+  StagedFile(String name, int partition, long startOffset, long endOffset, long timeIngested) {
+    this.name = name;
+    this.partition = partition;
+    this.startOffset = startOffset;
+    this.endOffset = endOffset;
+    this.timeIngested = timeIngested;
+  }
+
+  /**
+   * @param fileName file name
+   * @return parsed file
+   * @throws SnowflakeKafkaConnectorException if the name is not a valid data file name
+   */
+  static StagedFile parse(String fileName) {
+    return FileNameUtils.parseFileName(fileName);
+  }
+
+  /** @return full file name, including the prefix */
+  String getName() {
+    return name;
+  }
+
+  /** @return partition the data of the file belongs to */
+  int getPartition() {
+    return partition;
+  }
+
+  /** @return offset of the first record in the file */
+  long getStartOffset() {
+    return startOffset;
+  }
+
+  /** @return offset of the last record in the file */
+  long getEndOffset() {
+    return endOffset;
+  }
+
+  /** @return time the file was generated at */
+  long getTimeIngested() {
+    return timeIngested;
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) {
+      return true;
+    }
+    if (!(o instanceof StagedFile)) {
+      return false;
+    }
+    return name.equals(((StagedFile) o).name);
+  }
+
+  @Override
+  public int hashCode() {
+    return name.hashCode();
+  }
+
+  @Override
+  public String toString() {
+    return MoreObjects.toStringHelper(this)
+        .add("name", name)
+        .add("startOffset", startOffset)
+        .add("endOffset", endOffset)
+        .toString();
+  }
+}
@@ -0,0 +1,39 @@
+package com.snowflake.kafka.connector.internal;
+
+import java.util.Locale;
+
+/**
+ * Compression of the files staged for Snowpipe. Pipes detect the compression of each file on their
+ * own, so files of different compressions load through the same pipe.
+ */
+public enum StagedFileCompression {
+  /** Compressed by the JDBC driver during upload */
+  GZIP("gz"),
+  /** Compressed by the connector before upload, see {@link ZstdCompressor} */
+  ZSTD("zst");
+
+  private final String extension;
+
+  StagedFileCompression(String extension) {
+    this.extension = extension;
+  }
+
+  /** @return extension of the staged files, after the file format extension */
+  public String getExtension() {
+    return extension;
+  }
+
+  /**
+   * @param fileName name of a staged file
+   * @return compression of the file, named by its extension. Files of any other extension are
+   *     gzip, the JDBC driver compresses them
+   */
+  static StagedFileCompression fromFileName(String fileName) {
+    return fileName.endsWith("." + ZSTD.extension) ? ZSTD : GZIP;
+  }
+
+  @Override
+  public String toString() {
+    return name().toLowerCase(Locale.ROOT);
+  }
+}
@@ -0,0 +1,162 @@
+package com.snowflake.kafka.connector.internal;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.TreeSet;
+import javax.annotation.Nullable;
+
+/**
+ * Collection of staged files of a partition, keyed by file name and ordered by offset. Lookups and
+ * removals by name, as well as offset range queries, stay logarithmic in the number of tracked
+ * files. Not thread safe.
+ */
+class StagedFileIndex {
+  private final Map<String, StagedFile> byName = new HashMap<>();
+  private final NavigableSet<StagedFile> byOffset = new TreeSet<>(StagedFile.OFFSET_ORDER);
+
+  /**
+   * Add a file, parsing its name
+   *
+   * @param fileName file name
+   * @return true if the file was not tracked yet
+   */
+  boolean add(String fileName) {
+    if (byName.containsKey(fileName)) {
+      return false;
+    }
+    return add(StagedFile.parse(fileName));
+  }
+
+  /**
+   * @param file file to add
+   * @return true if the file was not tracked yet
+   */
+  boolean add(StagedFile file) {
+    if (byName.putIfAbsent(file.getName(), file) != null) {
+      return false;
+    }
+    byOffset.add(file);
+    return true;
+  }
+
+  /** @param fileNames file names to add, duplicates are ignored */
+  void addAll(Collection<String> fileNames) {
+    fileNames.forEach(this::add);
+  }
+
+  /** @param other index whose files are added to this one */
+  void addAll(StagedFileIndex other) {
+    other.byOffset.forEach(this::add);
+  }
+
+  /**
+   * @param fileName file name
+   * @return the removed file, or null if it was not tracked
+   */
+  @Nullable
+  StagedFile remove(String fileName) {
+    StagedFile file = byName.remove(fileName);
+    if (file != null) {
+      byOffset.remove(file);
+    }
+    return file;
+  }
+
+  /** @param fileNames names of the files to remove */
+  void removeAll(Collection<String> fileNames) {
+    fileNames.forEach(this::remove);
+  }
+
+  /**
+   * @param fileName file name
+   * @return tracked file, or null if not tracked
+   */
+  @Nullable
+  StagedFile get(String fileName) {
+    return byName.get(fileName);
+  }
+
+  boolean contains(String fileName) {
+    return byName.containsKey(fileName);
+  }
+
+  int size() {
+    return byName.size();
+  }
+
+  boolean isEmpty() {
+    return byName.isEmpty();
+  }
+
+  void clear() {
+    byName.clear();
+    byOffset.clear();
+  }
+
+  /** @return read only view of all files, ordered by offset */
+  NavigableSet<StagedFile> files() {
+    return Collections.unmodifiableNavigableSet(byOffset);
+  }
+
+  /**
+   * @param offset offset
+   * @return read only view of the files starting at or after the given offset, ordered by offset
+   */
+  NavigableSet<StagedFile> startingFrom(long offset) {
+    return Collections.unmodifiableNavigableSet(byOffset.tailSet(probe(offset), true));
+  }
+
+  /**
+   * @param offset offset
+   * @return read only view of the files starting before the given offset, ordered by offset
+   */
+  NavigableSet<StagedFile> startingBefore(long offset) {
+    return Collections.unmodifiableNavigableSet(byOffset.headSet(probe(offset), false));
+  }
+
+  /**
+   * Files chained one after another from the given offset. The chain ends at the first gap, and
+   * before any file overlapping another one, since only one of them can be kept.
+   *
+   * @param offset offset the first file has to start at
+   * @return files covering a contiguous offset range from the given offset, ordered by offset.
+   *     Empty if no file starts at the given offset
+   */
+  List<StagedFile> contiguousFrom(long offset) {
+    List<StagedFile> files = new ArrayList<>();
+    long nextOffset = offset;
+    for (StagedFile file : byOffset.tailSet(probe(offset), true)) {
+      if (file.getStartOffset() < nextOffset) {
+        // files are ordered by start offset, the overlap can only be at the end of the chain
+        while (!files.isEmpty()
+            && files.get(files.size() - 1).getEndOffset() >= file.getStartOffset()) {
+          files.remove(files.size() - 1);
+        }
+        break;
+      }
+      if (file.getStartOffset() > nextOffset) {
+        break;
+      }
+      files.add(file);
+      nextOffset = file.getEndOffset() + 1;
+    }
+    return files;
+  }
+
+  /** @return names of all files, ordered by offset */
+  List<String> names() {
+    List<String> names = new ArrayList<>(byOffset.size());
+    byOffset.forEach(file -> names.add(file.getName()));
+    return names;
+  }
+
+  // sorts before every real file starting at given offset
+  private static StagedFile probe(long offset) {
+    return new StagedFile("", 0, offset, Long.MIN_VALUE, Long.MIN_VALUE);
+  }
+}
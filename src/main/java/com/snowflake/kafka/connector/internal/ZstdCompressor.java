@@ -0,0 +1,82 @@
+package com.snowflake.kafka.connector.internal;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import org.apache.commons.compress.compressors.zstandard.ZstdCompressorOutputStream;
+import org.apache.commons.compress.compressors.zstandard.ZstdUtils;
+
+/**
+ * Compresses staged files with Zstandard before they are uploaded, the JDBC driver only compresses
+ * with gzip. The native library comes with the Kafka clients of the worker.
+ */
+class ZstdCompressor {
+  private final int level;
+
+  ZstdCompressor(int level) {
+    if (!ZstdUtils.isZstdCompressionAvailable()) {
+      throw SnowflakeErrors.ERROR_0031.getException();
+    }
+    this.level = level;
+  }
+
+  /**
+   * @param content file content
+   * @return compressed content, encoded as UTF-8
+   */
+  byte[] compress(String content) {
+    // the content is encoded while it is compressed, it is never copied as a whole
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    try (Writer writer =
+        new OutputStreamWriter(
+            new ZstdCompressorOutputStream(out, level), StandardCharsets.UTF_8)) {
+      writer.write(content);
+    } catch (IOException e) {
+      throw SnowflakeErrors.ERROR_5027.getException(e);
+    }
+    return out.toByteArray();
+  }
+
+  /**
+   * @param content file content
+   * @return compressed content
+   */
+  byte[] compress(byte[] content) {
+    return compress(content, 0, content.length);
+  }
+
+  /**
+   * @param content file content
+   * @param offset start of the part to compress
+   * @param length length of the part to compress
+   * @return compressed part of the content, as a single zstd frame
+   */
+  byte[] compress(byte[] content, int offset, int length) {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    try (OutputStream zstd = new ZstdCompressorOutputStream(out, level)) {
+      zstd.write(content, offset, length);
+    } catch (IOException e) {
+      throw SnowflakeErrors.ERROR_5027.getException(e);
+    }
+    return out.toByteArray();
+  }
+
+  /**
+   * @param localFile local file holding the file content
+   * @return compressed content
+   */
+  byte[] compress(Path localFile) {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    try (OutputStream zstd = new ZstdCompressorOutputStream(out, level)) {
+      Files.copy(localFile, zstd);
+    } catch (IOException e) {
+      throw SnowflakeErrors.ERROR_5027.getException(e);
+    }
+    return out.toByteArray();
+  }
+}
@@ -79,6 +79,45 @@ public class MetricsUtil {
   // in memory buffer count representing the number of records in kafka
   public static final String BUFFER_RECORD_COUNT = "buffer-record-count";
 
+  // Connection pool related constants
+  public static final String CONNECTION_POOL_SUB_DOMAIN = "connection-pool";
+
+  /**
+   * Time spent waiting for a JDBC session of the connection pool, one metric per operation class
+   * (metadata, ddl, stage maintenance and credential)
+   */
+  public static final String CONNECTION_POOL_WAIT_TIME = "wait-time";
+
+  // Worker wide thread pools, shared by all connectors of the worker
+  public static final String SHARED_RESOURCES_PREFIX = "shared";
+
+  public static final String SHARED_SCHEDULER_SUB_DOMAIN = "shared-scheduler";
+
+  public static final String SHARED_IO_POOL_SUB_DOMAIN = "shared-io-pool";
+
+  // threads running a task, the pool is saturated once it reaches the pool size
+  public static final String ACTIVE_THREADS = "active-threads";
+
+  public static final String POOL_SIZE = "pool-size";
+
+  // tasks waiting for a free thread
+  public static final String QUEUED_TASKS = "queued-tasks";
+
+  public static final String COMPLETED_TASKS = "completed-tasks";
+
+  // Heap budget of the partition buffers, see BufferMemoryBudget
+  public static final String BUFFER_BUDGET_SUB_DOMAIN = "buffer-budget";
+
+  public static final String BUFFER_BUDGET_BYTES = "budget-bytes";
+
+  // heap held by the buffers of all tasks of the worker, and of this task
+  public static final String BUFFER_BUDGET_WORKER_USED_BYTES = "worker-used-bytes";
+
+  public static final String BUFFER_BUDGET_TASK_USED_BYTES = "task-used-bytes";
+
+  // buffers flushed or spilled before reaching their thresholds, to get back under the budget
+  public static final String BUFFER_BUDGET_FORCED_FLUSH_COUNT = "forced-flush-count";
+
   // Event Latency related constants
 
   public static final String LATENCY_SUB_DOMAIN = "latencies";
@@ -112,6 +151,12 @@ public class MetricsUtil {
      * file ingestion status through insertReport or loadHistoryScan API.
      */
     INGESTION_LAG("ingestion-lag"),
+
+    /**
+     * Time taken by {@link org.apache.kafka.connect.sink.SinkTask#preCommit(Map)} to get the offset
+     * of a partition: insertFiles API call for Snowpipe, offset token fetch for Streaming.
+     */
+    PRECOMMIT_LATENCY("precommit-latency"),
     ;
 
     /** The metric name that will be used in JMX */
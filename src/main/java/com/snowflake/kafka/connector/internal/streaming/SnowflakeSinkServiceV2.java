@@ -2,6 +2,10 @@ package com.snowflake.kafka.connector.internal.streaming;
 
 import static com.snowflake.kafka.connector.SnowflakeSinkConnectorConfig.BUFFER_SIZE_BYTES_DEFAULT;
 import static com.snowflake.kafka.connector.SnowflakeSinkConnectorConfig.ENABLE_STREAMING_CLIENT_OPTIMIZATION_DEFAULT;
+import static com.snowflake.kafka.connector.SnowflakeSinkConnectorConfig.SNOWFLAKE_PRECOMMIT_PARALLELISM;
+import static com.snowflake.kafka.connector.SnowflakeSinkConnectorConfig.SNOWFLAKE_PRECOMMIT_PARALLELISM_DEFAULT;
+import static com.snowflake.kafka.connector.SnowflakeSinkConnectorConfig.SNOWFLAKE_PRECOMMIT_TIMEOUT_MS;
+import static com.snowflake.kafka.connector.SnowflakeSinkConnectorConfig.SNOWFLAKE_PRECOMMIT_TIMEOUT_MS_DEFAULT;
 import static com.snowflake.kafka.connector.SnowflakeSinkConnectorConfig.SNOWFLAKE_ROLE;
 import static com.snowflake.kafka.connector.SnowflakeSinkConnectorConfig.SNOWPIPE_STREAMING_CLOSE_CHANNELS_IN_PARALLEL;
 import static com.snowflake.kafka.connector.SnowflakeSinkConnectorConfig.SNOWPIPE_STREAMING_CLOSE_CHANNELS_IN_PARALLEL_DEFAULT;
@@ -12,10 +16,14 @@ import static com.snowflake.kafka.connector.internal.streaming.TopicPartitionCha
 import com.codahale.metrics.MetricRegistry;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Strings;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.snowflake.kafka.connector.SnowflakeSinkConnectorConfig;
 import com.snowflake.kafka.connector.Utils;
 import com.snowflake.kafka.connector.dlq.KafkaRecordErrorReporter;
+import com.snowflake.kafka.connector.internal.BufferMemoryBudget;
+import com.snowflake.kafka.connector.internal.BufferThresholdOverrides;
 import com.snowflake.kafka.connector.internal.KCLogger;
+import com.snowflake.kafka.connector.internal.PartitionBackpressure;
 import com.snowflake.kafka.connector.internal.SnowflakeConnectionService;
 import com.snowflake.kafka.connector.internal.SnowflakeErrors;
 import com.snowflake.kafka.connector.internal.SnowflakeSinkService;
@@ -26,11 +34,20 @@ import com.snowflake.kafka.connector.records.SnowflakeMetadataConfig;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import javax.annotation.Nullable;
 import net.snowflake.ingest.streaming.SnowflakeStreamingIngestClient;
+import net.snowflake.ingest.utils.SFException;
 import org.apache.kafka.common.TopicPartition;
 import org.apache.kafka.connect.sink.SinkRecord;
 import org.apache.kafka.connect.sink.SinkTaskContext;
@@ -99,6 +116,22 @@ public class SnowflakeSinkServiceV2 implements SnowflakeSinkService {
 
   private final boolean closeChannelsInParallel;
 
+  // set when buffers of all partitions are flushed early once the worker exceeds its heap budget
+  @Nullable private final BufferMemoryBudget bufferMemoryBudget;
+
+  // set when partitions are paused while too much of their data is not committed yet
+  @Nullable private final PartitionBackpressure backpressure;
+
+  // per topic buffer thresholds, null when all topics use the connector wide ones
+  @Nullable private final BufferThresholdOverrides thresholdOverrides;
+
+  // offset tokens are fetched concurrently on preCommit, the pool is created on first use
+  private final int precommitParallelism;
+  private final long precommitTimeoutMillis;
+  @Nullable private ExecutorService precommitExecutor;
+  // fetches which did not complete within the timeout of the previous preCommit
+  private final Map<TopicPartition, Future<Long>> offsetFetches = new HashMap<>();
+
   /**
    * Key is formulated in {@link #partitionChannelKey(String, int)} }
    *
@@ -140,6 +173,18 @@ public class SnowflakeSinkServiceV2 implements SnowflakeSinkService {
             .map(Boolean::parseBoolean)
             .orElse(SNOWPIPE_STREAMING_CLOSE_CHANNELS_IN_PARALLEL_DEFAULT);
 
+    this.bufferMemoryBudget = BufferMemoryBudget.fromConfig(connectorConfig);
+    this.backpressure = PartitionBackpressure.fromConfig(connectorConfig);
+    this.thresholdOverrides = BufferThresholdOverrides.fromConfig(connectorConfig);
+    this.precommitParallelism =
+        Optional.ofNullable(connectorConfig.get(SNOWFLAKE_PRECOMMIT_PARALLELISM))
+            .map(Integer::parseInt)
+            .orElse(SNOWFLAKE_PRECOMMIT_PARALLELISM_DEFAULT);
+    this.precommitTimeoutMillis =
+        Optional.ofNullable(connectorConfig.get(SNOWFLAKE_PRECOMMIT_TIMEOUT_MS))
+            .map(Long::parseLong)
+            .orElse(SNOWFLAKE_PRECOMMIT_TIMEOUT_MS_DEFAULT);
+
     this.streamingIngestClient =
         StreamingClientProvider.getStreamingClientProviderInstance()
             .getClient(this.connectorConfig);
@@ -192,6 +237,17 @@ public class SnowflakeSinkServiceV2 implements SnowflakeSinkService {
             .getClient(this.connectorConfig);
     this.enableSchematization = enableSchematization;
     this.closeChannelsInParallel = closeChannelsInParallel;
+    this.bufferMemoryBudget = null;
+    this.backpressure = null;
+    this.thresholdOverrides = null;
+    this.precommitParallelism =
+        Optional.ofNullable(connectorConfig.get(SNOWFLAKE_PRECOMMIT_PARALLELISM))
+            .map(Integer::parseInt)
+            .orElse(SNOWFLAKE_PRECOMMIT_PARALLELISM_DEFAULT);
+    this.precommitTimeoutMillis =
+        Optional.ofNullable(connectorConfig.get(SNOWFLAKE_PRECOMMIT_TIMEOUT_MS))
+            .map(Long::parseLong)
+            .orElse(SNOWFLAKE_PRECOMMIT_TIMEOUT_MS_DEFAULT);
     this.partitionsToChannel = partitionsToChannel;
 
     this.tableName2SchemaEvolutionPermission = new HashMap<>();
@@ -263,7 +319,7 @@ public class SnowflakeSinkServiceV2 implements SnowflakeSinkService {
             partitionChannelKey, // Streaming channel name
             tableName,
             hasSchemaEvolutionPermission,
-            new StreamingBufferThreshold(this.flushTimeSeconds, this.fileSizeBytes, this.recordNum),
+            createBufferThreshold(topicPartition.topic()),
             this.connectorConfig,
             this.kafkaRecordErrorReporter,
             this.sinkTaskContext,
@@ -274,6 +330,21 @@ public class SnowflakeSinkServiceV2 implements SnowflakeSinkService {
             this.metricsJmxReporter));
   }
 
+  // connector wide thresholds, unless overridden for the topic
+  private StreamingBufferThreshold createBufferThreshold(String topic) {
+    if (thresholdOverrides == null) {
+      return new StreamingBufferThreshold(
+          this.flushTimeSeconds, this.fileSizeBytes, this.recordNum);
+    }
+    return new StreamingBufferThreshold(
+        Optional.ofNullable(thresholdOverrides.getFlushTimeSeconds(topic))
+            .orElse(this.flushTimeSeconds),
+        Optional.ofNullable(thresholdOverrides.getBufferSizeBytes(topic))
+            .orElse(this.fileSizeBytes),
+        Optional.ofNullable(thresholdOverrides.getBufferCountRecords(topic))
+            .orElse(this.recordNum));
+  }
+
   /**
    * Inserts the given record into buffer and then eventually calls insertRows API if buffer
    * threshold has reached.
@@ -304,6 +375,42 @@ public class SnowflakeSinkServiceV2 implements SnowflakeSinkService {
       // Time based flushing
       partitionChannel.insertBufferedRecordsIfFlushTimeThresholdReached();
     }
+    enforceBufferMemoryBudget();
+    applyBackpressure();
+  }
+
+  // pause partitions with too much data not committed in Snowflake, resume them once their offset
+  // tokens caught up. Paused partitions fetch their token on put too, commits may be a minute apart
+  private void applyBackpressure() {
+    if (backpressure == null || sinkTaskContext == null) {
+      return;
+    }
+    for (TopicPartitionChannel partitionChannel : partitionsToChannel.values()) {
+      if (backpressure.isPaused(partitionChannel.getTopicPartition())) {
+        partitionChannel.refreshInFlightBatches();
+      }
+      backpressure.update(
+          sinkTaskContext,
+          partitionChannel.getTopicPartition(),
+          partitionChannel.getPendingBytes(),
+          partitionChannel.getInFlightBatchCount());
+    }
+  }
+
+  // flush the largest buffers before their thresholds, while the worker is over its heap budget
+  private void enforceBufferMemoryBudget() {
+    if (bufferMemoryBudget == null) {
+      return;
+    }
+    if (enableCustomJMXMonitoring) {
+      bufferMemoryBudget.enableJmx(conn.getConnectorName());
+    }
+    for (TopicPartitionChannel partitionChannel :
+        bufferMemoryBudget.update(
+            partitionsToChannel.values(),
+            channel -> channel.getStreamingBuffer().getBufferSizeBytes())) {
+      partitionChannel.flushBuffer();
+    }
   }
 
   /**
@@ -337,9 +444,7 @@ public class SnowflakeSinkServiceV2 implements SnowflakeSinkService {
     String partitionChannelKey =
         partitionChannelKey(topicPartition.topic(), topicPartition.partition());
     if (partitionsToChannel.containsKey(partitionChannelKey)) {
-      long offset = partitionsToChannel.get(partitionChannelKey).getOffsetSafeToCommitToKafka();
-      partitionsToChannel.get(partitionChannelKey).setLatestConsumerOffset(offset);
-      return offset;
+      return getOffsetSafeToCommit(partitionsToChannel.get(partitionChannelKey));
     } else {
       LOGGER.warn(
           "Topic: {} Partition: {} hasn't been initialized to get offset",
@@ -349,6 +454,129 @@ public class SnowflakeSinkServiceV2 implements SnowflakeSinkService {
     }
   }
 
+  /**
+   * Fetch the offset tokens of the given partitions concurrently, each one is a call to Snowflake.
+   * Only these reads run on the pool. The offsets are applied to the channels by the task thread,
+   * which also runs insertRows, and so is the reopening of a channel whose fetch failed.
+   *
+   * <p>Partitions whose fetch did not complete within the precommit timeout, or whose channel could
+   * not be recovered, are left out of the result, so that they keep their previous committed
+   * offset. Their fetch is used by the next preCommit, whether it completed since or not: a
+   * committed offset token only grows, and a failed fetch still has to be recovered.
+   */
+  @Override
+  public Map<TopicPartition, Long> getOffsets(Collection<TopicPartition> topicPartitions) {
+    Map<TopicPartition, Long> offsets = new HashMap<>();
+    Map<TopicPartition, TopicPartitionChannel> channels = new HashMap<>();
+    Map<TopicPartition, Future<Long>> fetches = new LinkedHashMap<>();
+    for (TopicPartition topicPartition : topicPartitions) {
+      // channels are looked up here, the map is only used by the task thread
+      TopicPartitionChannel channel =
+          partitionsToChannel.get(
+              partitionChannelKey(topicPartition.topic(), topicPartition.partition()));
+      if (channel == null) {
+        LOGGER.warn(
+            "Topic: {} Partition: {} hasn't been initialized to get offset",
+            topicPartition.topic(),
+            topicPartition.partition());
+        offsets.put(topicPartition, NO_OFFSET_TOKEN_REGISTERED_IN_SNOWFLAKE);
+        continue;
+      }
+      Future<Long> fetch = offsetFetches.get(topicPartition);
+      if (fetch == null) {
+        fetch = precommitExecutor().submit(() -> fetchCommittedOffsetToken(channel));
+      }
+      channels.put(topicPartition, channel);
+      fetches.put(topicPartition, fetch);
+    }
+
+    offsetFetches.clear();
+    long deadlineNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(precommitTimeoutMillis);
+    for (Map.Entry<TopicPartition, Future<Long>> fetch : fetches.entrySet()) {
+      TopicPartitionChannel channel = channels.get(fetch.getKey());
+      long committedOffsetToken;
+      try {
+        committedOffsetToken =
+            fetch.getValue().get(deadlineNanos - System.nanoTime(), TimeUnit.NANOSECONDS);
+      } catch (TimeoutException e) {
+        LOGGER.warn(
+            "Offset token of {} was not fetched within {} ms, keeping its previous committed"
+                + " offset",
+            fetch.getKey(),
+            precommitTimeoutMillis);
+        offsetFetches.put(fetch.getKey(), fetch.getValue());
+        continue;
+      } catch (ExecutionException e) {
+        if (!(e.getCause() instanceof SFException)) {
+          LOGGER.error(
+              "Failed to fetch offset token of {}: {}", fetch.getKey(), e.getCause().getMessage());
+          continue;
+        }
+        try {
+          // retries are exhausted, the channel is reopened here since insertRows uses it too
+          committedOffsetToken = channel.recoverCommittedOffsetToken();
+        } catch (Exception recoveryException) {
+          LOGGER.error(
+              "Failed to recover offset token of {}: {}",
+              fetch.getKey(),
+              recoveryException.getMessage());
+          continue;
+        }
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        offsetFetches.put(fetch.getKey(), fetch.getValue());
+        continue;
+      }
+      offsets.put(fetch.getKey(), commitOffset(channel, committedOffsetToken));
+    }
+    return offsets;
+  }
+
+  private long getOffsetSafeToCommit(TopicPartitionChannel channel) {
+    long startTime = System.currentTimeMillis();
+    try {
+      long offset = channel.getOffsetSafeToCommitToKafka();
+      channel.setLatestConsumerOffset(offset);
+      return offset;
+    } finally {
+      channel
+          .getSnowflakeTelemetryChannelStatus()
+          .updatePrecommitLatency(System.currentTimeMillis() - startTime);
+    }
+  }
+
+  // only reads the channel, runs on the offset fetcher pool
+  private long fetchCommittedOffsetToken(TopicPartitionChannel channel) {
+    long startTime = System.currentTimeMillis();
+    try {
+      return channel.fetchCommittedOffsetToken();
+    } finally {
+      channel
+          .getSnowflakeTelemetryChannelStatus()
+          .updatePrecommitLatency(System.currentTimeMillis() - startTime);
+    }
+  }
+
+  // updates the channel, runs on the task thread
+  private long commitOffset(TopicPartitionChannel channel, long committedOffsetToken) {
+    long offset = channel.getOffsetSafeToCommitToKafka(committedOffsetToken);
+    channel.setLatestConsumerOffset(offset);
+    return offset;
+  }
+
+  private ExecutorService precommitExecutor() {
+    if (precommitExecutor == null) {
+      precommitExecutor =
+          Executors.newFixedThreadPool(
+              precommitParallelism,
+              new ThreadFactoryBuilder()
+                  .setNameFormat("snowflake-offset-fetcher-%d")
+                  .setDaemon(true)
+                  .build());
+    }
+    return precommitExecutor;
+  }
+
   @Override
   public int getPartitionCount() {
     return partitionsToChannel.size();
@@ -368,6 +596,9 @@ public class SnowflakeSinkServiceV2 implements SnowflakeSinkService {
     }
 
     partitionsToChannel.clear();
+    if (backpressure != null) {
+      backpressure.clear();
+    }
 
     StreamingClientProvider.getStreamingClientProviderInstance()
         .closeClient(this.connectorConfig, this.streamingIngestClient);
@@ -416,6 +647,9 @@ public class SnowflakeSinkServiceV2 implements SnowflakeSinkService {
     } else {
       closeSequentially(partitions);
     }
+    if (backpressure != null) {
+      backpressure.remove(partitions);
+    }
 
     LOGGER.info(
         "Closing {} partitions and remaining partitions which are not closed are:{}, with size:{}",
@@ -474,6 +708,14 @@ public class SnowflakeSinkServiceV2 implements SnowflakeSinkService {
 
   @Override
   public void stop() {
+    if (bufferMemoryBudget != null) {
+      bufferMemoryBudget.close();
+    }
+    if (precommitExecutor != null) {
+      precommitExecutor.shutdownNow();
+      precommitExecutor = null;
+    }
+    offsetFetches.clear();
     final boolean isOptimizationEnabled =
         Boolean.parseBoolean(
             connectorConfig.getOrDefault(
@@ -37,10 +37,12 @@ import java.io.ByteArrayOutputStream;
 import java.io.ObjectOutputStream;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Deque;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentLinkedDeque;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.locks.Lock;
@@ -79,17 +81,24 @@ public class TopicPartitionChannel {
 
   public static final long NO_OFFSET_TOKEN_REGISTERED_IN_SNOWFLAKE = -1L;
 
+  // minimum time between two offset token fetches of refreshInFlightBatches
+  private static final long IN_FLIGHT_REFRESH_INTERVAL_MS = 1000;
+
   // last time we invoked insertRows API
   private long previousFlushTimeStampMs;
 
+  // last time refreshInFlightBatches fetched the offset token
+  private long previousInFlightRefreshMs = 0;
+
   /* Buffer to hold JSON converted incoming SinkRecords */
   private StreamingBuffer streamingBuffer;
 
   private final Lock bufferLock = new ReentrantLock(true);
 
   // used to communicate to the streaming ingest's insertRows API
-  // This is non final because we might decide to get the new instance of Channel
-  private SnowflakeStreamingIngestChannel channel;
+  // This is non final because we might decide to get the new instance of Channel. Volatile since
+  // offset tokens may be fetched off the task thread, see fetchCommittedOffsetToken
+  private volatile SnowflakeStreamingIngestChannel channel;
 
   // -------- private final fields -------- //
 
@@ -117,6 +126,11 @@ public class TopicPartitionChannel {
   // should be skipped
   private boolean needToSkipCurrentBatch = false;
 
+  // batches passed to insertRows whose rows are not known to be committed in Snowflake yet, oldest
+  // first. They are dropped once the offset token fetched on commit or by
+  // refreshInFlightBatches moves past them
+  private final Deque<InFlightBatch> inFlightBatches = new ConcurrentLinkedDeque<>();
+
   private final SnowflakeStreamingIngestClient streamingIngestClient;
 
   // Topic partition Object from connect consisting of topic and partition
@@ -519,17 +533,27 @@ public class TopicPartitionChannel {
           System.currentTimeMillis(),
           this.previousFlushTimeStampMs,
           this.streamingBufferThreshold.getFlushTimeThresholdSeconds());
-      StreamingBuffer copiedStreamingBuffer;
-      bufferLock.lock();
-      try {
-        copiedStreamingBuffer = this.streamingBuffer;
-        this.streamingBuffer = new StreamingBuffer();
-      } finally {
-        bufferLock.unlock();
-      }
-      if (copiedStreamingBuffer != null) {
-        insertBufferedRecords(copiedStreamingBuffer);
-      }
+      flushBuffer();
+    }
+  }
+
+  /**
+   * Insert the buffered rows regardless of the buffer thresholds, used once the buffers of the task
+   * take more heap than their budget
+   *
+   * <p>Note: We acquire buffer lock since we copy the buffer.
+   */
+  protected void flushBuffer() {
+    StreamingBuffer copiedStreamingBuffer;
+    bufferLock.lock();
+    try {
+      copiedStreamingBuffer = this.streamingBuffer;
+      this.streamingBuffer = new StreamingBuffer();
+    } finally {
+      bufferLock.unlock();
+    }
+    if (copiedStreamingBuffer != null) {
+      insertBufferedRecords(copiedStreamingBuffer);
     }
   }
 
@@ -550,6 +574,10 @@ public class TopicPartitionChannel {
       response = insertRowsWithFallback(streamingBufferToInsert);
       // Updates the flush time (last time we called insertRows API)
       this.previousFlushTimeStampMs = System.currentTimeMillis();
+      inFlightBatches.add(
+          new InFlightBatch(
+              streamingBufferToInsert.getLastOffset(),
+              streamingBufferToInsert.getBufferSizeBytes()));
 
       LOGGER.info(
           "Successfully called insertRows for channel:{}, buffer:{}, insertResponseHasErrors:{},"
@@ -820,7 +848,19 @@ public class TopicPartitionChannel {
    * @return (offsetToken present in Snowflake + 1), else -1
    */
   public long getOffsetSafeToCommitToKafka() {
-    final long committedOffsetInSnowflake = fetchOffsetTokenWithRetry();
+    return getOffsetSafeToCommitToKafka(fetchOffsetTokenWithRetry());
+  }
+
+  /**
+   * Same as {@link #getOffsetSafeToCommitToKafka()}, for an offset token fetched already by {@link
+   * #fetchCommittedOffsetToken()} or {@link #recoverCommittedOffsetToken()}. Must be called by the
+   * task thread, like insertRows.
+   *
+   * @param committedOffsetInSnowflake offset token present in snowflake, -1 if there is none
+   * @return (offsetToken present in Snowflake + 1), else -1
+   */
+  public long getOffsetSafeToCommitToKafka(long committedOffsetInSnowflake) {
+    dropCommittedBatches(committedOffsetInSnowflake);
     if (committedOffsetInSnowflake == NO_OFFSET_TOKEN_REGISTERED_IN_SNOWFLAKE) {
       return NO_OFFSET_TOKEN_REGISTERED_IN_SNOWFLAKE;
     } else {
@@ -856,20 +896,6 @@ public class TopicPartitionChannel {
    */
   @VisibleForTesting
   protected long fetchOffsetTokenWithRetry() {
-    final RetryPolicy<Long> offsetTokenRetryPolicy =
-        RetryPolicy.<Long>builder()
-            .handle(SFException.class)
-            .withDelay(DURATION_BETWEEN_GET_OFFSET_TOKEN_RETRY)
-            .withMaxAttempts(MAX_GET_OFFSET_TOKEN_RETRIES)
-            .onRetry(
-                event ->
-                    LOGGER.warn(
-                        "[OFFSET_TOKEN_RETRY_POLICY] retry for getLatestCommittedOffsetToken. Retry"
-                            + " no:{}, message:{}",
-                        event.getAttemptCount(),
-                        event.getLastException().getMessage()))
-            .build();
-
     /*
      * The fallback function to execute when all retries from getOffsetToken have exhausted.
      * Fallback is only attempted on SFException
@@ -899,10 +925,81 @@ public class TopicPartitionChannel {
                     this.getChannelNameFormatV1(),
                     event.getElapsedTime().get(SECONDS),
                     event.getException()))
-        .compose(offsetTokenRetryPolicy)
+        .compose(offsetTokenRetryPolicy())
+        .get(this::fetchLatestCommittedOffsetFromSnowflake);
+  }
+
+  /**
+   * Drops the in-flight batches committed in Snowflake since they were last checked, so that a
+   * partition paused on them resumes without waiting for the next offset commit. The offset token
+   * is fetched at most once a second and without retries, a failed fetch leaves the batches to the
+   * commit. Must be called by the task thread, like insertRows.
+   */
+  public void refreshInFlightBatches() {
+    long currentTime = System.currentTimeMillis();
+    if (inFlightBatches.isEmpty()
+        || currentTime - previousInFlightRefreshMs < IN_FLIGHT_REFRESH_INTERVAL_MS) {
+      return;
+    }
+    previousInFlightRefreshMs = currentTime;
+    try {
+      dropCommittedBatches(fetchLatestCommittedOffsetFromSnowflake());
+    } catch (SFException | ConnectException e) {
+      LOGGER.warn(
+          "Failed to fetch offsetToken for channel:{}, in flight batches are checked on commit,"
+              + " exception:{}",
+          this.getChannelNameFormatV1(),
+          e.getMessage());
+    }
+  }
+
+  private void dropCommittedBatches(long committedOffsetInSnowflake) {
+    while (!inFlightBatches.isEmpty()
+        && inFlightBatches.peekFirst().lastOffset <= committedOffsetInSnowflake) {
+      inFlightBatches.pollFirst();
+    }
+  }
+
+  /**
+   * Fetches the offset token from Snowflake with the retries of {@link
+   * #fetchOffsetTokenWithRetry()}, but without its fallback. It only reads the channel, so unlike
+   * the fallback it may run off the task thread, concurrently with insertRows.
+   *
+   * @return long offset token present in snowflake for this channel/partition.
+   * @throws SFException once the retries are exhausted, {@link #recoverCommittedOffsetToken()} is
+   *     then to be called by the task thread
+   */
+  public long fetchCommittedOffsetToken() {
+    return Failsafe.with(offsetTokenRetryPolicy())
         .get(this::fetchLatestCommittedOffsetFromSnowflake);
   }
 
+  /**
+   * The fallback of {@link #fetchOffsetTokenWithRetry()}, for a {@link
+   * #fetchCommittedOffsetToken()} which failed. Reopens the channel and resets the offset of the
+   * partition in Kafka, so it must be called by the task thread.
+   *
+   * @return offset which was last present in Snowflake
+   */
+  public long recoverCommittedOffsetToken() {
+    return streamingApiFallbackSupplier(StreamingApiFallbackInvoker.GET_OFFSET_TOKEN_FALLBACK);
+  }
+
+  private RetryPolicy<Long> offsetTokenRetryPolicy() {
+    return RetryPolicy.<Long>builder()
+        .handle(SFException.class)
+        .withDelay(DURATION_BETWEEN_GET_OFFSET_TOKEN_RETRY)
+        .withMaxAttempts(MAX_GET_OFFSET_TOKEN_RETRIES)
+        .onRetry(
+            event ->
+                LOGGER.warn(
+                    "[OFFSET_TOKEN_RETRY_POLICY] retry for getLatestCommittedOffsetToken. Retry"
+                        + " no:{}, message:{}",
+                    event.getAttemptCount(),
+                    event.getLastException().getMessage()))
+        .build();
+  }
+
   /**
    * Fallback function to be executed when either of insertRows API or getOffsetToken sends
    * SFException.
@@ -969,6 +1066,8 @@ public class TopicPartitionChannel {
           this.streamingBuffer,
           this.getChannelNameFormatV1());
       this.streamingBuffer = new StreamingBuffer();
+      // rows not committed are sent again by kafka
+      inFlightBatches.clear();
 
       // Reset Offset in kafka for this topic partition.
       this.sinkTaskContext.offset(this.topicPartition, offsetToResetInKafka);
@@ -1167,6 +1266,24 @@ public class TopicPartitionChannel {
     return streamingBuffer;
   }
 
+  /** @return bytes buffered or passed to insertRows but not committed in Snowflake yet */
+  public long getPendingBytes() {
+    long pendingBytes = streamingBuffer.getBufferSizeBytes();
+    for (InFlightBatch batch : inFlightBatches) {
+      pendingBytes += batch.sizeBytes;
+    }
+    return pendingBytes;
+  }
+
+  /** @return batches passed to insertRows whose rows are not committed in Snowflake yet */
+  public int getInFlightBatchCount() {
+    return inFlightBatches.size();
+  }
+
+  public TopicPartition getTopicPartition() {
+    return topicPartition;
+  }
+
   public String getChannelNameFormatV1() {
     return this.channel.getFullyQualifiedName();
   }
@@ -1211,7 +1328,6 @@ public class TopicPartitionChannel {
     return this.telemetryServiceV2;
   }
 
-  @VisibleForTesting
   protected SnowflakeTelemetryChannelStatus getSnowflakeTelemetryChannelStatus() {
     return this.snowflakeTelemetryChannelStatus;
   }
@@ -1312,6 +1428,17 @@ public class TopicPartitionChannel {
 
   // ------ INNER CLASS ------ //
 
+  /** Offset and size of a batch passed to insertRows */
+  private static final class InFlightBatch {
+    private final long lastOffset;
+    private final long sizeBytes;
+
+    private InFlightBatch(long lastOffset, long sizeBytes) {
+      this.lastOffset = lastOffset;
+      this.sizeBytes = sizeBytes;
+    }
+  }
+
   /**
    * A buffer which holds the rows before calling insertRows API. It implements the PartitionBuffer
    * class which has all common fields about a buffer.
@@ -22,12 +22,14 @@ import static com.snowflake.kafka.connector.internal.streaming.TopicPartitionCha
 
 import com.codahale.metrics.Gauge;
 import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
 import com.google.common.annotations.VisibleForTesting;
 import com.snowflake.kafka.connector.internal.metrics.MetricsJmxReporter;
 import com.snowflake.kafka.connector.internal.metrics.MetricsUtil;
 import com.snowflake.kafka.connector.internal.telemetry.SnowflakeTelemetryBasicInfo;
 import com.snowflake.kafka.connector.internal.telemetry.SnowflakeTelemetryService;
 import com.snowflake.kafka.connector.internal.telemetry.TelemetryConstants;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
 import net.snowflake.client.jdbc.internal.fasterxml.jackson.databind.node.ObjectNode;
 
@@ -38,7 +40,7 @@ import net.snowflake.client.jdbc.internal.fasterxml.jackson.databind.node.Object
  * <p>Most of the data sent to Snowflake is aggregated data.
  */
 public class SnowflakeTelemetryChannelStatus extends SnowflakeTelemetryBasicInfo {
-  public static final long NUM_METRICS = 3; // update when new metrics are added
+  public static final long NUM_METRICS = 4; // update when new metrics are added
 
   // channel properties
   private final String connectorName;
@@ -51,6 +53,9 @@ public class SnowflakeTelemetryChannelStatus extends SnowflakeTelemetryBasicInfo
   private final AtomicLong processedOffset;
   private final AtomicLong latestConsumerOffset;
 
+  // latencies
+  private final Timer precommitLatency = new Timer();
+
   /**
    * Creates a new object tracking {@link
    * com.snowflake.kafka.connector.internal.streaming.TopicPartitionChannel} metrics with JMX and
@@ -142,6 +147,14 @@ public class SnowflakeTelemetryChannelStatus extends SnowflakeTelemetryBasicInfo
           constructMetricName(
               this.channelName, MetricsUtil.OFFSET_SUB_DOMAIN, MetricsUtil.LATEST_CONSUMER_OFFSET),
           (Gauge<Long>) this.latestConsumerOffset::get);
+
+      // latencies
+      currentMetricRegistry.register(
+          constructMetricName(
+              this.channelName,
+              MetricsUtil.LATENCY_SUB_DOMAIN,
+              MetricsUtil.EventType.PRECOMMIT_LATENCY.getMetricName()),
+          this.precommitLatency);
     } catch (IllegalArgumentException ex) {
       LOGGER.warn("Metrics already present:{}", ex.getMessage());
     }
@@ -149,6 +162,15 @@ public class SnowflakeTelemetryChannelStatus extends SnowflakeTelemetryBasicInfo
     this.metricsJmxReporter.start();
   }
 
+  /**
+   * Time taken by preCommit to fetch the offset token of this channel
+   *
+   * @param latencyMs time in milliseconds
+   */
+  public void updatePrecommitLatency(final long latencyMs) {
+    this.precommitLatency.update(latencyMs, TimeUnit.MILLISECONDS);
+  }
+
   /** Unregisters the JMX metrics if possible */
   public void tryUnregisterChannelJMXMetrics() {
     if (this.metricsJmxReporter != null) {
@@ -205,6 +205,17 @@ public class SnowflakeTelemetryPipeStatus extends SnowflakeTelemetryBasicInfo {
     updateLag(lag, averageCommitLagFileCount, averageCommitLagMs, EventType.COMMIT_LAG);
   }
 
+  /**
+   * Time taken by preCommit to ingest the files of this pipe, only reported as a JMX metric
+   *
+   * @param latencyMs time in milliseconds
+   */
+  public void updatePrecommitLatency(final long latencyMs) {
+    if (this.enableCustomJMXConfig) {
+      eventsByType.get(EventType.PRECOMMIT_LATENCY).update(latencyMs, TimeUnit.MILLISECONDS);
+    }
+  }
+
   /**
    * The current lag is just added to the running average to calculate the new average.
    *
@@ -225,6 +225,23 @@ public class RecordService {
     return buffer.toString();
   }
 
+  /**
+   * Given a single Record from put API, process only its metadata and convert it into a Json
+   * String. Used for records whose content is staged as is, see {@link
+   * SnowflakeRecordContent#isAvroPassthrough()}
+   *
+   * @param record record from Kafka
+   * @return Json String with metadata from Kafka Record, null if metadata is disabled
+   */
+  @Nullable
+  public String getProcessedMetadataForSnowpipe(SinkRecord record) {
+    if (!metadataConfig.allFlag) {
+      return null;
+    }
+    // ConnectorPushTime is not used for Snowpipe.
+    return processRecord(record, /*connectorPushTime=*/ null).metadata.toString();
+  }
+
   /**
    * Given a single Record from put API, process it and convert it into Map of String and Object.
    *
@@ -31,6 +31,7 @@ import org.apache.avro.SchemaParseException;
 import org.apache.avro.generic.GenericData;
 import org.apache.avro.generic.GenericDatumReader;
 import org.apache.avro.generic.GenericRecord;
+import org.apache.avro.io.BinaryDecoder;
 import org.apache.avro.io.DatumReader;
 import org.apache.avro.io.Decoder;
 import org.apache.avro.io.DecoderFactory;
@@ -41,17 +42,22 @@ public class SnowflakeAvroConverter extends SnowflakeConverter {
 
   public static final String BREAK_ON_SCHEMA_REGISTRY_ERROR = "break.on.schema.registry.error";
   public static final String READER_SCHEMA = "reader.schema";
+  public static final String AVRO_PASSTHROUGH = "avro.passthrough";
 
   // By default, we don't break when schema registry is not found
   private boolean breakOnSchemaRegistryError = false;
   /* By default, no reader schema is set. In this case, the writer schema of each item is also used
   as the reader schema. See https://avro.apache.org/docs/1.9.2/spec.html#Schema+Resolution */
   private Schema readerSchema = null;
+  /* By default, records are decoded to json. In passthrough mode the binary datum is kept next to
+  its writer schema, so that Snowpipe can stage it as avro without ever decoding it. */
+  private boolean passthrough = false;
 
   @Override
   public void configure(final Map<String, ?> configs, final boolean isKey) {
     readBreakOnSchemaRegistryError(configs);
     parseReaderSchema(configs);
+    readPassthrough(configs);
     try { // todo: graceful way to check schema registry
       AvroConverterConfig avroConverterConfig = new AvroConverterConfig(configs);
       schemaRegistry =
@@ -101,6 +107,23 @@ public class SnowflakeAvroConverter extends SnowflakeConverter {
     }
   }
 
+  /**
+   * Read avro passthrough mode from config, it can't be combined with a reader schema since the
+   * datum is staged as written
+   *
+   * @param configs configuration for converter
+   */
+  void readPassthrough(final Map<String, ?> configs) {
+    Object passthroughFromConfig = configs.get(AVRO_PASSTHROUGH);
+    passthrough =
+        passthroughFromConfig != null
+            && Boolean.parseBoolean(passthroughFromConfig.toString().trim());
+    if (passthrough && readerSchema != null) {
+      LOGGER.warn("{} is ignored since {} is set", AVRO_PASSTHROUGH, READER_SCHEMA);
+      passthrough = false;
+    }
+  }
+
   // for testing only
   boolean getBreakOnSchemaRegistryError() {
     return breakOnSchemaRegistryError;
@@ -157,6 +180,16 @@ public class SnowflakeAvroConverter extends SnowflakeConverter {
       byte[] data = new byte[length];
       buffer.get(data, 0, length);
 
+      if (passthrough) {
+        validateAvroDatum(data, writerSchema);
+        return new SchemaAndValue(
+            new SnowflakeJsonSchema(),
+            new SnowflakeRecordContent(
+                data,
+                writerSchema,
+                id,
+                () -> parseAvroWithSchema(data, writerSchema, writerSchema)));
+      }
       return new SchemaAndValue(
           new SnowflakeJsonSchema(),
           new SnowflakeRecordContent(
@@ -179,6 +212,23 @@ public class SnowflakeAvroConverter extends SnowflakeConverter {
     return new SchemaAndValue(new SnowflakeJsonSchema(), new SnowflakeRecordContent(bytes));
   }
 
+  /**
+   * Check that the data holds exactly one datum of the writer schema. The datum is skipped, not
+   * decoded, so passthrough records stay cheap while a corrupt datum is reported as a broken record
+   * instead of breaking the staged file holding it.
+   *
+   * @param data avro data
+   * @param writerSchema avro schema with which data got serialized
+   */
+  private static void validateAvroDatum(final byte[] data, Schema writerSchema)
+      throws IOException {
+    BinaryDecoder decoder = DecoderFactory.get().binaryDecoder(data, null);
+    GenericDatumReader.skip(writerSchema, decoder);
+    if (!decoder.isEnd()) {
+      throw new IOException("unexpected bytes after the avro datum");
+    }
+  }
+
   /**
    * Parse Avro record with a writer schema and a reader schema. The writer and the reader schema
    * have to be compatible as described in
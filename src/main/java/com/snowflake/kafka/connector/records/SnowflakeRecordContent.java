@@ -1,6 +1,8 @@
 package com.snowflake.kafka.connector.records;
 
 import com.snowflake.kafka.connector.internal.SnowflakeErrors;
+import java.util.concurrent.Callable;
+import javax.annotation.Nullable;
 import net.snowflake.client.jdbc.internal.fasterxml.jackson.databind.JsonNode;
 import net.snowflake.client.jdbc.internal.fasterxml.jackson.databind.ObjectMapper;
 import org.apache.kafka.connect.data.Schema;
@@ -9,8 +11,12 @@ public class SnowflakeRecordContent {
 
   private static ObjectMapper MAPPER = new ObjectMapper();
   public static int NON_AVRO_SCHEMA = -1;
-  private final JsonNode[] content;
+  private volatile JsonNode[] content;
   private final byte[] brokenData;
+  // raw avro datum and its writer schema, only set in avro passthrough mode
+  private final byte[] avroDatum;
+  private final org.apache.avro.Schema avroSchema;
+  private Callable<JsonNode> avroDecoder;
   private int schemaID;
   private boolean isBroken;
 
@@ -32,6 +38,8 @@ public class SnowflakeRecordContent {
     content = new JsonNode[1];
     content[0] = MAPPER.createObjectNode();
     brokenData = null;
+    avroDatum = null;
+    avroSchema = null;
     isNullValueRecord = true;
   }
 
@@ -48,6 +56,8 @@ public class SnowflakeRecordContent {
     this.content[0] = RecordService.convertToJson(schema, data, isStreaming);
     this.isBroken = false;
     this.brokenData = null;
+    this.avroDatum = null;
+    this.avroSchema = null;
   }
 
   /**
@@ -61,6 +71,8 @@ public class SnowflakeRecordContent {
     this.isBroken = false;
     this.schemaID = NON_AVRO_SCHEMA;
     this.brokenData = null;
+    this.avroDatum = null;
+    this.avroSchema = null;
   }
 
   /**
@@ -73,6 +85,8 @@ public class SnowflakeRecordContent {
     this.isBroken = false;
     this.schemaID = NON_AVRO_SCHEMA;
     this.brokenData = null;
+    this.avroDatum = null;
+    this.avroSchema = null;
   }
 
   /**
@@ -85,6 +99,8 @@ public class SnowflakeRecordContent {
     this.isBroken = true;
     this.schemaID = NON_AVRO_SCHEMA;
     this.content = null;
+    this.avroDatum = null;
+    this.avroSchema = null;
   }
 
   /**
@@ -98,6 +114,29 @@ public class SnowflakeRecordContent {
     this.schemaID = schemaID;
   }
 
+  /**
+   * constructor for avro converter in passthrough mode, the datum is only decoded when the content
+   * is asked for as json
+   *
+   * @param avroDatum binary avro datum, without the schema registry header
+   * @param avroSchema writer schema of the datum
+   * @param schemaID schema id
+   * @param decoder decodes the datum to a json node
+   */
+  SnowflakeRecordContent(
+      byte[] avroDatum,
+      org.apache.avro.Schema avroSchema,
+      int schemaID,
+      Callable<JsonNode> decoder) {
+    this.content = null;
+    this.isBroken = false;
+    this.schemaID = schemaID;
+    this.brokenData = null;
+    this.avroDatum = avroDatum;
+    this.avroSchema = avroSchema;
+    this.avroDecoder = decoder;
+  }
+
   /** @return true is record is broken */
   public boolean isBroken() {
     return this.isBroken;
@@ -113,18 +152,51 @@ public class SnowflakeRecordContent {
   }
 
   /** @return schema id, -1 if not available */
-  int getSchemaID() {
+  public int getSchemaID() {
     return schemaID;
   }
 
+  /** @return true if the content is a raw avro datum, see {@link #getAvroDatum()} */
+  public boolean isAvroPassthrough() {
+    return avroDatum != null;
+  }
+
+  /** @return raw avro datum, not copied, null if not in avro passthrough mode */
+  @Nullable
+  public byte[] getAvroDatum() {
+    return avroDatum;
+  }
+
+  /** @return writer schema of the avro datum, null if not in avro passthrough mode */
+  @Nullable
+  public org.apache.avro.Schema getAvroSchema() {
+    return avroSchema;
+  }
+
   public JsonNode[] getData() {
     if (isBroken) {
       throw SnowflakeErrors.ERROR_5012.getException();
     }
+    if (content == null && avroDecoder != null) {
+      decodeAvroDatum();
+    }
     assert content != null;
     return content.clone();
   }
 
+  private synchronized void decodeAvroDatum() {
+    if (content != null) {
+      return;
+    }
+    try {
+      content = new JsonNode[] {avroDecoder.call()};
+      avroDecoder = null;
+    } catch (Exception e) {
+      throw SnowflakeErrors.ERROR_0010.getException(
+          "Failed to parse AVRO " + "record\n" + e.toString());
+    }
+  }
+
   /**
    * Check if primary reason for this record content's value to be an empty json String, a null
    * value?
@@ -16,6 +16,7 @@ import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import org.apache.commons.compress.compressors.zstandard.ZstdUtils;
 import org.apache.kafka.connect.storage.Converter;
 import org.junit.Assert;
 import org.junit.Test;
@@ -325,6 +326,108 @@ public class ConnectorConfigTest {
     }
   }
 
+  @Test
+  public void testBufferTopicMaps() {
+    Map<String, String> config = getConfig();
+    config.put(
+        SnowflakeSinkConnectorConfig.BUFFER_FLUSH_TIME_SEC_TOPIC_MAP, "orders:10,logs.*:300");
+    config.put(SnowflakeSinkConnectorConfig.BUFFER_SIZE_BYTES_TOPIC_MAP, "logs.*:100000000");
+    config.put(SnowflakeSinkConnectorConfig.BUFFER_COUNT_RECORDS_TOPIC_MAP, "orders:1");
+    Utils.validateConfig(config);
+  }
+
+  @Test
+  public void testBufferFlushTimeTopicMapBelowMinimum() {
+    try {
+      Map<String, String> config = getConfig();
+      config.put(SnowflakeSinkConnectorConfig.BUFFER_FLUSH_TIME_SEC_TOPIC_MAP, "orders:1");
+      Utils.validateConfig(config);
+      Assert.fail("flush time of orders is below the minimum");
+    } catch (SnowflakeKafkaConnectorException exception) {
+      assert exception
+          .getMessage()
+          .contains(SnowflakeSinkConnectorConfig.BUFFER_FLUSH_TIME_SEC_TOPIC_MAP);
+    }
+  }
+
+  @Test
+  public void testBufferCountTopicMapValue() {
+    try {
+      Map<String, String> config = getConfig();
+      config.put(SnowflakeSinkConnectorConfig.BUFFER_COUNT_RECORDS_TOPIC_MAP, "orders:adssadsa");
+      Utils.validateConfig(config);
+      Assert.fail("count of orders is not a number");
+    } catch (SnowflakeKafkaConnectorException exception) {
+      assert exception
+          .getMessage()
+          .contains(SnowflakeSinkConnectorConfig.BUFFER_COUNT_RECORDS_TOPIC_MAP);
+    }
+  }
+
+  @Test
+  public void testStreamingBufferSizeTopicMapOverlappingTopics() {
+    try {
+      Map<String, String> config = getConfig();
+      config.put(
+          SnowflakeSinkConnectorConfig.INGESTION_METHOD_OPT,
+          IngestionMethodConfig.SNOWPIPE_STREAMING.toString());
+      config.put(Utils.SF_ROLE, "ACCOUNTADMIN");
+      config.put(SnowflakeSinkConnectorConfig.BUFFER_SIZE_BYTES_TOPIC_MAP, "logs.*:10,logs.+:20");
+      Utils.validateConfig(config);
+      Assert.fail("logs.+ overlaps logs.*");
+    } catch (SnowflakeKafkaConnectorException exception) {
+      assert exception
+          .getMessage()
+          .contains(SnowflakeSinkConnectorConfig.BUFFER_SIZE_BYTES_TOPIC_MAP);
+    }
+  }
+
+  @Test
+  public void testStreamingBufferSizeTopicMapExactTopicOverlappingRegex() {
+    Map<String, String> config = getConfig();
+    config.put(
+        SnowflakeSinkConnectorConfig.INGESTION_METHOD_OPT,
+        IngestionMethodConfig.SNOWPIPE_STREAMING.toString());
+    config.put(Utils.SF_ROLE, "ACCOUNTADMIN");
+    config.put(SnowflakeSinkConnectorConfig.BUFFER_SIZE_BYTES_TOPIC_MAP, "logs.*:10,logs1:20");
+    Utils.validateConfig(config);
+  }
+
+  @Test
+  public void testSnowpipeZstdCompression() {
+    Map<String, String> config = getConfig();
+    config.put(SnowflakeSinkConnectorConfig.SNOWPIPE_COMPRESSION, "zstd");
+    try {
+      Utils.validateConfig(config);
+      assert ZstdUtils.isZstdCompressionAvailable();
+    } catch (SnowflakeKafkaConnectorException exception) {
+      assert !ZstdUtils.isZstdCompressionAvailable();
+      assert exception.getMessage().contains(SnowflakeSinkConnectorConfig.SNOWPIPE_COMPRESSION);
+    }
+  }
+
+  @Test
+  public void testSnowpipeFlushOnClose() {
+    Map<String, String> config = getConfig();
+    config.put(SnowflakeSinkConnectorConfig.SNOWPIPE_FLUSH_ON_CLOSE_ENABLED, "true");
+    config.put(SnowflakeSinkConnectorConfig.SNOWPIPE_RESUME_STAGED_FILES_ENABLED, "true");
+    Utils.validateConfig(config);
+  }
+
+  @Test
+  public void testSnowpipeFlushOnCloseWithoutResumeStagedFiles() {
+    try {
+      Map<String, String> config = getConfig();
+      config.put(SnowflakeSinkConnectorConfig.SNOWPIPE_FLUSH_ON_CLOSE_ENABLED, "true");
+      Utils.validateConfig(config);
+      Assert.fail("flushed files would be loaded again by the next owner");
+    } catch (SnowflakeKafkaConnectorException exception) {
+      assert exception
+          .getMessage()
+          .contains(SnowflakeSinkConnectorConfig.SNOWPIPE_FLUSH_ON_CLOSE_ENABLED);
+    }
+  }
+
   @Test
   public void testKafkaProviderConfigValue_valid_null() {
     Map<String, String> config = getConfig();
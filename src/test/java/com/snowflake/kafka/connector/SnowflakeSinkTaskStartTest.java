@@ -0,0 +1,62 @@
+package com.snowflake.kafka.connector;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import com.snowflake.kafka.connector.internal.SnowflakeConnectionService;
+import com.snowflake.kafka.connector.internal.SnowflakeKafkaConnectorException;
+import com.snowflake.kafka.connector.internal.SnowflakeSinkService;
+import com.snowflake.kafka.connector.internal.TestUtils;
+import java.util.Collections;
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+
+class SnowflakeSinkTaskStartTest {
+
+  @Test
+  void put_FailsRightAway_WhenTheSinkIsClosed() {
+    SnowflakeSinkService sink = mock(SnowflakeSinkService.class);
+    when(sink.isClosed()).thenReturn(true);
+    SnowflakeSinkTask task = new SnowflakeSinkTask(sink, mock(SnowflakeConnectionService.class));
+
+    long startTime = System.currentTimeMillis();
+    assertThatThrownBy(() -> task.put(Collections.emptyList()))
+        .isInstanceOf(SnowflakeKafkaConnectorException.class);
+    // used to be retried in 5 second steps for a minute
+    assertThat(System.currentTimeMillis() - startTime).isLessThan(5000);
+  }
+
+  @Test
+  void start_BuildsTheSink_WithoutWaitingOnItself() {
+    SnowflakeConnectionService conn = mock(SnowflakeConnectionService.class);
+    when(conn.getConnectorName()).thenReturn("test");
+    SnowflakeSinkTask task =
+        new SnowflakeSinkTask() {
+          @Override
+          SnowflakeConnectionService createConnection(Map<String, String> parsedConfig) {
+            return conn;
+          }
+        };
+
+    long startTime = System.currentTimeMillis();
+    task.start(TestUtils.getConfig());
+    try {
+      // used to wait on its own start for a minute, then fail
+      assertThat(System.currentTimeMillis() - startTime).isLessThan(5000);
+      assertThat(task.getSnowflakeConnection()).containsSame(conn);
+      task.put(Collections.emptyList());
+    } finally {
+      task.stop();
+    }
+  }
+
+  @Test
+  void connection_IsAvailableOnceStarted() {
+    SnowflakeConnectionService conn = mock(SnowflakeConnectionService.class);
+    SnowflakeSinkTask task = new SnowflakeSinkTask(mock(SnowflakeSinkService.class), conn);
+
+    assertThat(task.getSnowflakeConnection()).containsSame(conn);
+  }
+}
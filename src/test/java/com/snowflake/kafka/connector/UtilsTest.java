@@ -94,6 +94,15 @@ public class UtilsTest {
                     dogTable)));
   }
 
+  @Test
+  public void testSharedPipeName() {
+    String sharedPipe = Utils.sharedPipeName("app", "table");
+    assert sharedPipe.startsWith(Utils.pipeNamePrefix("app", "table"));
+    assert Utils.pipeName("app", "table", 0).startsWith(Utils.pipeNamePrefix("app", "table"));
+    // partition pipes end with the partition number
+    assert !Character.isDigit(sharedPipe.charAt(sharedPipe.length() - 1));
+  }
+
   @Test
   public void testTableName() {
     Map<String, String> topic2table = Utils.parseTopicToTableMap("ab@cd:abcd, 1234:_1234");
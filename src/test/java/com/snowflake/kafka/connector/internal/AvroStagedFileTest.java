@@ -0,0 +1,72 @@
+package com.snowflake.kafka.connector.internal;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import org.apache.avro.Schema;
+import org.apache.avro.SchemaBuilder;
+import org.apache.avro.file.DataFileReader;
+import org.apache.avro.file.SeekableByteArrayInput;
+import org.apache.avro.generic.GenericData;
+import org.apache.avro.generic.GenericDatumReader;
+import org.apache.avro.generic.GenericDatumWriter;
+import org.apache.avro.generic.GenericRecord;
+import org.apache.avro.io.BinaryEncoder;
+import org.apache.avro.io.EncoderFactory;
+import org.junit.jupiter.api.Test;
+
+class AvroStagedFileTest {
+  private static final Schema CONTENT_SCHEMA =
+      SchemaBuilder.record("test_avro").fields().requiredInt("int").endRecord();
+
+  @Test
+  void rawDatums_AreReadBackWithTheirMetadata() throws IOException {
+    AvroStagedFile file = new AvroStagedFile(CONTENT_SCHEMA);
+    file.append(10, "{\"offset\":10}", datum(1234));
+    file.append(12, null, datum(5678));
+
+    assertThat(file.getFirstOffset()).isEqualTo(10);
+    assertThat(file.getLastOffset()).isEqualTo(12);
+    assertThat(file.getSizeBytes()).isPositive();
+
+    List<GenericRecord> records = read(file.finish());
+    assertThat(records).hasSize(2);
+    assertThat(records.get(0).get("meta").toString()).isEqualTo("{\"offset\":10}");
+    assertThat(((GenericRecord) records.get(0).get("content")).get("int")).isEqualTo(1234);
+    assertThat(records.get(1).get("meta")).isNull();
+    assertThat(((GenericRecord) records.get(1).get("content")).get("int")).isEqualTo(5678);
+  }
+
+  @Test
+  void tombstones_HaveNullContent() throws IOException {
+    AvroStagedFile file = new AvroStagedFile(null);
+    file.append(3, "{\"offset\":3}", null);
+
+    List<GenericRecord> records = read(file.finish());
+    assertThat(records).hasSize(1);
+    assertThat(records.get(0).get("meta").toString()).isEqualTo("{\"offset\":3}");
+    assertThat(records.get(0).get("content")).isNull();
+  }
+
+  private static byte[] datum(int value) throws IOException {
+    GenericRecord record = new GenericData.Record(CONTENT_SCHEMA);
+    record.put("int", value);
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    BinaryEncoder encoder = EncoderFactory.get().binaryEncoder(out, null);
+    new GenericDatumWriter<GenericRecord>(CONTENT_SCHEMA).write(record, encoder);
+    encoder.flush();
+    return out.toByteArray();
+  }
+
+  private static List<GenericRecord> read(byte[] content) throws IOException {
+    List<GenericRecord> records = new ArrayList<>();
+    try (DataFileReader<GenericRecord> reader =
+        new DataFileReader<>(new SeekableByteArrayInput(content), new GenericDatumReader<>())) {
+      reader.forEach(records::add);
+    }
+    return records;
+  }
+}
@@ -0,0 +1,56 @@
+package com.snowflake.kafka.connector.internal;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+
+import com.snowflake.kafka.connector.records.SnowflakeRecordContent;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.List;
+import org.apache.avro.Schema;
+import org.apache.avro.SchemaBuilder;
+import org.apache.avro.generic.GenericData;
+import org.apache.avro.generic.GenericDatumWriter;
+import org.apache.avro.generic.GenericRecord;
+import org.apache.avro.io.BinaryEncoder;
+import org.apache.avro.io.EncoderFactory;
+import org.junit.jupiter.api.Test;
+
+class AvroStagedFilesTest {
+  private static final Schema SCHEMA_1 =
+      SchemaBuilder.record("test_avro").fields().requiredInt("int").endRecord();
+  private static final Schema SCHEMA_2 =
+      SchemaBuilder.record("test_avro").fields().requiredLong("int").endRecord();
+
+  @Test
+  void interleavedSchemas_GiveContiguousAndDisjointFiles() throws IOException {
+    AvroStagedFiles files = new AvroStagedFiles();
+    files.append(10, 1, SCHEMA_1, null, datum(SCHEMA_1, 1));
+    files.append(11, 1, SCHEMA_1, null, datum(SCHEMA_1, 2));
+    files.append(12, 2, SCHEMA_2, null, datum(SCHEMA_2, 3L));
+    files.append(13, 1, SCHEMA_1, null, datum(SCHEMA_1, 4));
+    files.append(15, SnowflakeRecordContent.NON_AVRO_SCHEMA, null, null, null);
+    files.append(16, SnowflakeRecordContent.NON_AVRO_SCHEMA, null, null, null);
+
+    List<AvroStagedFile> staged = files.getFiles();
+    assertThat(staged).hasSize(4);
+    assertThat(staged)
+        .extracting(AvroStagedFile::getFirstOffset, AvroStagedFile::getLastOffset)
+        .containsExactly(tuple(10L, 11L), tuple(12L, 12L), tuple(13L, 13L), tuple(15L, 16L));
+  }
+
+  @Test
+  void noRecords_NoFiles() {
+    assertThat(new AvroStagedFiles().getFiles()).isEmpty();
+  }
+
+  private static byte[] datum(Schema schema, Object value) throws IOException {
+    GenericRecord record = new GenericData.Record(schema);
+    record.put("int", value);
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    BinaryEncoder encoder = EncoderFactory.get().binaryEncoder(out, null);
+    new GenericDatumWriter<GenericRecord>(schema).write(record, encoder);
+    encoder.flush();
+    return out.toByteArray();
+  }
+}
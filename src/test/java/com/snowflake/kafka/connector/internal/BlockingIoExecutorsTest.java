@@ -0,0 +1,58 @@
+package com.snowflake.kafka.connector.internal;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import com.snowflake.kafka.connector.SnowflakeSinkConnectorConfig;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Test;
+
+class BlockingIoExecutorsTest {
+
+  @Test
+  void virtualThreads_AreOffByDefault() {
+    assumeTrue(System.getenv(SnowflakeSinkConnectorConfig.SNOWFLAKE_VIRTUAL_THREADS) == null);
+
+    assertThat(BlockingIoExecutors.useVirtualThreads()).isFalse();
+  }
+
+  @Test
+  void executor_RunsTasksOnNamedThreads() throws Exception {
+    ExecutorService executor = BlockingIoExecutors.newExecutor("snowflake-test-io-%d", 2);
+    try {
+      String threadName =
+          executor.submit(() -> Thread.currentThread().getName()).get(5, TimeUnit.SECONDS);
+      assertThat(threadName).startsWith("snowflake-test-io-");
+      if (!BlockingIoExecutors.useVirtualThreads()) {
+        assertThat(executor).isInstanceOf(ThreadPoolExecutor.class);
+        assertThat(((ThreadPoolExecutor) executor).getMaximumPoolSize()).isEqualTo(2);
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  @Test
+  void scheduledExecutor_IsSizedForOneThreadPerTask_OnlyWithVirtualThreads() throws Exception {
+    ScheduledThreadPoolExecutor executor =
+        BlockingIoExecutors.newScheduledExecutor("snowflake-test-scheduler-%d", 2);
+    try {
+      int expectedThreads =
+          BlockingIoExecutors.useVirtualThreads()
+              ? BlockingIoExecutors.VIRTUAL_SCHEDULER_THREADS
+              : 2;
+      assertThat(executor.getCorePoolSize()).isEqualTo(expectedThreads);
+
+      String threadName =
+          executor
+              .schedule(() -> Thread.currentThread().getName(), 10, TimeUnit.MILLISECONDS)
+              .get(5, TimeUnit.SECONDS);
+      assertThat(threadName).startsWith("snowflake-test-scheduler-");
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+}
@@ -0,0 +1,45 @@
+package com.snowflake.kafka.connector.internal;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import org.junit.jupiter.api.Test;
+
+class BrokenRecordBatchTest {
+
+  @Test
+  void emptyBatch() {
+    BrokenRecordBatch batch = new BrokenRecordBatch();
+
+    assertThat(batch.isEmpty()).isTrue();
+    assertThat(batch.getNumOfContents()).isEqualTo(0);
+    assertThat(batch.getData()).isEmpty();
+    assertThat(batch.getIndex()).isEmpty();
+  }
+
+  @Test
+  void contentsAreConcatenated_AndIndexedByOffset() {
+    BrokenRecordBatch batch = new BrokenRecordBatch();
+    byte[] key = "key1".getBytes(StandardCharsets.UTF_8);
+    byte[] value = "broken value".getBytes(StandardCharsets.UTF_8);
+    byte[] otherValue = "{not json".getBytes(StandardCharsets.UTF_8);
+
+    batch.add(10, true, key);
+    batch.add(10, false, value);
+    batch.add(15, false, otherValue);
+
+    assertThat(batch.isEmpty()).isFalse();
+    assertThat(batch.getNumOfContents()).isEqualTo(3);
+    assertThat(batch.getFirstOffset()).isEqualTo(10);
+    assertThat(batch.getLastOffset()).isEqualTo(15);
+    assertThat(batch.getSizeBytes()).isEqualTo(key.length + value.length + otherValue.length);
+    assertThat(new String(batch.getData(), StandardCharsets.UTF_8))
+        .isEqualTo("key1broken value{not json");
+    assertThat(Arrays.asList(new String(batch.getIndex(), StandardCharsets.UTF_8).split("\n")))
+        .containsExactly(
+            "{\"offset\":10,\"type\":\"key\",\"position\":0,\"length\":4}",
+            "{\"offset\":10,\"type\":\"value\",\"position\":4,\"length\":12}",
+            "{\"offset\":15,\"type\":\"value\",\"position\":16,\"length\":9}");
+  }
+}
@@ -0,0 +1,107 @@
+package com.snowflake.kafka.connector.internal;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.snowflake.kafka.connector.SnowflakeSinkConnectorConfig;
+import com.snowflake.kafka.connector.Utils;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.jupiter.api.Test;
+
+class BufferMemoryBudgetTest {
+
+  @Test
+  void update_FlushesNothing_WithinBudget() {
+    AtomicLong workerBytes = new AtomicLong();
+    BufferMemoryBudget budget = new BufferMemoryBudget(1000, "task-0", workerBytes);
+
+    List<Long> toFlush = budget.update(Arrays.asList(100L, 200L, 300L), Long::longValue);
+
+    assertThat(toFlush).isEmpty();
+    assertThat(workerBytes.get()).isEqualTo(600);
+    assertThat(budget.getTaskBufferedBytes()).isEqualTo(600);
+  }
+
+  @Test
+  void update_FlushesLargestBuffersFirst_UntilUnderLowWatermark() {
+    AtomicLong workerBytes = new AtomicLong();
+    BufferMemoryBudget budget = new BufferMemoryBudget(1000, "task-0", workerBytes);
+
+    // 1200 bytes, 400 to free to get back under 800
+    List<Long> toFlush = budget.update(Arrays.asList(100L, 500L, 0L, 300L, 300L), Long::longValue);
+
+    assertThat(toFlush).containsExactly(500L);
+    assertThat(workerBytes.get()).isEqualTo(700);
+    assertThat(budget.getTaskBufferedBytes()).isEqualTo(700);
+  }
+
+  @Test
+  void update_CountsBuffersOfOtherTasks() {
+    AtomicLong workerBytes = new AtomicLong();
+    BufferMemoryBudget otherTask = new BufferMemoryBudget(1000, "task-1", workerBytes);
+    BufferMemoryBudget budget = new BufferMemoryBudget(1000, "task-0", workerBytes);
+    assertThat(otherTask.update(Collections.singletonList(700L), Long::longValue)).isEmpty();
+
+    List<Long> toFlush = budget.update(Arrays.asList(200L, 300L), Long::longValue);
+
+    // 1200 bytes, only this task's buffers can be flushed here
+    assertThat(toFlush).containsExactly(300L, 200L);
+    assertThat(workerBytes.get()).isEqualTo(700);
+
+    otherTask.close();
+    assertThat(workerBytes.get()).isEqualTo(0);
+  }
+
+  @Test
+  void update_ReplacesThePreviousUsageOfTheTask() {
+    AtomicLong workerBytes = new AtomicLong();
+    BufferMemoryBudget budget = new BufferMemoryBudget(1000, "task-0", workerBytes);
+
+    budget.update(Arrays.asList(400L, 400L), Long::longValue);
+    budget.update(Collections.singletonList(100L), Long::longValue);
+
+    assertThat(workerBytes.get()).isEqualTo(100);
+    budget.close();
+    assertThat(workerBytes.get()).isEqualTo(0);
+  }
+
+  @Test
+  void update_MarksForcedFlushes() {
+    BufferMemoryBudget budget = new BufferMemoryBudget(100, "task-0", new AtomicLong());
+
+    budget.update(Arrays.asList(30L, 30L, 30L, 30L), Long::longValue);
+
+    assertThat(budget.getMetricRegistry().getMeters())
+        .hasSize(1)
+        .allSatisfy((name, meter) -> assertThat(meter.getCount()).isEqualTo(2));
+  }
+
+  @Test
+  void fromConfig_IsOnlyEnabledOnDemand() {
+    Map<String, String> config = new HashMap<>();
+    config.put(Utils.TASK_ID, "3");
+    assertThat(BufferMemoryBudget.fromConfig(config)).isNull();
+    assertThat(BufferMemoryBudget.fromConfig(null)).isNull();
+
+    config.put(SnowflakeSinkConnectorConfig.BUFFER_MEMORY_BUDGET_ENABLED, "true");
+    assertThat(BufferMemoryBudget.fromConfig(config).getBudgetBytes())
+        .isEqualTo(BufferMemoryBudget.defaultBudgetBytes());
+
+    config.put(SnowflakeSinkConnectorConfig.BUFFER_MEMORY_BUDGET_BYTES, "1234");
+    assertThat(BufferMemoryBudget.fromConfig(config).getBudgetBytes()).isEqualTo(1234);
+  }
+
+  @Test
+  void forTask_IsCreatedEvenIfNotEnabled_ForTheSpillStrategy() {
+    Map<String, String> config = new HashMap<>();
+    assertThat(BufferMemoryBudget.forTask(config).getBudgetBytes())
+        .isEqualTo(BufferMemoryBudget.defaultBudgetBytes());
+
+    config.put(SnowflakeSinkConnectorConfig.BUFFER_MEMORY_BUDGET_BYTES, "1234");
+    assertThat(BufferMemoryBudget.forTask(config).getBudgetBytes()).isEqualTo(1234);
+  }
+}
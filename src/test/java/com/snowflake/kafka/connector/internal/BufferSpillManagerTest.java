@@ -0,0 +1,49 @@
+package com.snowflake.kafka.connector.internal;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class BufferSpillManagerTest {
+  @TempDir Path spillDirectory;
+
+  private BufferSpillManager victim;
+
+  @BeforeEach
+  void setUp() {
+    victim = new BufferSpillManager(spillDirectory);
+  }
+
+  @Test
+  void spillFile_HoldsAppendedData_UntilDeleted() throws IOException {
+    BufferSpillManager.SpillFile spillFile = victim.createSpillFile();
+    spillFile.append("{\"a\":1}");
+    spillFile.append(new StringBuilder("{\"b\":\"\u017c\"}"));
+
+    Path path = spillFile.seal();
+
+    assertThat(path.getParent()).isEqualTo(spillDirectory);
+    assertThat(new String(Files.readAllBytes(path), StandardCharsets.UTF_8))
+        .isEqualTo("{\"a\":1}{\"b\":\"\u017c\"}");
+    assertThat(spillFile.getSizeChars()).isEqualTo(16);
+
+    spillFile.delete();
+    assertThat(Files.exists(path)).isFalse();
+  }
+
+  @Test
+  void defaultSpillDirectory_IsTheTempDirectory() {
+    Path tempDirectory = Paths.get(System.getProperty("java.io.tmpdir"));
+    assertThat(new BufferSpillManager((String) null).getSpillDirectory()).isEqualTo(tempDirectory);
+    assertThat(new BufferSpillManager("").getSpillDirectory()).isEqualTo(tempDirectory);
+    assertThat(new BufferSpillManager(spillDirectory.toString()).getSpillDirectory())
+        .isEqualTo(spillDirectory);
+  }
+}
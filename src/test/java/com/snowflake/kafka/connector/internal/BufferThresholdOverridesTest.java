@@ -0,0 +1,80 @@
+package com.snowflake.kafka.connector.internal;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.entry;
+
+import com.snowflake.kafka.connector.SnowflakeSinkConnectorConfig;
+import java.util.HashMap;
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+
+class BufferThresholdOverridesTest {
+
+  @Test
+  void parseTopicThresholdMap_KeepsTheOrderOfTheInput() {
+    Map<String, Long> topicThresholds =
+        BufferThresholdOverrides.parseTopicThresholdMap(" orders : 10 ,logs.*:300");
+
+    assertThat(topicThresholds).containsExactly(entry("orders", 10L), entry("logs.*", 300L));
+  }
+
+  @Test
+  void parseTopicThresholdMap_RejectsInvalidInput() {
+    assertThat(BufferThresholdOverrides.parseTopicThresholdMap("orders")).isNull();
+    assertThat(BufferThresholdOverrides.parseTopicThresholdMap("orders:")).isNull();
+    assertThat(BufferThresholdOverrides.parseTopicThresholdMap("orders:ten")).isNull();
+    assertThat(BufferThresholdOverrides.parseTopicThresholdMap("orders:1,orders:2")).isNull();
+    assertThat(BufferThresholdOverrides.parseTopicThresholdMap("logs.*:1,logs.+:2")).isNull();
+    assertThat(BufferThresholdOverrides.parseTopicThresholdMap("logs[:2")).isNull();
+  }
+
+  @Test
+  void parseTopicThresholdMap_AllowsExactTopicsOverlappingARegex() {
+    Map<String, Long> topicThresholds =
+        BufferThresholdOverrides.parseTopicThresholdMap("orders:10,ord.*:300,orders.eu:20");
+
+    assertThat(topicThresholds)
+        .containsExactly(entry("orders", 10L), entry("ord.*", 300L), entry("orders.eu", 20L));
+  }
+
+  @Test
+  void getters_PreferExactTopicsOverlappingARegex() {
+    Map<String, String> config = new HashMap<>();
+    config.put(SnowflakeSinkConnectorConfig.BUFFER_FLUSH_TIME_SEC_TOPIC_MAP, "ord.*:300,orders:10");
+    BufferThresholdOverrides overrides = BufferThresholdOverrides.fromConfig(config);
+
+    assertThat(overrides.getFlushTimeSeconds("orders")).isEqualTo(10L);
+    assertThat(overrides.getFlushTimeSeconds("orders_eu")).isEqualTo(300L);
+  }
+
+  @Test
+  void getters_PreferExactTopics_ThenRegexes() {
+    Map<String, String> config = new HashMap<>();
+    config.put(
+        SnowflakeSinkConnectorConfig.BUFFER_FLUSH_TIME_SEC_TOPIC_MAP, "logs_.*:300,orders:10");
+    config.put(SnowflakeSinkConnectorConfig.BUFFER_SIZE_BYTES_TOPIC_MAP, "logs_.*:100000000");
+    BufferThresholdOverrides overrides = BufferThresholdOverrides.fromConfig(config);
+
+    assertThat(overrides.getFlushTimeSeconds("orders")).isEqualTo(10L);
+    assertThat(overrides.getFlushTimeSeconds("logs_app")).isEqualTo(300L);
+    assertThat(overrides.getFlushTimeSeconds("payments")).isNull();
+    assertThat(overrides.getBufferSizeBytes("logs_app")).isEqualTo(100000000L);
+    assertThat(overrides.getBufferSizeBytes("orders")).isNull();
+    assertThat(overrides.getBufferCountRecords("orders")).isNull();
+  }
+
+  @Test
+  void fromConfig_IsOnlyCreatedWithOverrides() {
+    Map<String, String> config = new HashMap<>();
+    assertThat(BufferThresholdOverrides.fromConfig(config)).isNull();
+    assertThat(BufferThresholdOverrides.fromConfig(null)).isNull();
+
+    config.put(SnowflakeSinkConnectorConfig.BUFFER_COUNT_RECORDS_TOPIC_MAP, "");
+    assertThat(BufferThresholdOverrides.fromConfig(config)).isNull();
+
+    config.put(SnowflakeSinkConnectorConfig.BUFFER_COUNT_RECORDS_TOPIC_MAP, "orders");
+    assertThatThrownBy(() -> BufferThresholdOverrides.fromConfig(config))
+        .isInstanceOf(SnowflakeKafkaConnectorException.class);
+  }
+}
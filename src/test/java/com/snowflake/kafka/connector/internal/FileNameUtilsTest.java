@@ -18,7 +18,34 @@ public class FileNameUtilsTest {
     long time2 = System.currentTimeMillis();
 
     assert !FileNameUtils.verifyFileName("asdasdasdasdsa.json.gz");
+    assert !FileNameUtils.verifyFileName("app/table/1/123_456_789.csv.gz");
     assert FileNameUtils.verifyFileName(fileName);
+    assert fileName.endsWith(".json.gz");
+    for (SnowpipeFileFormat fileFormat : SnowpipeFileFormat.values()) {
+      String formatFileName =
+          FileNameUtils.fileName(
+              FileNameUtils.filePrefix(TestUtils.TEST_CONNECTOR_NAME, topic, partition),
+              startOffset,
+              endOffset,
+              fileFormat);
+      assert formatFileName.endsWith("." + fileFormat.getExtension() + ".gz");
+      assert FileNameUtils.verifyFileName(formatFileName);
+      assert FileNameUtils.fileNameToEndOffset(formatFileName) == endOffset;
+      for (StagedFileCompression compression : StagedFileCompression.values()) {
+        String compressedFileName =
+            FileNameUtils.fileName(
+                FileNameUtils.filePrefix(TestUtils.TEST_CONNECTOR_NAME, topic, partition),
+                startOffset,
+                endOffset,
+                fileFormat,
+                compression);
+        assert compressedFileName.endsWith(
+            "." + fileFormat.getExtension() + "." + compression.getExtension());
+        assert FileNameUtils.verifyFileName(compressedFileName);
+        assert FileNameUtils.fileNameToStartOffset(compressedFileName) == startOffset;
+      }
+    }
+    assert !FileNameUtils.verifyFileName("app/table/1/123_456_789.json.bz2");
     assert FileNameUtils.fileNameToStartOffset(fileName) == startOffset;
     assert FileNameUtils.fileNameToEndOffset(fileName) == endOffset;
     assert FileNameUtils.fileNameToPartition(fileName) == partition;
@@ -52,6 +79,15 @@ public class FileNameUtilsTest {
         FileNameUtils.brokenRecordFileName(
             TestUtils.TEST_CONNECTOR_NAME, topic, partition, startOffset, false);
     assert TestUtils.verifyBrokenRecordName(brokenFileName);
+
+    String prefix = FileNameUtils.filePrefix(TestUtils.TEST_CONNECTOR_NAME, topic, partition);
+    String brokenBatchFileName =
+        FileNameUtils.brokenRecordBatchFileName(prefix, startOffset, endOffset);
+    assert brokenBatchFileName.startsWith(prefix + startOffset + "_" + endOffset + "_broken_");
+    assert brokenBatchFileName.endsWith(".gz");
+    assert !FileNameUtils.verifyFileName(brokenBatchFileName);
+    assert FileNameUtils.brokenRecordBatchIndexFileName(brokenBatchFileName)
+        .equals(brokenBatchFileName.replace(".gz", "_index.json.gz"));
   }
 
   @Test
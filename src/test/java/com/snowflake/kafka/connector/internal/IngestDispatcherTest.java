@@ -0,0 +1,138 @@
+package com.snowflake.kafka.connector.internal;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+class IngestDispatcherTest {
+  private final IngestDispatcher dispatcher = new IngestDispatcher(Executors.newFixedThreadPool(2));
+
+  @AfterEach
+  void tearDown() {
+    dispatcher.close();
+  }
+
+  @Test
+  void partitionsAreGroupedByPipe_KeepingTheirOrder() {
+    Map<String, List<String>> partitionsByPipe =
+        IngestDispatcher.groupByPipe(
+            Arrays.asList("b-1", "a-0", "b-0", "a-1"), partition -> partition.substring(0, 1));
+
+    assertThat(partitionsByPipe.keySet()).containsExactly("b", "a");
+    assertThat(partitionsByPipe.get("b")).containsExactly("b-1", "b-0");
+    assertThat(partitionsByPipe.get("a")).containsExactly("a-0", "a-1");
+  }
+
+  @Test
+  void everyPipeIsIngestedOnce() {
+    Map<List<String>, Boolean> ingested = new ConcurrentHashMap<>();
+    Map<String, List<String>> partitionsByPipe =
+        IngestDispatcher.groupByPipe(
+            Arrays.asList("a-0", "b-0", "c-0", "a-1"), partition -> partition.substring(0, 1));
+
+    Set<String> failed =
+        dispatcher.dispatch(partitionsByPipe, partitions -> ingested.put(partitions, true));
+
+    assertThat(failed).isEmpty();
+    assertThat(ingested)
+        .containsOnlyKeys(
+            Arrays.asList("a-0", "a-1"),
+            Collections.singletonList("b-0"),
+            Collections.singletonList("c-0"));
+  }
+
+  @Test
+  void failingPipe_OnlyFailsItsPartitions() {
+    Map<String, List<String>> partitionsByPipe =
+        IngestDispatcher.groupByPipe(
+            Arrays.asList("a-0", "b-0", "a-1"), partition -> partition.substring(0, 1));
+
+    Set<String> failed =
+        dispatcher.dispatch(
+            partitionsByPipe,
+            partitions -> {
+              if (partitions.contains("a-0")) {
+                throw new IllegalStateException("insertFiles failed");
+              }
+            });
+
+    assertThat(failed).containsExactlyInAnyOrder("a-0", "a-1");
+  }
+
+  @Test
+  void singlePipe_FailureIsReported() {
+    Set<String> failed =
+        dispatcher.dispatch(
+            IngestDispatcher.groupByPipe(Arrays.asList("a-0", "a-1"), partition -> "a"),
+            partitions -> {
+              throw new IllegalStateException("insertFiles failed");
+            });
+
+    assertThat(failed).containsExactlyInAnyOrder("a-0", "a-1");
+  }
+
+  @Test
+  void slowPipe_OnlyFailsItsPartitions_OnceTheTimeoutIsOver() throws Exception {
+    IngestDispatcher timedDispatcher = new IngestDispatcher(Executors.newFixedThreadPool(2), 200);
+    CountDownLatch slowPipeReleased = new CountDownLatch(1);
+    CountDownLatch slowPipeDone = new CountDownLatch(1);
+    try {
+      long startTime = System.currentTimeMillis();
+      Set<String> failed =
+          timedDispatcher.dispatch(
+              IngestDispatcher.groupByPipe(
+                  Arrays.asList("a-0", "b-0"), partition -> partition.substring(0, 1)),
+              partitions -> {
+                if (partitions.contains("b-0")) {
+                  try {
+                    slowPipeReleased.await();
+                  } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                  }
+                  slowPipeDone.countDown();
+                }
+              });
+
+      assertThat(failed).containsExactly("b-0");
+      assertThat(System.currentTimeMillis() - startTime).isLessThan(5000);
+      // the slow ingestion is left running, not interrupted
+      slowPipeReleased.countDown();
+      assertThat(slowPipeDone.await(5, TimeUnit.SECONDS)).isTrue();
+    } finally {
+      timedDispatcher.close();
+    }
+  }
+
+  @Test
+  void singlePipe_IsBoundByTheTimeout() {
+    IngestDispatcher timedDispatcher = new IngestDispatcher(Executors.newFixedThreadPool(1), 100);
+    CountDownLatch released = new CountDownLatch(1);
+    try {
+      Set<String> failed =
+          timedDispatcher.dispatch(
+              IngestDispatcher.groupByPipe(Collections.singletonList("a-0"), partition -> "a"),
+              partitions -> {
+                try {
+                  released.await();
+                } catch (InterruptedException e) {
+                  Thread.currentThread().interrupt();
+                }
+              });
+
+      assertThat(failed).containsExactly("a-0");
+    } finally {
+      released.countDown();
+      timedDispatcher.close();
+    }
+  }
+}
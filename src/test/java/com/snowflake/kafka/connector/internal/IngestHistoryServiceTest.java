@@ -0,0 +1,235 @@
+package com.snowflake.kafka.connector.internal;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+class IngestHistoryServiceTest {
+  private static final String STAGE_NAME = "testStage";
+  private static final String PIPE_NAME = "testPipe";
+
+  private ScheduledExecutorService scheduler;
+  private ScheduledFuture<?> scheduledFuture;
+  private SnowflakeIngestionService ingestionService;
+  private AtomicInteger createdIngestionServices;
+  private AtomicLong currentTime;
+  private IngestHistoryService victim;
+
+  @BeforeEach
+  void setUp() {
+    scheduler = mock(ScheduledExecutorService.class);
+    scheduledFuture = mock(ScheduledFuture.class);
+    doReturn(scheduledFuture)
+        .when(scheduler)
+        .schedule(any(Runnable.class), anyLong(), any(TimeUnit.class));
+    ingestionService = mock(SnowflakeIngestionService.class);
+    createdIngestionServices = new AtomicInteger();
+    currentTime = new AtomicLong(1_000_000L);
+    victim =
+        new IngestHistoryService(
+            (stage, pipe) -> {
+              createdIngestionServices.incrementAndGet();
+              return ingestionService;
+            },
+            scheduler,
+            Double.POSITIVE_INFINITY,
+            currentTime::get);
+  }
+
+  @Test
+  void subscribersOfSamePipe_ShareIngestClientAndPolling() {
+    IngestHistoryService.Subscription first =
+        victim.subscribe(STAGE_NAME, PIPE_NAME, file -> file.startsWith("app/table/0/"));
+    IngestHistoryService.Subscription second =
+        victim.subscribe(STAGE_NAME, PIPE_NAME, file -> file.startsWith("app/table/1/"));
+
+    assertThat(first.getIngestionService()).isSameAs(second.getIngestionService());
+    assertThat(createdIngestionServices.get()).isEqualTo(1);
+    assertThat(victim.pipeCount()).isEqualTo(1);
+    verify(scheduler, times(1)).schedule(any(Runnable.class), anyLong(), any(TimeUnit.class));
+  }
+
+  @Test
+  void historyIsFetchedOnce_AndFannedOutToMatchingSubscribers() {
+    IngestHistoryService.Subscription first =
+        victim.subscribe(STAGE_NAME, PIPE_NAME, file -> file.startsWith("app/table/0/"));
+    IngestHistoryService.Subscription second =
+        victim.subscribe(STAGE_NAME, PIPE_NAME, file -> file.startsWith("app/table/1/"));
+    answerHistory(
+        "app/table/0/1_10_1.json.gz", "app/table/1/1_10_1.json.gz", "app/table/1/11_20_1.json.gz");
+
+    captureScheduledPoll().run();
+
+    verify(ingestionService, times(1))
+        .readIngestHistoryForward(anyMap(), any(), any(), anyInt());
+    Map<String, InternalUtils.IngestedFileStatus> firstHistory = new HashMap<>();
+    Map<String, InternalUtils.IngestedFileStatus> secondHistory = new HashMap<>();
+    assertThat(first.drainTo(firstHistory)).isEqualTo(1);
+    assertThat(second.drainTo(secondHistory)).isEqualTo(2);
+    assertThat(firstHistory).containsOnlyKeys("app/table/0/1_10_1.json.gz");
+    assertThat(secondHistory)
+        .containsOnlyKeys("app/table/1/1_10_1.json.gz", "app/table/1/11_20_1.json.gz");
+
+    // drained entries are not delivered twice, unless explicitly replayed
+    firstHistory.clear();
+    assertThat(first.drainTo(firstHistory)).isEqualTo(0);
+    first.replay();
+    assertThat(first.drainTo(firstHistory)).isEqualTo(1);
+  }
+
+  @Test
+  void lateSubscriber_ReceivesRecentHistory() {
+    IngestHistoryService.Subscription first =
+        victim.subscribe(STAGE_NAME, PIPE_NAME, file -> file.startsWith("app/table/0/"));
+    answerHistory("app/table/0/1_10_1.json.gz", "app/table/1/1_10_1.json.gz");
+    captureScheduledPoll().run();
+
+    IngestHistoryService.Subscription late =
+        victim.subscribe(STAGE_NAME, PIPE_NAME, file -> file.startsWith("app/table/1/"));
+
+    Map<String, InternalUtils.IngestedFileStatus> history = new HashMap<>();
+    assertThat(late.drainTo(history)).isEqualTo(1);
+    assertThat(history).containsOnlyKeys("app/table/1/1_10_1.json.gz");
+    first.close();
+    late.close();
+  }
+
+  @Test
+  void closingLastSubscriber_StopsPollingAndClosesIngestClient() {
+    IngestHistoryService.Subscription first =
+        victim.subscribe(STAGE_NAME, PIPE_NAME, file -> true);
+    IngestHistoryService.Subscription second =
+        victim.subscribe(STAGE_NAME, PIPE_NAME, file -> true);
+
+    first.close();
+    verify(scheduledFuture, never()).cancel(false);
+    verify(ingestionService, never()).close();
+
+    second.close();
+    verify(scheduledFuture, times(1)).cancel(false);
+    verify(ingestionService, times(1)).close();
+    assertThat(victim.pipeCount()).isEqualTo(0);
+  }
+
+  @Test
+  void pollFailure_ResetsHistoryMarker() {
+    victim.subscribe(STAGE_NAME, PIPE_NAME, file -> true);
+    List<String> markersSeen = new ArrayList<>();
+    doAnswer(
+            invocation -> {
+              AtomicReference<String> marker = invocation.getArgument(2);
+              markersSeen.add(marker.get());
+              marker.set("marker");
+              throw new RuntimeException("429");
+            })
+        .when(ingestionService)
+        .readIngestHistoryForward(anyMap(), any(), any(), anyInt());
+
+    Runnable poll = captureScheduledPoll();
+    poll.run();
+    poll.run();
+
+    assertThat(markersSeen).containsExactly(null, null);
+  }
+
+  @Test
+  void everyPoll_IsRescheduledWithItsOwnJitter() {
+    victim.subscribe(STAGE_NAME, PIPE_NAME, file -> true);
+    answerHistory("app/table/0/1_10_1.json.gz");
+
+    Runnable poll = captureScheduledPoll();
+    poll.run();
+    poll.run();
+
+    ArgumentCaptor<Long> delays = ArgumentCaptor.forClass(Long.class);
+    verify(scheduler, times(3))
+        .schedule(any(Runnable.class), delays.capture(), any(TimeUnit.class));
+    assertThat(delays.getAllValues().get(0))
+        .isBetween(0L, IngestHistoryService.POLL_PERIOD_MILLIS);
+    assertThat(delays.getAllValues().subList(1, 3))
+        .allSatisfy(
+            delay ->
+                assertThat(delay)
+                    .isBetween(
+                        IngestHistoryService.POLL_PERIOD_MILLIS
+                            - IngestHistoryService.POLL_JITTER_MILLIS,
+                        IngestHistoryService.POLL_PERIOD_MILLIS
+                            + IngestHistoryService.POLL_JITTER_MILLIS));
+  }
+
+  @Test
+  void pollOverTheRequestLimit_IsRetriedShortly_WithoutBlocking() {
+    IngestHistoryService rateLimited =
+        new IngestHistoryService(
+            (stage, pipe) -> ingestionService, scheduler, 0.001, currentTime::get);
+    rateLimited.subscribe(STAGE_NAME, PIPE_NAME, file -> true);
+    rateLimited.subscribe(STAGE_NAME, "otherPipe", file -> true);
+    answerHistory("app/table/0/1_10_1.json.gz");
+
+    ArgumentCaptor<Runnable> polls = ArgumentCaptor.forClass(Runnable.class);
+    verify(scheduler, times(2)).schedule(polls.capture(), anyLong(), any(TimeUnit.class));
+    polls.getAllValues().get(0).run();
+    polls.getAllValues().get(1).run();
+
+    verify(ingestionService, times(1))
+        .readIngestHistoryForward(anyMap(), any(), any(), anyInt());
+    ArgumentCaptor<Long> delays = ArgumentCaptor.forClass(Long.class);
+    verify(scheduler, times(4))
+        .schedule(any(Runnable.class), delays.capture(), any(TimeUnit.class));
+    assertThat(delays.getAllValues().get(3))
+        .isBetween(1L, IngestHistoryService.RATE_LIMITED_RETRY_MILLIS);
+  }
+
+  @Test
+  void closedPipe_IsNotRescheduled() {
+    IngestHistoryService.Subscription subscription =
+        victim.subscribe(STAGE_NAME, PIPE_NAME, file -> true);
+    Runnable poll = captureScheduledPoll();
+    subscription.close();
+
+    poll.run();
+
+    verify(scheduler, times(1)).schedule(any(Runnable.class), anyLong(), any(TimeUnit.class));
+  }
+
+  private void answerHistory(String... files) {
+    doAnswer(
+            invocation -> {
+              Map<String, InternalUtils.IngestedFileStatus> storage = invocation.getArgument(0);
+              for (String file : files) {
+                storage.put(file, InternalUtils.IngestedFileStatus.LOADED);
+              }
+              return files.length;
+            })
+        .when(ingestionService)
+        .readIngestHistoryForward(anyMap(), any(), any(), anyInt());
+  }
+
+  private Runnable captureScheduledPoll() {
+    ArgumentCaptor<Runnable> poll = ArgumentCaptor.forClass(Runnable.class);
+    verify(scheduler).schedule(poll.capture(), anyLong(), any(TimeUnit.class));
+    return poll.getValue();
+  }
+}
@@ -21,6 +21,7 @@ import org.junit.AfterClass;
 import org.junit.BeforeClass;
 import org.junit.Ignore;
 import org.junit.Test;
+import org.mockito.Mockito;
 
 public class InternalStageIT {
 
@@ -197,6 +198,26 @@ public class InternalStageIT {
     assert files2.size() == 4;
   }
 
+  @Test
+  public void testCredentialRefreshAhead() throws Exception {
+    // credential expires in 30 seconds, refreshed in the background after 24 seconds
+    SnowflakeInternalStage agent =
+        Mockito.spy(
+            new SnowflakeInternalStage(
+                (SnowflakeConnectionV1) service.getConnection(), 30 * 1000L, null));
+
+    agent.putWithCache(stageName1, "testRefreshAhead1", "Any cache", stageType);
+    Thread.sleep(25 * 1000);
+    // served by the cached credential, while a refresh runs in the background
+    agent.putWithCache(stageName1, "testRefreshAhead2", "Any cache", stageType);
+
+    // the first fetch and the one ahead of expiration, or one per file for GCS presigned URLs
+    Mockito.verify(agent, Mockito.timeout(10 * 1000).times(2))
+        .refreshCredentials(Mockito.eq(stageName1), Mockito.eq(stageType), Mockito.anyString());
+    List<String> files = service.listStage(stageName1, "testRefreshAhead");
+    assert files.size() == 2;
+  }
+
   @Ignore
   @Test
   /** This test is manually tested as it takes around 2 hours */
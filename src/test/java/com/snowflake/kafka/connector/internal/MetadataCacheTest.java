@@ -0,0 +1,114 @@
+package com.snowflake.kafka.connector.internal;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import com.snowflake.kafka.connector.internal.MetadataCache.ObjectType;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.jupiter.api.Test;
+
+class MetadataCacheTest {
+  private final AtomicLong currentTime = new AtomicLong(1000);
+  private final MetadataCache cache = new MetadataCache(100, currentTime::get);
+  private final AtomicInteger lookups = new AtomicInteger();
+
+  @Test
+  void results_AreKeptUntilTheyExpire() {
+    assertThat(tableExist("t1")).isTrue();
+    currentTime.addAndGet(99);
+    assertThat(tableExist("t1")).isTrue();
+    assertThat(lookups).hasValue(1);
+
+    currentTime.addAndGet(1);
+    assertThat(tableExist("t1")).isTrue();
+    assertThat(lookups).hasValue(2);
+  }
+
+  @Test
+  void checks_AreCachedPerObjectAndCheck() {
+    tableExist("t1");
+    tableExist("t2");
+    cache.get(ObjectType.STAGE, "t1", "exist", this::lookup);
+    cache.get(ObjectType.TABLE, "t1", "compatible", this::lookup);
+
+    assertThat(lookups).hasValue(4);
+  }
+
+  @Test
+  void invalidate_DropsEveryCheckOfTheObject() {
+    tableExist("t1");
+    cache.get(ObjectType.TABLE, "t1", "compatible", this::lookup);
+    tableExist("t10");
+
+    cache.invalidate(ObjectType.TABLE, "t1");
+    tableExist("t1");
+    cache.get(ObjectType.TABLE, "t1", "compatible", this::lookup);
+    tableExist("t10");
+
+    assertThat(lookups).hasValue(5);
+  }
+
+  @Test
+  void failedLookups_AreNotCached() {
+    assertThatThrownBy(
+            () ->
+                cache.get(
+                    ObjectType.PIPE,
+                    "p1",
+                    "exist",
+                    () -> {
+                      throw new IllegalStateException("connection lost");
+                    }))
+        .isInstanceOf(IllegalStateException.class);
+
+    assertThat(cache.get(ObjectType.PIPE, "p1", "exist", this::lookup)).isTrue();
+    assertThat(lookups).hasValue(1);
+  }
+
+  @Test
+  void concurrentLookups_ShareASingleQuery() throws Exception {
+    CountDownLatch started = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+    CompletableFuture<Boolean> first =
+        CompletableFuture.supplyAsync(
+            () ->
+                cache.get(
+                    ObjectType.TABLE,
+                    "t1",
+                    "exist",
+                    () -> {
+                      started.countDown();
+                      await(release);
+                      return lookup();
+                    }));
+    assertThat(started.await(5, TimeUnit.SECONDS)).isTrue();
+
+    CompletableFuture<Boolean> second = CompletableFuture.supplyAsync(() -> tableExist("t1"));
+    release.countDown();
+
+    assertThat(first.get(5, TimeUnit.SECONDS)).isTrue();
+    assertThat(second.get(5, TimeUnit.SECONDS)).isTrue();
+    assertThat(lookups).hasValue(1);
+  }
+
+  private boolean tableExist(String tableName) {
+    return cache.get(ObjectType.TABLE, tableName, "exist", this::lookup);
+  }
+
+  private boolean lookup() {
+    lookups.incrementAndGet();
+    return true;
+  }
+
+  private static void await(CountDownLatch latch) {
+    try {
+      latch.await(5, TimeUnit.SECONDS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+}
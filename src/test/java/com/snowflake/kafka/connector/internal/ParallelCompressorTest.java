@@ -0,0 +1,71 @@
+package com.snowflake.kafka.connector.internal;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ForkJoinPool;
+import java.util.zip.GZIPInputStream;
+import org.apache.commons.compress.compressors.zstandard.ZstdCompressorInputStream;
+import org.junit.jupiter.api.Test;
+
+class ParallelCompressorTest {
+  // spans two full blocks and a partial one
+  private static final byte[] CONTENT = content(ParallelCompressor.BLOCK_SIZE_BYTES * 5 / 2);
+
+  @Test
+  void gzipMembers_DecompressToTheContent() throws IOException {
+    try (ParallelCompressor compressor = new ParallelCompressor(new ForkJoinPool(2), null)) {
+      byte[] compressed = compressor.compress(CONTENT);
+
+      assertThat(compressed.length).isLessThan(CONTENT.length);
+      assertThat(decompress(new GZIPInputStream(new ByteArrayInputStream(compressed))))
+          .isEqualTo(CONTENT);
+      // deflaters are reused, the second file compresses the same way
+      assertThat(compressor.compress(CONTENT)).isEqualTo(compressed);
+    }
+  }
+
+  @Test
+  void zstdFrames_DecompressToTheContent() throws IOException {
+    try (ParallelCompressor compressor =
+        new ParallelCompressor(new ForkJoinPool(2), new ZstdCompressor(3))) {
+      byte[] compressed = compressor.compress(CONTENT);
+
+      assertThat(compressed.length).isLessThan(CONTENT.length);
+      assertThat(decompress(new ZstdCompressorInputStream(new ByteArrayInputStream(compressed))))
+          .isEqualTo(CONTENT);
+    }
+  }
+
+  @Test
+  void onlyLargeFiles_AreSplit() {
+    assertThat(ParallelCompressor.isWorthSplitting(ParallelCompressor.BLOCK_SIZE_BYTES)).isFalse();
+    assertThat(ParallelCompressor.isWorthSplitting(2L * ParallelCompressor.BLOCK_SIZE_BYTES))
+        .isTrue();
+  }
+
+  private static byte[] content(int sizeBytes) {
+    StringBuilder content = new StringBuilder(sizeBytes);
+    for (int i = 0; content.length() < sizeBytes; i++) {
+      content.append("{\"content\":{\"num\":").append(i).append("},\"meta\":{\"offset\":0}}");
+    }
+    content.setLength(sizeBytes);
+    return content.toString().getBytes(StandardCharsets.UTF_8);
+  }
+
+  private static byte[] decompress(InputStream in) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    try (InputStream input = in) {
+      byte[] buffer = new byte[8192];
+      int read;
+      while ((read = input.read(buffer)) != -1) {
+        out.write(buffer, 0, read);
+      }
+    }
+    return out.toByteArray();
+  }
+}
@@ -0,0 +1,81 @@
+package com.snowflake.kafka.connector.internal;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import com.snowflake.kafka.connector.SnowflakeSinkConnectorConfig;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.connect.sink.SinkTaskContext;
+import org.junit.jupiter.api.Test;
+
+class PartitionBackpressureTest {
+  private final TopicPartition topicPartition = new TopicPartition("topic", 0);
+  private final SinkTaskContext context = mock(SinkTaskContext.class);
+
+  @Test
+  void update_PausesAboveHighWatermark_AndResumesUnderLowWatermark() {
+    PartitionBackpressure backpressure = new PartitionBackpressure(100, 50, 10);
+
+    backpressure.update(context, topicPartition, 100, 0);
+    verify(context, never()).pause(topicPartition);
+
+    backpressure.update(context, topicPartition, 101, 0);
+    backpressure.update(context, topicPartition, 80, 0);
+    verify(context, times(1)).pause(topicPartition);
+    verify(context, never()).resume(topicPartition);
+    assertThat(backpressure.isPaused(topicPartition)).isTrue();
+
+    backpressure.update(context, topicPartition, 50, 0);
+    verify(context, times(1)).resume(topicPartition);
+    assertThat(backpressure.isPaused(topicPartition)).isFalse();
+  }
+
+  @Test
+  void update_PausesOnTooManyInFlightBatches_UntilHalfAreCommitted() {
+    PartitionBackpressure backpressure = new PartitionBackpressure(100, 50, 10);
+
+    backpressure.update(context, topicPartition, 0, 11);
+    verify(context).pause(topicPartition);
+
+    backpressure.update(context, topicPartition, 0, 6);
+    verify(context, never()).resume(topicPartition);
+
+    backpressure.update(context, topicPartition, 0, 5);
+    verify(context).resume(topicPartition);
+  }
+
+  @Test
+  void remove_ForgetsClosedPartitions() {
+    PartitionBackpressure backpressure = new PartitionBackpressure(100, 50, 10);
+    backpressure.update(context, topicPartition, 200, 0);
+
+    backpressure.remove(Collections.singletonList(topicPartition));
+
+    assertThat(backpressure.isPaused(topicPartition)).isFalse();
+    backpressure.update(context, topicPartition, 0, 0);
+    verify(context, never()).resume(topicPartition);
+  }
+
+  @Test
+  void fromConfig_IsOnlyEnabledOnDemand() {
+    Map<String, String> config = new HashMap<>();
+    assertThat(PartitionBackpressure.fromConfig(config)).isNull();
+    assertThat(PartitionBackpressure.fromConfig(null)).isNull();
+
+    config.put(SnowflakeSinkConnectorConfig.BUFFER_BACKPRESSURE_ENABLED, "true");
+    config.put(SnowflakeSinkConnectorConfig.BUFFER_BACKPRESSURE_HIGH_WATERMARK_BYTES, "10");
+    PartitionBackpressure backpressure = PartitionBackpressure.fromConfig(config);
+
+    backpressure.update(context, topicPartition, 11, 0);
+    verify(context).pause(topicPartition);
+    // the default low watermark is above the configured high watermark
+    backpressure.update(context, topicPartition, 10, 0);
+    verify(context).resume(topicPartition);
+  }
+}
@@ -0,0 +1,83 @@
+package com.snowflake.kafka.connector.internal;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+class PartitionCloserTest {
+  private final PartitionCloser victim = new PartitionCloser(Executors.newFixedThreadPool(2), 200);
+
+  @AfterEach
+  void tearDown() {
+    victim.shutdown();
+  }
+
+  @Test
+  void closeTimesOut_PartitionStillClosing_SkipsTheFlush() throws InterruptedException {
+    CountDownLatch slowCloseStarted = new CountDownLatch(1);
+    CountDownLatch slowCloseReleased = new CountDownLatch(1);
+    CountDownLatch slowCloseDone = new CountDownLatch(1);
+    ConcurrentHashMap<String, Boolean> flushedPartitions = new ConcurrentHashMap<>();
+    ConcurrentHashMap<String, Boolean> releasedPartitions = new ConcurrentHashMap<>();
+
+    long startTime = System.currentTimeMillis();
+    victim.closeAll(
+        Arrays.asList("fast", "slow"),
+        partition -> partition,
+        (String partition, BooleanSupplier deadlinePassed) -> {
+          if (partition.equals("slow")) {
+            slowCloseStarted.countDown();
+            await(slowCloseReleased);
+          }
+          if (!deadlinePassed.getAsBoolean()) {
+            flushedPartitions.put(partition, true);
+          }
+          releasedPartitions.put(partition, true);
+          if (partition.equals("slow")) {
+            slowCloseDone.countDown();
+          }
+        });
+
+    assertThat(System.currentTimeMillis() - startTime).isLessThan(5000);
+    assertThat(slowCloseStarted.await(1, TimeUnit.SECONDS)).isTrue();
+    assertThat(flushedPartitions).containsOnlyKeys("fast");
+    assertThat(releasedPartitions).containsOnlyKeys("fast");
+
+    // the slow partition finishes after the deadline, it only releases its resources
+    slowCloseReleased.countDown();
+    assertThat(slowCloseDone.await(5, TimeUnit.SECONDS)).isTrue();
+    assertThat(flushedPartitions).containsOnlyKeys("fast");
+    assertThat(releasedPartitions).containsOnlyKeys("fast", "slow");
+  }
+
+  @Test
+  void closeWithinTimeout_FlushesAllPartitions() {
+    ConcurrentHashMap<String, Boolean> flushedPartitions = new ConcurrentHashMap<>();
+
+    victim.closeAll(
+        Arrays.asList("first", "second", "third"),
+        partition -> partition,
+        (String partition, BooleanSupplier deadlinePassed) -> {
+          if (!deadlinePassed.getAsBoolean()) {
+            flushedPartitions.put(partition, true);
+          }
+        });
+
+    assertThat(flushedPartitions).containsOnlyKeys("first", "second", "third");
+  }
+
+  private static void await(CountDownLatch latch) {
+    try {
+      latch.await(5, TimeUnit.SECONDS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+}
@@ -0,0 +1,95 @@
+package com.snowflake.kafka.connector.internal;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.entry;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Predicate;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class SharedIngestionServicesTest {
+  private static final String STAGE_NAME = "testStage";
+  private static final String PIPE_NAME = "testPipe";
+
+  private SnowflakeIngestionService ingestionService;
+  private AtomicInteger createdIngestionServices;
+  private SharedIngestionServices victim;
+
+  @BeforeEach
+  void setUp() {
+    ingestionService = mock(SnowflakeIngestionService.class);
+    createdIngestionServices = new AtomicInteger();
+    victim =
+        new SharedIngestionServices(
+            (stage, pipe) -> {
+              createdIngestionServices.incrementAndGet();
+              return ingestionService;
+            });
+  }
+
+  @Test
+  void leasesOfSamePipe_ShareIngestClient_ClosedWithTheLastLease() {
+    SnowflakeIngestionService first = victim.acquire(STAGE_NAME, PIPE_NAME);
+    SnowflakeIngestionService second = victim.acquire(STAGE_NAME, PIPE_NAME);
+    first.ingestFiles(Collections.singletonList("app/table/0/file"));
+    second.ingestFiles(Collections.singletonList("app/table/1/file"));
+
+    assertThat(createdIngestionServices.get()).isEqualTo(1);
+    assertThat(victim.pipeCount()).isEqualTo(1);
+    verify(ingestionService, times(2)).ingestFiles(anyList());
+
+    first.close();
+    first.close();
+    verify(ingestionService, never()).close();
+
+    second.close();
+    verify(ingestionService, times(1)).close();
+    assertThat(victim.pipeCount()).isEqualTo(0);
+
+    victim.acquire(STAGE_NAME, PIPE_NAME);
+    assertThat(createdIngestionServices.get()).isEqualTo(2);
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  void leasesOfSamePipe_ReadTheIngestReportFromTheirOwnMarker() {
+    doAnswer(
+            invocation -> {
+              Map<String, InternalUtils.IngestedFileStatus> storage = invocation.getArgument(0);
+              AtomicReference<String> marker = invocation.getArgument(2);
+              String path = marker.get() == null ? "app/table/0/file" : "app/table/0/later";
+              if (storage.containsKey(path)) {
+                storage.put(path, InternalUtils.IngestedFileStatus.LOADED);
+              }
+              marker.set("next");
+              return 1;
+            })
+        .when(ingestionService)
+        .readIngestHistoryForward(any(), any(Predicate.class), any(), isNull());
+    SnowflakeIngestionService first = victim.acquire(STAGE_NAME, PIPE_NAME);
+    SnowflakeIngestionService second = victim.acquire(STAGE_NAME, PIPE_NAME);
+
+    assertThat(first.readIngestReport(Collections.singletonList("app/table/1/file")))
+        .containsOnly(entry("app/table/1/file", InternalUtils.IngestedFileStatus.NOT_FOUND));
+    // the report read by the first partition does not advance the marker of the second one
+    assertThat(second.readIngestReport(Arrays.asList("app/table/0/file", "app/table/0/later")))
+        .containsOnly(
+            entry("app/table/0/file", InternalUtils.IngestedFileStatus.LOADED),
+            entry("app/table/0/later", InternalUtils.IngestedFileStatus.NOT_FOUND));
+    assertThat(second.readIngestReport(Collections.singletonList("app/table/0/later")))
+        .containsOnly(entry("app/table/0/later", InternalUtils.IngestedFileStatus.LOADED));
+  }
+}
@@ -0,0 +1,145 @@
+package com.snowflake.kafka.connector.internal;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.codahale.metrics.Gauge;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Test;
+
+class SharedWorkerResourcesTest {
+
+  @Test
+  void acquire_ReturnsTheSameResourcesToEveryConnector() {
+    SharedWorkerResources first = SharedWorkerResources.acquire("connector-a", false);
+    SharedWorkerResources second = SharedWorkerResources.acquire("connector-b", false);
+    try {
+      assertThat(second).isSameAs(first);
+    } finally {
+      second.release("connector-b");
+      first.release("connector-a");
+    }
+  }
+
+  @Test
+  void threads_AreShutDownWithTheLastReference() {
+    SharedWorkerResources resources = new SharedWorkerResources(1, Executors.newFixedThreadPool(1));
+    resources.retain("connector-a", false);
+    resources.retain("connector-b", false);
+    resources.retain("connector-a", false);
+
+    resources.release("connector-a");
+    resources.release("connector-b");
+    // releasing a reference never taken is ignored
+    resources.release("connector-c");
+    assertThat(resources.isShutdown()).isFalse();
+
+    resources.release("connector-a");
+    assertThat(resources.isShutdown()).isTrue();
+  }
+
+  @Test
+  void compressionPool_IsSharedAndShutDownWithTheLastReference() {
+    SharedWorkerResources resources = new SharedWorkerResources(1, Executors.newFixedThreadPool(1));
+    resources.retain("connector-a", false);
+    resources.retain("connector-b", false);
+
+    ForkJoinPool compressionPool = resources.compressionPool();
+    assertThat(resources.compressionPool()).isSameAs(compressionPool);
+    assertThat(compressionPool.getParallelism())
+        .isEqualTo(Runtime.getRuntime().availableProcessors());
+
+    resources.release("connector-a");
+    assertThat(compressionPool.isShutdown()).isFalse();
+    resources.release("connector-b");
+    assertThat(compressionPool.isShutdown()).isTrue();
+  }
+
+  @Test
+  void repeatedTask_RunsUntilCancelled() throws InterruptedException {
+    SharedWorkerResources resources = new SharedWorkerResources(1, Executors.newFixedThreadPool(2));
+    resources.retain("connector", false);
+    try {
+      AtomicInteger runs = new AtomicInteger();
+      CountDownLatch threeRuns = new CountDownLatch(3);
+      SharedWorkerResources.ScheduledIoTask task =
+          resources.scheduleWithFixedDelay(
+              () -> {
+                runs.incrementAndGet();
+                threeRuns.countDown();
+              },
+              10);
+      assertThat(threeRuns.await(5, TimeUnit.SECONDS)).isTrue();
+
+      task.cancel();
+      int runsAtCancel = runs.get();
+      Thread.sleep(100);
+      // a run already started when cancelling may still finish
+      assertThat(runs.get()).isBetween(runsAtCancel, runsAtCancel + 1);
+    } finally {
+      resources.release("connector");
+    }
+  }
+
+  @Test
+  void task_CanCancelItselfWithoutBeingInterrupted() throws InterruptedException {
+    SharedWorkerResources resources = new SharedWorkerResources(1, Executors.newFixedThreadPool(1));
+    resources.retain("connector", false);
+    try {
+      CountDownLatch done = new CountDownLatch(1);
+      SharedWorkerResources.ScheduledIoTask[] task = new SharedWorkerResources.ScheduledIoTask[1];
+      task[0] =
+          resources.scheduleWithFixedDelay(
+              () -> {
+                task[0].cancel();
+                if (!Thread.currentThread().isInterrupted()) {
+                  done.countDown();
+                }
+              },
+              10);
+
+      assertThat(done.await(5, TimeUnit.SECONDS)).isTrue();
+      assertThat(task[0].isCancelled()).isTrue();
+    } finally {
+      resources.release("connector");
+    }
+  }
+
+  @Test
+  void saturationMetrics_ReportTheIoPool() throws InterruptedException {
+    SharedWorkerResources resources = new SharedWorkerResources(1, Executors.newFixedThreadPool(1));
+    resources.retain("connector", false);
+    CountDownLatch release = new CountDownLatch(1);
+    CountDownLatch started = new CountDownLatch(1);
+    try {
+      Runnable blocking =
+          () -> {
+            started.countDown();
+            try {
+              release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+              Thread.currentThread().interrupt();
+            }
+          };
+      resources.schedule(blocking, 0);
+      assertThat(started.await(5, TimeUnit.SECONDS)).isTrue();
+      resources.schedule(blocking, 0);
+      Thread.sleep(100);
+
+      assertThat(gauge(resources, "shared/shared-io-pool/active-threads")).isEqualTo(1L);
+      assertThat(gauge(resources, "shared/shared-io-pool/pool-size")).isEqualTo(1L);
+      assertThat(gauge(resources, "shared/shared-io-pool/queued-tasks")).isEqualTo(1L);
+    } finally {
+      release.countDown();
+      resources.release("connector");
+    }
+  }
+
+  private static Object gauge(SharedWorkerResources resources, String name) {
+    Gauge<?> gauge = resources.getMetricRegistry().getGauges().get(name);
+    return gauge.getValue();
+  }
+}
@@ -6,6 +6,7 @@ import static org.mockito.Mockito.*;
 
 import com.snowflake.kafka.connector.SnowflakeSinkConnectorConfig;
 import com.snowflake.kafka.connector.Utils;
+import com.snowflake.kafka.connector.internal.streaming.IngestionMethodConfig;
 import com.snowflake.kafka.connector.records.SnowflakeConverter;
 import com.snowflake.kafka.connector.records.SnowflakeJsonConverter;
 import io.confluent.connect.avro.AvroConverter;
@@ -634,6 +635,72 @@ public class SinkServiceIT {
     service.closeAll();
   }
 
+  @Test
+  public void testEagerIngest() throws Exception {
+    conn.createTable(table);
+    conn.createStage(stage);
+    int numOfRecord = 200;
+    int numLimit = 100;
+
+    Map<String, String> config = new HashMap<>();
+    config.put(SnowflakeSinkConnectorConfig.SNOWPIPE_EAGER_INGEST_ENABLED, "true");
+    config.put(SnowflakeSinkConnectorConfig.SNOWPIPE_EAGER_INGEST_COALESCE_MS, "100");
+    SnowflakeSinkService service =
+        SnowflakeSinkServiceFactory.builder(conn, IngestionMethodConfig.SNOWPIPE, config)
+            .setRecordNumber(numLimit)
+            .addTask(table, new TopicPartition(topic, partition))
+            .build();
+
+    insert(service, partition, numOfRecord);
+
+    // files are ingested without waiting for an offset commit
+    TestUtils.assertWithRetry(() -> TestUtils.tableSize(table) == numOfRecord, 30, 20);
+    assert service.getOffset(new TopicPartition(topic, partition)) == numOfRecord;
+
+    service.closeAll();
+  }
+
+  @Test
+  public void testSharedPipe() throws Exception {
+    conn.createTable(table);
+    conn.createStage(stage);
+    // partition 1 migrates from its own pipe, its stage prefix is empty
+    conn.createPipe(table, stage, pipe1);
+    String sharedPipe = Utils.sharedPipeName(TestUtils.TEST_CONNECTOR_NAME, table);
+    int numOfRecord = 100;
+
+    Map<String, String> config = new HashMap<>();
+    config.put(SnowflakeSinkConnectorConfig.SNOWPIPE_SHARED_PIPE_ENABLED, "true");
+    SnowflakeSinkService service =
+        SnowflakeSinkServiceFactory.builder(conn, IngestionMethodConfig.SNOWPIPE, config)
+            .setRecordNumber(numOfRecord)
+            .addTask(table, new TopicPartition(topic, partition))
+            .addTask(table, new TopicPartition(topic, partition1))
+            .build();
+
+    try {
+      insert(service, partition, numOfRecord);
+      insert(service, partition1, numOfRecord);
+
+      TestUtils.assertWithRetry(
+          () -> {
+            service.getOffsets(
+                Arrays.asList(
+                    new TopicPartition(topic, partition), new TopicPartition(topic, partition1)));
+            return TestUtils.tableSize(table) == numOfRecord * 2;
+          },
+          30,
+          20);
+      assert conn.pipeExist(sharedPipe);
+      assert !conn.pipeExist(pipe);
+      assert !conn.pipeExist(pipe1);
+
+      service.closeAll();
+    } finally {
+      conn.dropPipe(sharedPipe);
+    }
+  }
+
   private void insert(SnowflakeSinkService sink, int partition, int numOfRecord) {
     for (int i = 0; i < numOfRecord; i++) {
       SnowflakeConverter converter = new SnowflakeJsonConverter();
@@ -0,0 +1,154 @@
+package com.snowflake.kafka.connector.internal;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.codahale.metrics.Timer;
+import com.snowflake.kafka.connector.internal.SnowflakeConnectionPool.Lease;
+import com.snowflake.kafka.connector.internal.SnowflakeConnectionPool.OperationClass;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import org.junit.jupiter.api.Test;
+
+class SnowflakeConnectionPoolTest {
+  private final List<Connection> opened = new ArrayList<>();
+
+  private SnowflakeConnectionPool pool(int maxSize) {
+    return new SnowflakeConnectionPool(
+        mock(Connection.class),
+        () -> {
+          Connection connection = mock(Connection.class);
+          opened.add(connection);
+          return connection;
+        },
+        maxSize,
+        "task-0");
+  }
+
+  @Test
+  void sessionsAreOpenedOnDemand_AndReused() throws SQLException {
+    SnowflakeConnectionPool pool = pool(4);
+
+    Connection first;
+    try (Lease lease = pool.acquire(OperationClass.METADATA)) {
+      first = lease.getConnection();
+    }
+    try (Lease lease = pool.acquire(OperationClass.DDL)) {
+      assertThat(lease.getConnection()).isSameAs(first);
+      try (Lease other = pool.acquire(OperationClass.METADATA)) {
+        assertThat(other.getConnection()).isNotSameAs(first);
+      }
+    }
+
+    assertThat(opened).hasSize(1);
+    assertThat(pool.getIdleCount()).isEqualTo(2);
+  }
+
+  @Test
+  void operationClass_OnlyHoldsItsShareOfThePool() throws Exception {
+    SnowflakeConnectionPool pool = pool(4);
+    Lease first = pool.acquire(OperationClass.STAGE_MAINTENANCE);
+    Lease second = pool.acquire(OperationClass.STAGE_MAINTENANCE);
+
+    CompletableFuture<Lease> third =
+        CompletableFuture.supplyAsync(() -> acquire(pool, OperationClass.STAGE_MAINTENANCE));
+    assertThatThrownBy(() -> third.get(200, TimeUnit.MILLISECONDS))
+        .isInstanceOf(TimeoutException.class);
+
+    // other operation classes still get a session
+    try (Lease lease = pool.acquire(OperationClass.DDL)) {
+      assertThat(lease.getConnection()).isNotNull();
+    }
+
+    first.close();
+    third.get(5, TimeUnit.SECONDS).close();
+    second.close();
+
+    Timer waitTime =
+        pool.getMetricRegistry()
+            .getTimers()
+            .get("task-0/connection-pool/stage-maintenance-wait-time");
+    assertThat(waitTime.getCount()).isEqualTo(3);
+  }
+
+  @Test
+  void brokenSession_IsDroppedOnRelease() throws SQLException {
+    SnowflakeConnectionPool pool = pool(2);
+
+    Connection broken;
+    try (Lease lease = pool.acquire(OperationClass.METADATA)) {
+      broken = lease.getConnection();
+      when(broken.isClosed()).thenReturn(true);
+    }
+    verify(broken).close();
+
+    try (Lease lease = pool.acquire(OperationClass.METADATA)) {
+      assertThat(lease.getConnection()).isNotSameAs(broken);
+    }
+    assertThat(opened).hasSize(1);
+  }
+
+  @Test
+  void close_ClosesIdleSessions_AndSessionsHandedBackLater() throws SQLException {
+    SnowflakeConnectionPool pool = pool(2);
+    Lease inUse = pool.acquire(OperationClass.METADATA);
+    pool.acquire(OperationClass.METADATA).close();
+
+    pool.close();
+    verify(opened.get(0)).close();
+
+    inUse.close();
+    verify(inUse.getConnection()).close();
+    assertThat(pool.getIdleCount()).isZero();
+  }
+
+  @Test
+  void singleSession_IsSharedByConcurrentOperations() throws SQLException {
+    SnowflakeConnectionPool pool = pool(1);
+
+    try (Lease first = pool.acquire(OperationClass.STAGE_MAINTENANCE);
+        Lease second = pool.acquire(OperationClass.STAGE_MAINTENANCE);
+        Lease credential = pool.acquire(OperationClass.CREDENTIAL)) {
+      assertThat(second.getConnection()).isSameAs(first.getConnection());
+      assertThat(credential.getConnection()).isSameAs(first.getConnection());
+    }
+    assertThat(opened).isEmpty();
+  }
+
+  @Test
+  void closedSharedSession_IsReplaced_UntilThePoolIsClosed() throws SQLException {
+    SnowflakeConnectionPool pool = pool(1);
+    Connection broken;
+    try (Lease lease = pool.acquire(OperationClass.METADATA)) {
+      broken = lease.getConnection();
+    }
+    when(broken.isClosed()).thenReturn(true);
+
+    try (Lease lease = pool.acquire(OperationClass.METADATA)) {
+      assertThat(opened).hasSize(1);
+      assertThat(lease.getConnection()).isSameAs(opened.get(0));
+    }
+
+    pool.close();
+    verify(opened.get(0)).close();
+    assertThat(pool.isClosed()).isTrue();
+    assertThatThrownBy(() -> pool.acquire(OperationClass.METADATA))
+        .isInstanceOf(SQLException.class);
+  }
+
+  private static Lease acquire(SnowflakeConnectionPool pool, OperationClass operation) {
+    try {
+      return pool.acquire(operation);
+    } catch (SQLException e) {
+      throw new RuntimeException(e);
+    }
+  }
+}
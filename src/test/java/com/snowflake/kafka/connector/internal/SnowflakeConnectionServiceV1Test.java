@@ -1,11 +1,19 @@
 package com.snowflake.kafka.connector.internal;
 
 import static org.mockito.Mockito.anyString;
+import static org.mockito.Mockito.eq;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.same;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.snowflake.kafka.connector.internal.streaming.ChannelMigrateOffsetTokenResponseDTO;
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.sql.SQLException;
+import java.util.Arrays;
+import net.snowflake.client.jdbc.SnowflakeConnectionV1;
 import org.junit.Test;
 
 public class SnowflakeConnectionServiceV1Test {
@@ -36,4 +44,64 @@ public class SnowflakeConnectionServiceV1Test {
         .thenCallRealMethod();
     v1MockConnectionService.getChannelMigrateOffsetTokenResponseDTO(validMigrationResponse);
   }
+
+  @Test
+  public void testRemoveFilesPattern() {
+    String pattern =
+        SnowflakeConnectionServiceV1.removeFilesPattern(
+            Arrays.asList("1_10_1700000000000.json.gz", "11_20_1700000000001.json.gz"));
+    assert pattern.equals(
+        "(.*/)?(1_10_1700000000000\\\\.json\\\\.gz|11_20_1700000000001\\\\.json\\\\.gz)");
+  }
+
+  @Test
+  public void testStreamFileToTableStage_gzipFile() throws Exception {
+    String name = "app/table/0/1_10_1700000000000.json.gz";
+    SnowflakeConnectionV1 sfconn = mock(SnowflakeConnectionV1.class);
+    InputStream file = new ByteArrayInputStream(new byte[] {1, 2, 3});
+    when(sfconn.downloadStream("stage", name, true)).thenReturn(file);
+
+    SnowflakeConnectionServiceV1.streamFileToTableStage(sfconn, "table", "stage", name, null);
+
+    // the driver decompresses the file and compresses it again, appending .gz
+    verify(sfconn)
+        .uploadStream(
+            eq("%table"),
+            eq("app/table/0"),
+            same(file),
+            eq("1_10_1700000000000.json"),
+            eq(true));
+  }
+
+  @Test
+  public void testStreamFileToTableStage_zstdFile() throws Exception {
+    String name = "app/table/0/1_10_1700000000000.json.zst";
+    SnowflakeConnectionV1 sfconn = mock(SnowflakeConnectionV1.class);
+    InputStream file = new ByteArrayInputStream(new byte[] {1, 2, 3});
+    when(sfconn.downloadStream("stage", name, false)).thenReturn(file);
+
+    SnowflakeConnectionServiceV1.streamFileToTableStage(sfconn, "table", "stage", name, null);
+
+    // the file is moved as is, under its own name
+    verify(sfconn)
+        .uploadStream(
+            eq("%table"),
+            eq("app/table/0"),
+            same(file),
+            eq("1_10_1700000000000.json.zst"),
+            eq(false));
+  }
+
+  @Test
+  public void testIsServerSideCopyUnsupported() {
+    assert SnowflakeConnectionServiceV1.isServerSideCopyUnsupported(
+        new SQLException("SQL compilation error: syntax error", "42000", 1003));
+    assert SnowflakeConnectionServiceV1.isServerSideCopyUnsupported(
+        new SQLException("Unsupported feature 'COPY FILES'", "0A000", 2));
+    // transient failures only fall back for the files of the call
+    assert !SnowflakeConnectionServiceV1.isServerSideCopyUnsupported(
+        new SQLException("Statement reached its statement or warehouse timeout", "57014", 630));
+    assert !SnowflakeConnectionServiceV1.isServerSideCopyUnsupported(
+        new SQLException("JDBC driver encountered communication error", "08001", 200015));
+  }
 }
@@ -68,7 +68,7 @@ public class SnowflakeTelemetryPipeStatusMetricsIT {
 
     MetricRegistry metricRegistry = service.getMetricRegistry(pipeName).get();
     Assert.assertFalse(metricRegistry.getMetrics().isEmpty());
-    Assert.assertTrue(metricRegistry.getMetrics().size() == 14);
+    Assert.assertTrue(metricRegistry.getMetrics().size() == 15);
 
     Map<String, Gauge> registeredGauges = metricRegistry.getGauges();
 
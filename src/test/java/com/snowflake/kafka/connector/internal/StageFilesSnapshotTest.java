@@ -0,0 +1,85 @@
+package com.snowflake.kafka.connector.internal;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentMatchers;
+
+class StageFilesSnapshotTest {
+  private static final String STAGE_NAME = "testStage";
+  private static final String PARTITION_0 = "app/table/0/";
+  private static final String PARTITION_1 = "app/table/1/";
+  private static final String PARTITION_2 = "app/table/2/";
+
+  @Test
+  void stageIsListedOnce_AndBucketedByPartition() {
+    SnowflakeConnectionService conn = mock(SnowflakeConnectionService.class);
+    doAnswer(
+            invocation -> {
+              Consumer<String> consumer = invocation.getArgument(2);
+              consumer.accept(PARTITION_0 + "1_10_1.json.gz");
+              consumer.accept(PARTITION_1 + "1_10_1.json.gz");
+              consumer.accept(PARTITION_0 + "11_20_1.json.gz");
+              // partition assigned to another task
+              consumer.accept("app/table/7/1_10_1.json.gz");
+              return null;
+            })
+        .when(conn)
+        .listStage(eq(STAGE_NAME), eq("app/table/"), ArgumentMatchers.<Consumer<String>>any());
+
+    StageFilesSnapshot snapshot =
+        StageFilesSnapshot.take(
+            conn, STAGE_NAME, "app/table/", Arrays.asList(PARTITION_0, PARTITION_1, PARTITION_2));
+
+    verify(conn)
+        .listStage(eq(STAGE_NAME), eq("app/table/"), ArgumentMatchers.<Consumer<String>>any());
+    assertThat(snapshot.take(PARTITION_0))
+        .containsExactly(PARTITION_0 + "1_10_1.json.gz", PARTITION_0 + "11_20_1.json.gz");
+    assertThat(snapshot.take(PARTITION_1)).containsExactly(PARTITION_1 + "1_10_1.json.gz");
+    assertThat(snapshot.take(PARTITION_2)).isEmpty();
+    assertThat(snapshot.take("app/table/7/")).isNull();
+  }
+
+  @Test
+  void countingFiles_DoesNotTakeThem() {
+    StageFilesSnapshot snapshot =
+        new StageFilesSnapshot(
+            STAGE_NAME, Arrays.asList(PARTITION_0, PARTITION_1), System::currentTimeMillis);
+    snapshot.add(PARTITION_0 + "1_10_1.json.gz");
+
+    assertThat(snapshot.count(PARTITION_0)).isEqualTo(1);
+    assertThat(snapshot.count(PARTITION_1)).isEqualTo(0);
+    assertThat(snapshot.count("app/table/7/")).isEqualTo(-1);
+    assertThat(snapshot.take(PARTITION_0)).hasSize(1);
+    assertThat(snapshot.count(PARTITION_0)).isEqualTo(-1);
+  }
+
+  @Test
+  void partitionFilesCanBeTakenOnce() {
+    StageFilesSnapshot snapshot =
+        new StageFilesSnapshot(STAGE_NAME, Arrays.asList(PARTITION_0), System::currentTimeMillis);
+    snapshot.add(PARTITION_0 + "1_10_1.json.gz");
+
+    assertThat(snapshot.take(PARTITION_0)).hasSize(1);
+    assertThat(snapshot.take(PARTITION_0)).isNull();
+  }
+
+  @Test
+  void expiredSnapshot_IsNotUsed() {
+    AtomicLong currentTime = new AtomicLong(1000);
+    StageFilesSnapshot snapshot =
+        new StageFilesSnapshot(STAGE_NAME, Arrays.asList(PARTITION_0), currentTime::get);
+    snapshot.add(PARTITION_0 + "1_10_1.json.gz");
+
+    currentTime.addAndGet(StageFilesSnapshot.MAX_AGE.toMillis() + 1);
+
+    assertThat(snapshot.take(PARTITION_0)).isNull();
+  }
+}
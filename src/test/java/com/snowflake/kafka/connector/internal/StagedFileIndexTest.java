@@ -0,0 +1,114 @@
+package com.snowflake.kafka.connector.internal;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.StreamSupport;
+import org.junit.jupiter.api.Test;
+
+class StagedFileIndexTest {
+  private static final String PREFIX = "connector/table/3/";
+
+  @Test
+  void fileNameIsParsedOnce_IntoAllOfItsParts() {
+    StagedFile file = StagedFile.parse(PREFIX + "10_19_1700000000000.json.gz");
+
+    assertThat(file.getName()).isEqualTo(PREFIX + "10_19_1700000000000.json.gz");
+    assertThat(file.getPartition()).isEqualTo(3);
+    assertThat(file.getStartOffset()).isEqualTo(10);
+    assertThat(file.getEndOffset()).isEqualTo(19);
+    assertThat(file.getTimeIngested()).isEqualTo(1700000000000L);
+  }
+
+  @Test
+  void invalidFileName_IsRejected() {
+    assertThatThrownBy(() -> StagedFile.parse(PREFIX + "broken.json"))
+        .isInstanceOf(SnowflakeKafkaConnectorException.class);
+  }
+
+  @Test
+  void filesAreKeyedByName_AndOrderedByOffset() {
+    StagedFileIndex index = new StagedFileIndex();
+    index.add(fileName(20, 29, 3));
+    index.add(fileName(0, 9, 1));
+    index.add(fileName(10, 19, 2));
+
+    assertThat(index.add(fileName(10, 19, 2))).isFalse();
+    assertThat(index.size()).isEqualTo(3);
+    assertThat(index.names())
+        .containsExactly(fileName(0, 9, 1), fileName(10, 19, 2), fileName(20, 29, 3));
+    assertThat(index.get(fileName(10, 19, 2)).getEndOffset()).isEqualTo(19);
+
+    assertThat(index.remove(fileName(10, 19, 2))).isNotNull();
+    assertThat(index.remove(fileName(10, 19, 2))).isNull();
+    assertThat(index.names()).containsExactly(fileName(0, 9, 1), fileName(20, 29, 3));
+  }
+
+  @Test
+  void contiguousFiles_StopAtTheFirstGapOrOverlap() {
+    StagedFileIndex index = new StagedFileIndex();
+    index.add(fileName(0, 9, 1));
+    index.add(fileName(10, 19, 2));
+    index.add(fileName(20, 29, 3));
+    // a broken record at offset 30 was not staged
+    index.add(fileName(31, 39, 4));
+
+    assertThat(index.contiguousFrom(10))
+        .extracting(StagedFile::getName)
+        .containsExactly(fileName(10, 19, 2), fileName(20, 29, 3));
+    assertThat(index.contiguousFrom(5)).isEmpty();
+
+    // part of the range uploaded again with different boundaries after a restart
+    index.add(fileName(20, 24, 5));
+    assertThat(index.contiguousFrom(10))
+        .extracting(StagedFile::getName)
+        .containsExactly(fileName(10, 19, 2));
+    index.add(fileName(10, 14, 6));
+    assertThat(index.contiguousFrom(10)).isEmpty();
+  }
+
+  @Test
+  void offsetRangeQueries_SplitFilesByStartOffset() {
+    StagedFileIndex index = new StagedFileIndex();
+    index.add(fileName(0, 9, 1));
+    index.add(fileName(10, 19, 2));
+    // same start offset, uploaded again after a restart
+    index.add(fileName(10, 14, 5));
+    index.add(fileName(20, 29, 3));
+
+    assertThat(names(index.startingFrom(10)))
+        .containsExactly(fileName(10, 14, 5), fileName(10, 19, 2), fileName(20, 29, 3));
+    assertThat(names(index.startingBefore(10))).containsExactly(fileName(0, 9, 1));
+    assertThat(index.startingFrom(Long.MAX_VALUE)).isEmpty();
+    assertThat(index.startingBefore(Long.MAX_VALUE)).hasSize(4);
+  }
+
+  @Test
+  void largeIndex_SupportsRemovalOfEveryFile() {
+    StagedFileIndex index = new StagedFileIndex();
+    int fileCount = 100_000;
+    for (int i = 0; i < fileCount; i++) {
+      index.add(fileName(i * 10L, i * 10L + 9, i));
+    }
+    assertThat(index.size()).isEqualTo(fileCount);
+    assertThat(index.startingFrom(fileCount * 5L)).hasSize(fileCount / 2);
+
+    for (int i = 0; i < fileCount; i++) {
+      index.remove(fileName(i * 10L, i * 10L + 9, i));
+    }
+    assertThat(index.isEmpty()).isTrue();
+    assertThat(index.files()).isEmpty();
+  }
+
+  private static String fileName(long start, long end, long time) {
+    return PREFIX + start + "_" + end + "_" + time + ".json.gz";
+  }
+
+  private static List<String> names(Iterable<StagedFile> files) {
+    return StreamSupport.stream(files.spliterator(), false)
+        .map(StagedFile::getName)
+        .collect(Collectors.toList());
+  }
+}
@@ -0,0 +1,57 @@
+package com.snowflake.kafka.connector.internal;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import org.apache.commons.compress.compressors.zstandard.ZstdCompressorInputStream;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class ZstdCompressorTest {
+  private static final String CONTENT =
+      "{\"content\":{\"name\":\"test\",\"num\":1},\"meta\":{\"offset\":0,\"partition\":0}}";
+
+  private final ZstdCompressor compressor = new ZstdCompressor(3);
+
+  @Test
+  void compressedString_DecompressesToItsUtf8Bytes() throws IOException {
+    StringBuilder content = new StringBuilder();
+    for (int i = 0; i < 1000; i++) {
+      content.append(CONTENT).append("\u00e9");
+    }
+
+    byte[] compressed = compressor.compress(content.toString());
+
+    byte[] expected = content.toString().getBytes(StandardCharsets.UTF_8);
+    assertThat(compressed.length).isLessThan(expected.length);
+    assertThat(decompress(compressed)).isEqualTo(expected);
+  }
+
+  @Test
+  void compressedFile_DecompressesToItsContent(@TempDir Path dir) throws IOException {
+    Path localFile = dir.resolve("buffer");
+    byte[] content = CONTENT.getBytes(StandardCharsets.UTF_8);
+    Files.write(localFile, content);
+
+    assertThat(decompress(compressor.compress(localFile))).isEqualTo(content);
+    assertThat(decompress(compressor.compress(content))).isEqualTo(content);
+  }
+
+  private static byte[] decompress(byte[] compressed) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    try (InputStream in = new ZstdCompressorInputStream(new ByteArrayInputStream(compressed))) {
+      byte[] buffer = new byte[8192];
+      int read;
+      while ((read = in.read(buffer)) != -1) {
+        out.write(buffer, 0, read);
+      }
+    }
+    return out.toByteArray();
+  }
+}
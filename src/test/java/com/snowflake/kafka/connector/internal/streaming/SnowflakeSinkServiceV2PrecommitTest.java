@@ -0,0 +1,156 @@
+package com.snowflake.kafka.connector.internal.streaming;
+
+import static com.snowflake.kafka.connector.internal.TestUtils.createNativeJsonSinkRecords;
+import static com.snowflake.kafka.connector.internal.streaming.StreamingUtils.MAX_GET_OFFSET_TOKEN_RETRIES;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.snowflake.kafka.connector.SnowflakeSinkConnectorConfig;
+import com.snowflake.kafka.connector.dlq.KafkaRecordErrorReporter;
+import com.snowflake.kafka.connector.internal.SnowflakeConnectionService;
+import com.snowflake.kafka.connector.internal.TestUtils;
+import com.snowflake.kafka.connector.internal.telemetry.SnowflakeTelemetryService;
+import com.snowflake.kafka.connector.records.RecordService;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import net.snowflake.ingest.streaming.InsertValidationResponse;
+import net.snowflake.ingest.streaming.OpenChannelRequest;
+import net.snowflake.ingest.streaming.SnowflakeStreamingIngestChannel;
+import net.snowflake.ingest.streaming.SnowflakeStreamingIngestClient;
+import net.snowflake.ingest.utils.ErrorCode;
+import net.snowflake.ingest.utils.SFException;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.connect.sink.SinkTaskContext;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentMatchers;
+import org.mockito.Mockito;
+
+class SnowflakeSinkServiceV2PrecommitTest {
+
+  private static final String TOPIC = "TEST";
+  private static final int PARTITION = 0;
+  private static final String TEST_CHANNEL_NAME =
+      SnowflakeSinkServiceV2.partitionChannelKey(TOPIC, PARTITION);
+
+  private final TopicPartition topicPartition = new TopicPartition(TOPIC, PARTITION);
+
+  @BeforeEach
+  void setUp() {
+    StreamingClientProvider.reset();
+    StreamingClientProvider.overrideStreamingClientHandler(new FakeStreamingClientHandler());
+  }
+
+  @AfterEach
+  void tearDown() {
+    StreamingClientProvider.reset();
+  }
+
+  @Test
+  void getOffsets_RecoversChannelsOnTheTaskThread_AfterATimedOutFetchFails() throws Exception {
+    // the first channel answers the open of the partition, then fails every fetch of preCommit
+    CountDownLatch fetchReleased = new CountDownLatch(1);
+    CountDownLatch fetchFailed = new CountDownLatch(MAX_GET_OFFSET_TOKEN_RETRIES);
+    AtomicInteger fetches = new AtomicInteger();
+    SnowflakeStreamingIngestChannel failingChannel = mockChannel();
+    Mockito.when(failingChannel.getLatestCommittedOffsetToken())
+        .thenAnswer(
+            invocation -> {
+              if (fetches.getAndIncrement() == 0) {
+                return "5";
+              }
+              fetchReleased.await();
+              fetchFailed.countDown();
+              throw new SFException(ErrorCode.INVALID_CHANNEL, "INVALID_CHANNEL");
+            });
+    SnowflakeStreamingIngestChannel reopenedChannel = mockChannel();
+    Mockito.when(reopenedChannel.getLatestCommittedOffsetToken()).thenReturn("7");
+
+    SnowflakeStreamingIngestClient client = Mockito.mock(SnowflakeStreamingIngestClient.class);
+    Mockito.when(client.openChannel(ArgumentMatchers.any(OpenChannelRequest.class)))
+        .thenReturn(failingChannel, reopenedChannel);
+
+    List<Thread> offsetResetThreads = new CopyOnWriteArrayList<>();
+    SinkTaskContext sinkTaskContext = Mockito.mock(SinkTaskContext.class);
+    Mockito.doAnswer(invocation -> offsetResetThreads.add(Thread.currentThread()))
+        .when(sinkTaskContext)
+        .offset(ArgumentMatchers.eq(topicPartition), ArgumentMatchers.anyLong());
+
+    Map<String, String> config = TestUtils.getConfig();
+    config.put(SnowflakeSinkConnectorConfig.SNOWFLAKE_PRECOMMIT_TIMEOUT_MS, "500");
+    SnowflakeConnectionService conn = Mockito.mock(SnowflakeConnectionService.class);
+    SnowflakeTelemetryService telemetryService = Mockito.mock(SnowflakeTelemetryService.class);
+    KafkaRecordErrorReporter errorReporter = Mockito.mock(KafkaRecordErrorReporter.class);
+    TopicPartitionChannel channel =
+        new TopicPartitionChannel(
+            client,
+            topicPartition,
+            TEST_CHANNEL_NAME,
+            "TEST_TABLE",
+            new StreamingBufferThreshold(10, 10_000, 1),
+            config,
+            errorReporter,
+            sinkTaskContext,
+            conn,
+            telemetryService);
+    Map<String, TopicPartitionChannel> partitionsToChannel = new HashMap<>();
+    partitionsToChannel.put(TEST_CHANNEL_NAME, channel);
+    SnowflakeSinkServiceV2 service =
+        new SnowflakeSinkServiceV2(
+            10,
+            10_000,
+            1,
+            conn,
+            new RecordService(),
+            telemetryService,
+            null,
+            SnowflakeSinkConnectorConfig.BehaviorOnNullValues.DEFAULT,
+            false,
+            errorReporter,
+            sinkTaskContext,
+            client,
+            config,
+            false,
+            false,
+            partitionsToChannel);
+
+    try {
+      // the fetch does not complete within the timeout, the partition keeps its committed offset
+      assertThat(service.getOffsets(Collections.singletonList(topicPartition))).isEmpty();
+
+      // records are put while the fetch fails on the pool
+      fetchReleased.countDown();
+      service.insert(createNativeJsonSinkRecords(6, 1, TOPIC, PARTITION));
+      assertThat(fetchFailed.await(30, TimeUnit.SECONDS)).isTrue();
+      Mockito.verify(client, Mockito.times(1))
+          .openChannel(ArgumentMatchers.any(OpenChannelRequest.class));
+
+      // the failed fetch is recovered by the next preCommit, on its thread
+      assertThat(service.getOffsets(Collections.singletonList(topicPartition)))
+          .containsEntry(topicPartition, 8L);
+      Mockito.verify(client, Mockito.times(2))
+          .openChannel(ArgumentMatchers.any(OpenChannelRequest.class));
+      assertThat(offsetResetThreads).isNotEmpty().containsOnly(Thread.currentThread());
+    } finally {
+      service.stop();
+    }
+  }
+
+  private static SnowflakeStreamingIngestChannel mockChannel() {
+    SnowflakeStreamingIngestChannel channel = Mockito.mock(SnowflakeStreamingIngestChannel.class);
+    Mockito.when(channel.getFullyQualifiedName()).thenReturn(TEST_CHANNEL_NAME);
+    Mockito.when(
+            channel.insertRows(
+                ArgumentMatchers.any(Iterable.class),
+                ArgumentMatchers.any(String.class),
+                ArgumentMatchers.any(String.class)))
+        .thenReturn(new InsertValidationResponse());
+    return channel;
+  }
+}
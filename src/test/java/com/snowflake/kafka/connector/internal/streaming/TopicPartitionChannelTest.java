@@ -1339,6 +1339,48 @@ public class TopicPartitionChannelTest {
     assert resultStatus.getMetricsJmxReporter() == null;
   }
 
+  @Test
+  public void testRefreshInFlightBatches_dropsCommittedBatchesBeforeCommit() {
+    Mockito.when(
+            mockStreamingChannel.insertRows(
+                ArgumentMatchers.any(Iterable.class),
+                ArgumentMatchers.any(String.class),
+                ArgumentMatchers.any(String.class)))
+        .thenReturn(new InsertValidationResponse());
+    Mockito.when(mockStreamingChannel.getLatestCommittedOffsetToken())
+        .thenReturn(null)
+        .thenReturn("1")
+        .thenReturn("2");
+
+    TopicPartitionChannel topicPartitionChannel =
+        new TopicPartitionChannel(
+            mockStreamingClient,
+            topicPartition,
+            TEST_CHANNEL_NAME,
+            TEST_TABLE_NAME,
+            streamingBufferThreshold,
+            sfConnectorConfig,
+            mockKafkaRecordErrorReporter,
+            mockSinkTaskContext,
+            mockSnowflakeConnectionService,
+            mockTelemetryService);
+
+    // one batch per record, the buffer flushes after each of them
+    List<SinkRecord> records = TestUtils.createJsonStringSinkRecords(0, 3, TOPIC, PARTITION);
+    for (int idx = 0; idx < records.size(); idx++) {
+      topicPartitionChannel.insertRecordToBuffer(records.get(idx), idx == 0);
+    }
+    Assert.assertEquals(3, topicPartitionChannel.getInFlightBatchCount());
+
+    topicPartitionChannel.refreshInFlightBatches();
+    Assert.assertEquals(1, topicPartitionChannel.getInFlightBatchCount());
+
+    // the offset token is fetched at most once a second
+    topicPartitionChannel.refreshInFlightBatches();
+    Assert.assertEquals(1, topicPartitionChannel.getInFlightBatchCount());
+    Mockito.verify(mockStreamingChannel, Mockito.times(2)).getLatestCommittedOffsetToken();
+  }
+
   @Test
   public void testOffsetTokenVerificationFunction() {
     Assert.assertTrue(StreamingUtils.offsetTokenVerificationFunction.verify("1", "2", "4", 2));
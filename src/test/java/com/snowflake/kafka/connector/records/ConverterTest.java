@@ -40,6 +40,7 @@ import java.nio.file.Paths;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Calendar;
 import java.util.Collections;
 import java.util.GregorianCalendar;
@@ -181,6 +182,81 @@ public class ConverterTest {
     assertEquals("{}", content.getData()[0].toString());
   }
 
+  @Test
+  public void testAvroWithSchemaRegistryPassthrough() throws IOException {
+    MockSchemaRegistryClient client = new MockSchemaRegistryClient();
+    SnowflakeAvroConverter converter = new SnowflakeAvroConverter();
+    Map<String, String> configs = new HashMap<>();
+    configs.put(SnowflakeAvroConverter.AVRO_PASSTHROUGH, "true");
+    configs.put(AbstractKafkaSchemaSerDeConfig.SCHEMA_REGISTRY_URL_CONFIG, "http://fake-url");
+    converter.configure(configs, false);
+    converter.setSchemaRegistry(client);
+
+    byte[] data = client.getData();
+    SchemaAndValue input = converter.toConnectData("test", data);
+    SnowflakeRecordContent content = assertInstanceOf(SnowflakeRecordContent.class, input.value());
+    assertTrue(content.isAvroPassthrough());
+    assertEquals(1, content.getSchemaID());
+    assertEquals("test_avro", content.getAvroSchema().getName());
+    // magic byte and schema id are stripped
+    assertArrayEquals(Arrays.copyOfRange(data, 5, data.length), content.getAvroDatum());
+    // still decoded on demand
+    assertEquals(mapper.readTree("{\"int\":1234}").asText(), content.getData()[0].asText());
+
+    // null value
+    input = converter.toConnectData("test", null);
+    content = assertInstanceOf(SnowflakeRecordContent.class, input.value());
+    assertFalse(content.isAvroPassthrough());
+    assertTrue(content.isRecordContentValueNull());
+  }
+
+  @Test
+  public void testAvroPassthroughCorruptDatumIsBroken() {
+    MockSchemaRegistryClient client = new MockSchemaRegistryClient();
+    SnowflakeAvroConverter converter = new SnowflakeAvroConverter();
+    Map<String, String> configs = new HashMap<>();
+    configs.put(SnowflakeAvroConverter.AVRO_PASSTHROUGH, "true");
+    configs.put(AbstractKafkaSchemaSerDeConfig.SCHEMA_REGISTRY_URL_CONFIG, "http://fake-url");
+    converter.configure(configs, false);
+    converter.setSchemaRegistry(client);
+    byte[] data = client.getData();
+
+    // truncated datum
+    byte[] truncated = Arrays.copyOf(data, data.length - 1);
+    SnowflakeRecordContent content =
+        assertInstanceOf(
+            SnowflakeRecordContent.class, converter.toConnectData("test", truncated).value());
+    assertTrue(content.isBroken());
+    assertArrayEquals(truncated, content.getBrokenData());
+
+    // bytes after the datum
+    byte[] trailing = Arrays.copyOf(data, data.length + 1);
+    content =
+        assertInstanceOf(
+            SnowflakeRecordContent.class, converter.toConnectData("test", trailing).value());
+    assertTrue(content.isBroken());
+  }
+
+  @Test
+  public void testAvroPassthroughIgnoredWithReaderSchema() throws IOException {
+    MockSchemaRegistryClient client = new MockSchemaRegistryClient();
+    SnowflakeAvroConverter converter = new SnowflakeAvroConverter();
+    Map<String, String> configs = new HashMap<>();
+    configs.put(SnowflakeAvroConverter.AVRO_PASSTHROUGH, "true");
+    configs.put(
+        SnowflakeAvroConverter.READER_SCHEMA,
+        "{\"name\":\"test_avro\",\"type\":\"record\","
+            + "\"fields\":[{\"name\":\"int\",\"type\":\"int\"}]}");
+    configs.put(AbstractKafkaSchemaSerDeConfig.SCHEMA_REGISTRY_URL_CONFIG, "http://fake-url");
+    converter.configure(configs, false);
+    converter.setSchemaRegistry(client);
+
+    SchemaAndValue input = converter.toConnectData("test", client.getData());
+    SnowflakeRecordContent content = assertInstanceOf(SnowflakeRecordContent.class, input.value());
+    assertFalse(content.isAvroPassthrough());
+    assertEquals(mapper.readTree("{\"int\":1234}").asText(), content.getData()[0].asText());
+  }
+
   @Test
   public void testAvroWithSchemaRegistryAndWrongReaderSchema() {
     SnowflakeAvroConverter converter = new SnowflakeAvroConverter();